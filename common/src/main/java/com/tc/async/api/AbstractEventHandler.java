@@ -16,6 +16,8 @@
  */
 package com.tc.async.api;
 
+import com.tc.exception.PlatformRejoinException;
+import com.tc.exception.TCNotRunningException;
 import com.tc.logging.TCLogger;
 import com.tc.logging.TCLogging;
 
@@ -35,12 +37,39 @@ public abstract class AbstractEventHandler implements EventHandler {
   @Override
   public abstract void handleEvent(EventContext context) throws EventHandlerException;
 
+  /**
+   * Handles the contexts one by one. A context failing because the client is shutting down or rejoining is logged and
+   * skipped, the stage would have ignored that failure for a context handled on its own too.
+   */
   @Override
   public void handleEvents(Collection contexts) throws EventHandlerException {
     for (Iterator i = contexts.iterator(); i.hasNext();) {
       EventContext eh = (EventContext) i.next();
-      handleEvent(eh);
+      try {
+        handleEvent(eh);
+      } catch (RuntimeException e) {
+        if (!isTCNotRunningException(e) && !isRejoinInProgressException(e)) { throw e; }
+        TCLogger log = getLogger() == null ? TCLogging.getLogger(getClass()) : getLogger();
+        log.info("Ignoring " + e.getClass().getSimpleName() + " while handling context: " + eh);
+      }
+    }
+  }
+
+  public static boolean isTCNotRunningException(Throwable e) {
+    return rootCause(e) instanceof TCNotRunningException;
+  }
+
+  public static boolean isRejoinInProgressException(Throwable e) {
+    return rootCause(e) instanceof PlatformRejoinException;
+  }
+
+  private static Throwable rootCause(Throwable e) {
+    Throwable rootCause = null;
+    while (e != null) {
+      rootCause = e;
+      e = e.getCause();
     }
+    return rootCause;
   }
 
   @Override
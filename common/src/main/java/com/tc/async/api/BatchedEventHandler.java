@@ -0,0 +1,37 @@
+/* 
+ * The contents of this file are subject to the Terracotta Public License Version
+ * 2.0 (the "License"); You may not use this file except in compliance with the
+ * License. You may obtain a copy of the License at 
+ *
+ *      http://terracotta.org/legal/terracotta-public-license.
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ * the specific language governing rights and limitations under the License.
+ *
+ * The Covered Software is Terracotta Platform.
+ *
+ * The Initial Developer of the Covered Software is 
+ *      Terracotta, Inc., a Software AG company
+ */
+package com.tc.async.api;
+
+/**
+ * An {@link EventHandler} that wants to be handed several events per wake up. The stage worker drains whatever is
+ * queued for it, up to {@link #getMaxBatchSize()} events, with a single queue lock acquisition and passes them to
+ * {@link EventHandler#handleEvents(java.util.Collection)} as a {@link java.util.List} in queue order.
+ * <p>
+ * The batch size can be overridden per stage with the <code>seda.&lt;stage name&gt;.batchSize</code> tc property.
+ * {@link SpecializedEventContext}s are never part of a batch, they are still executed on their own and in order. The
+ * list is reused between calls so handlers must not hold on to it, and if handleEvents throws the events after the one
+ * that failed are not handed to the handler again. The stage still goes on with the rest of what it drained when that
+ * failure is one it ignores, the client shutting down or rejoining.
+ */
+public interface BatchedEventHandler extends EventHandler {
+
+  /**
+   * @return the maximum number of events handed to a single handleEvents call, 1 or less disables batching
+   */
+  public int getMaxBatchSize();
+
+}
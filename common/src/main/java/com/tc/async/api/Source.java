@@ -16,6 +16,8 @@
  */
 package com.tc.async.api;
 
+import java.util.Collection;
+
 /**
  * This is used by the internals to manage the process of processing EventContexts in the manner that makes sense for
  * each one. Individual Stages SHOULD NOT HAVE TO EITHER USE OR IMPLEMENT THIS INTERFACE
@@ -26,6 +28,13 @@ public interface Source {
 
   public EventContext poll(long period) throws InterruptedException;
 
+  /**
+   * Moves up to maxElements contexts that are already queued into the given collection, without waiting for more.
+   * 
+   * @return the number of contexts moved
+   */
+  public int drainTo(Collection<EventContext> into, int maxElements);
+
   public String getSourceName();
 
 }
@@ -31,4 +31,9 @@ public interface Stage extends PrettyPrintable {
 
   public String getName();
 
+  /**
+   * Queue wait, service time and batch size distributions of this stage since it was created.
+   */
+  public StageLatencySnapshot getLatencySnapshot();
+
 }
@@ -0,0 +1,75 @@
+/* 
+ * The contents of this file are subject to the Terracotta Public License Version
+ * 2.0 (the "License"); You may not use this file except in compliance with the
+ * License. You may obtain a copy of the License at 
+ *
+ *      http://terracotta.org/legal/terracotta-public-license.
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ * the specific language governing rights and limitations under the License.
+ *
+ * The Covered Software is Terracotta Platform.
+ *
+ * The Initial Developer of the Covered Software is 
+ *      Terracotta, Inc., a Software AG company
+ */
+package com.tc.async.api;
+
+import com.tc.stats.counter.HistogramSnapshot;
+
+import java.io.Serializable;
+
+/**
+ * Point in time copy of the latency distributions of one stage. Queue wait and service times are in nanoseconds,
+ * service times and batch sizes are per call into the event handler. The distributions are sampled, see
+ * tc.stage.latency.sample.interval, so their counts are a fraction of the events handled.
+ */
+public class StageLatencySnapshot implements Serializable {
+
+  private static final long       serialVersionUID = -3188093745541839458L;
+
+  private final String            stageName;
+  private final HistogramSnapshot queueWait;
+  private final HistogramSnapshot serviceTime;
+  private final HistogramSnapshot batchSize;
+
+  public StageLatencySnapshot(String stageName, HistogramSnapshot queueWait, HistogramSnapshot serviceTime,
+                              HistogramSnapshot batchSize) {
+    this.stageName = stageName;
+    this.queueWait = queueWait;
+    this.serviceTime = serviceTime;
+    this.batchSize = batchSize;
+  }
+
+  public String getStageName() {
+    return stageName;
+  }
+
+  /**
+   * Time from being added to the sink to being taken off the queue by a worker.
+   */
+  public HistogramSnapshot getQueueWait() {
+    return queueWait;
+  }
+
+  /**
+   * Time spent in the event handler.
+   */
+  public HistogramSnapshot getServiceTime() {
+    return serviceTime;
+  }
+
+  /**
+   * Number of contexts handed to the event handler at once, always 1 unless the handler is batched.
+   */
+  public HistogramSnapshot getBatchSize() {
+    return batchSize;
+  }
+
+  @Override
+  public String toString() {
+    return stageName + ": queueWait(ns)={" + queueWait + "}, serviceTime(ns)={" + serviceTime + "}, batchSize={"
+           + batchSize + "}";
+  }
+}
@@ -47,5 +47,7 @@ public interface StageManager extends PrettyPrintable, ClearableCallback {
 
   public Stats[] getStats();
 
+  public StageLatencySnapshot[] getLatencySnapshots();
+
   public Collection<Stage> getStages();
 }
@@ -16,6 +16,8 @@
  */
 package com.tc.async.impl;
 
+import com.tc.async.api.AbstractEventHandler;
+import com.tc.async.api.BatchedEventHandler;
 import com.tc.async.api.ConfigurationContext;
 import com.tc.async.api.EventContext;
 import com.tc.async.api.EventHandler;
@@ -24,16 +26,21 @@ import com.tc.async.api.Sink;
 import com.tc.async.api.Source;
 import com.tc.async.api.SpecializedEventContext;
 import com.tc.async.api.Stage;
+import com.tc.async.api.StageLatencySnapshot;
 import com.tc.exception.PlatformRejoinException;
 import com.tc.exception.TCNotRunningException;
 import com.tc.exception.TCRuntimeException;
 import com.tc.logging.TCLogger;
 import com.tc.logging.TCLoggerProvider;
 import com.tc.properties.TCPropertiesImpl;
+import com.tc.stats.counter.LogLinearHistogram;
 import com.tc.text.PrettyPrinter;
 import com.tc.util.concurrent.QueueFactory;
 import com.tc.util.concurrent.ThreadUtil;
 
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * The SEDA Stage
  */
@@ -48,6 +55,7 @@ public class StageImpl implements Stage {
   private final TCLogger       logger;
   private final int            sleepMs;
   private final boolean        pausable;
+  private final int            batchSize;
 
   /**
    * The Constructor.
@@ -85,6 +93,12 @@ public class StageImpl implements Stage {
     if (this.pausable) {
       logger.warn("Stage pausing is enabled for stage " + name);
     }
+    if (handler instanceof BatchedEventHandler) {
+      this.batchSize = Math.max(1, TCPropertiesImpl.getProperties()
+          .getInt("seda." + name + ".batchSize", ((BatchedEventHandler) handler).getMaxBatchSize()));
+    } else {
+      this.batchSize = 1;
+    }
   }
 
   @Override
@@ -112,7 +126,7 @@ public class StageImpl implements Stage {
         threadName = threadName + ")";
       }
       threads[i] = new WorkerThread(threadName, this.stageQueue.getSource(i), handler, group, logger, sleepMs,
-                                    pausable, name);
+                                    pausable, name, batchSize, this.stageQueue.getLatencyRecorder(i));
       threads[i].start();
     }
   }
@@ -130,22 +144,43 @@ public class StageImpl implements Stage {
     return name;
   }
 
+  @Override
+  public StageLatencySnapshot getLatencySnapshot() {
+    LogLinearHistogram[] queueWaits = new LogLinearHistogram[threads.length];
+    LogLinearHistogram[] serviceTimes = new LogLinearHistogram[threads.length];
+    LogLinearHistogram[] batchSizes = new LogLinearHistogram[threads.length];
+    for (int i = 0; i < threads.length; i++) {
+      WorkerLatencyRecorder recorder = stageQueue.getLatencyRecorder(i);
+      queueWaits[i] = recorder.getQueueWait();
+      serviceTimes[i] = recorder.getServiceTime();
+      batchSizes[i] = recorder.getBatchSize();
+    }
+    return new StageLatencySnapshot(name, LogLinearHistogram.snapshotOf(queueWaits),
+                                    LogLinearHistogram.snapshotOf(serviceTimes),
+                                    LogLinearHistogram.snapshotOf(batchSizes));
+  }
+
   @Override
   public String toString() {
     return "StageImpl(" + name + ")";
   }
 
   private static class WorkerThread extends Thread {
-    private final Source       source;
-    private final EventHandler handler;
-    private volatile boolean   shutdownRequested = false;
-    private final TCLogger     tcLogger;
-    private final int          sleepMs;
-    private final boolean      pausable;
-    private final String       stageName;
+    private final Source                source;
+    private final EventHandler          handler;
+    private volatile boolean            shutdownRequested = false;
+    private final TCLogger              tcLogger;
+    private final int                   sleepMs;
+    private final boolean               pausable;
+    private final String                stageName;
+    private final int                   batchSize;
+    private final List<EventContext>    batch;
+    private final List<EventContext>    drained;
+    private final WorkerLatencyRecorder latencyRecorder;
 
     public WorkerThread(String name, Source source, EventHandler handler, ThreadGroup group, TCLogger logger,
-                        int sleepMs, boolean pausable, String stageName) {
+                        int sleepMs, boolean pausable, String stageName, int batchSize,
+                        WorkerLatencyRecorder latencyRecorder) {
       super(group, name);
       tcLogger = logger;
       setDaemon(true);
@@ -154,6 +189,10 @@ public class StageImpl implements Stage {
       this.sleepMs = sleepMs;
       this.pausable = pausable;
       this.stageName = stageName;
+      this.batchSize = batchSize;
+      this.batch = batchSize > 1 ? new ArrayList<EventContext>(batchSize) : null;
+      this.drained = batchSize > 1 ? new ArrayList<EventContext>(batchSize) : null;
+      this.latencyRecorder = latencyRecorder;
     }
 
     public void shutdown() {
@@ -184,8 +223,11 @@ public class StageImpl implements Stage {
             handleStageDebugPauses();
             if (ctxt instanceof SpecializedEventContext) {
               ((SpecializedEventContext) ctxt).execute();
+            } else if (batchSize > 1) {
+              handleBatch(ctxt);
             } else {
               handler.handleEvent(ctxt);
+              latencyRecorder.handled();
             }
           }
         } catch (InterruptedException ie) {
@@ -195,47 +237,86 @@ public class StageImpl implements Stage {
           if (shutdownRequested()) return;
           throw new TCRuntimeException(ie);
         } catch (Exception e) {
-          if (isTCNotRunningException(e)) {
-            if (shutdownRequested()) {
-              return;
-            }
-            tcLogger.info("Ignoring " + TCNotRunningException.class.getSimpleName() + " while handling context: "
-                          + ctxt);
-          } else if (isRejoinInProgressException(e)) {
-            if (shutdownRequested()) {
-              return;
-            }
-            tcLogger.info("Ignoring " + PlatformRejoinException.class.getSimpleName() + " while handling context: "
-                          + ctxt, e);
-          } else {
-            throw new TCRuntimeException("Uncaught exception in stage", e);
-          }
+          if (!isIgnorable(e)) { throw new TCRuntimeException("Uncaught exception in stage", e); }
+          if (shutdownRequested()) { return; }
+          logIgnored(e, ctxt);
         } finally {
           // Aggressively null out the reference before going around the loop again. If you don't do this, the reference
           // to the context will exist until another context comes in. This can potentially keep many objects in memory
           // longer than necessary
           ctxt = null;
+          if (batchSize > 1) {
+            batch.clear();
+            drained.clear();
+          }
         }
       }
     }
-  }
 
-  private static boolean isTCNotRunningException(Throwable e) {
-    Throwable rootCause = null;
-    while (e != null) {
-      rootCause = e;
-      e = e.getCause();
+    /**
+     * Hands the first context and whatever else is already queued, up to the batch size, to the handler in one go.
+     * Specialized contexts are executed in their place in the queue order.
+     */
+    private void handleBatch(EventContext first) throws EventHandlerException {
+      batch.add(first);
+      source.drainTo(drained, batchSize - 1);
+      for (EventContext context : drained) {
+        if (context instanceof SpecializedEventContext) {
+          flushBatch();
+          try {
+            ((SpecializedEventContext) context).execute();
+          } catch (RuntimeException e) {
+            ignoreOrRethrow(e, context);
+          }
+        } else {
+          batch.add(context);
+        }
+      }
+      flushBatch();
+    }
+
+    private void flushBatch() throws EventHandlerException {
+      if (batch.isEmpty()) { return; }
+      boolean timed = latencyRecorder.sampleBatch();
+      long start = timed ? System.nanoTime() : 0;
+      try {
+        if (batch.size() == 1) {
+          handler.handleEvent(batch.get(0));
+        } else {
+          // the default handleEvents carries on past ignorable failures by itself, see AbstractEventHandler
+          handler.handleEvents(batch);
+        }
+      } catch (RuntimeException e) {
+        ignoreOrRethrow(e, batch.size() == 1 ? batch.get(0) : batch);
+      }
+      if (timed) {
+        latencyRecorder.handled(start, batch.size());
+      }
+      batch.clear();
+    }
+
+    /**
+     * Lets the rest of a drained batch be handled when one context fails because the client is shutting down or
+     * rejoining, as only that context would have been lost had it been handled on its own.
+     */
+    private void ignoreOrRethrow(RuntimeException e, Object context) {
+      if (!isIgnorable(e) || shutdownRequested()) { throw e; }
+      logIgnored(e, context);
     }
-    return rootCause instanceof TCNotRunningException;
-  }
 
-  private static boolean isRejoinInProgressException(Throwable e) {
-    Throwable rootCause = null;
-    while (e != null) {
-      rootCause = e;
-      e = e.getCause();
+    private void logIgnored(Exception e, Object context) {
+      if (AbstractEventHandler.isTCNotRunningException(e)) {
+        tcLogger.info("Ignoring " + TCNotRunningException.class.getSimpleName() + " while handling context: "
+                      + context);
+      } else {
+        tcLogger.info("Ignoring " + PlatformRejoinException.class.getSimpleName() + " while handling context: "
+                      + context, e);
+      }
     }
-    return rootCause instanceof PlatformRejoinException;
+  }
+
+  private static boolean isIgnorable(Throwable e) {
+    return AbstractEventHandler.isTCNotRunningException(e) || AbstractEventHandler.isRejoinInProgressException(e);
   }
 
   @Override
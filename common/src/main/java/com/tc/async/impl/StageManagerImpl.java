@@ -20,6 +20,7 @@ import com.tc.async.api.ConfigurationContext;
 import com.tc.async.api.EventHandler;
 import com.tc.async.api.PostInit;
 import com.tc.async.api.Stage;
+import com.tc.async.api.StageLatencySnapshot;
 import com.tc.async.api.StageManager;
 import com.tc.async.api.StageMonitor;
 import com.tc.logging.DefaultLoggerProvider;
@@ -194,6 +195,17 @@ public class StageManagerImpl implements StageManager {
     return stats;
   }
 
+  @Override
+  public synchronized StageLatencySnapshot[] getLatencySnapshots() {
+    final String[] names = stageNames;
+    final StageLatencySnapshot[] snapshots = new StageLatencySnapshot[names.length];
+
+    for (int i = 0; i < names.length; i++) {
+      snapshots[i] = getStage(names[i]).getLatencySnapshot();
+    }
+    return snapshots;
+  }
+
   @Override
   public Collection<Stage> getStages() {
     return stages.values();
@@ -25,13 +25,18 @@ import com.tc.async.api.StageQueueStats;
 import com.tc.exception.TCRuntimeException;
 import com.tc.logging.TCLogger;
 import com.tc.logging.TCLoggerProvider;
+import com.tc.properties.TCProperties;
+import com.tc.properties.TCPropertiesConsts;
+import com.tc.properties.TCPropertiesImpl;
 import com.tc.stats.Stats;
 import com.tc.util.Assert;
 import com.tc.util.concurrent.QueueFactory;
 import com.tc.util.concurrent.TCQueue;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Iterator;
+import java.util.List;
 import java.util.concurrent.atomic.AtomicInteger;
 
 /**
@@ -66,11 +71,26 @@ public class StageQueueImpl implements Sink {
     this.logger = loggerProvider.getLogger(Sink.class.getName() + ": " + stageName);
     this.stageName = stageName;
     this.sourceQueues = new SourceQueueImpl[threadCount];
-    createWorkerQueues(threadCount, threadsToQueueRatio, queueFactory, queueSize, loggerProvider, stageName);
+    createWorkerQueues(threadCount, threadsToQueueRatio, queueFactory, queueSize, loggerProvider, stageName,
+                       latencySampleMask());
+  }
+
+  /**
+   * Latency is recorded for one context (or batch) in every tc.stage.latency.sample.interval, rounded up to a power of
+   * two, so the clock is read once every so many contexts.
+   * 
+   * @return the mask a context counter is tested against, -1 when latencies are not recorded
+   */
+  private static int latencySampleMask() {
+    TCProperties props = TCPropertiesImpl.getProperties();
+    if (!props.getBoolean(TCPropertiesConsts.TC_STAGE_LATENCY_ENABLED, true)) { return -1; }
+    int interval = props.getInt(TCPropertiesConsts.TC_STAGE_LATENCY_SAMPLE_INTERVAL, 16);
+    if (interval <= 0) { return -1; }
+    return interval == 1 ? 0 : (Integer.highestOneBit(interval - 1) << 1) - 1;
   }
 
   private void createWorkerQueues(int threads, int threadsToQueueRatio, QueueFactory queueFactory, int queueSize,
-                                  TCLoggerProvider loggerProvider, String stage) {
+                                  TCLoggerProvider loggerProvider, String stage, int latencySampleMask) {
     StageQueueStatsCollector statsCollector = new NullStageQueueStatsCollector(stage);
     TCQueue q = null;
     int queueCount = -1;
@@ -95,7 +115,7 @@ public class StageQueueImpl implements Sink {
         q = queueFactory.createInstance(queueSize);
         queueCount++;
       }
-      this.sourceQueues[i] = new SourceQueueImpl(q, String.valueOf(queueCount), statsCollector);
+      this.sourceQueues[i] = new SourceQueueImpl(q, String.valueOf(queueCount), statsCollector, latencySampleMask);
     }
   }
 
@@ -125,13 +145,44 @@ public class StageQueueImpl implements Sink {
     }
   }
 
+  /**
+   * Contexts are grouped by the queue they hash to and each group is linked into its queue with as few lock
+   * acquisitions as the free capacity allows. Contexts going to the same queue keep their relative order.
+   */
   @Override
   public void addMany(Collection contexts) {
     if (this.logger.isDebugEnabled()) {
       this.logger.debug("Added many:" + contexts + " to:" + this.stageName);
     }
+    final AddPredicate addPredicate = this.predicate;
+    final List[] batches = new List[this.sourceQueues.length];
     for (Iterator i = contexts.iterator(); i.hasNext();) {
-      add((EventContext) i.next());
+      EventContext context = (EventContext) i.next();
+      Assert.assertNotNull(context);
+      if (!addPredicate.accept(context)) {
+        if (this.logger.isDebugEnabled()) {
+          this.logger.debug("Predicate caused skip add for:" + context + " to:" + this.stageName);
+        }
+        continue;
+      }
+      int index = 0;
+      if (context instanceof MultiThreadedEventContext) {
+        index = getSourceQueueIndexFor((MultiThreadedEventContext) context);
+      }
+      if (batches[index] == null) {
+        batches[index] = batches.length == 1 ? new ArrayList(contexts.size()) : new ArrayList();
+      }
+      batches[index].add(context);
+    }
+
+    boolean interrupted = false;
+    for (int i = 0; i < batches.length; i++) {
+      if (batches[i] != null) {
+        interrupted |= this.sourceQueues[i].putAll(batches[i]);
+      }
+    }
+    if (interrupted) {
+      Thread.currentThread().interrupt();
     }
   }
 
@@ -172,9 +223,12 @@ public class StageQueueImpl implements Sink {
   }
 
   private SourceQueueImpl getSourceQueueFor(MultiThreadedEventContext context) {
+    return this.sourceQueues[getSourceQueueIndexFor(context)];
+  }
+
+  private int getSourceQueueIndexFor(MultiThreadedEventContext context) {
     Object o = context.getKey();
-    int index = hashCodeToArrayIndex(o.hashCode(), this.sourceQueues.length);
-    return this.sourceQueues[index];
+    return hashCodeToArrayIndex(o.hashCode(), this.sourceQueues.length);
   }
 
   private int hashCodeToArrayIndex(int hashcode, int arrayLength) {
@@ -233,6 +287,10 @@ public class StageQueueImpl implements Sink {
     }
   }
 
+  WorkerLatencyRecorder getLatencyRecorder(int index) {
+    return this.sourceQueues[index].latencyRecorder;
+  }
+
   @Override
   public Stats getStats(long frequency) {
     // Since all source queues have the same collector, the first reference is passed.
@@ -256,16 +314,30 @@ public class StageQueueImpl implements Sink {
     this.sourceQueues[0].getStatsCollector().reset();
   }
 
+  /**
+   * Sampled contexts are queued along with the time they were added so the wait can be recorded when a worker takes
+   * them off, the others are queued as they are. Each source is only read from by its own worker, even when the
+   * underlying queue is shared, so the wait is recorded with that worker's latency recorder and the drain buffer is
+   * reused.
+   */
   private static final class SourceQueueImpl implements Source {
 
     private final TCQueue                     queue;
     private final String                      sourceName;
+    private final WorkerLatencyRecorder       latencyRecorder;
+    private final int                         latencySampleMask;
+    private final List                        drainBuffer = new ArrayList();
+    // incremented by all the producers without synchronization, a lost update only shifts the sample
+    private int                               puts;
     private volatile StageQueueStatsCollector statsCollector;
 
-    public SourceQueueImpl(TCQueue queue, String sourceName, StageQueueStatsCollector statsCollector) {
+    public SourceQueueImpl(TCQueue queue, String sourceName, StageQueueStatsCollector statsCollector,
+                           int latencySampleMask) {
       this.queue = queue;
       this.sourceName = sourceName;
       this.statsCollector = statsCollector;
+      this.latencySampleMask = latencySampleMask;
+      this.latencyRecorder = new WorkerLatencyRecorder(latencySampleMask);
     }
 
     public StageQueueStatsCollector getStatsCollector() {
@@ -280,7 +352,7 @@ public class StageQueueImpl implements Sink {
     public int clear() {
       int cleared = 0;
       try {
-        while (poll(0) != null) {
+        while (this.queue.poll(0) != null) {
           cleared++;
         }
         return cleared;
@@ -295,18 +367,84 @@ public class StageQueueImpl implements Sink {
 
     @Override
     public EventContext poll(long timeout) throws InterruptedException {
-      EventContext rv = (EventContext) this.queue.poll(timeout);
-      if (rv != null) {
-        this.statsCollector.contextRemoved();
+      Object polled = this.queue.poll(timeout);
+      if (polled == null) { return null; }
+      this.statsCollector.contextRemoved();
+      if (polled instanceof QueuedContext) {
+        QueuedContext queued = (QueuedContext) polled;
+        this.latencyRecorder.taken(queued.enqueued);
+        return queued.context;
       }
-      return rv;
+      this.latencyRecorder.takenUnsampled();
+      return (EventContext) polled;
+    }
+
+    @Override
+    public int drainTo(Collection<EventContext> into, int maxElements) {
+      int drained = this.queue.drainTo(this.drainBuffer, maxElements);
+      if (drained > 0) {
+        this.statsCollector.contextsRemoved(drained);
+        long now = 0;
+        boolean clockRead = false;
+        for (int i = 0; i < drained; i++) {
+          Object polled = this.drainBuffer.get(i);
+          if (polled instanceof QueuedContext) {
+            QueuedContext queued = (QueuedContext) polled;
+            if (!clockRead) {
+              now = System.nanoTime();
+              clockRead = true;
+            }
+            this.latencyRecorder.drained(queued.enqueued, now);
+            into.add(queued.context);
+          } else {
+            into.add((EventContext) polled);
+          }
+        }
+        this.drainBuffer.clear();
+      }
+      return drained;
+    }
+
+    private boolean sampleNextPut() {
+      return this.latencySampleMask >= 0 && (++this.puts & this.latencySampleMask) == 0;
     }
 
-    public void put(Object obj) throws InterruptedException {
-      this.queue.put(obj);
+    public void put(EventContext context) throws InterruptedException {
+      this.queue.put(sampleNextPut() ? new QueuedContext(context, System.nanoTime()) : context);
       this.statsCollector.contextAdded();
     }
 
+    /**
+     * Adds the whole batch even if interrupted while waiting for space. Sampled contexts in the batch are replaced by
+     * their queued form, so the list must be modifiable and not used afterwards.
+     * 
+     * @return true if the thread was interrupted on the way, the interrupt status is cleared in that case
+     */
+    public boolean putAll(List batch) {
+      long now = 0;
+      boolean clockRead = false;
+      for (int i = 0; i < batch.size(); i++) {
+        if (sampleNextPut()) {
+          if (!clockRead) {
+            now = System.nanoTime();
+            clockRead = true;
+          }
+          batch.set(i, new QueuedContext((EventContext) batch.get(i), now));
+        }
+      }
+      boolean interrupted = false;
+      int added = 0;
+      while (true) {
+        added += this.queue.putAll(added == 0 ? batch : batch.subList(added, batch.size()));
+        if (added == batch.size()) {
+          break;
+        }
+        interrupted |= Thread.interrupted();
+      }
+      this.statsCollector.contextsAdded(batch.size());
+      return interrupted;
+    }
+
     public int size() {
       return this.queue.size();
     }
@@ -317,6 +455,16 @@ public class StageQueueImpl implements Sink {
     }
   }
 
+  private static final class QueuedContext {
+    private final EventContext context;
+    private final long         enqueued;
+
+    private QueuedContext(EventContext context, long enqueued) {
+      this.context = context;
+      this.enqueued = enqueued;
+    }
+  }
+
   private static abstract class StageQueueStatsCollector implements StageQueueStats {
 
     @Override
@@ -326,10 +474,14 @@ public class StageQueueImpl implements Sink {
 
     public abstract void contextAdded();
 
+    public abstract void contextsAdded(int count);
+
     public abstract void reset();
 
     public abstract void contextRemoved();
 
+    public abstract void contextsRemoved(int count);
+
     protected String makeWidth(String name, int width) {
       final int len = name.length();
       if (len == width) { return name; }
@@ -368,6 +520,16 @@ public class StageQueueImpl implements Sink {
       // NO-OP
     }
 
+    @Override
+    public void contextsAdded(int count) {
+      // NO-OP
+    }
+
+    @Override
+    public void contextsRemoved(int count) {
+      // NO-OP
+    }
+
     @Override
     public void reset() {
       // NO-OP
@@ -410,6 +572,16 @@ public class StageQueueImpl implements Sink {
       this.count.decrementAndGet();
     }
 
+    @Override
+    public void contextsAdded(int added) {
+      this.count.addAndGet(added);
+    }
+
+    @Override
+    public void contextsRemoved(int removed) {
+      this.count.addAndGet(-removed);
+    }
+
     @Override
     public void reset() {
       this.count.set(0);
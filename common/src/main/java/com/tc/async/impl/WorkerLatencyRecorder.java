@@ -0,0 +1,94 @@
+/* 
+ * The contents of this file are subject to the Terracotta Public License Version
+ * 2.0 (the "License"); You may not use this file except in compliance with the
+ * License. You may obtain a copy of the License at 
+ *
+ *      http://terracotta.org/legal/terracotta-public-license.
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ * the specific language governing rights and limitations under the License.
+ *
+ * The Covered Software is Terracotta Platform.
+ *
+ * The Initial Developer of the Covered Software is 
+ *      Terracotta, Inc., a Software AG company
+ */
+package com.tc.async.impl;
+
+import com.tc.stats.counter.LogLinearHistogram;
+
+/**
+ * Latency histograms of one worker of a stage. The worker's source records how long contexts were queued and the
+ * worker records how long the handler took, so only the worker thread ever writes here and the single writer path of
+ * {@link LogLinearHistogram} can be used. The time a context is taken off the queue doubles as the start of its
+ * service time, which saves reading the clock once per context.
+ * <p>
+ * Only sampled contexts carry their enqueue time, only their handling is timed, and only one batch in every sample
+ * interval is, so the histograms hold a sample of the events rather than all of them.
+ */
+final class WorkerLatencyRecorder {
+
+  private final LogLinearHistogram queueWait   = new LogLinearHistogram();
+  private final LogLinearHistogram serviceTime = new LogLinearHistogram();
+  private final LogLinearHistogram batchSize   = new LogLinearHistogram();
+  private final int                sampleMask;
+  private long                     takenAt;
+  private boolean                  takenSampled;
+  private int                      batches;
+
+  /**
+   * @param sampleMask one batch is sampled whenever the batch counter masked with it is 0, never when it is -1
+   */
+  WorkerLatencyRecorder(int sampleMask) {
+    this.sampleMask = sampleMask;
+  }
+
+  void taken(long enqueuedAt) {
+    takenAt = System.nanoTime();
+    takenSampled = true;
+    queueWait.recordSingleWriter(takenAt - enqueuedAt);
+  }
+
+  void takenUnsampled() {
+    takenSampled = false;
+  }
+
+  void drained(long enqueuedAt, long now) {
+    queueWait.recordSingleWriter(now - enqueuedAt);
+  }
+
+  /**
+   * Records a handler call for the single context last taken, if it was sampled.
+   */
+  void handled() {
+    if (!takenSampled) { return; }
+    takenSampled = false;
+    serviceTime.recordSingleWriter(System.nanoTime() - takenAt);
+    batchSize.recordSingleWriter(1);
+  }
+
+  /**
+   * @return whether the next batch handed to the handler is to be timed
+   */
+  boolean sampleBatch() {
+    return sampleMask >= 0 && (++batches & sampleMask) == 0;
+  }
+
+  void handled(long startedAt, int contexts) {
+    serviceTime.recordSingleWriter(System.nanoTime() - startedAt);
+    batchSize.recordSingleWriter(contexts);
+  }
+
+  LogLinearHistogram getQueueWait() {
+    return queueWait;
+  }
+
+  LogLinearHistogram getServiceTime() {
+    return serviceTime;
+  }
+
+  LogLinearHistogram getBatchSize() {
+    return batchSize;
+  }
+}
@@ -111,6 +111,9 @@ public interface TCPropertiesConsts {
    *                                   - NONE : just send it immediately
    *                                   - RELAYED : make sure it's relayed to all passives
    *                                   - DISK : make sure it's on disk (only applicable when restartable is on)
+   * broadcast.coalesce.enabled   : If true, the broadcasts of a batch of transactions are held back until the
+   *                                whole batch is processed and then sent client by client, so that the
+   *                                messages for a client go out back to back and get grouped on the wire
    * </code>
    ********************************************************************************************************************/
   public static final String L2_TRANSACTIONMANAGER_LOGGING_ENABLED                          = "l2.transactionmanager.logging.enabled";
@@ -122,6 +125,7 @@ public interface TCPropertiesConsts {
   public static final String L2_TRANSACTIONMANAGER_PASSIVE_THROTTLE_THRESHOLD               = "l2.transactionmanager.passive.throttle.threshold";
   public static final String L2_TRANSACTIONMANAGER_PASSIVE_THROTTLE_MAXSLEEPSECONDS         = "l2.transactionmanager.passive.throttle.maxSleepSeconds";
   public static final String L2_TRANSACTIONMANAGER_BROADCAST_DURABILITY_LEVEL               = "l2.transactionmanager.broadcast.durability.level";
+  public static final String L2_TRANSACTIONMANAGER_BROADCAST_COALESCE_ENABLED              = "l2.transactionmanager.broadcast.coalesce.enabled";
 
   /*********************************************************************************************************************
    * <code>
@@ -140,6 +144,10 @@ public interface TCPropertiesConsts {
    *                                  active to passive while synching
    * passive.sync.throttle.timeInMillis - Time to wait before sending the next batch of
    *                                  objects to the passive
+   * passive.sync.throttle.maxBytesPerSecond - Cap on the rate at which object sync messages are sent to
+   *                                  a passive, 0 for no cap
+   * passive.sync.delta.enabled    - Enables/Disables syncing only the objects that changed to a passive that
+   *                                  restarted from standby with its restartable store, instead of wiping it
    * dgc.throttle.timeInMillis     - Throttle time for dgc for each cycle for every requestsPerThrottle
    *                                 requests for references from object manager
    * dgc.throttle.requestsPerThrottle - Number of objects for which object references are requested
@@ -148,6 +156,14 @@ public interface TCPropertiesConsts {
    * dgc.inline.intervalInSeconds   - Interval in seconds at which to delete objects selected by inline dgc.
    * dgc.inline.maxObjects          - Maximum inline dgc batch size
    * dgc.inline.cleanup.delaySeconds - Seconds to delay the start of inline dgc cleanup after a server becomes active
+   * dgc.mark.threads               - Number of threads marking the object graph during dgc, 1 (the default) to
+   *                                  mark on the dgc thread, 0 for half the number of available processors
+   * dgc.mark.segmentSize           - Number of object ids in each unit of mark work handed between mark threads
+   * dgc.rescue.concurrentPasses    - Maximum number of rescue passes run alongside transactions before dgc pauses,
+   *                                  0 to rescue every change made since rescue-1 in the pause
+   * dgc.rescue.remarkThreshold     - Stop the concurrent rescue passes once a pass starts from fewer ids than this
+   * cache.maxBytes                 - Estimated heap size of the released leaf objects kept in memory to save
+   *                                  faulting them from the object store again, 0 to disable
    * l2.objectmanager.invalidate.strong.cache.enabled - Enable/disable invalidations for strong cache
    * </code>
    ********************************************************************************************************************/
@@ -162,12 +178,20 @@ public interface TCPropertiesConsts {
   public static final String L2_OBJECTMANAGER_PASSIVE_SYNC_MESSAGE_MAXSIZE_MB               = "l2.objectmanager.passive.sync.message.maxSizeInMegaBytes";
   public static final String L2_OBJECTMANAGER_PASSIVE_SYNC_THROTTLE_TIME                    = "l2.objectmanager.passive.sync.throttle.timeInMillis";
   public static final String L2_OBJECTMANAGER_PASSIVE_SYNC_THROTTLE_PENDING_MSGS            = "l2.objectmanager.passive.sync.throttle.maxPendingMessages";
+  public static final String L2_OBJECTMANAGER_PASSIVE_SYNC_THROTTLE_MAX_BYTES_PER_SECOND    = "l2.objectmanager.passive.sync.throttle.maxBytesPerSecond";
+  public static final String L2_OBJECTMANAGER_PASSIVE_SYNC_DELTA_ENABLED                    = "l2.objectmanager.passive.sync.delta.enabled";
   public static final String L2_OBJECTMANAGER_DGC_THROTTLE_TIME                             = "l2.objectmanager.dgc.throttle.timeInMillis";
   public static final String L2_OBJECTMANAGER_DGC_REQUEST_PER_THROTTLE                      = "l2.objectmanager.dgc.throttle.requestsPerThrottle";
   public static final String L2_OBJECTMANAGER_DGC_INLINE_ENABLED                            = "l2.objectmanager.dgc.inline.enabled";
   public static final String L2_OBJECTMANAGER_DGC_INLINE_INTERVAL_SECONDS                   = "l2.objectmanager.dgc.inline.intervalInSeconds";
   public static final String L2_OBJECTMANAGER_DGC_INLINE_MAX_OBJECTS                        = "l2.objectmanager.dgc.inline.maxObjects";
   public static final String L2_OBJECTMANAGER_DGC_INLINE_CLEANUP_DELAY_SECONDS              = "l2.objectmanager.dgc.inline.cleanup.delaySeconds";
+  public static final String L2_OBJECTMANAGER_DGC_MARK_THREADS                              = "l2.objectmanager.dgc.mark.threads";
+  public static final String L2_OBJECTMANAGER_DGC_MARK_SEGMENT_SIZE                         = "l2.objectmanager.dgc.mark.segmentSize";
+  public static final String L2_OBJECTMANAGER_DGC_RESCUE_CONCURRENT_PASSES                  = "l2.objectmanager.dgc.rescue.concurrentPasses";
+  public static final String L2_OBJECTMANAGER_DGC_RESCUE_REMARK_THRESHOLD                   = "l2.objectmanager.dgc.rescue.remarkThreshold";
+  public static final String L2_OBJECTMANAGER_CACHE_MAX_BYTES                               = "l2.objectmanager.cache.maxBytes";
+  public static final String L2_TRANSACTION_LOG_ENABLED                                     = "l2.transactionlog.enabled";
   public static final String L2_OBJECTMANAGER_INVALIDATE_STRONG_CACHE_ENABLED               = "l2.objectmanager.invalidateStrongCache.enabled";
   public static final String L2_OBJECTMANAGER_OIDSET_TYPE                                   = "l2.objectmanager.oidset.type";
   public static final String L2_OBJECTMANAGER_CLIENT_STATE_VERBOSE_THRESHOLD                = "l2.objectmanager.client.state.verbose.threshold";
@@ -498,16 +522,20 @@ public interface TCPropertiesConsts {
    * bytebuffer.pooling.enabled           : Enable/disable tc byte buffer pooling
    * bytebuffer.common.pool.maxcount      : Max size of pool for tc byte buffer
    * bytebuffer.threadlocal.pool.maxcount : Thread pool size
+   * messages.gatheringWrite.enabled      : Write clear text messages to the socket straight from their buffers
    * </code>
    ********************************************************************************************************************/
   public static final String TC_STAGE_MONITOR_ENABLED                                       = "tc.stage.monitor.enabled";
   public static final String TC_STAGE_MONITOR_DELAY                                         = "tc.stage.monitor.delay";
+  public static final String TC_STAGE_LATENCY_ENABLED                                       = "tc.stage.latency.enabled";
+  public static final String TC_STAGE_LATENCY_SAMPLE_INTERVAL                               = "tc.stage.latency.sample.interval";
   public static final String TC_BYTEBUFFER_POOLING_ENABLED                                  = "tc.bytebuffer.pooling.enabled";
   public static final String TC_BYTEBUFFER_COMMON_POOL_MAXCOUNT                             = "tc.bytebuffer.common.pool.maxcount";
   public static final String TC_BYTEBUFFER_THREADLOCAL_POOL_MAXCOUNT                        = "tc.bytebuffer.threadlocal.pool.maxcount";
   public static final String TC_MESSAGE_GROUPING_ENABLED                                    = "tc.messages.grouping.enabled";
   public static final String TC_MESSAGE_GROUPING_MAXSIZE_KB                                 = "tc.messages.grouping.maxSizeKiloBytes";
   public static final String TC_MESSAGE_PACKUP_ENABLED                                      = "tc.messages.packup.enabled";
+  public static final String TC_MESSAGE_GATHERING_WRITE_ENABLED                             = "tc.messages.gatheringWrite.enabled";
 
   /*********************************************************************************************************************
    * <code>
@@ -586,6 +614,13 @@ public interface TCPropertiesConsts {
    *                            : The maximum time in millis after which incoherent cached items will be discarded from the local cache.
    *  storageStrategy.dcv2.eviction.overshoot
    *                            : % overshoot required to trigger capacity eviction
+   *  storageStrategy.dcv2.eviction.policy
+   *                            : How capacity eviction picks entries: RANDOM, LRU or LFU. Can be set for a single
+   *                              cache with storageStrategy.dcv2.eviction.policy.<cache name>
+   *  storageStrategy.dcv2.expirationIndex.enabled
+   *                            : Keep a bounded index of the server map entries that expire soon, fed by writes
+   *                              and by a walk over the keys, so that periodic eviction finds the expired ones
+   *                              directly instead of sampling for them
    *  clustered.config.override.mode
    *                            : Configures the level of configuration override. Choices are:
    *                                NONE - Override no local configuration with cluster configurations
@@ -611,6 +646,8 @@ public interface TCPropertiesConsts {
   public static final String EHCACHE_STORAGESTRATEGY_DCV2_EVICT_UNEXPIRED_ENTRIES_ENABLED   = "ehcache.storageStrategy.dcv2.evictUnexpiredEntries.enabled";
   public static final String EHCACHE_STORAGESTRATEGY_DCV2_PERIODICEVICTION_ENABLED          = "ehcache.storageStrategy.dcv2.periodicEviction.enabled";
   public static final String EHCACHE_STORAGESTRATEGY_DCV2_EVICTION_OVERSHOOT                = "ehcache.storageStrategy.dcv2.eviction.overshoot";
+  public static final String EHCACHE_STORAGESTRATEGY_DCV2_EVICTION_POLICY                   = "ehcache.storageStrategy.dcv2.eviction.policy";
+  public static final String EHCACHE_STORAGESTRATEGY_DCV2_EXPIRATION_INDEX_ENABLED          = "ehcache.storageStrategy.dcv2.expirationIndex.enabled";
   public static final String EHCACHE_CLUSTERED_CONFIG_OVERRIDE_MODE                         = "ehcache.clustered.config.override.mode";
   /*********************************************************************************************************************
    * <code>
@@ -653,10 +690,13 @@ public interface TCPropertiesConsts {
    * Section : TCP Settings
    * tcpnodelay : Enable/disable tcp packet batching
    * keepalive  : Enable/disable tcp probe for running/broken connections
+   * reactor.enabled : If true, each worker comm serves reads and writes of its connections from a single
+   *                   thread and selector, and server connections are pinned to a worker by channel id
    * </code>
    ********************************************************************************************************************/
   public static final String NET_CORE_KEEPALIVE                                             = "net.core.keepalive";
   public static final String NET_CORE_TCP_NO_DELAY                                          = "net.core.tcpnodelay";
+  public static final String NET_CORE_REACTOR_ENABLED                                       = "net.core.reactor.enabled";
 
   /*********************************************************************************************************************
    * <code>
@@ -845,6 +885,7 @@ public interface TCPropertiesConsts {
   public static final String L1_SEARCH_MAX_OPEN_RESULT_SETS                                 = "l1.search.max.open.resultSets";
   public static final String L2_SEARCH_MAX_PAGED_RESULT_SETS                                = "l2.search.max.paged.resultSets";
   public static final String L2_SEARCH_MAX_RESULT_PAGE_SIZE                                 = "l2.search.max.result.pageSize";
+  public static final String L2_SEARCH_INMEMORY_ENABLED                                     = "l2.search.inmemory.enabled";
 
   public static final String SEARCH_QUERY_WAIT_FOR_TXNS                                     = "search.query.wait.for.txns";
   public static final String SEARCH_USE_COMMIT_THREAD                                       = "search.use.commit.thread";
@@ -901,6 +942,34 @@ public interface TCPropertiesConsts {
   public static final String TOOLKIT_LOCAL_BUFFER_PUTS_BATCH_TIME_MILLIS                    = "toolkit.bulkload.throttle.timeInmillis";
   public static final String TOOLKIT_LOCAL_BUFFER_PUTS_THROTTLE_BYTE_SIZE                   = "toolkit.bulkload.throttle.threshold";
 
+  /*********************************************************************************************************************
+   * <code>
+   * Section :  Toolkit Serialization Settings
+   * toolkit.serialization.compression.minSize - Serialized values smaller than this many bytes are never compressed,
+   *                                             even when compression is enabled for the cache. With the gzip codec
+   *                                             they still go in a (stored) gzip stream, which older clients expect
+   * </code>
+   ********************************************************************************************************************/
+  public static final String TOOLKIT_SERIALIZATION_COMPRESSION_MIN_SIZE                     = "toolkit.serialization.compression.minSize";
+
+  /*********************************************************************************************************************
+   * <code>
+   * Section :  Toolkit Bulk Operation Settings
+   * toolkit.bulkops.maxLocksPerTxn - Maximum number of key locks held at once by putAll/removeAll on a strongly
+   *                                  consistent map. The keys guarded by them are written in a single transaction
+   * </code>
+   ********************************************************************************************************************/
+  public static final String TOOLKIT_BULKOPS_MAX_LOCKS_PER_TXN                              = "toolkit.bulkops.maxLocksPerTxn";
+
+  /*********************************************************************************************************************
+   * <code>
+   * Section :  Toolkit Approximate Size Settings
+   * toolkit.approximateSize.maxAgeMillis - Age after which the size served by approximateSize() is refreshed from the
+   *                                        server in the background
+   * </code>
+   ********************************************************************************************************************/
+  public static final String TOOLKIT_APPROXIMATE_SIZE_MAX_AGE_MILLIS                        = "toolkit.approximateSize.maxAgeMillis";
+
   /*
    * For enabling CAS logging
    */
@@ -17,30 +17,31 @@
 package com.tc.stats.counter;
 
 import java.io.Serializable;
-import java.util.concurrent.atomic.AtomicLong;
 
 /**
- * A simple counter implementation
+ * A simple counter implementation. The value is a {@link StripedLong}, so counters on hot paths do not serialize the
+ * threads updating them. The values returned by the updating methods are only exact until the counter has seen
+ * concurrent updates, {@link #getValue()} always is.
  */
 public class CounterImpl implements Counter, Serializable {
-  private AtomicLong value;
+  private final StripedLong value;
 
   public CounterImpl() {
     this(0L);
   }
 
   public CounterImpl(long initialValue) {
-    this.value = new AtomicLong(initialValue);
+    this.value = new StripedLong(initialValue);
   }
 
   @Override
   public long increment() {
-    return value.incrementAndGet();
+    return value.add(1L);
   }
 
   @Override
   public long decrement() {
-    return value.decrementAndGet();
+    return value.add(-1L);
   }
 
   @Override
@@ -55,12 +56,12 @@ public class CounterImpl implements Counter, Serializable {
 
   @Override
   public long increment(long amount) {
-    return value.addAndGet(amount);
+    return value.add(amount);
   }
 
   @Override
   public long decrement(long amount) {
-    return value.addAndGet(amount * -1);
+    return value.add(amount * -1);
   }
 
   @Override
@@ -19,11 +19,18 @@ package com.tc.stats.counter;
 import com.tc.stats.counter.sampled.SampledCounter;
 import com.tc.stats.counter.sampled.SampledCounterImpl;
 
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Queue;
 import java.util.Timer;
+import java.util.TimerTask;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
 public class CounterManagerImpl implements CounterManager {
-  private final Timer timer    = new Timer("SampledCounterManager Timer", true);
-  private boolean     shutdown = false;
+  private final Timer                     timer         = new Timer("SampledCounterManager Timer", true);
+  private final Map<Long, SamplingTask>   samplingTasks = new HashMap<Long, SamplingTask>();
+  private boolean                         shutdown      = false;
 
   public CounterManagerImpl() {
     super();
@@ -47,8 +54,14 @@ public class CounterManagerImpl implements CounterManager {
     Counter counter = config.createCounter();
     if (counter instanceof SampledCounterImpl) {
       SampledCounterImpl sampledCounter = (SampledCounterImpl) counter;
-      timer.schedule(sampledCounter.getTimerTask(), sampledCounter.getIntervalMillis(), sampledCounter
-          .getIntervalMillis());
+      Long interval = sampledCounter.getIntervalMillis();
+      SamplingTask task = samplingTasks.get(interval);
+      if (task == null) {
+        task = new SamplingTask();
+        samplingTasks.put(interval, task);
+        timer.schedule(task, interval, interval);
+      }
+      task.counters.add(sampledCounter);
     }
     return counter;
 
@@ -62,4 +75,23 @@ public class CounterManagerImpl implements CounterManager {
     }
   }
 
+  /**
+   * Samples all the counters sharing an interval in one pass, with one timestamp.
+   */
+  private static class SamplingTask extends TimerTask {
+    private final Queue<SampledCounterImpl> counters = new ConcurrentLinkedQueue<SampledCounterImpl>();
+
+    @Override
+    public void run() {
+      final long now = System.currentTimeMillis();
+      for (Iterator<SampledCounterImpl> i = counters.iterator(); i.hasNext();) {
+        SampledCounterImpl counter = i.next();
+        if (counter.isShutdown()) {
+          i.remove();
+        } else {
+          counter.recordSample(now);
+        }
+      }
+    }
+  }
 }
@@ -0,0 +1,101 @@
+/*
+ * The contents of this file are subject to the Terracotta Public License Version
+ * 2.0 (the "License"); You may not use this file except in compliance with the
+ * License. You may obtain a copy of the License at
+ *
+ *      http://terracotta.org/legal/terracotta-public-license.
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ * the specific language governing rights and limitations under the License.
+ *
+ * The Covered Software is Terracotta Platform.
+ *
+ * The Initial Developer of the Covered Software is
+ *      Terracotta, Inc., a Software AG company
+ */
+package com.tc.stats.counter;
+
+import java.io.Serializable;
+
+/**
+ * Point in time copy of a {@link LogLinearHistogram}, only holding the buckets that have values in them.
+ */
+public class HistogramSnapshot implements Serializable {
+
+  private static final long serialVersionUID = 5302917736460418201L;
+
+  private final long[] lowerBounds;
+  private final long[] upperBounds;
+  private final long[] counts;
+  private final long   count;
+  private final long   total;
+  private final long   max;
+
+  public HistogramSnapshot(long[] lowerBounds, long[] upperBounds, long[] counts, long count, long total, long max) {
+    this.lowerBounds = lowerBounds;
+    this.upperBounds = upperBounds;
+    this.counts = counts;
+    this.count = count;
+    this.total = total;
+    this.max = max;
+  }
+
+  public long[] getBucketLowerBounds() {
+    return lowerBounds.clone();
+  }
+
+  public long[] getBucketUpperBounds() {
+    return upperBounds.clone();
+  }
+
+  public long[] getBucketCounts() {
+    return counts.clone();
+  }
+
+  public long getCount() {
+    return count;
+  }
+
+  public long getTotal() {
+    return total;
+  }
+
+  public long getMax() {
+    return max;
+  }
+
+  public double getMean() {
+    return count == 0 ? 0 : (double) total / count;
+  }
+
+  /**
+   * @return the upper bound of the bucket holding the value at the given percentile (0 - 100), capped at the largest
+   *         value recorded, or 0 if nothing was recorded.
+   */
+  public long getPercentile(double percentile) {
+    if (count == 0) { return 0; }
+    long rank = (long) Math.ceil(count * Math.min(100d, Math.max(0d, percentile)) / 100d);
+    long seen = 0;
+    for (int i = 0; i < counts.length; i++) {
+      seen += counts[i];
+      if (seen >= rank) { return Math.min(upperBounds[i], max); }
+    }
+    return max;
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder sb = new StringBuilder();
+    sb.append("count=").append(count).append(", mean=").append(String.format("%.1f", getMean())).append(", p50=")
+        .append(getPercentile(50)).append(", p99=").append(getPercentile(99)).append(", max=").append(max);
+    for (int i = 0; i < counts.length; i++) {
+      sb.append(i == 0 ? ", buckets=[" : ", ").append(lowerBounds[i]).append('-').append(upperBounds[i]).append(':')
+          .append(counts[i]);
+    }
+    if (counts.length > 0) {
+      sb.append(']');
+    }
+    return sb.toString();
+  }
+}
@@ -0,0 +1,146 @@
+/*
+ * The contents of this file are subject to the Terracotta Public License Version
+ * 2.0 (the "License"); You may not use this file except in compliance with the
+ * License. You may obtain a copy of the License at
+ *
+ *      http://terracotta.org/legal/terracotta-public-license.
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ * the specific language governing rights and limitations under the License.
+ *
+ * The Covered Software is Terracotta Platform.
+ *
+ * The Initial Developer of the Covered Software is
+ *      Terracotta, Inc., a Software AG company
+ */
+package com.tc.stats.counter;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock free histogram of non negative values. Every power of two range is split into {@link #SUB_BUCKETS} equally
+ * sized buckets, so the relative error of a reported value stays below 1 / SUB_BUCKETS whatever its magnitude, and
+ * recording a value is a couple of atomic increments. The unit of the values is up to the caller.
+ */
+public class LogLinearHistogram {
+
+  private static final int     SUB_BUCKET_BITS = 3;
+  public static final int      SUB_BUCKETS     = 1 << SUB_BUCKET_BITS;
+  private static final long    SUB_BUCKET_MASK = SUB_BUCKETS - 1;
+  static final int             BUCKET_COUNT    = (64 - SUB_BUCKET_BITS) << SUB_BUCKET_BITS;
+
+  private final AtomicLongArray counts         = new AtomicLongArray(BUCKET_COUNT);
+  private final AtomicLong      count          = new AtomicLong();
+  private final AtomicLong      total          = new AtomicLong();
+  private final AtomicLong      max            = new AtomicLong();
+
+  /**
+   * Negative values are recorded as 0.
+   */
+  public void record(long value) {
+    if (value < 0) {
+      value = 0;
+    }
+    counts.incrementAndGet(bucketFor(value));
+    count.incrementAndGet();
+    total.addAndGet(value);
+    long current = max.get();
+    while (value > current && !max.compareAndSet(current, value)) {
+      current = max.get();
+    }
+  }
+
+  /**
+   * Cheaper form of {@link #record(long)} for histograms that only ever have one thread recording into them, the atomic
+   * read-modify-writes are replaced by ordered writes. Values get lost if several threads call it, or if it is mixed
+   * with {@link #record(long)} or {@link #reset()} while recording.
+   */
+  public void recordSingleWriter(long value) {
+    if (value < 0) {
+      value = 0;
+    }
+    int bucket = bucketFor(value);
+    counts.lazySet(bucket, counts.get(bucket) + 1);
+    count.lazySet(count.get() + 1);
+    total.lazySet(total.get() + value);
+    if (value > max.get()) {
+      max.lazySet(value);
+    }
+  }
+
+  public long getCount() {
+    return count.get();
+  }
+
+  /**
+   * Copies the current state. Values recorded while the copy is taken may or may not be part of it.
+   */
+  public HistogramSnapshot snapshot() {
+    return snapshotOf(this);
+  }
+
+  /**
+   * Copies the combined state of several histograms, as if all of their values had been recorded into one. This lets
+   * every writer thread record into a histogram of its own.
+   */
+  public static HistogramSnapshot snapshotOf(LogLinearHistogram... histograms) {
+    long[] all = new long[BUCKET_COUNT];
+    long snapshotTotal = 0;
+    long snapshotMax = 0;
+    for (LogLinearHistogram histogram : histograms) {
+      for (int i = 0; i < BUCKET_COUNT; i++) {
+        all[i] += histogram.counts.get(i);
+      }
+      snapshotTotal += histogram.total.get();
+      snapshotMax = Math.max(snapshotMax, histogram.max.get());
+    }
+    int nonEmpty = 0;
+    for (int i = 0; i < BUCKET_COUNT; i++) {
+      if (all[i] != 0) {
+        nonEmpty++;
+      }
+    }
+    long[] lowerBounds = new long[nonEmpty];
+    long[] upperBounds = new long[nonEmpty];
+    long[] bucketCounts = new long[nonEmpty];
+    long snapshotCount = 0;
+    for (int i = 0, j = 0; i < BUCKET_COUNT; i++) {
+      if (all[i] == 0) {
+        continue;
+      }
+      lowerBounds[j] = lowerBound(i);
+      upperBounds[j] = upperBound(i);
+      bucketCounts[j] = all[i];
+      snapshotCount += all[i];
+      j++;
+    }
+    return new HistogramSnapshot(lowerBounds, upperBounds, bucketCounts, snapshotCount, snapshotTotal, snapshotMax);
+  }
+
+  public void reset() {
+    for (int i = 0; i < BUCKET_COUNT; i++) {
+      counts.set(i, 0);
+    }
+    count.set(0);
+    total.set(0);
+    max.set(0);
+  }
+
+  static int bucketFor(long value) {
+    if (value < SUB_BUCKETS) { return (int) value; }
+    int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+    return ((shift + 1) << SUB_BUCKET_BITS) + (int) ((value >>> shift) & SUB_BUCKET_MASK);
+  }
+
+  static long lowerBound(int bucket) {
+    if (bucket < SUB_BUCKETS) { return bucket; }
+    int shift = (bucket >>> SUB_BUCKET_BITS) - 1;
+    return ((bucket & SUB_BUCKET_MASK) + SUB_BUCKETS) << shift;
+  }
+
+  static long upperBound(int bucket) {
+    return bucket == BUCKET_COUNT - 1 ? Long.MAX_VALUE : lowerBound(bucket + 1) - 1;
+  }
+}
@@ -0,0 +1,118 @@
+/* 
+ * The contents of this file are subject to the Terracotta Public License Version
+ * 2.0 (the "License"); You may not use this file except in compliance with the
+ * License. You may obtain a copy of the License at 
+ *
+ *      http://terracotta.org/legal/terracotta-public-license.
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ * the specific language governing rights and limitations under the License.
+ *
+ * The Covered Software is Terracotta Platform.
+ *
+ * The Initial Developer of the Covered Software is 
+ *      Terracotta, Inc., a Software AG company
+ */
+package com.tc.stats.counter;
+
+import java.io.Serializable;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A long that many threads can add to without fighting over one cache line. Updates go to a single base value until
+ * two threads collide on it, from then on every thread adds to a stripe of its own, each stripe padded to a cache line.
+ * Reading the value sums the base and all the stripes.
+ * <p>
+ * {@link #add(long)} returns the exact new value for as long as the long has not been striped, which is always the
+ * case when updates are serialized by the caller. Once striped it only accounts for the base and the calling thread's
+ * stripe, use {@link #get()} when the total is needed.
+ */
+public class StripedLong implements Serializable {
+
+  // longs per cache line
+  private static final int         PAD     = 8;
+  private static final int         STRIPES = stripeCount(Runtime.getRuntime().availableProcessors());
+
+  private final AtomicLong         base;
+  private volatile AtomicLongArray stripes;
+
+  public StripedLong() {
+    this(0L);
+  }
+
+  public StripedLong(long initialValue) {
+    this.base = new AtomicLong(initialValue);
+  }
+
+  public long add(long delta) {
+    AtomicLongArray current = stripes;
+    if (current == null) {
+      long value = base.get();
+      long next = value + delta;
+      if (base.compareAndSet(value, next)) { return next; }
+      current = stripe();
+    }
+    return base.get() + current.addAndGet(indexFor(Thread.currentThread()), delta);
+  }
+
+  public long get() {
+    long sum = base.get();
+    AtomicLongArray current = stripes;
+    if (current != null) {
+      for (int i = 1; i <= STRIPES; i++) {
+        sum += current.get(i * PAD);
+      }
+    }
+    return sum;
+  }
+
+  /**
+   * Every concurrent {@link #add(long)} is accounted for either in the returned value or in the new one.
+   */
+  public long getAndSet(long newValue) {
+    long previous = base.getAndSet(newValue);
+    AtomicLongArray current = stripes;
+    if (current != null) {
+      for (int i = 1; i <= STRIPES; i++) {
+        previous += current.getAndSet(i * PAD, 0L);
+      }
+    }
+    return previous;
+  }
+
+  public void set(long newValue) {
+    getAndSet(newValue);
+  }
+
+  boolean isStriped() {
+    return stripes != null;
+  }
+
+  private synchronized AtomicLongArray stripe() {
+    if (stripes == null) {
+      // one padding line before the first and after the last stripe
+      stripes = new AtomicLongArray((STRIPES + 2) * PAD);
+    }
+    return stripes;
+  }
+
+  private static int indexFor(Thread thread) {
+    // thread ids are handed out in sequence, so neighbouring threads get neighbouring stripes
+    return (((int) thread.getId() & (STRIPES - 1)) + 1) * PAD;
+  }
+
+  static int stripeCount(int processors) {
+    int count = 1;
+    while (count < processors * 2 && count < 64) {
+      count <<= 1;
+    }
+    return count;
+  }
+
+  @Override
+  public String toString() {
+    return String.valueOf(get());
+  }
+}
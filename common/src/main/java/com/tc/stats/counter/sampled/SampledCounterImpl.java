@@ -18,16 +18,16 @@ package com.tc.stats.counter.sampled;
 
 import com.tc.stats.counter.CounterImpl;
 
-import java.util.TimerTask;
-
 /**
- * A counter that keeps sampled values
+ * A counter that keeps sampled values. Sampling is driven by the
+ * {@link com.tc.stats.counter.CounterManagerImpl CounterManagerImpl} that created the counter, which samples all its
+ * counters of the same interval in one go.
  */
 public class SampledCounterImpl extends CounterImpl implements SampledCounter {
   protected final boolean                                     resetOnSample;
-  private final TimerTask                                     samplerTask;
   private final long                                          intervalMillis;
   private volatile TimeStampedCounterValue                    mostRecentSample;
+  private volatile boolean                                    shutdown;
   
   public SampledCounterImpl(SampledCounterConfig config) {
     super(config.getInitialValue());
@@ -35,14 +35,9 @@ public class SampledCounterImpl extends CounterImpl implements SampledCounter {
     this.intervalMillis = config.getIntervalSecs() * 1000;
     this.resetOnSample = config.isResetOnSample();
 
-    this.samplerTask = new TimerTask() {
-      @Override
-      public void run() {
-        recordSample();
-      }
-    };
-    
-    recordSample();
+    // subclasses are not initialized yet, so this first sample must not go through their overrides
+    final long sample = resetOnSample ? super.getAndSet(0L) : super.getValue();
+    mostRecentSample = new TimeStampedCounterValue(System.currentTimeMillis(), sample);
   }
 
   @Override
@@ -52,20 +47,18 @@ public class SampledCounterImpl extends CounterImpl implements SampledCounter {
 
   @Override
   public void shutdown() {
-    if (samplerTask != null) {
-      samplerTask.cancel();
-    }
+    shutdown = true;
   }
 
-  public TimerTask getTimerTask() {
-    return this.samplerTask;
+  public boolean isShutdown() {
+    return shutdown;
   }
 
   public long getIntervalMillis() {
     return intervalMillis;
   }
 
-  void recordSample() {
+  public void recordSample(long timestamp) {
     final long sample;
     if (resetOnSample) {
       sample = getAndReset();
@@ -73,8 +66,7 @@ public class SampledCounterImpl extends CounterImpl implements SampledCounter {
       sample = getValue();
     }
 
-    final long now = System.currentTimeMillis();
-    mostRecentSample = new TimeStampedCounterValue(now, sample);
+    mostRecentSample = new TimeStampedCounterValue(timestamp, sample);
   }
 
   @Override
@@ -16,15 +16,15 @@
  */
 package com.tc.stats.counter.sampled;
 
-import java.util.concurrent.atomic.AtomicLong;
+import com.tc.stats.counter.StripedLong;
 
 public class SampledCumulativeCounterImpl extends SampledCounterImpl implements SampledCumulativeCounter {
 
-  private AtomicLong cumulativeCount;
+  private final StripedLong cumulativeCount;
 
   public SampledCumulativeCounterImpl(SampledCounterConfig config) {
     super(config);
-    cumulativeCount = new AtomicLong(config.getInitialValue());
+    cumulativeCount = new StripedLong(config.getInitialValue());
   }
 
   @Override
@@ -38,25 +38,25 @@ public class SampledCumulativeCounterImpl extends SampledCounterImpl implements
 
   @Override
   public long decrement() {
-    cumulativeCount.decrementAndGet();
+    cumulativeCount.add(-1L);
     return super.decrement();
   }
 
   @Override
   public long decrement(long amount) {
-    cumulativeCount.addAndGet(amount * -1);
+    cumulativeCount.add(-amount);
     return super.decrement(amount);
   }
 
   @Override
   public long increment() {
-    cumulativeCount.incrementAndGet();
+    cumulativeCount.add(1L);
     return super.increment();
   }
 
   @Override
   public long increment(long amount) {
-    cumulativeCount.addAndGet(amount);
+    cumulativeCount.add(amount);
     return super.increment(amount);
   }
 
@@ -16,57 +16,64 @@
  */
 package com.tc.stats.counter.sampled.derived;
 
+import com.tc.stats.counter.StripedLong;
 import com.tc.stats.counter.sampled.SampledCounterImpl;
 
+/**
+ * Numerator and denominator are updated and sampled independently of each other, an update racing with a sample may
+ * land its numerator and its denominator in different samples.
+ */
 public class SampledRateCounterImpl extends SampledCounterImpl implements SampledRateCounter {
 
   private static final String OPERATION_NOT_SUPPORTED_MSG = "This operation is not supported. Use SampledCounter Or Counter instead";
 
-  private long                numeratorValue;
-  private long                denominatorValue;
+  private final StripedLong   numeratorValue              = new StripedLong();
+  private final StripedLong   denominatorValue            = new StripedLong();
 
   public SampledRateCounterImpl(SampledRateCounterConfig config) {
     super(config);
   }
 
   @Override
-  public synchronized void setValue(long numerator, long denominator) {
-    this.numeratorValue = numerator;
-    this.denominatorValue = denominator;
+  public void setValue(long numerator, long denominator) {
+    this.numeratorValue.set(numerator);
+    this.denominatorValue.set(denominator);
   }
 
   @Override
-  public synchronized void increment(long numerator, long denominator) {
-    this.numeratorValue += numerator;
-    this.denominatorValue += denominator;
+  public void increment(long numerator, long denominator) {
+    this.numeratorValue.add(numerator);
+    this.denominatorValue.add(denominator);
   }
 
   @Override
-  public synchronized void decrement(long numerator, long denominator) {
-    this.numeratorValue -= numerator;
-    this.denominatorValue -= denominator;
+  public void decrement(long numerator, long denominator) {
+    this.numeratorValue.add(-numerator);
+    this.denominatorValue.add(-denominator);
   }
 
   @Override
-  public synchronized void setDenominatorValue(long newValue) {
-    this.denominatorValue = newValue;
+  public void setDenominatorValue(long newValue) {
+    this.denominatorValue.set(newValue);
   }
 
   @Override
-  public synchronized void setNumeratorValue(long newValue) {
-    this.numeratorValue = newValue;
+  public void setNumeratorValue(long newValue) {
+    this.numeratorValue.set(newValue);
   }
 
   @Override
-  public synchronized long getValue() {
-    return denominatorValue == 0 ? 0 : (numeratorValue / denominatorValue);
+  public long getValue() {
+    return rate(numeratorValue.get(), denominatorValue.get());
   }
 
   @Override
-  public synchronized long getAndReset() {
-    long prevVal = getValue();
-    setValue(0, 0);
-    return prevVal;
+  public long getAndReset() {
+    return rate(numeratorValue.getAndSet(0L), denominatorValue.getAndSet(0L));
+  }
+
+  private static long rate(long numerator, long denominator) {
+    return denominator == 0 ? 0 : (numerator / denominator);
   }
 
   // ====== unsupported operations. These operations need multiple params for this class
@@ -77,7 +84,7 @@ public class SampledRateCounterImpl extends SampledCounterImpl implements Sample
   }
 
   @Override
-  public synchronized void setValue(long newValue) {
+  public void setValue(long newValue) {
     throw new UnsupportedOperationException(OPERATION_NOT_SUPPORTED_MSG);
   }
 
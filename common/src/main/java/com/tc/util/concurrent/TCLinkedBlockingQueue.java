@@ -16,53 +16,270 @@
  */
 package com.tc.util.concurrent;
 
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.Collection;
+import java.util.Iterator;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
 
+/**
+ * Optionally bounded FIFO queue with separate put and take locks, the same two lock algorithm as
+ * {@link java.util.concurrent.LinkedBlockingQueue}. Unlike the JDK queue it can link in a whole batch of objects, and
+ * hand out a whole batch, under a single lock acquisition, which is what the SEDA stages use it for.
+ */
 public class TCLinkedBlockingQueue implements TCQueue {
-  private final LinkedBlockingQueue queue;
+
+  private final int           capacity;
+  private final AtomicInteger count    = new AtomicInteger();
+
+  private Node                head;
+  private Node                last;
+
+  private final ReentrantLock takeLock = new ReentrantLock();
+  private final Condition     notEmpty = takeLock.newCondition();
+  private final ReentrantLock putLock  = new ReentrantLock();
+  private final Condition     notFull  = putLock.newCondition();
 
   public TCLinkedBlockingQueue() {
-    queue = new LinkedBlockingQueue();
+    this(Integer.MAX_VALUE);
   }
 
   public TCLinkedBlockingQueue(int capacity) {
-    queue = new LinkedBlockingQueue(capacity);
+    if (capacity <= 0) { throw new IllegalArgumentException("Capacity must be positive : " + capacity); }
+    this.capacity = capacity;
+    this.last = this.head = new Node(null);
   }
 
   @Override
   public boolean offer(Object obj, long timeout) throws InterruptedException {
-    return queue.offer(obj, timeout, TimeUnit.MILLISECONDS);
+    if (obj == null) { throw new NullPointerException(); }
+    long nanos = TimeUnit.MILLISECONDS.toNanos(timeout);
+    int c;
+    putLock.lockInterruptibly();
+    try {
+      while (count.get() == capacity) {
+        if (nanos <= 0) { return false; }
+        nanos = notFull.awaitNanos(nanos);
+      }
+      enqueue(new Node(obj));
+      c = count.getAndIncrement();
+      if (c + 1 < capacity) {
+        notFull.signal();
+      }
+    } finally {
+      putLock.unlock();
+    }
+    if (c == 0) {
+      signalNotEmpty();
+    }
+    return true;
   }
 
   @Override
-  public Object peek() {
-    return queue.peek();
+  public void put(Object obj) throws InterruptedException {
+    if (obj == null) { throw new NullPointerException(); }
+    int c;
+    putLock.lockInterruptibly();
+    try {
+      while (count.get() == capacity) {
+        notFull.await();
+      }
+      enqueue(new Node(obj));
+      c = count.getAndIncrement();
+      if (c + 1 < capacity) {
+        notFull.signal();
+      }
+    } finally {
+      putLock.unlock();
+    }
+    if (c == 0) {
+      signalNotEmpty();
+    }
+  }
+
+  @Override
+  public int putAll(Collection objs) {
+    int added = 0;
+    Iterator i = objs.iterator();
+    while (i.hasNext()) {
+      int c = -1;
+      int batch = 0;
+      putLock.lock();
+      try {
+        while (count.get() == capacity) {
+          try {
+            notFull.await();
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return added;
+          }
+        }
+        // link in as many as there is room for, and let go of the lock only when the queue is full
+        try {
+          for (int room = capacity - count.get(); room > 0 && i.hasNext(); room--) {
+            Object obj = i.next();
+            if (obj == null) { throw new NullPointerException(); }
+            enqueue(new Node(obj));
+            batch++;
+          }
+        } finally {
+          // whatever got linked in before a null element must still be counted
+          c = count.getAndAdd(batch);
+        }
+        if (c + batch < capacity) {
+          notFull.signal();
+        }
+      } finally {
+        putLock.unlock();
+      }
+      added += batch;
+      if (c == 0) {
+        signalNotEmpty();
+      }
+    }
+    return added;
+  }
+
+  @Override
+  public Object take() throws InterruptedException {
+    Object rv;
+    int c;
+    takeLock.lockInterruptibly();
+    try {
+      while (count.get() == 0) {
+        notEmpty.await();
+      }
+      rv = dequeue();
+      c = count.getAndDecrement();
+      if (c > 1) {
+        notEmpty.signal();
+      }
+    } finally {
+      takeLock.unlock();
+    }
+    if (c == capacity) {
+      signalNotFull();
+    }
+    return rv;
   }
 
   @Override
   public Object poll(long timeout) throws InterruptedException {
-    return queue.poll(timeout, TimeUnit.MILLISECONDS);
+    long nanos = TimeUnit.MILLISECONDS.toNanos(timeout);
+    Object rv;
+    int c;
+    takeLock.lockInterruptibly();
+    try {
+      while (count.get() == 0) {
+        if (nanos <= 0) { return null; }
+        nanos = notEmpty.awaitNanos(nanos);
+      }
+      rv = dequeue();
+      c = count.getAndDecrement();
+      if (c > 1) {
+        notEmpty.signal();
+      }
+    } finally {
+      takeLock.unlock();
+    }
+    if (c == capacity) {
+      signalNotFull();
+    }
+    return rv;
   }
 
   @Override
-  public void put(Object obj) throws InterruptedException {
-    queue.put(obj);
+  public int drainTo(Collection into, int maxElements) {
+    if (maxElements <= 0 || count.get() == 0) { return 0; }
+    int n;
+    int c;
+    takeLock.lock();
+    try {
+      n = Math.min(maxElements, count.get());
+      for (int i = 0; i < n; i++) {
+        into.add(dequeue());
+      }
+      c = count.getAndAdd(-n);
+      if (c > n) {
+        notEmpty.signal();
+      }
+    } finally {
+      takeLock.unlock();
+    }
+    if (c == capacity && n > 0) {
+      signalNotFull();
+    }
+    return n;
   }
 
   @Override
-  public Object take() throws InterruptedException {
-    return queue.take();
+  public Object peek() {
+    if (count.get() == 0) { return null; }
+    takeLock.lock();
+    try {
+      Node first = head.next;
+      return first == null ? null : first.item;
+    } finally {
+      takeLock.unlock();
+    }
   }
 
   @Override
   public int size() {
-    return queue.size();
+    return count.get();
   }
 
   @Override
   public boolean isEmpty() {
-    return queue.isEmpty();
+    return count.get() == 0;
+  }
+
+  /**
+   * Must hold putLock
+   */
+  private void enqueue(Node node) {
+    last = last.next = node;
+  }
+
+  /**
+   * Must hold takeLock
+   */
+  private Object dequeue() {
+    Node h = head;
+    Node first = h.next;
+    // help GC
+    h.next = h;
+    head = first;
+    Object rv = first.item;
+    first.item = null;
+    return rv;
   }
 
+  private void signalNotEmpty() {
+    takeLock.lock();
+    try {
+      notEmpty.signal();
+    } finally {
+      takeLock.unlock();
+    }
+  }
+
+  private void signalNotFull() {
+    putLock.lock();
+    try {
+      notFull.signal();
+    } finally {
+      putLock.unlock();
+    }
+  }
+
+  private static final class Node {
+    Object        item;
+    volatile Node next;
+
+    Node(Object item) {
+      this.item = item;
+    }
+  }
 }
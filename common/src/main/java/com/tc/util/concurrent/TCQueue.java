@@ -16,12 +16,23 @@
  */
 package com.tc.util.concurrent;
 
+import java.util.Collection;
+
 public interface TCQueue {
   /**
    * Adds the object in the queue
    * @throws InterruptedException 
    */
   public void put(Object obj) throws InterruptedException;
+
+  /**
+   * Adds all the objects in the queue in iteration order, waiting for space if necessary. Objects are linked in with as
+   * few lock acquisitions as the free capacity allows.
+   * 
+   * @return the number of objects added. This is less than the size of the collection only if the thread was
+   *         interrupted while waiting for space, in which case the interrupt status is set again.
+   */
+  public int putAll(Collection objs);
   
   /**
    * Place item in channel only if it can be accepted within msecs milliseconds
@@ -39,6 +50,13 @@ public interface TCQueue {
    * @throws InterruptedException 
    */
   public Object poll(long timeout) throws InterruptedException;
+
+  /**
+   * Removes at most maxElements available items without waiting and adds them to the given collection
+   * 
+   * @return the number of items transferred
+   */
+  public int drainTo(Collection into, int maxElements);
   
   /**
    * Return, but do not remove object at head of Channel, or null if it is empty
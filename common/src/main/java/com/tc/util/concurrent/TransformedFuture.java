@@ -0,0 +1,64 @@
+/* 
+ * The contents of this file are subject to the Terracotta Public License Version
+ * 2.0 (the "License"); You may not use this file except in compliance with the
+ * License. You may obtain a copy of the License at 
+ *
+ *      http://terracotta.org/legal/terracotta-public-license.
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ * the specific language governing rights and limitations under the License.
+ *
+ * The Covered Software is Terracotta Platform.
+ *
+ * The Initial Developer of the Covered Software is 
+ *      Terracotta, Inc., a Software AG company
+ */
+package com.tc.util.concurrent;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * A {@link Future} that converts the value of another future when it is retrieved. The conversion runs in the thread
+ * calling <code>get()</code>, every time it is called.
+ */
+public abstract class TransformedFuture<S, V> implements Future<V> {
+  private final Future<S> source;
+
+  protected TransformedFuture(Future<S> source) {
+    this.source = source;
+  }
+
+  /**
+   * @throws ExecutionException to report a failure of the conversion to the caller of <code>get()</code>
+   */
+  protected abstract V transform(S value) throws ExecutionException;
+
+  @Override
+  public boolean cancel(boolean mayInterruptIfRunning) {
+    return source.cancel(mayInterruptIfRunning);
+  }
+
+  @Override
+  public boolean isCancelled() {
+    return source.isCancelled();
+  }
+
+  @Override
+  public boolean isDone() {
+    return source.isDone();
+  }
+
+  @Override
+  public V get() throws InterruptedException, ExecutionException {
+    return transform(source.get());
+  }
+
+  @Override
+  public V get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+    return transform(source.get(timeout, unit));
+  }
+}
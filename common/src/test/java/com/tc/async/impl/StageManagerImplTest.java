@@ -18,14 +18,28 @@ package com.tc.async.impl;
 
 import static java.util.concurrent.TimeUnit.SECONDS;
 
+import com.tc.async.api.BatchedEventHandler;
 import com.tc.async.api.EventContext;
+import com.tc.async.api.EventHandlerException;
 import com.tc.async.api.MultiThreadedEventContext;
+import com.tc.async.api.SpecializedEventContext;
 import com.tc.async.api.Stage;
+import com.tc.async.api.StageLatencySnapshot;
+import com.tc.exception.PlatformRejoinException;
+import com.tc.exception.TCNotRunningException;
 import com.tc.lang.TCThreadGroup;
 import com.tc.lang.ThrowableHandlerImpl;
 import com.tc.logging.TCLogger;
 import com.tc.logging.TCLogging;
+import com.tc.properties.TCPropertiesConsts;
+import com.tc.properties.TCPropertiesImpl;
+import com.tc.stats.counter.HistogramSnapshot;
 import com.tc.util.concurrent.QueueFactory;
+import com.tc.util.concurrent.ThreadUtil;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
 
 import junit.framework.TestCase;
 
@@ -166,11 +180,154 @@ public class StageManagerImplTest extends TestCase {
     stageManager.stopAll();
   }
 
+  public void testBatchedStage() throws Exception {
+    BatchedTestEventHandler handler = new BatchedTestEventHandler(4);
+    stageManager.createStage("testStage3", handler, 1, 100);
+    Stage s = stageManager.getStage("testStage3");
+    List<EventContext> contexts = new ArrayList<EventContext>();
+    for (int i = 0; i < 10; i++) {
+      contexts.add(new TestEventContext());
+    }
+    s.getSink().addMany(contexts);
+    assertEquals(10, s.getSink().size());
+
+    s.start(new ConfigurationContextImpl(null));
+    handler.waitForEventContextCount(10, 60, SECONDS);
+    assertEquals(0, s.getSink().size());
+    assertEquals(contexts, handler.getContexts());
+    assertEquals(4, handler.getLargestBatch());
+    stageManager.stopAll();
+  }
+
+  public void testBatchedStageGoesOnPastIgnorableFailures() throws Exception {
+    final EventContext rejoining = new TestEventContext();
+    BatchedTestEventHandler handler = new BatchedTestEventHandler(10) {
+      @Override
+      public synchronized void handleEvent(EventContext context) {
+        if (context == rejoining) { throw new PlatformRejoinException(); }
+        super.handleEvent(context);
+      }
+    };
+    stageManager.createStage("testStage4", handler, 1, 100);
+    Stage s = stageManager.getStage("testStage4");
+    List<EventContext> handled = new ArrayList<EventContext>();
+    List<EventContext> contexts = new ArrayList<EventContext>();
+    for (int i = 0; i < 10; i++) {
+      if (i == 2 || i == 7) {
+        contexts.add(rejoining);
+      } else if (i == 4) {
+        contexts.add(new NotRunningEventContext());
+      } else {
+        EventContext context = new TestEventContext();
+        contexts.add(context);
+        handled.add(context);
+      }
+    }
+    s.getSink().addMany(contexts);
+
+    s.start(new ConfigurationContextImpl(null));
+    handler.waitForEventContextCount(handled.size(), 60, SECONDS);
+    assertEquals(0, s.getSink().size());
+    assertEquals(handled, handler.getContexts());
+    stageManager.stopAll();
+  }
+
+  public void testLatencySnapshots() throws Exception {
+    TCPropertiesImpl.getProperties().setProperty(TCPropertiesConsts.TC_STAGE_LATENCY_SAMPLE_INTERVAL, "1");
+    BatchedTestEventHandler handler = new BatchedTestEventHandler(4);
+    stageManager.createStage("testStage4", handler, 1, 100);
+    stageManager.createStage("testStage5", testEventHandler, 1, 100);
+    Stage batched = stageManager.getStage("testStage4");
+    Stage single = stageManager.getStage("testStage5");
+    List<EventContext> contexts = new ArrayList<EventContext>();
+    for (int i = 0; i < 10; i++) {
+      contexts.add(new TestEventContext());
+    }
+    batched.getSink().addMany(contexts);
+    single.getSink().add(new TestEventContext());
+    single.getSink().add(new TestEventContext());
+
+    StageLatencySnapshot[] snapshots = stageManager.getLatencySnapshots();
+    assertEquals(2, snapshots.length);
+    assertEquals("testStage4", snapshots[0].getStageName());
+    assertEquals("testStage5", snapshots[1].getStageName());
+    assertEquals(0, snapshots[0].getQueueWait().getCount());
+    assertEquals(0, snapshots[0].getServiceTime().getCount());
+
+    batched.start(new ConfigurationContextImpl(null));
+    single.start(new ConfigurationContextImpl(null));
+    handler.waitForEventContextCount(10, 60, SECONDS);
+    testEventHandler.waitForEventContextCount(2, 60, SECONDS);
+
+    // the handler sees the contexts just before the service time is recorded
+    StageLatencySnapshot batchedSnapshot = waitForServiceTimeCount(batched, 3);
+    assertEquals(10, batchedSnapshot.getQueueWait().getCount());
+    HistogramSnapshot batchSizes = batchedSnapshot.getBatchSize();
+    assertEquals(3, batchSizes.getCount());
+    assertEquals(10, batchSizes.getTotal());
+    assertEquals(4, batchSizes.getMax());
+
+    StageLatencySnapshot singleSnapshot = waitForServiceTimeCount(single, 2);
+    assertEquals(2, singleSnapshot.getQueueWait().getCount());
+    assertEquals(1, singleSnapshot.getBatchSize().getMax());
+    stageManager.stopAll();
+  }
+
+  public void testLatencySampling() throws Exception {
+    TCPropertiesImpl.getProperties().setProperty(TCPropertiesConsts.TC_STAGE_LATENCY_SAMPLE_INTERVAL, "3");
+    stageManager.createStage("testStage6", testEventHandler, 1, 100);
+    Stage stage = stageManager.getStage("testStage6");
+    for (int i = 0; i < 16; i++) {
+      stage.getSink().add(new TestEventContext());
+    }
+    stage.start(new ConfigurationContextImpl(null));
+    testEventHandler.waitForEventContextCount(16, 60, SECONDS);
+
+    // rounded up to one in four
+    StageLatencySnapshot snapshot = waitForServiceTimeCount(stage, 4);
+    assertEquals(4, snapshot.getQueueWait().getCount());
+    assertEquals(4, snapshot.getBatchSize().getCount());
+    stageManager.stopAll();
+  }
+
+  public void testLatencyRecordingDisabled() throws Exception {
+    TCPropertiesImpl.getProperties().setProperty(TCPropertiesConsts.TC_STAGE_LATENCY_ENABLED, "false");
+    BatchedTestEventHandler handler = new BatchedTestEventHandler(4);
+    stageManager.createStage("testStage7", handler, 1, 100);
+    Stage stage = stageManager.getStage("testStage7");
+    List<EventContext> contexts = new ArrayList<EventContext>();
+    for (int i = 0; i < 10; i++) {
+      contexts.add(new TestEventContext());
+    }
+    stage.getSink().addMany(contexts);
+    stage.start(new ConfigurationContextImpl(null));
+    handler.waitForEventContextCount(10, 60, SECONDS);
+
+    StageLatencySnapshot snapshot = stage.getLatencySnapshot();
+    assertEquals(0, snapshot.getQueueWait().getCount());
+    assertEquals(0, snapshot.getServiceTime().getCount());
+    assertEquals(0, snapshot.getBatchSize().getCount());
+    stageManager.stopAll();
+  }
+
+  private static StageLatencySnapshot waitForServiceTimeCount(Stage stage, int count) {
+    long end = System.currentTimeMillis() + SECONDS.toMillis(60);
+    StageLatencySnapshot snapshot = stage.getLatencySnapshot();
+    while (snapshot.getServiceTime().getCount() < count && System.currentTimeMillis() < end) {
+      ThreadUtil.reallySleep(10);
+      snapshot = stage.getLatencySnapshot();
+    }
+    assertEquals(count, snapshot.getServiceTime().getCount());
+    return snapshot;
+  }
+
   /*
    * @see TestCase#tearDown()
    */
   @Override
   protected void tearDown() throws Exception {
+    TCPropertiesImpl.getProperties().setProperty(TCPropertiesConsts.TC_STAGE_LATENCY_ENABLED, "true");
+    TCPropertiesImpl.getProperties().setProperty(TCPropertiesConsts.TC_STAGE_LATENCY_SAMPLE_INTERVAL, "16");
     super.tearDown();
   }
 
@@ -181,6 +338,18 @@ public class StageManagerImplTest extends TestCase {
 
   }
 
+  private static class NotRunningEventContext implements SpecializedEventContext {
+    @Override
+    public void execute() {
+      throw new TCNotRunningException();
+    }
+
+    @Override
+    public Object getKey() {
+      return this;
+    }
+  }
+
   private static class TestMultiThreadedEventContext implements MultiThreadedEventContext {
     final Object name;
 
@@ -198,4 +367,28 @@ public class StageManagerImplTest extends TestCase {
     }
 
   }
+
+  private static class BatchedTestEventHandler extends TestEventHandler implements BatchedEventHandler {
+    private final int maxBatchSize;
+    private int       largestBatch;
+
+    BatchedTestEventHandler(int maxBatchSize) {
+      this.maxBatchSize = maxBatchSize;
+    }
+
+    @Override
+    public int getMaxBatchSize() {
+      return maxBatchSize;
+    }
+
+    @Override
+    public synchronized void handleEvents(Collection contexts) throws EventHandlerException {
+      largestBatch = Math.max(largestBatch, contexts.size());
+      super.handleEvents(contexts);
+    }
+
+    synchronized int getLargestBatch() {
+      return largestBatch;
+    }
+  }
 }
@@ -0,0 +1,96 @@
+/*
+ * The contents of this file are subject to the Terracotta Public License Version
+ * 2.0 (the "License"); You may not use this file except in compliance with the
+ * License. You may obtain a copy of the License at
+ *
+ *      http://terracotta.org/legal/terracotta-public-license.
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ * the specific language governing rights and limitations under the License.
+ *
+ * The Covered Software is Terracotta Platform.
+ *
+ * The Initial Developer of the Covered Software is
+ *      Terracotta, Inc., a Software AG company
+ */
+package com.tc.stats.counter;
+
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+public class LogLinearHistogramTest extends TestCase {
+
+  public void testBucketsCoverAllValues() {
+    assertEquals(0, LogLinearHistogram.bucketFor(0));
+    assertEquals(LogLinearHistogram.BUCKET_COUNT - 1, LogLinearHistogram.bucketFor(Long.MAX_VALUE));
+    assertEquals(Long.MAX_VALUE, LogLinearHistogram.upperBound(LogLinearHistogram.BUCKET_COUNT - 1));
+    for (int i = 0; i < LogLinearHistogram.BUCKET_COUNT - 1; i++) {
+      assertEquals(LogLinearHistogram.upperBound(i) + 1, LogLinearHistogram.lowerBound(i + 1));
+      assertEquals(i, LogLinearHistogram.bucketFor(LogLinearHistogram.lowerBound(i)));
+      assertEquals(i, LogLinearHistogram.bucketFor(LogLinearHistogram.upperBound(i)));
+    }
+  }
+
+  public void testRelativeError() {
+    Random r = new Random(3);
+    for (int i = 0; i < 100000; i++) {
+      long value = (r.nextLong() >>> 1) >>> r.nextInt(63);
+      int bucket = LogLinearHistogram.bucketFor(value);
+      long lower = LogLinearHistogram.lowerBound(bucket);
+      long upper = LogLinearHistogram.upperBound(bucket);
+      assertTrue(value >= lower && value <= upper);
+      assertTrue((double) (upper - lower) <= Math.max(1d, (double) lower / LogLinearHistogram.SUB_BUCKETS));
+    }
+  }
+
+  public void testSnapshot() {
+    LogLinearHistogram histogram = new LogLinearHistogram();
+    assertEquals(0, histogram.snapshot().getPercentile(99));
+
+    for (int i = 1; i <= 100; i++) {
+      histogram.record(i);
+    }
+    histogram.record(-5);
+
+    HistogramSnapshot snapshot = histogram.snapshot();
+    assertEquals(101, snapshot.getCount());
+    assertEquals(5050, snapshot.getTotal());
+    assertEquals(100, snapshot.getMax());
+    assertEquals(0, snapshot.getBucketLowerBounds()[0]);
+    long p50 = snapshot.getPercentile(50);
+    assertTrue(p50 >= 50 && p50 <= 50 + 50 / LogLinearHistogram.SUB_BUCKETS);
+    assertEquals(100, snapshot.getPercentile(100));
+
+    long total = 0;
+    for (long c : snapshot.getBucketCounts()) {
+      total += c;
+    }
+    assertEquals(101, total);
+
+    histogram.reset();
+    assertEquals(0, histogram.snapshot().getCount());
+    assertEquals(0, histogram.snapshot().getBucketCounts().length);
+  }
+
+  public void testSingleWriterAndMerge() {
+    LogLinearHistogram first = new LogLinearHistogram();
+    LogLinearHistogram second = new LogLinearHistogram();
+    for (int i = 1; i <= 50; i++) {
+      first.recordSingleWriter(i);
+      second.record(i + 50);
+    }
+    first.recordSingleWriter(-5);
+    assertEquals(51, first.getCount());
+    assertEquals(50, first.snapshot().getMax());
+
+    HistogramSnapshot merged = LogLinearHistogram.snapshotOf(first, second);
+    assertEquals(101, merged.getCount());
+    assertEquals(5050, merged.getTotal());
+    assertEquals(100, merged.getMax());
+    long p50 = merged.getPercentile(50);
+    assertTrue(p50 >= 50 && p50 <= 50 + 50 / LogLinearHistogram.SUB_BUCKETS);
+    assertEquals(0, LogLinearHistogram.snapshotOf().getCount());
+  }
+}
@@ -0,0 +1,90 @@
+/* 
+ * The contents of this file are subject to the Terracotta Public License Version
+ * 2.0 (the "License"); You may not use this file except in compliance with the
+ * License. You may obtain a copy of the License at 
+ *
+ *      http://terracotta.org/legal/terracotta-public-license.
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ * the specific language governing rights and limitations under the License.
+ *
+ * The Covered Software is Terracotta Platform.
+ *
+ * The Initial Developer of the Covered Software is 
+ *      Terracotta, Inc., a Software AG company
+ */
+package com.tc.stats.counter;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import junit.framework.TestCase;
+
+public class StripedLongTest extends TestCase {
+
+  public void testUncontended() {
+    StripedLong value = new StripedLong(42L);
+    assertEquals(43L, value.add(1L));
+    assertEquals(40L, value.add(-3L));
+    assertEquals(40L, value.getAndSet(7L));
+    assertEquals(7L, value.get());
+    assertFalse(value.isStriped());
+  }
+
+  public void testStripeCount() {
+    assertEquals(2, StripedLong.stripeCount(1));
+    assertEquals(8, StripedLong.stripeCount(3));
+    assertEquals(16, StripedLong.stripeCount(8));
+    assertEquals(64, StripedLong.stripeCount(1000));
+  }
+
+  public void testConcurrentAddsAndSamples() throws Exception {
+    final StripedLong value = new StripedLong();
+    final AtomicReference<Throwable> error = new AtomicReference<Throwable>();
+    final AtomicBoolean adding = new AtomicBoolean(true);
+    final CountDownLatch start = new CountDownLatch(1);
+    final int perThread = 200000;
+
+    Thread[] threads = new Thread[8];
+    for (int i = 0; i < threads.length; i++) {
+      threads[i] = new Thread() {
+        @Override
+        public void run() {
+          try {
+            start.await();
+            for (int n = 0; n < perThread; n++) {
+              value.add(n % 2 == 0 ? 3L : -1L);
+            }
+          } catch (Throwable t) {
+            error.set(t);
+          }
+        }
+      };
+      threads[i].start();
+    }
+
+    final long[] sampled = new long[1];
+    Thread sampler = new Thread() {
+      @Override
+      public void run() {
+        while (adding.get()) {
+          sampled[0] += value.getAndSet(0L);
+        }
+      }
+    };
+    sampler.start();
+
+    start.countDown();
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    adding.set(false);
+    sampler.join();
+
+    assertNull(error.get());
+    assertEquals((long) threads.length * perThread, sampled[0] + value.get());
+    assertTrue(value.isStriped());
+  }
+}
@@ -103,6 +103,29 @@ public class SampledCumulativeCounterTest extends TestCase {
     manager.shutdown();
   }
 
+  public void testCountersOfAnIntervalAreSampledTogether() {
+    CounterManager manager = new CounterManagerImpl();
+    SampledCounter first = (SampledCounter) manager.createCounter(new SampledCumulativeCounterConfig(1, 300, true, 0));
+    SampledCounter second = (SampledCounter) manager.createCounter(new SampledCounterConfig(1, 300, true, 0));
+    first.increment(5);
+    second.increment(7);
+
+    ThreadUtil.reallySleep(1500);
+    TimeStampedCounterValue firstSample = first.getMostRecentSample();
+    TimeStampedCounterValue secondSample = second.getMostRecentSample();
+    assertEquals(firstSample.getTimestamp(), secondSample.getTimestamp());
+    assertEquals(5, firstSample.getCounterValue());
+    assertEquals(7, secondSample.getCounterValue());
+    assertEquals(0, first.getValue());
+
+    manager.shutdownCounter(second);
+    second.increment(3);
+    ThreadUtil.reallySleep(1000);
+    assertEquals(secondSample.getTimestamp(), second.getMostRecentSample().getTimestamp());
+    assertTrue(first.getMostRecentSample().getTimestamp() > firstSample.getTimestamp());
+    manager.shutdown();
+  }
+
   public static void assertEquals(long e, long a) {
     System.out.println("expected: " + e + " actual: " + a);
     Assert.assertEquals(e, a);
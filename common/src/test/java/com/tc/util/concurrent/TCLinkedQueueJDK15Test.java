@@ -19,6 +19,9 @@ package com.tc.util.concurrent;
 import com.tc.util.Assert;
 import com.tc.util.runtime.Vm;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import junit.framework.TestCase;
@@ -78,6 +81,63 @@ public class TCLinkedQueueJDK15Test extends TestCase {
     if (!failed) { throw new AssertionError("Expected to throw an Exception"); }
   }
 
+  public void testPutAllAndDrainTo() throws Exception {
+    TCQueue queue = new TCLinkedBlockingQueue(10);
+    List<Integer> items = new ArrayList<Integer>();
+    for (int i = 0; i < 8; i++) {
+      items.add(Integer.valueOf(i));
+    }
+    assertEquals(8, queue.putAll(items));
+    assertEquals(8, queue.size());
+
+    List<Object> drained = new ArrayList<Object>();
+    assertEquals(5, queue.drainTo(drained, 5));
+    assertEquals(items.subList(0, 5), drained);
+    assertEquals(3, queue.size());
+
+    assertEquals(3, queue.drainTo(drained, 100));
+    assertEquals(items, drained);
+    assertTrue(queue.isEmpty());
+    assertEquals(0, queue.drainTo(drained, 100));
+    assertNull(queue.poll(0));
+  }
+
+  public void testPutAllBlocksWhenFull() throws Exception {
+    final TCQueue queue = new TCLinkedBlockingQueue(4);
+    final List<Integer> items = Arrays.asList(Integer.valueOf(0), Integer.valueOf(1), Integer.valueOf(2),
+                                              Integer.valueOf(3), Integer.valueOf(4), Integer.valueOf(5));
+    final AtomicInteger added = new AtomicInteger(-1);
+    Thread producer = new Thread() {
+      @Override
+      public void run() {
+        added.set(queue.putAll(items));
+      }
+    };
+    producer.start();
+
+    List<Object> taken = new ArrayList<Object>();
+    while (taken.size() < items.size()) {
+      Object o = queue.poll(1000);
+      assertNotNull(o);
+      taken.add(o);
+    }
+    producer.join();
+    assertEquals(items.size(), added.get());
+    assertEquals(items, taken);
+  }
+
+  public void testPutAllInterrupted() throws Exception {
+    TCQueue queue = new TCLinkedBlockingQueue(2);
+    Thread.currentThread().interrupt();
+    try {
+      assertEquals(2, queue.putAll(Arrays.asList("a", "b", "c")));
+      assertTrue(Thread.interrupted());
+    } finally {
+      Thread.interrupted();
+    }
+    assertEquals(2, queue.size());
+  }
+
   public void testTCQueuePutPerformance() throws Exception {
     System.out.println(" --TEST CASE : testTCQueuePutPrformance");
     if (!Vm.isJDK15Compliant()) {
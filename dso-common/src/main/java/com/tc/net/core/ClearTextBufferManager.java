@@ -29,7 +29,7 @@ import java.nio.channels.SocketChannel;
 /**
  * @author Ludovic Orban
  */
-class ClearTextBufferManager implements BufferManager {
+class ClearTextBufferManager implements BufferManager, GatheringBufferManager {
   private static final TCLogger logger         = TCLogging.getLogger(ClearTextBufferManager.class);
   private static final String   BUFFER_SIZE    = "clear.text.buffer.size";
   private static final int      BUFFER_SIZE_KB = Integer.getInteger(BUFFER_SIZE, 16) * 1024;
@@ -53,6 +53,18 @@ class ClearTextBufferManager implements BufferManager {
     return written;
   }
 
+  @Override
+  public long sendFromBuffers(ByteBuffer[] srcs, int offset, int length) throws IOException {
+    long staged = 0;
+    if (sendBuffer.position() > 0) {
+      staged = sendFromBuffer();
+      if (sendBuffer.position() > 0) { return staged; }
+    }
+    long written = this.channel.write(srcs, offset, length);
+    if (written == -1) { throw new EOFException(); }
+    return staged + written;
+  }
+
   @Override
   public int recvToBuffer() throws IOException {
     int read = this.channel.read(recvBuffer);
@@ -47,15 +47,19 @@ import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Random;
+import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.CountDownLatch;
-import java.util.concurrent.LinkedBlockingQueue;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * The communication thread. Creates {@link Selector selector}, registers {@link SocketChannel} to the selector and does
  * other NIO operations.
+ * <p>
+ * By default reads and writes are served by two threads, each with its own selector. In reactor mode a single thread
+ * and selector serve both, so a connection is only ever touched by the thread it is registered with.
  *
  * @author mgovinda
  */
@@ -67,6 +71,7 @@ class CoreNIOServices implements TCListenerEventListener, TCConnectionEventListe
   private final SocketParams                   socketParams;
   private final CommThread                     readerComm;
   private final CommThread                     writerComm;
+  private final boolean                        reactor;
   private final SetOnceFlag                    stopRequested = new SetOnceFlag();
 
   // maintains weight of all L1 Connections which is handled by this WorkerComm
@@ -76,33 +81,54 @@ class CoreNIOServices implements TCListenerEventListener, TCConnectionEventListe
   private String                               listenerString;
 
   private static enum COMM_THREAD_MODE {
-    NIO_READER, NIO_WRITER
+    NIO_READER, NIO_WRITER, NIO_REACTOR
   }
 
   public CoreNIOServices(String commThreadName, TCWorkerCommManager workerCommManager, SocketParams socketParams) {
+    this(commThreadName, workerCommManager, socketParams, false);
+  }
+
+  public CoreNIOServices(String commThreadName, TCWorkerCommManager workerCommManager, SocketParams socketParams,
+                         boolean reactor) {
     this.commThreadName = commThreadName;
     this.workerCommMgr = workerCommManager;
     this.socketParams = socketParams;
+    this.reactor = reactor;
     this.managedConnectionsMap = new HashMap<TCConnection, Integer>();
-    this.readerComm = new CommThread(COMM_THREAD_MODE.NIO_READER);
-    this.writerComm = new CommThread(COMM_THREAD_MODE.NIO_WRITER);
+    if (reactor) {
+      this.readerComm = new CommThread(COMM_THREAD_MODE.NIO_REACTOR);
+      this.writerComm = this.readerComm;
+    } else {
+      this.readerComm = new CommThread(COMM_THREAD_MODE.NIO_READER);
+      this.writerComm = new CommThread(COMM_THREAD_MODE.NIO_WRITER);
+    }
+  }
+
+  public boolean isReactor() {
+    return this.reactor;
   }
 
   public void start() {
     readerComm.start();
-    writerComm.start();
+    if (!reactor) {
+      writerComm.start();
+    }
   }
 
   public void requestStop() {
     if (stopRequested.attemptSet()) {
       readerComm.requestStop();
-      writerComm.requestStop();
+      if (!reactor) {
+        writerComm.requestStop();
+      }
     }
   }
 
   public void cleanupChannel(SocketChannel channel, Runnable callback) {
     readerComm.cleanupChannel(channel, callback);
-    writerComm.cleanupChannel(channel, callback);
+    if (!reactor) {
+      writerComm.cleanupChannel(channel, callback);
+    }
   }
 
   @Override
@@ -126,14 +152,18 @@ class CoreNIOServices implements TCListenerEventListener, TCConnectionEventListe
     Assert.eval(removed);
     updateListenerString();
     readerComm.updateThreadName();
-    writerComm.updateThreadName();
+    if (!reactor) {
+      writerComm.updateThreadName();
+    }
   }
 
   private synchronized void listenerAdded(TCListener listener) {
     listeners.add(listener);
     updateListenerString();
     readerComm.updateThreadName();
-    writerComm.updateThreadName();
+    if (!reactor) {
+      writerComm.updateThreadName();
+    }
   }
 
   private void updateListenerString() {
@@ -160,13 +190,28 @@ class CoreNIOServices implements TCListenerEventListener, TCConnectionEventListe
   }
 
   public long getTotalBytesRead() {
+    if (reactor) { return readerComm.getTotalBytesRead(); }
     return readerComm.getTotalBytesRead() + writerComm.getTotalBytesRead();
   }
 
   public long getTotalBytesWritten() {
+    if (reactor) { return readerComm.getTotalBytesWritten(); }
     return readerComm.getTotalBytesWritten() + writerComm.getTotalBytesWritten();
   }
 
+  /**
+   * @return nanoseconds the comm threads of this instance spent blocked in {@link Selector#select()}
+   */
+  public long getTotalSelectTime() {
+    if (reactor) { return readerComm.getTotalSelectTime(); }
+    return readerComm.getTotalSelectTime() + writerComm.getTotalSelectTime();
+  }
+
+  public long getTotalSelectorTasks() {
+    if (reactor) { return readerComm.getTotalSelectorTasks(); }
+    return readerComm.getTotalSelectorTasks() + writerComm.getTotalSelectorTasks();
+  }
+
   public int getWeight() {
     synchronized (managedConnectionsMap) {
       return this.clientWeights;
@@ -191,6 +236,16 @@ class CoreNIOServices implements TCListenerEventListener, TCConnectionEventListe
    * @param channel : SocketChannel for the passed in connection
    */
   public void addWeight(final TCConnectionImpl connection, final int addWeightBy, final SocketChannel channel) {
+    addWeight(connection, addWeightBy, channel, TCWorkerCommManager.NO_AFFINITY);
+  }
+
+  /**
+   * Same as {@link #addWeight(TCConnectionImpl, int, SocketChannel)}, but a connection that is handed over to a worker
+   * comm in reactor mode always lands on the worker picked by affinityKey (usually its channel id), so that the same
+   * peer keeps being served by the same thread across reconnects.
+   */
+  public void addWeight(final TCConnectionImpl connection, final int addWeightBy, final SocketChannel channel,
+                        final long affinityKey) {
 
     synchronized (managedConnectionsMap) {
       // this connection is already handled by a WorkerComm
@@ -205,7 +260,7 @@ class CoreNIOServices implements TCListenerEventListener, TCConnectionEventListe
     if (workerCommMgr == null) { return; }
 
     readerComm.unregister(channel);
-    final CoreNIOServices workerComm = workerCommMgr.getNextWorkerComm();
+    final CoreNIOServices workerComm = workerCommMgr.getWorkerCommFor(affinityKey);
     connection.setCommWorker(workerComm);
     workerComm.addConnection(connection, addWeightBy);
     workerComm.requestReadWriteInterest(connection, channel);
@@ -276,30 +331,52 @@ class CoreNIOServices implements TCListenerEventListener, TCConnectionEventListe
   }
 
   private void requestReadWriteInterest(TCConnectionImpl conn, SocketChannel sc) {
-    readerComm.requestReadInterest(conn, sc);
-    writerComm.requestWriteInterest(conn, sc);
+    if (reactor) {
+      readerComm.requestReadWriteInterest(conn, sc);
+    } else {
+      readerComm.requestReadInterest(conn, sc);
+      writerComm.requestWriteInterest(conn, sc);
+    }
   }
 
   protected class CommThread extends Thread {
     private final Selector            selector;
-    private final LinkedBlockingQueue selectorTasks;
+    // tasks are offered from any thread and only polled by this one, the selector is woken up once per batch
+    private final Queue<Runnable>     selectorTasks = new ConcurrentLinkedQueue<Runnable>();
+    private final AtomicBoolean       wakeupPending = new AtomicBoolean();
     private final String              name;
-    private final AtomicLong          bytesRead    = new AtomicLong(0);
-    private final AtomicLong          bytesWritten = new AtomicLong(0);
+    private final AtomicLong          bytesRead     = new AtomicLong(0);
+    private final AtomicLong          bytesWritten  = new AtomicLong(0);
+    private final AtomicLong          selectTime    = new AtomicLong(0);
+    private final AtomicLong          tasksRun      = new AtomicLong(0);
     private final COMM_THREAD_MODE    mode;
 
     public CommThread(final COMM_THREAD_MODE mode) {
-      name = commThreadName + (mode == COMM_THREAD_MODE.NIO_READER ? "_R" : "_W");
+      name = commThreadName + threadNameSuffix(mode);
       setDaemon(true);
       setName(name);
 
       this.selector = createSelector();
-      this.selectorTasks = new LinkedBlockingQueue();
       this.mode = mode;
     }
 
-    private boolean isReader() {
-      return (this.mode == COMM_THREAD_MODE.NIO_READER);
+    private String threadNameSuffix(COMM_THREAD_MODE threadMode) {
+      switch (threadMode) {
+        case NIO_READER:
+          return "_R";
+        case NIO_WRITER:
+          return "_W";
+        default:
+          return "_RW";
+      }
+    }
+
+    private boolean handlesReads() {
+      return (this.mode != COMM_THREAD_MODE.NIO_WRITER);
+    }
+
+    private boolean handlesWrites() {
+      return (this.mode != COMM_THREAD_MODE.NIO_READER);
     }
 
     @Override
@@ -362,21 +439,11 @@ class CoreNIOServices implements TCListenerEventListener, TCConnectionEventListe
     }
 
     void addSelectorTask(final Runnable task) {
-      boolean isInterrupted = false;
-
-      try {
-        while (true) {
-          try {
-            this.selectorTasks.put(task);
-            break;
-          } catch (InterruptedException e) {
-            logger.warn(e);
-            isInterrupted = true;
-          }
-        }
-      } finally {
+      this.selectorTasks.offer(task);
+      // the select loop clears the flag before draining the queue, so a task offered while the flag is still set is
+      // picked up by that drain
+      if (this.wakeupPending.compareAndSet(false, true)) {
         this.selector.wakeup();
-        Util.selfInterruptIfNeeded(isInterrupted);
       }
     }
 
@@ -523,7 +590,7 @@ class CoreNIOServices implements TCListenerEventListener, TCConnectionEventListe
       }
     }
 
-    private void dispose(Selector localSelector, LinkedBlockingQueue localSelectorTasks) {
+    private void dispose(Selector localSelector, Queue<Runnable> localSelectorTasks) {
       Assert.eval(Thread.currentThread() == this);
 
       if (localSelector != null) {
@@ -557,12 +624,14 @@ class CoreNIOServices implements TCListenerEventListener, TCConnectionEventListe
       Assert.eval(Thread.currentThread() == this);
 
       Selector localSelector = this.selector;
-      LinkedBlockingQueue localSelectorTasks = this.selectorTasks;
+      Queue<Runnable> localSelectorTasks = this.selectorTasks;
 
       while (true) {
         final int numKeys;
+        final long selectStart = System.nanoTime();
         try {
-          numKeys = localSelector.select();
+          // tasks left queued by a select that failed below are not held up until the next wakeup
+          numKeys = localSelectorTasks.isEmpty() ? localSelector.select() : localSelector.selectNow();
         } catch (IOException ioe) {
           if (NIOWorkarounds.linuxSelectWorkaround(ioe)) {
             logger.warn("working around Sun bug 4504001");
@@ -578,6 +647,11 @@ class CoreNIOServices implements TCListenerEventListener, TCConnectionEventListe
         } catch (CancelledKeyException cke) {
           logger.warn("Cencelled Key " + cke);
           continue;
+        } finally {
+          this.selectTime.addAndGet(System.nanoTime() - selectStart);
+          // cleared on every way out of select, the workarounds above go round again without draining the tasks and
+          // a flag left set would keep addSelectorTask from waking the selector for good
+          this.wakeupPending.set(false);
         }
 
         if (isStopRequested()) {
@@ -587,31 +661,16 @@ class CoreNIOServices implements TCListenerEventListener, TCConnectionEventListe
           return;
         }
 
-        boolean isInterrupted = false;
         // run any pending selector tasks
-        while (true) {
-          Runnable task;
-          while (true) {
-            try {
-              task = (Runnable) localSelectorTasks.poll(0, TimeUnit.MILLISECONDS);
-              break;
-            } catch (InterruptedException ie) {
-              logger.error("Error getting task from task queue", ie);
-              isInterrupted = true;
-            }
-          }
-
-          if (null == task) {
-            break;
-          }
-
+        Runnable task;
+        while ((task = localSelectorTasks.poll()) != null) {
+          this.tasksRun.incrementAndGet();
           try {
             task.run();
           } catch (Exception e) {
             logger.error("error running selector task", e);
           }
         }
-        Util.selfInterruptIfNeeded(isInterrupted);
 
         final Set selectedKeys = localSelector.selectedKeys();
         if ((0 == numKeys) && (0 == selectedKeys.size())) {
@@ -639,7 +698,7 @@ class CoreNIOServices implements TCListenerEventListener, TCConnectionEventListe
               continue;
             }
 
-            if (isReader() && key.isValid() && key.isReadable()) {
+            if (handlesReads() && key.isValid() && key.isReadable()) {
               int read;
               TCChannelReader reader = (TCChannelReader) key.attachment();
               do {
@@ -648,7 +707,7 @@ class CoreNIOServices implements TCListenerEventListener, TCConnectionEventListe
               } while ((read != 0) && key.isReadable());
             }
 
-            if (key.isValid() && !isReader() && key.isWritable()) {
+            if (handlesWrites() && key.isValid() && key.isWritable()) {
               int written = ((TCChannelWriter) key.attachment()).doWrite();
               this.bytesWritten.addAndGet(written);
             }
@@ -732,6 +791,14 @@ class CoreNIOServices implements TCListenerEventListener, TCConnectionEventListe
       return this.bytesWritten.get();
     }
 
+    public long getTotalSelectTime() {
+      return this.selectTime.get();
+    }
+
+    public long getTotalSelectorTasks() {
+      return this.tasksRun.get();
+    }
+
     private void handleRequest(final InterestRequest req) {
       // ignore the request if we are stopped/stopping
       if (isStopRequested()) { return; }
@@ -784,7 +851,7 @@ class CoreNIOServices implements TCListenerEventListener, TCConnectionEventListe
         } else if (request.set) {
           request.channel.register(localSelector, request.interestOps, request.attachment);
         } else if (request.remove) {
-          request.channel.register(localSelector, existingOps ^ request.interestOps, request.attachment);
+          request.channel.register(localSelector, existingOps & ~request.interestOps, request.attachment);
         } else {
           throw new TCInternalError();
         }
@@ -800,29 +867,35 @@ class CoreNIOServices implements TCListenerEventListener, TCConnectionEventListe
     }
 
     void requestReadInterest(TCChannelReader reader, ScatteringByteChannel channel) {
-      Assert.eval(isReader());
+      Assert.eval(handlesReads());
       handleRequest(InterestRequest.createAddInterestRequest((SelectableChannel) channel, reader, SelectionKey.OP_READ,
                                                              this));
     }
 
     void requestWriteInterest(TCChannelWriter writer, GatheringByteChannel channel) {
-      Assert.eval(!isReader());
+      Assert.eval(handlesWrites());
       handleRequest(InterestRequest.createAddInterestRequest((SelectableChannel) channel, writer,
                                                              SelectionKey.OP_WRITE, this));
     }
 
+    void requestReadWriteInterest(TCConnectionImpl conn, SocketChannel sc) {
+      Assert.eval(handlesReads() && handlesWrites());
+      handleRequest(InterestRequest.createAddInterestRequest(sc, conn, SelectionKey.OP_READ | SelectionKey.OP_WRITE,
+                                                             this));
+    }
+
     private void requestAcceptInterest(TCListenerImpl lsnr, ServerSocketChannel ssc) {
-      Assert.eval(isReader());
+      Assert.eval(handlesReads());
       handleRequest(InterestRequest.createSetInterestRequest(ssc, lsnr, SelectionKey.OP_ACCEPT, this));
     }
 
     void removeWriteInterest(TCConnectionImpl conn, SelectableChannel channel) {
-      Assert.eval(!isReader());
+      Assert.eval(handlesWrites());
       handleRequest(InterestRequest.createRemoveInterestRequest(channel, conn, SelectionKey.OP_WRITE, this));
     }
 
     void removeReadInterest(TCConnectionImpl conn, SelectableChannel channel) {
-      Assert.eval(isReader());
+      Assert.eval(handlesReads());
       handleRequest(InterestRequest.createRemoveInterestRequest(channel, conn, SelectionKey.OP_READ, this));
     }
   }
@@ -0,0 +1,35 @@
+/* 
+ * The contents of this file are subject to the Terracotta Public License Version
+ * 2.0 (the "License"); You may not use this file except in compliance with the
+ * License. You may obtain a copy of the License at 
+ *
+ *      http://terracotta.org/legal/terracotta-public-license.
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ * the specific language governing rights and limitations under the License.
+ *
+ * The Covered Software is Terracotta Platform.
+ *
+ * The Initial Developer of the Covered Software is 
+ *      Terracotta, Inc., a Software AG company
+ */
+package com.tc.net.core;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Implemented by {@link BufferManager}s that don't need to transform outgoing data, so it can be written to the socket
+ * straight from the message buffers instead of being staged through {@link BufferManager#forwardToWriteBuffer}.
+ */
+interface GatheringBufferManager {
+
+  /**
+   * Writes whatever is still staged in the write buffer followed by as much of the given buffers as the socket takes.
+   * Nothing from the given buffers is written until the staged bytes are all out.
+   *
+   * @return the number of bytes written to the socket
+   */
+  long sendFromBuffers(ByteBuffer[] srcs, int offset, int length) throws IOException;
+}
@@ -0,0 +1,30 @@
+/* 
+ * The contents of this file are subject to the Terracotta Public License Version
+ * 2.0 (the "License"); You may not use this file except in compliance with the
+ * License. You may obtain a copy of the License at 
+ *
+ *      http://terracotta.org/legal/terracotta-public-license.
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ * the specific language governing rights and limitations under the License.
+ *
+ * The Covered Software is Terracotta Platform.
+ *
+ * The Initial Developer of the Covered Software is 
+ *      Terracotta, Inc., a Software AG company
+ */
+package com.tc.net.core;
+
+/**
+ * A {@link TCConnection} that can be tied to a comm worker by a caller supplied key, such as the id of the channel it
+ * carries.
+ */
+public interface PinnableTCConnection extends TCConnection {
+
+  /**
+   * Like {@link TCConnection#addWeight(int)}, the affinity key is used to pick the worker comm when the connection is
+   * handed over to one.
+   */
+  void addWeight(int addWeightBy, long affinityKey);
+}
@@ -70,7 +70,7 @@ import javax.net.ssl.SSLHandshakeException;
  * @author teck
  * @author mgovinda
  */
-final class TCConnectionImpl implements TCConnection, TCChannelReader, TCChannelWriter {
+final class TCConnectionImpl implements PinnableTCConnection, TCChannelReader, TCChannelWriter {
 
   private static final long                  NO_CONNECT_TIME             = -1L;
   private static final TCLogger              logger                      = TCLogging.getLogger(TCConnection.class);
@@ -115,8 +115,17 @@ final class TCConnectionImpl implements TCConnection, TCChannelReader, TCChannel
       .getProperties()
       .getBoolean(TCPropertiesConsts.TC_MESSAGE_PACKUP_ENABLED,
           true);
+  private static final boolean               GATHERING_WRITE_ENABLED     = TCPropertiesImpl
+      .getProperties()
+      .getBoolean(TCPropertiesConsts.TC_MESSAGE_GATHERING_WRITE_ENABLED,
+          true);
+  private static final int                   GATHER_MAX_BUFFERS          = 256;
+  private static final int                   GATHER_MAX_BYTES            = 256 * 1024;
   private final Object                       readerLock                  = new Object();
   private final Object                       writerLock                  = new Object();
+  // only touched while holding the writerLock
+  private final ByteBuffer[]                 gatherSources               = new ByteBuffer[GATHER_MAX_BUFFERS];
+  private final ByteBuffer[]                 gatherBuffers               = new ByteBuffer[GATHER_MAX_BUFFERS];
 
   static {
     logger.info("Comms Message Batching " + (MSG_GROUPING_ENABLED ? "enabled" : "disabled"));
@@ -327,6 +336,11 @@ final class TCConnectionImpl implements TCConnection, TCChannelReader, TCChannel
   }
 
   private int doWriteInternal() throws IOException {
+    final BufferManager manager = this.bufferManager;
+    if (GATHERING_WRITE_ENABLED && pipeSocket == null && manager instanceof GatheringBufferManager) {
+      return doGatheringWrite((GatheringBufferManager) manager);
+    }
+
     int written;
     try {
       written = doWriteToBuffer();
@@ -359,6 +373,109 @@ final class TCConnectionImpl implements TCConnection, TCChannelReader, TCChannel
     return channelWritten;
   }
 
+  /**
+   * Writes the pending messages to the socket straight from their buffers, with as few write calls as possible.
+   */
+  private int doGatheringWrite(final GatheringBufferManager manager) throws IOException {
+    final boolean debug = logger.isDebugEnabled();
+    long totalBytesWritten = 0;
+
+    if (this.writeContexts.size() <= 0) {
+      buildWriteContextsFromMessages();
+    }
+    while (this.writeContexts.size() > 0) {
+      final int count = gatherWriteBuffers();
+      long written = 0;
+      boolean drained = false;
+      try {
+        written = manager.sendFromBuffers(this.gatherBuffers, 0, count);
+      } catch (IOException ioe) {
+        closeWriteOnException(ioe);
+        return (int) totalBytesWritten;
+      } finally {
+        drained = releaseGatheredBuffers(count);
+      }
+
+      if (debug) {
+        logger.debug("Wrote " + written + " bytes from " + count + " buffers on connection " + this.channel.toString());
+      }
+      totalBytesWritten += written;
+      this.totalWrite.addAndGet(written);
+
+      completeWrittenContexts();
+      if (!drained) {
+        // the socket is full
+        break;
+      }
+    }
+
+    removeWriteInterestIfIdle();
+    return (int) totalBytesWritten;
+  }
+
+  private int gatherWriteBuffers() {
+    int count = 0;
+    long bytes = 0;
+    for (final WriteContext context : this.writeContexts) {
+      final TCByteBuffer[] buffers = context.entireMessageData;
+      for (int i = context.index; i < buffers.length; i++) {
+        if (count == GATHER_MAX_BUFFERS || bytes >= GATHER_MAX_BYTES) { return count; }
+        final ByteBuffer source = buffers[i].getNioBuffer();
+        final int remaining = source.remaining();
+        if (remaining == 0) {
+          continue;
+        }
+        ByteBuffer target = source;
+        if (!source.isDirect() && remaining > GATHER_MAX_BYTES - bytes) {
+          // the JDK copies heap buffers into temporary direct buffers of the same size, keep those bounded
+          target = source.duplicate();
+          target.limit(target.position() + (int) (GATHER_MAX_BYTES - bytes));
+        }
+        this.gatherSources[count] = source;
+        this.gatherBuffers[count] = target;
+        count++;
+        bytes += target.remaining();
+      }
+    }
+    return count;
+  }
+
+  /**
+   * @return true if everything gathered was written
+   */
+  private boolean releaseGatheredBuffers(final int count) {
+    boolean drained = true;
+    for (int i = 0; i < count; i++) {
+      final ByteBuffer target = this.gatherBuffers[i];
+      if (target.hasRemaining()) {
+        drained = false;
+      }
+      if (target != this.gatherSources[i]) {
+        this.gatherSources[i].position(target.position());
+      }
+      this.gatherSources[i] = null;
+      this.gatherBuffers[i] = null;
+    }
+    return drained;
+  }
+
+  private void completeWrittenContexts() {
+    while (this.writeContexts.size() > 0) {
+      final WriteContext context = this.writeContexts.get(0);
+      final TCByteBuffer[] buffers = context.entireMessageData;
+      while (context.index < buffers.length && !buffers[context.index].hasRemaining()) {
+        context.incrementIndexAndCleanOld();
+      }
+      if (!context.done()) { return; }
+
+      if (logger.isDebugEnabled()) {
+        logger.debug("Complete message sent on connection " + this.channel.toString());
+      }
+      context.writeComplete();
+      this.writeContexts.remove(0);
+    }
+  }
+
   private int doWriteToBuffer() throws IOException {
     if (pipeSocket != null) {
       synchronized (pipeSocketWriteInterestLock) {
@@ -530,14 +647,18 @@ final class TCConnectionImpl implements TCConnection, TCChannelReader, TCChannel
       }
     }
 
+    removeWriteInterestIfIdle();
+    return totalBytesWritten;
+  }
+
+  private void removeWriteInterestIfIdle() {
     synchronized (this.writeMessages) {
-      if (this.closed.isSet()) { return totalBytesWritten; }
+      if (this.closed.isSet()) { return; }
 
       if (this.writeMessages.isEmpty() && this.writeContexts.isEmpty()) {
         this.commWorker.removeWriteInterest(this, this.channel);
       }
     }
-    return totalBytesWritten;
   }
 
   static private ByteBuffer extractNioBuffer(final TCByteBuffer buffer) {
@@ -1040,6 +1161,11 @@ final class TCConnectionImpl implements TCConnection, TCChannelReader, TCChannel
     this.commWorker.addWeight(this, addWeightBy, this.channel);
   }
 
+  @Override
+  public void addWeight(final int addWeightBy, final long affinityKey) {
+    this.commWorker.addWeight(this, addWeightBy, this.channel, affinityKey);
+  }
+
   @Override
   public void setTransportEstablished() {
     this.transportEstablished.set(true);
@@ -20,6 +20,8 @@ import com.tc.logging.LossyTCLogger;
 import com.tc.logging.LossyTCLogger.LossyTCLoggerType;
 import com.tc.logging.TCLogger;
 import com.tc.logging.TCLogging;
+import com.tc.properties.TCPropertiesConsts;
+import com.tc.properties.TCPropertiesImpl;
 import com.tc.util.Assert;
 import com.tc.util.concurrent.SetOnceFlag;
 
@@ -40,21 +42,47 @@ public class TCWorkerCommManager {
 
   private static final String     WORKER_NAME_PREFIX = "TCWorkerComm # ";
 
+  /**
+   * Affinity key of connections that are not tied to a channel, these are balanced by weight.
+   */
+  static final long               NO_AFFINITY        = -1;
+
   private final int               totalWorkerComm;
   private final CoreNIOServices[] workerCommThreads;
+  private final boolean           reactor;
   private final SetOnceFlag       started            = new SetOnceFlag();
   private final SetOnceFlag       stopped            = new SetOnceFlag();
 
   private final AtomicInteger     nextWorkerCommId   = new AtomicInteger();
 
   TCWorkerCommManager(String name, int workerCommCount, SocketParams socketParams) {
+    this(name, workerCommCount, socketParams,
+         TCPropertiesImpl.getProperties().getBoolean(TCPropertiesConsts.NET_CORE_REACTOR_ENABLED, false));
+  }
+
+  TCWorkerCommManager(String name, int workerCommCount, SocketParams socketParams, boolean reactor) {
     if (workerCommCount <= 0) { throw new IllegalArgumentException("invalid worker count: " + workerCommCount); }
-    logger.info("Creating " + workerCommCount + " worker comm threads for " + name);
+    logger.info("Creating " + workerCommCount + " worker comm " + (reactor ? "reactors" : "threads") + " for " + name);
     this.totalWorkerComm = workerCommCount;
+    this.reactor = reactor;
     this.workerCommThreads = new CoreNIOServices[workerCommCount];
     for (int i = 0; i < this.workerCommThreads.length; i++) {
-      this.workerCommThreads[i] = new CoreNIOServices(name + ":" + WORKER_NAME_PREFIX + i, this, socketParams);
+      this.workerCommThreads[i] = new CoreNIOServices(name + ":" + WORKER_NAME_PREFIX + i, this, socketParams,
+                                                      reactor);
+    }
+  }
+
+  /**
+   * In reactor mode a connection with an affinity key is pinned to the worker comm the key maps to. Channel ids are
+   * handed out in sequence, so a plain modulo spreads them evenly. Everything else goes to the least loaded worker.
+   */
+  public CoreNIOServices getWorkerCommFor(long affinityKey) {
+    if (!reactor || affinityKey < 0) { return getNextWorkerComm(); }
+    CoreNIOServices rv = this.workerCommThreads[(int) (affinityKey % this.totalWorkerComm)];
+    if (logger.isDebugEnabled()) {
+      logger.debug("Pinning connection with affinity " + affinityKey + " to " + rv);
     }
+    return rv;
   }
 
   public CoreNIOServices getNextWorkerComm() {
@@ -129,4 +157,12 @@ public class TCWorkerCommManager {
     return this.workerCommThreads[workerCommId].getTotalBytesWritten();
   }
 
+  protected long getTotalSelectTimeByWorkerComm(int workerCommId) {
+    return this.workerCommThreads[workerCommId].getTotalSelectTime();
+  }
+
+  protected long getTotalSelectorTasksByWorkerComm(int workerCommId) {
+    return this.workerCommThreads[workerCommId].getTotalSelectorTasks();
+  }
+
 }
@@ -20,6 +20,7 @@ import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.tc.logging.TCLogger;
 import com.tc.logging.TCLogging;
+import com.tc.net.core.PinnableTCConnection;
 import com.tc.net.core.TCConnection;
 import com.tc.net.core.security.TCSecurityManager;
 import com.tc.net.protocol.IllegalReconnectException;
@@ -376,7 +377,12 @@ public class ServerStackProvider implements NetworkStackProvider, MessageTranspo
     }
 
     private void sendSynAck(ConnectionID connectionId, TCConnection source, boolean isMaxConnectionReached) {
-      source.addWeight(MessageTransport.CONNWEIGHT_TX_HANDSHAKED);
+      if (source instanceof PinnableTCConnection) {
+        ((PinnableTCConnection) source).addWeight(MessageTransport.CONNWEIGHT_TX_HANDSHAKED,
+                                                  connectionId.getChannelID());
+      } else {
+        source.addWeight(MessageTransport.CONNWEIGHT_TX_HANDSHAKED);
+      }
       sendSynAck(connectionId, null, source, isMaxConnectionReached);
     }
 
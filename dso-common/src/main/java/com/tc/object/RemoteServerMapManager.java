@@ -27,12 +27,20 @@ import com.tc.text.PrettyPrintable;
 import java.util.Collection;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Future;
 
 public interface RemoteServerMapManager extends ClientHandshakeCallback,
     InvalidationsProcessor, PrettyPrintable {
 
   public Object getMappingForKey(ObjectID mapID, Object portableKey) throws AbortedOperationException;
 
+  /**
+   * Sends the lookup without waiting for the response. Failures of the lookup, including
+   * {@link AbortedOperationException}, are reported by the returned future wrapped in an
+   * {@link java.util.concurrent.ExecutionException}.
+   */
+  public Future<Object> getMappingForKeyAsync(ObjectID mapID, Object portableKey) throws AbortedOperationException;
+
   public Set getAllKeys(ObjectID mapID) throws AbortedOperationException;
 
   public long getAllSize(ObjectID[] mapIDs) throws AbortedOperationException;
@@ -40,6 +48,12 @@ public interface RemoteServerMapManager extends ClientHandshakeCallback,
   public void getMappingForAllKeys(final Map<ObjectID, Set<Object>> mapIdToKeysMap, final Map<Object, Object> rv)
       throws AbortedOperationException;
 
+  /**
+   * Async version of {@link #getMappingForAllKeys(Map, Map)}, the future returns the mappings for all the keys.
+   */
+  public Future<Map<Object, Object>> getMappingForAllKeysAsync(final Map<ObjectID, Set<Object>> mapIdToKeysMap)
+      throws AbortedOperationException;
+
   public void addResponseForKeyValueMapping(SessionID localSessionID, ObjectID mapID,
                                             Collection<ServerMapGetValueResponse> responses, NodeID nodeID);
 
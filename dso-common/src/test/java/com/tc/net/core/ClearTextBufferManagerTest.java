@@ -0,0 +1,72 @@
+/* 
+ * The contents of this file are subject to the Terracotta Public License Version
+ * 2.0 (the "License"); You may not use this file except in compliance with the
+ * License. You may obtain a copy of the License at 
+ *
+ *      http://terracotta.org/legal/terracotta-public-license.
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ * the specific language governing rights and limitations under the License.
+ *
+ * The Covered Software is Terracotta Platform.
+ *
+ * The Initial Developer of the Covered Software is 
+ *      Terracotta, Inc., a Software AG company
+ */
+package com.tc.net.core;
+
+import com.tc.test.TCTestCase;
+
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+
+public class ClearTextBufferManagerTest extends TCTestCase {
+
+  private ServerSocketChannel server;
+  private SocketChannel       sender;
+  private SocketChannel       receiver;
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    server = ServerSocketChannel.open();
+    server.socket().bind(new InetSocketAddress("127.0.0.1", 0));
+    sender = SocketChannel.open(new InetSocketAddress("127.0.0.1", server.socket().getLocalPort()));
+    receiver = server.accept();
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    sender.close();
+    receiver.close();
+    server.close();
+    super.tearDown();
+  }
+
+  public void testStagedBytesGoOutBeforeGatheredBuffers() throws Exception {
+    ClearTextBufferManager manager = new ClearTextBufferManager(sender);
+    assertEquals(3, manager.forwardToWriteBuffer(ByteBuffer.wrap(new byte[] { 1, 2, 3 })));
+
+    ByteBuffer heap = ByteBuffer.wrap(new byte[] { 4, 5 });
+    ByteBuffer direct = ByteBuffer.allocateDirect(3);
+    direct.put(new byte[] { 6, 7, 8 }).flip();
+    ByteBuffer[] buffers = new ByteBuffer[] { ByteBuffer.allocate(0), heap, direct };
+
+    long written = 0;
+    while (heap.hasRemaining() || direct.hasRemaining()) {
+      written += manager.sendFromBuffers(buffers, 1, 2);
+    }
+    assertEquals(8, written);
+
+    ByteBuffer received = ByteBuffer.allocate(8);
+    while (received.hasRemaining()) {
+      receiver.read(received);
+    }
+    for (int i = 0; i < 8; i++) {
+      assertEquals(i + 1, received.get(i));
+    }
+  }
+}
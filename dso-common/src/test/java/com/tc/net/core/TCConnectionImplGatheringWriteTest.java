@@ -0,0 +1,276 @@
+/*
+ * The contents of this file are subject to the Terracotta Public License Version
+ * 2.0 (the "License"); You may not use this file except in compliance with the
+ * License. You may obtain a copy of the License at
+ *
+ *      http://terracotta.org/legal/terracotta-public-license.
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ * the specific language governing rights and limitations under the License.
+ *
+ * The Covered Software is Terracotta Platform.
+ *
+ * The Initial Developer of the Covered Software is
+ *      Terracotta, Inc., a Software AG company
+ */
+package com.tc.net.core;
+
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import com.tc.bytes.TCByteBuffer;
+import com.tc.bytes.TCByteBufferFactory;
+import com.tc.net.core.security.TCSecurityManager;
+import com.tc.net.protocol.TCNetworkMessage;
+import com.tc.net.protocol.TCProtocolAdaptor;
+import com.tc.test.TCTestCase;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.channels.ScatteringByteChannel;
+import java.nio.channels.SelectableChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Drives the gathering write path of {@link TCConnectionImpl} over a socket that only takes part of what it is given.
+ */
+public class TCConnectionImplGatheringWriteTest extends TCTestCase {
+
+  // the bounds of a single gathering write in TCConnectionImpl
+  private static final int        GATHER_MAX_BUFFERS = 256;
+  private static final int        GATHER_MAX_BYTES   = 256 * 1024;
+
+  private SocketChannel           channel;
+  private CoreNIOServices         commWorker;
+  private ShortWriteBufferManager socket;
+  private TCConnectionImpl        connection;
+  private final List<Integer>     sentAt             = new ArrayList<Integer>();
+  private int                     nextByte;
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    channel = SocketChannel.open();
+    commWorker = mock(CoreNIOServices.class);
+    socket = new ShortWriteBufferManager();
+    TCSecurityManager securityManager = mock(TCSecurityManager.class);
+    when(securityManager.getBufferManagerFactory()).thenReturn(new BufferManagerFactory() {
+      @Override
+      public BufferManager createBufferManager(SocketChannel socketChannel, boolean client) {
+        return socket;
+      }
+    });
+    connection = new TCConnectionImpl(null, mock(TCProtocolAdaptor.class), channel,
+                                      mock(TCConnectionManagerImpl.class), commWorker, new SocketParams(),
+                                      securityManager);
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    channel.close();
+    super.tearDown();
+  }
+
+  public void testShortWritesResumeMidBuffer() throws Exception {
+    // a large heap buffer is sliced into bounded writes
+    TCNetworkMessage first = message(100, 5000, 10);
+    TCNetworkMessage second = message(300 * 1024);
+    connection.putMessage(first);
+    connection.putMessage(second);
+
+    socket.maxPerWrite = 777;
+    int writes = 0;
+    long written = 0;
+    while (sentAt.size() < 2) {
+      assertTrue("no progress after " + writes + " writes", ++writes < 1000);
+      verify(commWorker, never()).removeWriteInterest(any(TCConnectionImpl.class), any(SelectableChannel.class));
+      written += connection.doWrite();
+    }
+    // a write stops at the first short write to the socket
+    assertEquals(writes, socket.offeredBytes.size());
+    verify(commWorker).removeWriteInterest(connection, channel);
+
+    int total = 100 + 5000 + 10 + 300 * 1024;
+    assertEquals(total, written);
+    assertReceivedInOrder(total);
+    // each message is released once, as soon as its last byte is out
+    verify(first, times(1)).wasSent();
+    verify(second, times(1)).wasSent();
+    assertTrue(sentAt.get(0) >= 5110 && sentAt.get(0) < 5110 + socket.maxPerWrite);
+    assertEquals(total, sentAt.get(1).intValue());
+    socket.assertBounded();
+  }
+
+  public void testFullWritesDrainEverythingInOneCall() throws Exception {
+    List<TCNetworkMessage> messages = new ArrayList<TCNetworkMessage>();
+    int total = 0;
+    for (int i = 0; i < 300; i++) {
+      messages.add(message(16, 48));
+      connection.putMessage(messages.get(i));
+      total += 64;
+    }
+
+    socket.maxPerWrite = Integer.MAX_VALUE;
+    assertEquals(total, connection.doWrite());
+    assertReceivedInOrder(total);
+    for (TCNetworkMessage message : messages) {
+      verify(message).wasSent();
+    }
+    assertTrue(socket.offeredBytes.size() > 1);
+    socket.assertBounded();
+    verify(commWorker).removeWriteInterest(connection, channel);
+  }
+
+  public void testFullSocketKeepsWriteInterest() throws Exception {
+    TCNetworkMessage message = message(10, 20);
+    connection.putMessage(message);
+
+    socket.maxPerWrite = 0;
+    assertEquals(0, connection.doWrite());
+    verify(message, never()).wasSent();
+    verify(commWorker, never()).removeWriteInterest(any(TCConnectionImpl.class), any(SelectableChannel.class));
+
+    socket.maxPerWrite = 15;
+    assertEquals(15, connection.doWrite());
+    verify(message, never()).wasSent();
+    assertEquals(15, connection.doWrite());
+    verify(message).wasSent();
+    assertReceivedInOrder(30);
+    verify(commWorker).removeWriteInterest(connection, channel);
+  }
+
+  /**
+   * A message made of heap buffers of the given sizes, filled with the next bytes of a running sequence.
+   */
+  private TCNetworkMessage message(int... sizes) {
+    final TCByteBuffer[] data = new TCByteBuffer[sizes.length];
+    int total = 0;
+    for (int i = 0; i < sizes.length; i++) {
+      byte[] bytes = new byte[sizes[i]];
+      for (int j = 0; j < bytes.length; j++) {
+        bytes[j] = (byte) nextByte++;
+      }
+      data[i] = TCByteBufferFactory.wrap(bytes);
+      total += bytes.length;
+    }
+    TCNetworkMessage message = mock(TCNetworkMessage.class);
+    when(message.getEntireMessageData()).thenReturn(data);
+    when(message.getTotalLength()).thenReturn(total);
+    doAnswer(new Answer<Object>() {
+      @Override
+      public Object answer(InvocationOnMock invocation) {
+        sentAt.add(socket.received.size());
+        return null;
+      }
+    }).when(message).wasSent();
+    return message;
+  }
+
+  private void assertReceivedInOrder(int total) {
+    byte[] received = socket.received.toByteArray();
+    assertEquals(total, received.length);
+    for (int i = 0; i < received.length; i++) {
+      assertEquals("byte " + i, (byte) i, received[i]);
+    }
+  }
+
+  /**
+   * Takes at most maxPerWrite bytes from each gathering write, the staged path is not expected to be used.
+   */
+  private static final class ShortWriteBufferManager implements BufferManager, GatheringBufferManager {
+    private final ByteArrayOutputStream received       = new ByteArrayOutputStream();
+    private final List<Integer>         offeredBytes   = new ArrayList<Integer>();
+    private final List<Integer>         offeredBuffers = new ArrayList<Integer>();
+    // bytes offered before the last buffer of each write, and whether that one was a heap buffer
+    private final List<Integer>         offeredBefore  = new ArrayList<Integer>();
+    private final List<Boolean>         lastOnHeap     = new ArrayList<Boolean>();
+    private int                         maxPerWrite;
+
+    @Override
+    public long sendFromBuffers(ByteBuffer[] srcs, int offset, int length) {
+      int offered = 0;
+      for (int i = offset; i < offset + length; i++) {
+        if (i == offset + length - 1) {
+          offeredBefore.add(offered);
+          lastOnHeap.add(!srcs[i].isDirect());
+        }
+        offered += srcs[i].remaining();
+      }
+      offeredBytes.add(offered);
+      offeredBuffers.add(length);
+
+      int budget = maxPerWrite;
+      long written = 0;
+      for (int i = offset; i < offset + length && budget > 0; i++) {
+        byte[] bytes = new byte[Math.min(budget, srcs[i].remaining())];
+        srcs[i].get(bytes);
+        received.write(bytes, 0, bytes.length);
+        budget -= bytes.length;
+        written += bytes.length;
+      }
+      return written;
+    }
+
+    /**
+     * A write gathers buffers until it reaches the byte bound, heap buffers are sliced so that they don't go over it.
+     * Direct ones, as made when messages are packed up, are taken whole.
+     */
+    void assertBounded() {
+      for (int i = 0; i < offeredBytes.size(); i++) {
+        assertTrue(offeredBuffers.get(i) + " buffers offered at once", offeredBuffers.get(i) <= GATHER_MAX_BUFFERS);
+        assertTrue(offeredBefore.get(i) + " bytes offered at once", offeredBefore.get(i) < GATHER_MAX_BYTES);
+        if (lastOnHeap.get(i)) {
+          assertTrue(offeredBytes.get(i) + " bytes offered at once", offeredBytes.get(i) <= GATHER_MAX_BYTES);
+        }
+      }
+    }
+
+    @Override
+    public int forwardFromReadBuffer(ByteBuffer dest) {
+      throw new AssertionError();
+    }
+
+    @Override
+    public int forwardToWriteBuffer(ByteBuffer src) {
+      throw new AssertionError();
+    }
+
+    @Override
+    public int sendFromBuffer() {
+      throw new AssertionError();
+    }
+
+    @Override
+    public int recvToBuffer() {
+      throw new AssertionError();
+    }
+
+    @Override
+    public void close() {
+      //
+    }
+
+    @Override
+    public int forwardFromReadBuffer(GatheringByteChannel gbc) throws IOException {
+      throw new AssertionError();
+    }
+
+    @Override
+    public int forwardToWriteBuffer(ScatteringByteChannel sbc) throws IOException {
+      throw new AssertionError();
+    }
+  }
+}
@@ -49,6 +49,7 @@ import com.tc.net.protocol.transport.WireProtocolAdaptorFactoryImpl;
 import com.tc.net.proxy.TCPProxy;
 import com.tc.object.session.NullSessionManager;
 import com.tc.properties.L1ReconnectConfigImpl;
+import com.tc.properties.TCPropertiesConsts;
 import com.tc.properties.TCPropertiesImpl;
 import com.tc.test.TCTestCase;
 import com.tc.util.Assert;
@@ -143,6 +144,61 @@ public class TCWorkerCommManagerTest extends TCTestCase {
     listener.stop(5000);
   }
 
+  public void testReactorCommThread() throws Exception {
+    TCPropertiesImpl.getProperties().setProperty(TCPropertiesConsts.NET_CORE_REACTOR_ENABLED, "true");
+    try {
+      CommunicationsManager commsMgr = new CommunicationsManagerImpl("Server-TestCommsMgr", new NullMessageMonitor(),
+                                                                     new TransportNetworkStackHarnessFactory(),
+                                                                     new NullConnectionPolicy(), 2);
+      NetworkListener listener = commsMgr.createListener(new NullSessionManager(), new TCSocketAddress(0), true,
+                                                         new DefaultConnectionIdFactory());
+      listener.start(Collections.EMPTY_SET);
+      int port = listener.getBindPort();
+
+      ClientMessageTransport client1 = createClient("client1", port);
+      ClientMessageTransport client2 = createClient("client2", port);
+      ClientMessageTransport client3 = createClient("client3", port);
+      ClientMessageTransport client4 = createClient("client4", port);
+
+      client1.open();
+      client2.open();
+      client3.open();
+      client4.open();
+
+      waitForConnected(client1, client2, client3, client4);
+      waitForTotalWeights(commsMgr, 2, 4);
+
+      for (int i = 0; i < 2; i++) {
+        CoreNIOServices workerI = ((TCCommImpl) commsMgr.getConnectionManager().getTcComm()).getWorkerComm(i);
+        Assert.eval(workerI.isReactor());
+        assertSame(workerI.getReaderComm(), workerI.getWriterComm());
+        if (workerI.getWeight() > 0) {
+          waitForRead(workerI);
+          waitForWritten(workerI);
+          Assert.eval(workerI.getTotalSelectorTasks() > 0);
+        }
+      }
+
+      listener.stop(5000);
+    } finally {
+      TCPropertiesImpl.getProperties().setProperty(TCPropertiesConsts.NET_CORE_REACTOR_ENABLED, "false");
+    }
+  }
+
+  public void testReactorAffinity() throws Exception {
+    TCWorkerCommManager reactors = new TCWorkerCommManager("reactors", 3, new SocketParams(), true);
+    assertSame(reactors.getWorkerComm(0), reactors.getWorkerCommFor(3));
+    assertSame(reactors.getWorkerComm(1), reactors.getWorkerCommFor(7));
+    assertSame(reactors.getWorkerComm(2), reactors.getWorkerCommFor(2));
+    assertNotNull(reactors.getWorkerCommFor(TCWorkerCommManager.NO_AFFINITY));
+
+    // without reactors connections are balanced by weight only
+    TCWorkerCommManager workers = new TCWorkerCommManager("workers", 3, new SocketParams(), false);
+    Assert.eval(!workers.getWorkerComm(0).isReactor());
+    assertNotSame(workers.getWorkerComm(0).getReaderComm(), workers.getWorkerComm(0).getWriterComm());
+    assertNotNull(workers.getWorkerCommFor(7));
+  }
+
   public void testWorkerCommDistributionAfterClose() throws Exception {
     // comms manager with 3 worker comms
     CommunicationsManager commsMgr = new CommunicationsManagerImpl("Server-TestCommsMgr", new NullMessageMonitor(),
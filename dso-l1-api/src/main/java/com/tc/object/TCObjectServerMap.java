@@ -26,6 +26,7 @@ import com.tc.server.ServerEventType;
 
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Future;
 
 public interface TCObjectServerMap<L> extends TCObject {
 
@@ -195,6 +196,21 @@ public interface TCObjectServerMap<L> extends TCObject {
   Map<Object, Object> getAllValuesUnlocked(final SetMultimap<ObjectID, Object> mapIdToKeysMap)
       throws AbortedOperationException;
 
+  /**
+   * Async version of {@link #getValueUnlocked(TCServerMap, Object)}. A local cache miss sends the request right away,
+   * the value is resolved and put in the local cache by the thread reading the future.
+   * 
+   * @return future of the value, failures are reported wrapped in an {@link java.util.concurrent.ExecutionException}
+   * @throws AbortedOperationException
+   */
+  Future<Object> getValueUnlockedAsync(final TCServerMap map, final Object key) throws AbortedOperationException;
+
+  /**
+   * Async version of {@link #getAllValuesUnlocked(SetMultimap)}, see {@link #getValueUnlockedAsync(TCServerMap, Object)}
+   */
+  Future<Map<Object, Object>> getAllValuesUnlockedAsync(final SetMultimap<ObjectID, Object> mapIdToKeysMap)
+      throws AbortedOperationException;
+
   Map<Object, VersionedObject> getAllVersioned(final SetMultimap<ObjectID, Object> mapIdToKeysMap) throws AbortedOperationException;
 
   /**
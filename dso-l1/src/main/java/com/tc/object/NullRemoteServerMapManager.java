@@ -22,10 +22,13 @@ import com.tc.net.NodeID;
 import com.tc.object.msg.ClientHandshakeMessage;
 import com.tc.object.session.SessionID;
 import com.tc.text.PrettyPrinter;
+import com.tc.util.concurrent.CompletedFuture;
 
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Future;
 
 public final class NullRemoteServerMapManager implements RemoteServerMapManager {
 
@@ -69,6 +72,11 @@ public final class NullRemoteServerMapManager implements RemoteServerMapManager
     return null;
   }
 
+  @Override
+  public Future<Object> getMappingForKeyAsync(final ObjectID oid, final Object portableKey) {
+    return new CompletedFuture<Object>(null);
+  }
+
   @Override
   public Set getAllKeys(ObjectID oid) {
     //
@@ -113,6 +121,11 @@ public final class NullRemoteServerMapManager implements RemoteServerMapManager
     //
   }
 
+  @Override
+  public Future<Map<Object, Object>> getMappingForAllKeysAsync(final Map<ObjectID, Set<Object>> mapIdToKeysMap) {
+    return new CompletedFuture<Map<Object, Object>>(Collections.<Object, Object> emptyMap());
+  }
+
   @Override
   public PrettyPrinter prettyPrint(PrettyPrinter out) {
     return out;
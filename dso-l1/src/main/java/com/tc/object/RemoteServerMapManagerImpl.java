@@ -45,17 +45,34 @@ import com.tc.util.ObjectIDSet;
 import com.tc.util.Util;
 import com.tc.util.concurrent.TaskRunner;
 import com.tc.util.concurrent.Timer;
+import com.tc.util.concurrent.TransformedFuture;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
-
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Requests are kept in a concurrent table keyed by {@link ServerMapRequestID} and every request context is its own
+ * completion handle: a response only wakes up the threads waiting for that request. The manager monitor is only used
+ * for state changes (pause, unpause, rejoin, shutdown) and for waiting while the manager is not running. A read write
+ * lock keeps requests from being registered and sent while the state changes.
+ */
 public class RemoteServerMapManagerImpl implements RemoteServerMapManager {
 
   // TODO::Make its own property
@@ -66,6 +83,7 @@ public class RemoteServerMapManagerImpl implements RemoteServerMapManager {
                                                                                                                        .getProperties()
                                                                                                                        .getInt(TCPropertiesConsts.L1_SERVERMAPMANAGER_REMOTE_BATCH_LOOKUP_TIME_PERIOD);
   private static final long                                              RESULT_WAIT_MAXTIME_MILLIS                = 30 * 1000;
+  private static final long                                              NO_TIMEOUT                                = -1;
 
   private static final String                                            SIZE_KEY                                  = "SIZE_KEY";
   private static final String                                            ALL_KEYS                                  = "ALL-KEYS";
@@ -75,13 +93,14 @@ public class RemoteServerMapManagerImpl implements RemoteServerMapManager {
   private final TCLogger                                                 logger;
   private final SessionManager                                           sessionManager;
   private final RemoteObjectManager                                      remoteObjectManager;
-  private final Map<ServerMapRequestID, AbstractServerMapRequestContext> outstandingRequests                       = new HashMap<ServerMapRequestID, AbstractServerMapRequestContext>();
+  private final Map<ServerMapRequestID, AbstractServerMapRequestContext> outstandingRequests                       = new ConcurrentHashMap<ServerMapRequestID, AbstractServerMapRequestContext>();
+  private final ReadWriteLock                                            stateLock                                 = new ReentrantReadWriteLock();
   private final TaskRunner                                               taskRunner;
   private final AbortableOperationManager                                abortableOperationManager;
 
   private volatile State                                                 state                                     = State.RUNNING;
-  private long                                                           requestIDCounter                          = 0;
-  private boolean                                                        pendingSendTaskScheduled                  = false;
+  private final AtomicLong                                               requestIDCounter                          = new AtomicLong();
+  private final AtomicBoolean                                            pendingSendTaskScheduled                  = new AtomicBoolean();
 
   // private final Sink ttiTTLEvitionSink;
   private final L1ServerMapLocalCacheManager                             globalLocalCacheManager;
@@ -112,9 +131,18 @@ public class RemoteServerMapManagerImpl implements RemoteServerMapManager {
 
   @Override
   public synchronized void cleanup() {
-    checkAndSetstate();
-    outstandingRequests.clear();
-    pendingSendTaskScheduled = false;
+    stateLock.writeLock().lock();
+    try {
+      checkAndSetstate();
+      // Nobody is going to answer these anymore, fail them so that their waiters don't wait forever once running again
+      for (final AbstractServerMapRequestContext context : outstandingRequests.values()) {
+        context.makeRejoined();
+      }
+      outstandingRequests.clear();
+      pendingSendTaskScheduled.set(false);
+    } finally {
+      stateLock.writeLock().unlock();
+    }
     globalLocalCacheManager.cleanup();
     reInvalidateHandler.shutdown();
     reInvalidateHandler = new ReInvalidateHandler(globalLocalCacheManager, taskRunner);
@@ -124,7 +152,7 @@ public class RemoteServerMapManagerImpl implements RemoteServerMapManager {
     throwExceptionIfNecessary(true);
     state = State.REJOIN_IN_PROGRESS;
     globalLocalCacheManager.rejoinInProgress(true);
-    notifyAll();
+    wakeUpWaiters();
   }
 
   private void throwExceptionIfNecessary(boolean throwExp) {
@@ -138,57 +166,85 @@ public class RemoteServerMapManagerImpl implements RemoteServerMapManager {
     }
   }
 
+  /**
+   * Wakes up the threads waiting on the manager as well as the ones waiting for a request, the state must have been
+   * changed before calling this.
+   */
+  private synchronized void wakeUpWaiters() {
+    for (final AbstractServerMapRequestContext context : this.outstandingRequests.values()) {
+      context.wakeUp();
+    }
+    notifyAll();
+  }
+
   /**
    * TODO: Maybe change to getValue()
    * 
    * @throws AbortedOperationException
    */
   @Override
-  public synchronized Object getMappingForKey(final ObjectID oid, final Object portableKey)
+  public Object getMappingForKey(final ObjectID oid, final Object portableKey) throws AbortedOperationException {
+    final AbstractServerMapRequestContext context = sendLookupValueRequest(oid, portableKey);
+    Map<Object, Object> result = waitForResult(context, Collections.singleton(context), NO_TIMEOUT);
+    return result.get(portableKey);
+  }
+
+  @Override
+  public Future<Object> getMappingForKeyAsync(final ObjectID oid, final Object portableKey)
       throws AbortedOperationException {
-    assertSameGroupID(oid);
-    waitUntilRunningAbortable();
+    final AbstractServerMapRequestContext context = sendLookupValueRequest(oid, portableKey);
+    return new TransformedFuture<Map<Object, Object>, Object>(new RequestFuture(Collections.singleton(context))) {
+      @Override
+      protected Object transform(Map<Object, Object> result) {
+        return result.get(portableKey);
+      }
+    };
+  }
 
+  private AbstractServerMapRequestContext sendLookupValueRequest(final ObjectID oid, final Object portableKey)
+      throws AbortedOperationException {
+    assertSameGroupID(oid);
     final AbstractServerMapRequestContext context = createLookupValueRequestContext(oid,
                                                                                     Collections.singleton(portableKey));
-    context.makeLookupRequest();
-    sendRequest(context);
-    Map<Object, Object> result = waitForResult(context);
-    return result.get(portableKey);
+    sendRequests(Collections.singleton(context), true);
+    return context;
+  }
+
+  @Override
+  public void getMappingForAllKeys(final Map<ObjectID, Set<Object>> mapIdToKeysMap, Map<Object, Object> rv)
+      throws AbortedOperationException {
+    Collection<AbstractServerMapRequestContext> contextsToWaitFor = sendRequestForAllKeys(mapIdToKeysMap);
+    waitForResults(contextsToWaitFor, rv, NO_TIMEOUT);
   }
 
   @Override
-  public synchronized void getMappingForAllKeys(final Map<ObjectID, Set<Object>> mapIdToKeysMap, Map<Object, Object> rv)
+  public Future<Map<Object, Object>> getMappingForAllKeysAsync(final Map<ObjectID, Set<Object>> mapIdToKeysMap)
       throws AbortedOperationException {
-    Set<AbstractServerMapRequestContext> contextsToWaitFor = sendRequestForAllKeys(mapIdToKeysMap);
-    waitForResults(contextsToWaitFor, rv);
+    return new RequestFuture(sendRequestForAllKeys(mapIdToKeysMap));
   }
 
-  protected synchronized Set<AbstractServerMapRequestContext> sendRequestForAllKeys(final Map<ObjectID, Set<Object>> mapIdToKeysMap)
+  protected Collection<AbstractServerMapRequestContext> sendRequestForAllKeys(final Map<ObjectID, Set<Object>> mapIdToKeysMap)
       throws AbortedOperationException {
-    Set<AbstractServerMapRequestContext> contextsToWaitFor = new HashSet<AbstractServerMapRequestContext>();
-    waitUntilRunningAbortable();
+    List<AbstractServerMapRequestContext> contexts = new ArrayList<AbstractServerMapRequestContext>(
+                                                                                                    mapIdToKeysMap
+                                                                                                        .size());
     for (Entry<ObjectID, Set<Object>> entry : mapIdToKeysMap.entrySet()) {
       ObjectID mapId = entry.getKey();
-      Set<Object> keys = entry.getValue();
       assertSameGroupID(mapId);
-      final AbstractServerMapRequestContext context = createLookupValueRequestContext(mapId, keys);
-      context.makeLookupRequest();
-      contextsToWaitFor.add(context);
-      sendRequest(context);
+      // the keys are copied as callers may keep changing their set while the request is outstanding
+      contexts.add(createLookupValueRequestContext(mapId, new HashSet<Object>(entry.getValue())));
     }
-    return contextsToWaitFor;
+    sendRequests(contexts, true);
+    return contexts;
   }
 
   @Override
-  public synchronized Set getAllKeys(ObjectID mapID) throws AbortedOperationException {
+  public Set getAllKeys(ObjectID mapID) throws AbortedOperationException {
     assertSameGroupID(mapID);
-    waitUntilRunningAbortable();
 
     final AbstractServerMapRequestContext context = createGetAllKeysRequestContext(mapID);
-    context.makeLookupRequest();
-    sendRequestNow(context);
-    Map<Object, Object> result = waitForResult(context);
+    sendRequests(Collections.singleton(context), false);
+    Map<Object, Object> result = waitForResult(context, Collections.singleton(context), NO_TIMEOUT);
     Assert.assertTrue(result.containsKey(ALL_KEYS));
     return (Set) result.get(ALL_KEYS);
   }
@@ -200,46 +256,51 @@ public class RemoteServerMapManagerImpl implements RemoteServerMapManager {
   }
 
   @Override
-  public synchronized long getAllSize(final ObjectID[] mapIDs) throws AbortedOperationException {
+  public long getAllSize(final ObjectID[] mapIDs) throws AbortedOperationException {
     for (ObjectID mapId : mapIDs) {
       assertSameGroupID(mapId);
     }
-    waitUntilRunningAbortable();
 
     final AbstractServerMapRequestContext context = createGetAllSizeRequestContext(mapIDs);
-    context.makeLookupRequest();
-    sendRequestNow(context);
-    Map<Object, Object> result = waitForResult(context);
+    sendRequests(Collections.singleton(context), false);
+    Map<Object, Object> result = waitForResult(context, Collections.singleton(context), NO_TIMEOUT);
     Assert.assertTrue(result.containsKey(SIZE_KEY));
     return (Long) result.get(SIZE_KEY);
   }
 
   /**
    * Waits in quantums of {@link #RESULT_WAIT_MAXTIME_MILLIS} until result corresponding to context is available from
-   * the server.
+   * the server. Only the thread(s) waiting on this context are woken up when the response arrives.
+   * 
+   * @param contextsToAbandon the requests to drop if the operation gets aborted while waiting
+   * @param deadline the {@link System#nanoTime()} to give up at, or {@link #NO_TIMEOUT}
+   * @return the result, or null if the deadline passed first
    */
-  private Map<Object, Object> waitForResult(final AbstractServerMapRequestContext context)
-      throws AbortedOperationException {
+  private Map<Object, Object> waitForResult(final AbstractServerMapRequestContext context,
+                                            final Collection<AbstractServerMapRequestContext> contextsToAbandon,
+                                            final long deadline) throws AbortedOperationException {
     boolean isInterrupted = false;
     try {
       while (true) {
         if (isStopped()) { throw new TCNotRunningException(); }
-        if (isRejoinInProgress()) { throw new PlatformRejoinException(); }
+        if (isRejoinInProgress() || context.isRejoined()) { throw new PlatformRejoinException(); }
+        if (context.isAbandoned()) { throw new CancellationException(); }
+        if (context.isMissing()) { throw new TCObjectNotFoundException(context.getMapID().toString()); }
+        Map<Object, Object> result = context.getResult();
+        if (result != null) { return result; }
+
+        long waitMillis = RESULT_WAIT_MAXTIME_MILLIS;
+        if (deadline != NO_TIMEOUT) {
+          long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+          if (remaining <= 0) { return null; }
+          waitMillis = Math.min(waitMillis, remaining);
+        }
         try {
-          wait(RESULT_WAIT_MAXTIME_MILLIS);
+          awaitCompletion(context, waitMillis);
         } catch (final InterruptedException e) {
-          checkIfAbortedAndRemoveContexts(context);
+          checkIfAbortedAndRemoveContexts(contextsToAbandon);
           isInterrupted = true;
         }
-        if (context.isMissing()) {
-          removeRequestContext(context);
-          throw new TCObjectNotFoundException(context.getMapID().toString());
-        }
-        Map<Object, Object> result = context.getResult();
-        if (result != null) {
-          removeRequestContext(context);
-          return result;
-        }
       }
     } finally {
       Util.selfInterruptIfNeeded(isInterrupted);
@@ -247,46 +308,61 @@ public class RemoteServerMapManagerImpl implements RemoteServerMapManager {
   }
 
   /**
-   * Waits in quantums of {@link #RESULT_WAIT_MAXTIME_MILLIS} until results corresponding to contextsToWaitFor are
-   * available from the server.
+   * The state is checked while holding the context monitor, state changes happen before {@link #wakeUpWaiters()} so a
+   * wake up can't be missed.
    */
-  protected synchronized void waitForResults(Set<AbstractServerMapRequestContext> contextsToWaitFor,
-                                             Map<Object, Object> rv) throws AbortedOperationException {
-    boolean isInterrupted = false;
-    try {
-      while (!allRequestsDone(contextsToWaitFor, rv)) {
-        if (isStopped()) { throw new TCNotRunningException(); }
-        if (isRejoinInProgress()) { throw new PlatformRejoinException(); }
-        try {
-          wait(RESULT_WAIT_MAXTIME_MILLIS);
-        } catch (final InterruptedException e) {
-          checkIfAbortedAndRemoveContexts(contextsToWaitFor);
-          isInterrupted = true;
-        }
+  private void awaitCompletion(final AbstractServerMapRequestContext context, final long millis)
+      throws InterruptedException {
+    synchronized (context) {
+      if (!context.isDone() && !isStopped() && !isRejoinInProgress()) {
+        context.wait(millis);
       }
-    } finally {
-      Util.selfInterruptIfNeeded(isInterrupted);
     }
   }
 
-  private boolean allRequestsDone(Set<AbstractServerMapRequestContext> contextsToWaitFor, Map<Object, Object> rv) {
-    for (Iterator<AbstractServerMapRequestContext> iterator = contextsToWaitFor.iterator(); iterator.hasNext();) {
-      AbstractServerMapRequestContext context = iterator.next();
-      if (context.isMissing()) {
-        removeRequestContext(context);
-        iterator.remove();
-        throw new TCObjectNotFoundException(context.getMapID().toString());
+  /**
+   * Waits until results corresponding to contextsToWaitFor are available from the server, one request at a time.
+   * 
+   * @return false if the deadline passed before all the results came in
+   */
+  protected boolean waitForResults(Collection<AbstractServerMapRequestContext> contextsToWaitFor,
+                                   Map<Object, Object> rv, final long deadline) throws AbortedOperationException {
+    for (AbstractServerMapRequestContext context : contextsToWaitFor) {
+      Map<Object, Object> result = waitForResult(context, contextsToWaitFor, deadline);
+      if (result == null) { return false; }
+      synchronized (rv) {
+        rv.putAll(result);
       }
-      Map<Object, Object> result = context.getResult();
-      if (result != null) {
-        removeRequestContext(context);
-        iterator.remove();
-        synchronized (rv) {
-          rv.putAll(result);
+    }
+    return true;
+  }
+
+  /**
+   * Registers the contexts and sends them, waiting for the manager to be running first. Registering and sending
+   * happens under the read side of the state lock so a pause or a rejoin can't happen in between.
+   */
+  private void sendRequests(final Collection<AbstractServerMapRequestContext> contexts, final boolean batch)
+      throws AbortedOperationException {
+    while (true) {
+      waitUntilRunningAbortable();
+      stateLock.readLock().lock();
+      try {
+        if (this.state == State.RUNNING) {
+          for (AbstractServerMapRequestContext context : contexts) {
+            context.makeLookupRequest();
+            this.outstandingRequests.put(context.getRequestID(), context);
+            if (batch) {
+              sendRequest(context);
+            } else {
+              sendRequestNow(context);
+            }
+          }
+          return;
         }
+      } finally {
+        stateLock.readLock().unlock();
       }
     }
-    return contextsToWaitFor.isEmpty();
   }
 
   private void sendRequest(final AbstractServerMapRequestContext context) {
@@ -302,10 +378,10 @@ public class RemoteServerMapManagerImpl implements RemoteServerMapManager {
   }
 
   private void scheduleRequestForLater(final AbstractServerMapRequestContext context) {
+    // the context has to be pending before the flag is checked, the task clears the flag before collecting
     context.makePending();
-    if (!pendingSendTaskScheduled) {
+    if (pendingSendTaskScheduled.compareAndSet(false, true)) {
       requestsTimer.schedule(new SendPendingRequestsTask(), BATCH_LOOKUP_TIME_PERIOD, TimeUnit.MILLISECONDS);
-      pendingSendTaskScheduled = true;
     }
   }
 
@@ -328,7 +404,7 @@ public class RemoteServerMapManagerImpl implements RemoteServerMapManager {
    */
   public synchronized void sendPendingRequests() {
     waitUntilRunning();
-    this.pendingSendTaskScheduled = false;
+    this.pendingSendTaskScheduled.set(false);
     final ServerMapRequestMessage msg = this.smmFactory
         .newServerMapRequestMessage(this.groupID, ServerMapRequestType.GET_VALUE_FOR_KEY);
     initializeMessageWithPendingRequests(msg);
@@ -339,14 +415,16 @@ public class RemoteServerMapManagerImpl implements RemoteServerMapManager {
 
   private void initializeMessageWithPendingRequests(final ServerMapRequestMessage msg) {
     for (final AbstractServerMapRequestContext context : this.outstandingRequests.values()) {
-      if (context.isPending()) {
-        if (context.getRequestType() != ServerMapRequestType.GET_VALUE_FOR_KEY) {
-          // Only GET_VALUE_FOR_KEY Requests are batched here
-          throw new AssertionError(context.getRequestType()
-                                   + " requests are not batched so it should never be pending : " + context);
+      synchronized (context) {
+        if (context.isPending()) {
+          if (context.getRequestType() != ServerMapRequestType.GET_VALUE_FOR_KEY) {
+            // Only GET_VALUE_FOR_KEY Requests are batched here
+            throw new AssertionError(context.getRequestType()
+                                     + " requests are not batched so it should never be pending : " + context);
+          }
+          context.makeUnPending();
+          context.initializeMessage(msg);
         }
-        context.makeUnPending();
-        context.initializeMessage(msg);
       }
     }
   }
@@ -359,11 +437,7 @@ public class RemoteServerMapManagerImpl implements RemoteServerMapManager {
   }
 
   private AbstractServerMapRequestContext createGetAllSizeRequestContext(final ObjectID[] maps) {
-    final ServerMapRequestID requestID = getNextRequestID();
-    final GetAllSizeServerMapRequestContext context = new GetAllSizeServerMapRequestContext(requestID, maps,
-                                                                                            this.groupID);
-    this.outstandingRequests.put(requestID, context);
-    return context;
+    return new GetAllSizeServerMapRequestContext(getNextRequestID(), maps, this.groupID);
   }
 
   synchronized void requestOutstanding() {
@@ -373,36 +447,19 @@ public class RemoteServerMapManagerImpl implements RemoteServerMapManager {
     }
   }
 
-  private void removeRequestContext(final AbstractServerMapRequestContext context) {
-    final Object old = this.outstandingRequests.remove(context.getRequestID());
-    if (old != context) { throw new AssertionError("Removed wrong context. context = " + context + " old = " + old); }
-  }
-
   private AbstractServerMapRequestContext createLookupValueRequestContext(final ObjectID oid,
                                                                           final Set<Object> portableKeys) {
-    final ServerMapRequestID requestID = getNextRequestID();
-    final GetValueServerMapRequestContext context = new GetValueServerMapRequestContext(requestID, oid, portableKeys,
-                                                                                        this.groupID);
-    this.outstandingRequests.put(requestID, context);
-    return context;
+    return new GetValueServerMapRequestContext(getNextRequestID(), oid, portableKeys, this.groupID);
   }
 
   private AbstractServerMapRequestContext createGetAllKeysRequestContext(final ObjectID mapID) {
-    final ServerMapRequestID requestID = getNextRequestID();
-    final GetAllKeysServerMapRequestContext context = new GetAllKeysServerMapRequestContext(requestID, mapID,
-                                                                                            this.groupID);
-    this.outstandingRequests.put(requestID, context);
-    return context;
-  }
-
-  private AbstractServerMapRequestContext getRequestContext(final ServerMapRequestID requestID) {
-    return this.outstandingRequests.get(requestID);
+    return new GetAllKeysServerMapRequestContext(getNextRequestID(), mapID, this.groupID);
   }
 
   @Override
-  public synchronized void addResponseForKeyValueMapping(final SessionID sessionID, final ObjectID mapID,
-                                                         final Collection<ServerMapGetValueResponse> responses,
-                                                         final NodeID nodeID) {
+  public void addResponseForKeyValueMapping(final SessionID sessionID, final ObjectID mapID,
+                                            final Collection<ServerMapGetValueResponse> responses,
+                                            final NodeID nodeID) {
     waitUntilRunning();
     if (!this.sessionManager.isCurrentSession(nodeID, sessionID)) {
       this.logger.warn("Ignoring response for ServerMap :  " + mapID + " ,  responses :" + responses.size()
@@ -410,20 +467,18 @@ public class RemoteServerMapManagerImpl implements RemoteServerMapManager {
       return;
     }
     for (final ServerMapGetValueResponse r : responses) {
-      setResultForRequest(sessionID, mapID, r.getRequestID(), r.getValues(), nodeID);
+      // the objects have to be there before the waiting thread wakes up and looks them up
       addResponseToObjectManager(r.getValues());
-      if (getRequestContext(r.getRequestID()) == null) {
+      if (!setResultForRequest(mapID, r.getRequestID(), r.getValues())) {
         // Request was aborted, so we need to clean up.
         cleanupObjectManagerOnAbort(r.getValues());
       }
     }
-    notifyAll();
   }
 
   @Override
-  public synchronized void addResponseForGetAllSize(final SessionID sessionID, final GroupID gID,
-                                                    final ServerMapRequestID requestID, final Long size,
-                                                    final NodeID nodeID) {
+  public void addResponseForGetAllSize(final SessionID sessionID, final GroupID gID,
+                                       final ServerMapRequestID requestID, final Long size, final NodeID nodeID) {
     waitUntilRunning();
     if (!this.sessionManager.isCurrentSession(nodeID, sessionID)) {
       this.logger.warn("Ignoring response for ServerMap :  " + requestID + " , size : " + size
@@ -432,14 +487,12 @@ public class RemoteServerMapManagerImpl implements RemoteServerMapManager {
     }
     Map<Object, Object> sizeMap = new HashMap<Object, Object>();
     sizeMap.put(SIZE_KEY, size);
-    setResultForRequest(sessionID, ObjectID.NULL_ID, requestID, sizeMap, nodeID);
-    notifyAll();
+    setResultForRequest(ObjectID.NULL_ID, requestID, sizeMap);
   }
 
   @Override
-  public synchronized void addResponseForGetAllKeys(final SessionID sessionID, final ObjectID mapID,
-                                                    final ServerMapRequestID requestID, final Set keys,
-                                                    final NodeID nodeID) {
+  public void addResponseForGetAllKeys(final SessionID sessionID, final ObjectID mapID,
+                                       final ServerMapRequestID requestID, final Set keys, final NodeID nodeID) {
     waitUntilRunning();
     if (!this.sessionManager.isCurrentSession(nodeID, sessionID)) {
       this.logger.warn("Ignoring response for ServerMap :  " + mapID + " , " + requestID + " , keys.size : "
@@ -448,36 +501,39 @@ public class RemoteServerMapManagerImpl implements RemoteServerMapManager {
     }
     Map<Object, Object> allKeysMap = new HashMap<Object, Object>();
     allKeysMap.put(ALL_KEYS, keys);
-    setResultForRequest(sessionID, mapID, requestID, allKeysMap, nodeID);
-    notifyAll();
+    setResultForRequest(mapID, requestID, allKeysMap);
   }
 
   @Override
-  public synchronized void objectNotFoundFor(final SessionID sessionID, final ObjectID mapID,
-                                             final ServerMapRequestID requestID, final NodeID nodeID) {
+  public void objectNotFoundFor(final SessionID sessionID, final ObjectID mapID, final ServerMapRequestID requestID,
+                                final NodeID nodeID) {
     waitUntilRunning();
     if (!this.sessionManager.isCurrentSession(nodeID, sessionID)) {
       this.logger.warn("Ignoring Missing Object IDs " + mapID + " from a different session: " + sessionID + ", "
                        + this.sessionManager);
       return;
     }
-    final AbstractServerMapRequestContext context = this.outstandingRequests.get(requestID);
-    context.makeMissingObject();
-    notifyAll();
+    final AbstractServerMapRequestContext context = this.outstandingRequests.remove(requestID);
+    if (context != null) {
+      context.makeMissingObject();
+    }
   }
 
-  private void setResultForRequest(final SessionID sessionID, final ObjectID mapID, final ServerMapRequestID requestID,
-                                   final Map<Object, Object> rv, final NodeID nodeID) {
-    final AbstractServerMapRequestContext context = getRequestContext(requestID);
-    if (context != null) {
-      context.setResult(mapID, rv);
-    } else {
-      if (logger.isDebugEnabled()) {
-        this.logger.debug("Server Map Request Context is null for " + mapID + " request ID : " + requestID
-                          + " result : "
-                       + rv);
-      }
+  /**
+   * Completes the request, a request is done as soon as its response is in so it is removed from the table right
+   * away. Nobody might ever wait for the result of an async request.
+   * 
+   * @return false if there was nobody to take the result anymore
+   */
+  private boolean setResultForRequest(final ObjectID mapID, final ServerMapRequestID requestID,
+                                      final Map<Object, Object> rv) {
+    final AbstractServerMapRequestContext context = this.outstandingRequests.remove(requestID);
+    if (context != null) { return context.setResult(mapID, rv); }
+    if (logger.isDebugEnabled()) {
+      this.logger.debug("Server Map Request Context is null for " + mapID + " request ID : " + requestID
+                        + " result : " + rv);
     }
+    return false;
   }
 
   private void addResponseToObjectManager(final Map<Object, Object> rv) {
@@ -510,16 +566,19 @@ public class RemoteServerMapManagerImpl implements RemoteServerMapManager {
    * To be used by methods which are called by the App thread.
    */
   private void waitUntilRunningAbortable() throws AbortedOperationException {
+    if (this.state == State.RUNNING) { return; }
     boolean isInterrupted = false;
     try {
-      while (this.state != State.RUNNING) {
-        try {
-          if (isStopped()) { throw new TCNotRunningException(); }
-          if (isRejoinInProgress()) { throw new PlatformRejoinException(); }
-          wait();
-        } catch (final InterruptedException e) {
-          AbortedOperationUtil.throwExceptionIfAborted(abortableOperationManager);
-          isInterrupted = true;
+      synchronized (this) {
+        while (this.state != State.RUNNING) {
+          try {
+            if (isStopped()) { throw new TCNotRunningException(); }
+            if (isRejoinInProgress()) { throw new PlatformRejoinException(); }
+            wait();
+          } catch (final InterruptedException e) {
+            AbortedOperationUtil.throwExceptionIfAborted(abortableOperationManager);
+            isInterrupted = true;
+          }
         }
       }
     } finally {
@@ -531,15 +590,18 @@ public class RemoteServerMapManagerImpl implements RemoteServerMapManager {
    * To be used by methods which are directly called by the Stage thread.
    */
   private void waitUntilRunning() {
+    if (this.state == State.RUNNING) { return; }
     boolean isInterrupted = false;
     try {
-      while (this.state != State.RUNNING) {
-        try {
-          if (isStopped()) { throw new TCNotRunningException(); }
-          if (isRejoinInProgress()) { throw new PlatformRejoinException(); }
-          wait();
-        } catch (final InterruptedException e) {
-          isInterrupted = true;
+      synchronized (this) {
+        while (this.state != State.RUNNING) {
+          try {
+            if (isStopped()) { throw new TCNotRunningException(); }
+            if (isRejoinInProgress()) { throw new PlatformRejoinException(); }
+            wait();
+          } catch (final InterruptedException e) {
+            isInterrupted = true;
+          }
         }
       }
     } finally {
@@ -548,34 +610,28 @@ public class RemoteServerMapManagerImpl implements RemoteServerMapManager {
   }
 
   /**
-   * Checks whether the interrupt was due to aborting the operation. Also removes the context from
+   * Checks whether the interrupt was due to aborting the operation. Also removes the contexts from
    * {@link #outstandingRequests}
    * 
    * @throws AbortedOperationException if the interrupt was due to aborting the operation.
    */
-  private void checkIfAbortedAndRemoveContexts(AbstractServerMapRequestContext context)
+  private void checkIfAbortedAndRemoveContexts(Collection<AbstractServerMapRequestContext> contextsToAbandon)
       throws AbortedOperationException {
     if (isAborted()) {
-      removeRequestContext(context);
-      cleanupObjectManagerOnAbort(context.getResult());
+      for (AbstractServerMapRequestContext context : contextsToAbandon) {
+        abandonRequest(context);
+      }
       AbortedOperationUtil.throwExceptionIfAborted(abortableOperationManager);
     }
   }
 
   /**
-   * Checks whether the interrupt was due to aborting the operation. Also removes the context from
-   * {@link #outstandingRequests}
-   * 
-   * @throws AbortedOperationException if the interrupt was due to aborting the operation.
+   * Drops the request. Whoever sees the result last cleans up the objects that came with it: this thread if the
+   * response is already in, the response thread otherwise.
    */
-  private void checkIfAbortedAndRemoveContexts(Set<AbstractServerMapRequestContext> contextsToWaitFor)
-      throws AbortedOperationException {
-    if (isAborted()) {
-      for (AbstractServerMapRequestContext context : contextsToWaitFor) {
-        removeRequestContext(context);
-      }
-      AbortedOperationUtil.throwExceptionIfAborted(abortableOperationManager);
-    }
+  private void abandonRequest(final AbstractServerMapRequestContext context) {
+    this.outstandingRequests.remove(context.getRequestID());
+    cleanupObjectManagerOnAbort(context.abandon());
   }
 
   private boolean isAborted() {
@@ -585,8 +641,13 @@ public class RemoteServerMapManagerImpl implements RemoteServerMapManager {
   @Override
   public synchronized void pause(final NodeID remote, final int disconnected) {
     if (isStopped()) { return; }
-    assertNotPaused("Attempt to pause while PAUSED");
-    this.state = State.PAUSED;
+    stateLock.writeLock().lock();
+    try {
+      assertNotPaused("Attempt to pause while PAUSED");
+      this.state = State.PAUSED;
+    } finally {
+      stateLock.writeLock().unlock();
+    }
     notifyAll();
   }
 
@@ -603,9 +664,14 @@ public class RemoteServerMapManagerImpl implements RemoteServerMapManager {
   @Override
   public synchronized void unpause(final NodeID remote, final int disconnected) {
     if (isStopped()) { return; }
-    assertNotRunning("Attempt to unpause while not PAUSED");
-    this.state = State.RUNNING;
-    requestOutstanding();
+    stateLock.writeLock().lock();
+    try {
+      assertNotRunning("Attempt to unpause while not PAUSED");
+      this.state = State.RUNNING;
+      requestOutstanding();
+    } finally {
+      stateLock.writeLock().unlock();
+    }
     notifyAll();
   }
 
@@ -613,10 +679,8 @@ public class RemoteServerMapManagerImpl implements RemoteServerMapManager {
   public void shutdown(boolean fromShutdownHook) {
     state = State.STOPPED;
     reInvalidateHandler.shutdown();
-      synchronized (this) {
-        requestsTimer.cancel();
-        notifyAll();
-      }
+    requestsTimer.cancel();
+    wakeUpWaiters();
   }
 
   private boolean isStopped() {
@@ -642,9 +706,81 @@ public class RemoteServerMapManagerImpl implements RemoteServerMapManager {
   }
 
   private ServerMapRequestID getNextRequestID() {
-    return new ServerMapRequestID(this.requestIDCounter++);
+    return new ServerMapRequestID(this.requestIDCounter.getAndIncrement());
   }
 
+  /**
+   * Completion handle over a set of requests, the results are merged into one map.
+   * {@link AbortedOperationException} and the runtime exceptions of the blocking calls are reported wrapped in an
+   * {@link ExecutionException}.
+   */
+  private class RequestFuture implements Future<Map<Object, Object>> {
+
+    private final Collection<AbstractServerMapRequestContext> contexts;
+
+    RequestFuture(final Collection<AbstractServerMapRequestContext> contexts) {
+      this.contexts = contexts;
+    }
+
+    @Override
+    public boolean cancel(final boolean mayInterruptIfRunning) {
+      boolean cancelled = false;
+      for (AbstractServerMapRequestContext context : contexts) {
+        if (!context.isDone()) {
+          abandonRequest(context);
+          cancelled = true;
+        }
+      }
+      return cancelled;
+    }
+
+    @Override
+    public boolean isCancelled() {
+      for (AbstractServerMapRequestContext context : contexts) {
+        if (context.isAbandoned()) { return true; }
+      }
+      return false;
+    }
+
+    @Override
+    public boolean isDone() {
+      for (AbstractServerMapRequestContext context : contexts) {
+        if (!context.isDone() && !context.isAbandoned()) { return false; }
+      }
+      return true;
+    }
+
+    @Override
+    public Map<Object, Object> get() throws ExecutionException {
+      return getResults(NO_TIMEOUT);
+    }
+
+    @Override
+    public Map<Object, Object> get(final long timeout, final TimeUnit unit) throws ExecutionException,
+        TimeoutException {
+      Map<Object, Object> rv = getResults(System.nanoTime() + unit.toNanos(timeout));
+      if (rv == null) { throw new TimeoutException(); }
+      return rv;
+    }
+
+    private Map<Object, Object> getResults(final long deadline) throws ExecutionException {
+      Map<Object, Object> rv = new HashMap<Object, Object>();
+      try {
+        return waitForResults(contexts, rv, deadline) ? rv : null;
+      } catch (AbortedOperationException e) {
+        throw new ExecutionException(e);
+      } catch (CancellationException e) {
+        throw e;
+      } catch (RuntimeException e) {
+        throw new ExecutionException(e);
+      }
+    }
+  }
+
+  /**
+   * The lookup state and the result are guarded by the context monitor, which is also what the requesting thread waits
+   * on.
+   */
   protected static abstract class AbstractServerMapRequestContext extends LookupStateTransitionAdaptor {
 
     // protected final static TCLogger logger = TCLogging.getLogger(AbstractServerMapRequestContext.class);
@@ -654,6 +790,8 @@ public class RemoteServerMapManagerImpl implements RemoteServerMapManager {
     protected final ServerMapRequestID   requestID;
     protected final ServerMapRequestType requestType;
     protected Map<Object, Object>        result;
+    private boolean                      abandoned;
+    private boolean                      rejoined;
 
     public AbstractServerMapRequestContext(final ServerMapRequestType requestType, final ServerMapRequestID requestID,
                                            final ObjectID mapID, final GroupID groupID) {
@@ -672,17 +810,88 @@ public class RemoteServerMapManagerImpl implements RemoteServerMapManager {
       return this.requestType;
     }
 
-    public void setResult(final ObjectID mapID, final Map<Object, Object> rv) {
+    /**
+     * @return false if the request was abandoned, in which case the result is not kept
+     */
+    public synchronized boolean setResult(final ObjectID mapID, final Map<Object, Object> rv) {
       if (!this.oid.equals(mapID)) { throw new AssertionError("Wrong request to response : this map id : " + this.oid
                                                               + " response is for : " + mapID + " type : "
                                                               + getRequestType()); }
+      if (this.abandoned) { return false; }
       this.result = rv;
+      notifyAll();
+      return true;
+    }
+
+    public synchronized Map<Object, Object> getResult() {
+      return this.result;
     }
 
-    public Map<Object, Object> getResult() {
+    synchronized boolean isDone() {
+      return this.result != null || this.rejoined || isMissing();
+    }
+
+    /**
+     * @return the result if it was already in
+     */
+    synchronized Map<Object, Object> abandon() {
+      this.abandoned = true;
+      notifyAll();
       return this.result;
     }
 
+    synchronized boolean isAbandoned() {
+      return this.abandoned;
+    }
+
+    /**
+     * The request was dropped by a rejoin, it will never get a response.
+     */
+    synchronized void makeRejoined() {
+      this.rejoined = true;
+      notifyAll();
+    }
+
+    synchronized boolean isRejoined() {
+      return this.rejoined;
+    }
+
+    synchronized void wakeUp() {
+      notifyAll();
+    }
+
+    @Override
+    public synchronized LookupState makeMissingObject() {
+      LookupState newState = super.makeMissingObject();
+      notifyAll();
+      return newState;
+    }
+
+    @Override
+    public synchronized LookupState makeLookupRequest() {
+      return super.makeLookupRequest();
+    }
+
+    @Override
+    public synchronized LookupState makePending() {
+      return super.makePending();
+    }
+
+    @Override
+    public synchronized LookupState makeUnPending() {
+      return super.makeUnPending();
+    }
+
+    @Override
+    public synchronized boolean isPending() {
+      return super.isPending();
+    }
+
+    @Override
+    public synchronized boolean isMissing() {
+      return super.isMissing();
+    }
+
     @Override
     public int hashCode() {
       return this.requestID.hashCode();
@@ -46,7 +46,9 @@ import com.tc.platform.PlatformService;
 import com.tc.properties.TCPropertiesConsts;
 import com.tc.properties.TCPropertiesImpl;
 import com.tc.server.ServerEventType;
+import com.tc.util.concurrent.CompletedFuture;
 import com.tc.util.concurrent.ThreadUtil;
+import com.tc.util.concurrent.TransformedFuture;
 
 import java.util.ArrayList;
 import java.util.Collection;
@@ -58,6 +60,8 @@ import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
@@ -616,6 +620,112 @@ public class TCObjectServerMapImpl<L> extends TCObjectLogical implements TCObjec
     return (Map) rv;
   }
 
+  /**
+   * Unlike {@link #getValueUnlocked(TCServerMap, Object)} the per key lock is not held while the request is out, it is
+   * only taken to resolve the response. Concurrent misses on the same key may each go to the server.
+   */
+  @Override
+  public Future<Object> getValueUnlockedAsync(final TCServerMap map, final Object key) throws AbortedOperationException {
+    AbstractLocalCacheStoreValue item = getValueUnlockedFromCache(key);
+    if (item != null) { return new CompletedFuture<Object>(item.getValueObject()); }
+
+    final TCObject tcObject = map.__tc_managed();
+    if (tcObject == null) { throw new UnsupportedOperationException(
+                                                                    "getValueForKeyInMap is not supported in a non-shared ServerMap"); }
+    if (!createdOnServer) { return new CompletedFuture<Object>(null); }
+
+    final Future<Object> response = this.serverMapManager.getMappingForKeyAsync(tcObject.getObjectID(),
+                                                                                getPortableKey(key));
+    return new TransformedFuture<Object, Object>(response) {
+      @Override
+      protected Object transform(Object value) throws ExecutionException {
+        try {
+          return resolveValueUnlocked(map, key, (CompoundResponse) value);
+        } catch (AbortedOperationException e) {
+          throw new ExecutionException(e);
+        }
+      }
+    };
+  }
+
+  private Object resolveValueUnlocked(final TCServerMap map, final Object key, final CompoundResponse response)
+      throws AbortedOperationException {
+    final Lock lock = getLockForKey(key);
+    lock.lock();
+    try {
+      // a local change that came in while the request was out wins over the response
+      AbstractLocalCacheStoreValue item = getValueUnlockedFromCache(key);
+      if (item != null) { return item.getValueObject(); }
+
+      Object value;
+      try {
+        value = lookupValue(response);
+      } catch (TCObjectNotFoundException e) {
+        // the mapping changed while the response was in flight, retry the blocking way
+        value = getValueForKeyFromServer(map, key, true, false);
+      }
+      if (value != null) {
+        updateLocalCacheIfNecessary(key, value);
+      }
+      return value;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public Future<Map<Object, Object>> getAllValuesUnlockedAsync(final SetMultimap<ObjectID, Object> mapIdToKeysMap)
+      throws AbortedOperationException {
+    final Map<Object, Object> cached = new HashMap<Object, Object>();
+    for (Iterator<Entry<ObjectID, Object>> i = mapIdToKeysMap.entries().iterator(); i.hasNext();) {
+      Object key = i.next().getValue();
+      AbstractLocalCacheStoreValue item = getValueUnlockedFromCache(key);
+      if (item != null) {
+        cached.put(key, item.getValueObject());
+        i.remove();
+      }
+    }
+
+    // if everything was in local cache
+    if (mapIdToKeysMap.isEmpty()) { return new CompletedFuture<Map<Object, Object>>(cached); }
+    if (!createdOnServer) {
+      // add null for the values as no data is present on server.
+      for (Entry<ObjectID, Object> entry : mapIdToKeysMap.entries()) {
+        cached.put(entry.getValue(), null);
+      }
+      return new CompletedFuture<Map<Object, Object>>(cached);
+    }
+
+    final Map<ObjectID, Set<Object>> mapIdsToLookup = getMapIdsToPortableKeys(mapIdToKeysMap);
+    final Future<Map<Object, Object>> responses = this.serverMapManager.getMappingForAllKeysAsync(mapIdsToLookup);
+    return new TransformedFuture<Map<Object, Object>, Map<Object, Object>>(responses) {
+      @Override
+      protected Map<Object, Object> transform(Map<Object, Object> values) throws ExecutionException {
+        Map<Object, Object> rv = new HashMap<Object, Object>(values);
+        Map<ObjectID, Set<Object>> remaining = copyOf(mapIdsToLookup);
+        try {
+          resolveAllValues(remaining, rv, false);
+          if (!remaining.isEmpty()) {
+            // some mappings changed while the responses were in flight
+            getAllValuesForPortableKeysFromServer(remaining, rv, false);
+          }
+        } catch (AbortedOperationException e) {
+          throw new ExecutionException(e);
+        }
+        rv.putAll(cached);
+        return rv;
+      }
+    };
+  }
+
+  private static Map<ObjectID, Set<Object>> copyOf(final Map<ObjectID, Set<Object>> mapIdToKeys) {
+    Map<ObjectID, Set<Object>> copy = new HashMap<ObjectID, Set<Object>>();
+    for (Entry<ObjectID, Set<Object>> entry : mapIdToKeys.entrySet()) {
+      copy.put(entry.getKey(), new HashSet<Object>(entry.getValue()));
+    }
+    return copy;
+  }
+
   private AbstractLocalCacheStoreValue getValueUnlockedFromCache(Object key) {
     if (!isCacheInitialized()) { return null; }
     return this.cache.getLocalValue(key);
@@ -755,6 +865,15 @@ public class TCObjectServerMapImpl<L> extends TCObjectLogical implements TCObjec
     return portableKeys;
   }
 
+  private Map<ObjectID, Set<Object>> getMapIdsToPortableKeys(final SetMultimap<ObjectID, Object> mapIdToKeysMap) {
+    final Map<ObjectID, Set<Object>> mapIdsToLookup = new HashMap<ObjectID, Set<Object>>();
+    for (Entry<ObjectID, Collection<Object>> entry : mapIdToKeysMap.asMap().entrySet()) {
+      // converting Map from <mapID, key> to <mapID, portableKey>
+      mapIdsToLookup.put(entry.getKey(), getAllPortableKeys((Set<Object>) entry.getValue()));
+    }
+    return mapIdsToLookup;
+  }
+
   private void getAllValuesForKeyFromServer(final SetMultimap<ObjectID, Object> mapIdToKeysMap, Map<Object, Object> rv, boolean versioned)
       throws AbortedOperationException {
     if (!createdOnServer) {
@@ -764,47 +883,17 @@ public class TCObjectServerMapImpl<L> extends TCObjectLogical implements TCObjec
       }
       return;
     }
-    final Map<ObjectID, Set<Object>> mapIdsToLookup = new HashMap<ObjectID, Set<Object>>();
-    for (Entry<ObjectID, Collection<Object>> entry : mapIdToKeysMap.asMap().entrySet()) {
-      // converting Map from <mapID, key> to <mapID, portableKey>
-      mapIdsToLookup.put(entry.getKey(), getAllPortableKeys((Set<Object>) entry.getValue()));
-    }
+    getAllValuesForPortableKeysFromServer(getMapIdsToPortableKeys(mapIdToKeysMap), rv, versioned);
+  }
 
+  private void getAllValuesForPortableKeysFromServer(final Map<ObjectID, Set<Object>> mapIdsToLookup,
+                                                     Map<Object, Object> rv, boolean versioned)
+      throws AbortedOperationException {
     long start = System.nanoTime();
     while (!mapIdsToLookup.isEmpty()) {
       this.serverMapManager.getMappingForAllKeys(mapIdsToLookup, rv);
+      resolveAllValues(mapIdsToLookup, rv, versioned);
 
-      for (Iterator<Entry<ObjectID, Set<Object>>> lookupIterator = mapIdsToLookup.entrySet().iterator(); lookupIterator
-          .hasNext();) {
-        Entry<ObjectID, Set<Object>> entry = lookupIterator.next();
-        TCObjectServerMapImpl map = lookupTCObjectServerMapImpl(entry.getKey());
-        Set<Object> portableKeys = entry.getValue();
-        for (Iterator<Object> portableKeyIterator = portableKeys.iterator(); portableKeyIterator.hasNext();) {
-          Object key = portableKeyIterator.next();
-          CompoundResponse value = (CompoundResponse) rv.get(key);
-          Object data;
-          try {
-            data = lookupValue(value);
-          } catch (TCObjectNotFoundException e) {
-            // We weren't able to find this particular mapping, continue for now, and try again on another pass
-            continue;
-          }
-          portableKeyIterator.remove();
-
-          // update the local cache of corresponding TCServerMap
-          map.updateLocalCacheIfNecessary(key, data);
-          if (versioned) {
-            rv.put(key, data == null ? null : new VersionedObject(data, value.getVersion()));
-          } else {
-            rv.put(key, data);
-          }
-        }
-
-        // Remove the map from the remaining lookups when all its keys are accounted for.
-        if (portableKeys.isEmpty()) {
-          lookupIterator.remove();
-        }
-      }
       // Check if we have more lookups to do
       if (!mapIdsToLookup.isEmpty()) {
         long timeWaited = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
@@ -817,6 +906,45 @@ public class TCObjectServerMapImpl<L> extends TCObjectLogical implements TCObjec
     }
   }
 
+  /**
+   * Replaces the responses in rv with the values they point to. Keys that could be resolved are removed from
+   * mapIdsToLookup, what is left has to be looked up again.
+   */
+  private void resolveAllValues(final Map<ObjectID, Set<Object>> mapIdsToLookup, Map<Object, Object> rv,
+                                boolean versioned) throws AbortedOperationException {
+    for (Iterator<Entry<ObjectID, Set<Object>>> lookupIterator = mapIdsToLookup.entrySet().iterator(); lookupIterator
+        .hasNext();) {
+      Entry<ObjectID, Set<Object>> entry = lookupIterator.next();
+      TCObjectServerMapImpl map = lookupTCObjectServerMapImpl(entry.getKey());
+      Set<Object> portableKeys = entry.getValue();
+      for (Iterator<Object> portableKeyIterator = portableKeys.iterator(); portableKeyIterator.hasNext();) {
+        Object key = portableKeyIterator.next();
+        CompoundResponse value = (CompoundResponse) rv.get(key);
+        Object data;
+        try {
+          data = lookupValue(value);
+        } catch (TCObjectNotFoundException e) {
+          // We weren't able to find this particular mapping, continue for now, and try again on another pass
+          continue;
+        }
+        portableKeyIterator.remove();
+
+        // update the local cache of corresponding TCServerMap
+        map.updateLocalCacheIfNecessary(key, data);
+        if (versioned) {
+          rv.put(key, data == null ? null : new VersionedObject(data, value.getVersion()));
+        } else {
+          rv.put(key, data);
+        }
+      }
+
+      // Remove the map from the remaining lookups when all its keys are accounted for.
+      if (portableKeys.isEmpty()) {
+        lookupIterator.remove();
+      }
+    }
+  }
+
   /**
    * Returns a snapshot of keys for the giver ServerTCMap
    * 
@@ -17,6 +17,7 @@
 package com.tc.object.handler;
 
 import com.tc.async.api.AbstractEventHandler;
+import com.tc.async.api.BatchedEventHandler;
 import com.tc.async.api.ConfigurationContext;
 import com.tc.async.api.EventContext;
 import com.tc.async.api.Sink;
@@ -47,9 +48,11 @@ import java.util.Map;
 /**
  * @author steve
  */
-public class ReceiveTransactionHandler extends AbstractEventHandler {
+public class ReceiveTransactionHandler extends AbstractEventHandler implements BatchedEventHandler {
 
   private static final TCLogger logger = TCLogging.getLogger(ReceiveTransactionHandler.class);
+  // broadcasts of a server side batch arrive back to back, drain them in one go
+  private static final int MAX_BATCH_SIZE = 32;
 
   private ClientTransactionManager txManager;
   private ClientLockManager lockManager;
@@ -68,6 +71,11 @@ public class ReceiveTransactionHandler extends AbstractEventHandler {
     this.eventDeliverySink = eventDeliverySink;
   }
 
+  @Override
+  public int getMaxBatchSize() {
+    return MAX_BATCH_SIZE;
+  }
+
   @Override
   public void handleEvent(EventContext context) {
     final BroadcastTransactionMessageImpl btm = (BroadcastTransactionMessageImpl) context;
@@ -113,6 +113,11 @@ public class LockAccounting implements ClearableCallback {
     return rv;
   }
 
+  public synchronized boolean hasTransactionsFor(LockID lockID) {
+    Set<TransactionIDWrapper> txs = lock2Txs.get(lockID);
+    return txs != null && !txs.isEmpty();
+  }
+
   public synchronized boolean areTransactionsReceivedForThisLockID(LockID lockID) {
     Set<TransactionIDWrapper> txnsForLockID = lock2Txs.get(lockID);
 
@@ -125,16 +130,22 @@ public class LockAccounting implements ClearableCallback {
     return true;
   }
 
-  public synchronized void transactionRecvdByServer(Set<TransactionID> txnsRecvd) {
-    Set<TransactionIDWrapper> txnSet = tx2Locks.keySet();
-
-    if (txnSet == null) { return; }
-
-    for (TransactionIDWrapper txIDWrapper : txnSet) {
-      if (txnsRecvd.contains(txIDWrapper.getTransactionID())) {
+  /**
+   * @return the locks of the received transactions, the only ones whose flushes can have progressed
+   */
+  public synchronized Set<LockID> transactionRecvdByServer(Set<TransactionID> txnsRecvd) {
+    Set<LockID> locks = new HashSet<LockID>();
+    for (TransactionID txID : txnsRecvd) {
+      TransactionIDWrapper txIDWrapper = tid2wrap.get(txID);
+      if (txIDWrapper != null) {
         txIDWrapper.received();
+        Set<LockID> lockIDs = tx2Locks.get(txIDWrapper);
+        if (lockIDs != null) {
+          locks.addAll(lockIDs);
+        }
       }
     }
+    return locks;
   }
 
   public synchronized Set<LockID> acknowledge(Collection<TransactionID> tids) {
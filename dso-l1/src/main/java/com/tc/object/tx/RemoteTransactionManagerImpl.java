@@ -48,6 +48,7 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
@@ -87,8 +88,13 @@ public class RemoteTransactionManagerImpl implements RemoteTransactionManager {
   private static final State                             STOP_INITIATED              = new State("STOP-INITIATED");
   private static final State                             STOPPED                     = new State("STOPPED");
 
+  private static final int                               FLUSH_STRIPES               = flushStripeCount();
+
   private final Object                                   lock                        = new Object();
-  private final HashMap<LockID, LockFlushCallback> lockFlushCallbacks          = new HashMap<LockID, LockFlushCallback>();
+  // Lock flush callbacks and flush waiters are guarded by a monitor striped on the LockID rather than by this.lock,
+  // so that commits and acknowledgements for unrelated locks never contend with each other.
+  private final Object[]                                 flushStripes                = newFlushStripes();
+  private final ConcurrentHashMap<LockID, LockFlushCallback> lockFlushCallbacks = new ConcurrentHashMap<LockID, LockFlushCallback>();
 
   private final BatchManager                             batchManager;
   private final AtomicBoolean                            sending                     = new AtomicBoolean();
@@ -174,6 +180,53 @@ public class RemoteTransactionManagerImpl implements RemoteTransactionManager {
     }
   }
 
+  private static int flushStripeCount() {
+    int stripes = 1;
+    while (stripes < Runtime.getRuntime().availableProcessors() * 4) {
+      stripes <<= 1;
+    }
+    return stripes;
+  }
+
+  private static Object[] newFlushStripes() {
+    Object[] stripes = new Object[FLUSH_STRIPES];
+    for (int i = 0; i < stripes.length; i++) {
+      stripes[i] = new Object();
+    }
+    return stripes;
+  }
+
+  private Object flushStripeFor(final LockID lockID) {
+    int h = lockID.hashCode();
+    h ^= (h >>> 20) ^ (h >>> 12);
+    h ^= (h >>> 7) ^ (h >>> 4);
+    return this.flushStripes[h & (this.flushStripes.length - 1)];
+  }
+
+  /**
+   * Wakes the waiters of the stripes of the given locks, every stripe once.
+   */
+  private void notifyFlushWaiters(final Set<LockID> lockIDs) {
+    if (lockIDs.isEmpty()) { return; }
+    final Set<Object> stripes = new HashSet<Object>();
+    for (final LockID lockID : lockIDs) {
+      stripes.add(flushStripeFor(lockID));
+    }
+    for (final Object stripe : stripes) {
+      synchronized (stripe) {
+        stripe.notifyAll();
+      }
+    }
+  }
+
+  private void notifyAllFlushWaiters() {
+    for (Object stripe : this.flushStripes) {
+      synchronized (stripe) {
+        stripe.notifyAll();
+      }
+    }
+  }
+
   void setFixedBatchSize(int size) {
     fixedBatchSize = size;
   }
@@ -195,6 +248,7 @@ public class RemoteTransactionManagerImpl implements RemoteTransactionManager {
     } finally {
       rejoinCleanupLock.writeLock().unlock();
     }
+    notifyAllFlushWaiters();
   }
 
   private void checkAndSetstate() {
@@ -223,6 +277,7 @@ public class RemoteTransactionManagerImpl implements RemoteTransactionManager {
     synchronized (lock) {
       lock.notifyAll();
     }
+    notifyAllFlushWaiters();
   }
 
   @Override
@@ -366,13 +421,14 @@ public class RemoteTransactionManagerImpl implements RemoteTransactionManager {
     long lastPrinted = 0;
     boolean isInterrupted = false;
     try {
-      Collection c;
-      synchronized (this.lock) {
-        while ((!(c = this.lockAccounting.getTransactionsFor(lockID)).isEmpty())) {
+      final Object stripe = flushStripeFor(lockID);
+      synchronized (stripe) {
+        while (this.lockAccounting.hasTransactionsFor(lockID)) {
           try {
-            this.lock.wait(FLUSH_WAIT_INTERVAL);
+            stripe.wait(FLUSH_WAIT_INTERVAL);
             final long now = System.currentTimeMillis();
             if ((now - start) > FLUSH_WAIT_INTERVAL && (now - lastPrinted) > FLUSH_WAIT_INTERVAL / 3) {
+              final Collection c = this.lockAccounting.getTransactionsFor(lockID);
               this.logger.info("Flush for " + lockID + " took longer than: " + (FLUSH_WAIT_INTERVAL / 1000)
                                + " sec. Took : " + (now - start) + " ms. # Transactions not yet Acked = "
                                + (c.size() + (c.size() < 50 ? (". " + c) : "")) + "\n");
@@ -396,10 +452,11 @@ public class RemoteTransactionManagerImpl implements RemoteTransactionManager {
     long lastPrinted = 0;
     boolean isInterrupted = false;
     try {
-      synchronized (this.lock) {
+      final Object stripe = flushStripeFor(lockId);
+      synchronized (stripe) {
         while (!this.lockAccounting.areTransactionsReceivedForThisLockID(lockId)) {
           try {
-            this.lock.wait(FLUSH_WAIT_INTERVAL);
+            stripe.wait(FLUSH_WAIT_INTERVAL);
             final long now = System.currentTimeMillis();
             if ((now - start) > FLUSH_WAIT_INTERVAL && (now - lastPrinted) > FLUSH_WAIT_INTERVAL / 3) {
               this.logger.info("Sync Write for " + lockId + " took longer than: " + (FLUSH_WAIT_INTERVAL / 1000)
@@ -425,19 +482,17 @@ public class RemoteTransactionManagerImpl implements RemoteTransactionManager {
   public void batchReceived(final TxnBatchID batchId, final Set<TransactionID> syncTxnSet, final NodeID nid) {
     // This batch id was received by the server
     // so notify the locks waiting for this transaction
-
-    synchronized (this.lock) {
-      this.lockAccounting.transactionRecvdByServer(syncTxnSet);
-      this.lock.notifyAll();
-    }
+    notifyFlushWaiters(this.lockAccounting.transactionRecvdByServer(syncTxnSet));
   }
 
   /* This does not block unlike flush() */
   @Override
   public boolean asyncFlush(final LockID lockID, final LockFlushCallback callback) {
-    synchronized (this.lock) {
+    // Holding the stripe across the check and the registration closes the race with processCallbacks(), which only
+    // removes callbacks for a lock under the same stripe after the lock's last transaction has been acknowledged.
+    synchronized (flushStripeFor(lockID)) {
 
-      if ((this.lockAccounting.getTransactionsFor(lockID)).isEmpty()) {
+      if (!this.lockAccounting.hasTransactionsFor(lockID)) {
         // All transactions are flushed !
         return true;
       } else {
@@ -603,9 +658,9 @@ public class RemoteTransactionManagerImpl implements RemoteTransactionManager {
   }
 
   private boolean isStoppingOrStopped() {
-    synchronized (this.lock) {
-      return this.status == STOP_INITIATED || this.status == STOPPED;
-    }
+    // status is volatile, no need to take the lock on the commit path
+    final State current = this.status;
+    return current == STOP_INITIATED || current == STOPPED;
   }
 
   boolean isRejoinInProgress() {
@@ -629,20 +684,23 @@ public class RemoteTransactionManagerImpl implements RemoteTransactionManager {
         sendBatches(false);
       }
     } finally {
-      synchronized (this.lock) {
-        lock.notifyAll();
+      // only stop() waits on the lock for acknowledgements
+      if (isStoppingOrStopped()) {
+        synchronized (this.lock) {
+          lock.notifyAll();
+        }
       }
     }
   }
   
   private void processCallbacks(Collection<TransactionID> txID) {
-    Map<LockID, LockFlushCallback> callbacks;
-    synchronized (this.lock) {
-      final Set<LockID> completedLocks = this.lockAccounting.acknowledge(txID);
-      callbacks = getLockFlushCallbacks(completedLocks);
-      this.lock.notifyAll();
+    final Set<LockID> completedLocks = this.lockAccounting.acknowledge(txID);
+    fireLockFlushCallbacks(getLockFlushCallbacks(completedLocks));
+    if (isStoppingOrStopped()) {
+      synchronized (this.lock) {
+        this.lock.notifyAll();
+      }
     }
-    fireLockFlushCallbacks(callbacks);
   }
   
   @Override
@@ -712,13 +770,16 @@ public class RemoteTransactionManagerImpl implements RemoteTransactionManager {
     }
 
   private Map<LockID, LockFlushCallback> getLockFlushCallbacks(final Set<LockID> completedLocks) {
+    if (completedLocks.isEmpty()) { return Collections.emptyMap(); }
     Map<LockID, LockFlushCallback> callbacks = new HashMap<LockID, LockFlushCallback>();
-    if (!completedLocks.isEmpty() && !this.lockFlushCallbacks.isEmpty()) {
-      for (final LockID lid : completedLocks) {
+    for (final LockID lid : completedLocks) {
+      final Object stripe = flushStripeFor(lid);
+      synchronized (stripe) {
         final LockFlushCallback callback = this.lockFlushCallbacks.remove(lid);
         if (callback != null) {
           callbacks.put(lid, callback);
         }
+        stripe.notifyAll();
       }
     }
     return callbacks;
@@ -735,6 +796,7 @@ public class RemoteTransactionManagerImpl implements RemoteTransactionManager {
    * waits until the Transaction manager is in running state.
    */
   private void waitUntilRunning() {
+    if (this.status == RUNNING) { return; }
     boolean isInterrupted = false;
     synchronized (this.lock) {
       try {
@@ -760,6 +822,7 @@ public class RemoteTransactionManagerImpl implements RemoteTransactionManager {
    * @throws AbortedOperationException If the Operation is aborted.
    */
   private void waitUntilRunningAbortable() throws AbortedOperationException {
+    if (this.status == RUNNING) { return; }
     boolean isInterrupted = false;
     synchronized (this.lock) {
       try {
@@ -0,0 +1,227 @@
+/* 
+ * The contents of this file are subject to the Terracotta Public License Version
+ * 2.0 (the "License"); You may not use this file except in compliance with the
+ * License. You may obtain a copy of the License at 
+ *
+ *      http://terracotta.org/legal/terracotta-public-license.
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ * the specific language governing rights and limitations under the License.
+ *
+ * The Covered Software is Terracotta Platform.
+ *
+ * The Initial Developer of the Covered Software is 
+ *      Terracotta, Inc., a Software AG company
+ */
+package com.tc.object;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import com.tc.abortable.NullAbortableOperationManager;
+import com.tc.exception.PlatformRejoinException;
+import com.tc.logging.NullTCLogger;
+import com.tc.net.GroupID;
+import com.tc.net.NodeID;
+import com.tc.object.msg.ClientHandshakeMessage;
+import com.tc.object.msg.GetValueServerMapRequestMessage;
+import com.tc.object.msg.ServerMapMessageFactory;
+import com.tc.object.servermap.localcache.L1ServerMapLocalCacheManager;
+import com.tc.object.session.NullSessionManager;
+import com.tc.object.session.SessionID;
+import com.tc.test.TCTestCase;
+import com.tc.util.concurrent.Runners;
+import com.tc.util.concurrent.TaskRunner;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class RemoteServerMapManagerImplTest extends TCTestCase {
+
+  private static final ObjectID           MAP_ID = new ObjectID(1);
+
+  private final GroupID                   groupID = new GroupID(0);
+  private final BlockingQueue<SentRequest> sent   = new LinkedBlockingQueue<SentRequest>();
+  private TaskRunner                      taskRunner;
+  private RemoteServerMapManagerImpl      manager;
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    final GetValueServerMapRequestMessage message = mock(GetValueServerMapRequestMessage.class);
+    doAnswer(new Answer<Void>() {
+      @Override
+      public Void answer(final InvocationOnMock invocation) {
+        final Object[] args = invocation.getArguments();
+        sent.add(new SentRequest((ServerMapRequestID) args[0], (Set<Object>) args[2]));
+        return null;
+      }
+    }).when(message).addGetValueRequestTo(any(ServerMapRequestID.class), any(ObjectID.class), any(Set.class));
+    final ServerMapMessageFactory factory = mock(ServerMapMessageFactory.class);
+    when(factory.newServerMapRequestMessage(any(NodeID.class), any(ServerMapRequestType.class))).thenReturn(message);
+
+    this.taskRunner = Runners.newSingleThreadScheduledTaskRunner();
+    this.manager = new RemoteServerMapManagerImpl(this.groupID, new NullTCLogger(), mock(RemoteObjectManager.class),
+                                                  factory, new NullSessionManager(),
+                                                  mock(L1ServerMapLocalCacheManager.class),
+                                                  new NullAbortableOperationManager(), this.taskRunner);
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    this.manager.shutdown(false);
+    this.taskRunner.shutdown();
+    super.tearDown();
+  }
+
+  public void testResponseWakesOnlyItsOwnWaiter() throws Exception {
+    final Waiter first = new Waiter("key1");
+    first.start();
+    final SentRequest firstRequest = takeSent();
+    final Waiter second = new Waiter("key2");
+    second.start();
+    final SentRequest secondRequest = takeSent();
+
+    respond(secondRequest, "value2");
+    second.join(10000);
+    assertFalse(second.isAlive());
+    assertEquals("value2", second.result.get());
+
+    first.join(500);
+    assertTrue(first.isAlive());
+    assertNull(first.result.get());
+
+    respond(firstRequest, "value1");
+    first.join(10000);
+    assertFalse(first.isAlive());
+    assertEquals("value1", first.result.get());
+  }
+
+  public void testCleanupAfterAbandonAndResponseRace() throws Exception {
+    final Future<Object> abandoned = this.manager.getMappingForKeyAsync(MAP_ID, "key1");
+    final SentRequest abandonedRequest = takeSent();
+    final Future<Object> outstanding = this.manager.getMappingForKeyAsync(MAP_ID, "key2");
+    takeSent();
+
+    assertTrue(abandoned.cancel(false));
+    // the response was already on its way
+    respond(abandonedRequest, "value1");
+    assertTrue(abandoned.isCancelled());
+    assertTrue(abandoned.isDone());
+    try {
+      abandoned.get();
+      fail();
+    } catch (CancellationException e) {
+      // expected
+    }
+
+    this.manager.pause(this.groupID, 1);
+    this.manager.cleanup();
+    assertRejoinFailure(outstanding);
+  }
+
+  public void testResendAfterPauseUnpause() throws Exception {
+    final Future<Object> future = this.manager.getMappingForKeyAsync(MAP_ID, "key1");
+    final SentRequest request = takeSent();
+
+    this.manager.pause(this.groupID, 1);
+    this.manager.unpause(this.groupID, 0);
+    final SentRequest resent = takeSent();
+    assertEquals(request.requestID, resent.requestID);
+    assertEquals(request.keys, resent.keys);
+
+    respond(resent, "value1");
+    assertEquals("value1", future.get(10, TimeUnit.SECONDS));
+    assertTrue(this.sent.isEmpty());
+  }
+
+  public void testRejoinCleanupFailsOutstandingRequests() throws Exception {
+    final Future<Object> future = this.manager.getMappingForKeyAsync(MAP_ID, "key1");
+    takeSent();
+    final Waiter waiter = new Waiter("key2");
+    waiter.start();
+    takeSent();
+
+    this.manager.pause(this.groupID, 1);
+    this.manager.cleanup();
+    waiter.join(10000);
+    assertFalse(waiter.isAlive());
+    assertTrue(waiter.error.get() instanceof PlatformRejoinException);
+
+    this.manager.initializeHandshake(this.groupID, this.groupID, mock(ClientHandshakeMessage.class));
+    this.manager.unpause(this.groupID, 0);
+    // the requests dropped by the rejoin are not resent and keep failing once running again
+    assertTrue(this.sent.isEmpty());
+    assertTrue(future.isDone());
+    assertRejoinFailure(future);
+
+    final Future<Object> next = this.manager.getMappingForKeyAsync(MAP_ID, "key3");
+    respond(takeSent(), "value3");
+    assertEquals("value3", next.get(10, TimeUnit.SECONDS));
+  }
+
+  private void assertRejoinFailure(final Future<Object> future) throws Exception {
+    try {
+      future.get(10, TimeUnit.SECONDS);
+      fail();
+    } catch (ExecutionException e) {
+      assertTrue(e.getCause() instanceof PlatformRejoinException);
+    }
+  }
+
+  private SentRequest takeSent() throws InterruptedException {
+    final SentRequest request = this.sent.poll(10, TimeUnit.SECONDS);
+    assertNotNull(request);
+    return request;
+  }
+
+  private void respond(final SentRequest request, final Object value) {
+    final ServerMapGetValueResponse response = new ServerMapGetValueResponse(request.requestID);
+    response.put(request.keys.iterator().next(), value);
+    this.manager.addResponseForKeyValueMapping(SessionID.NULL_ID, MAP_ID, Collections.singleton(response),
+                                               this.groupID);
+  }
+
+  private static class SentRequest {
+    private final ServerMapRequestID requestID;
+    private final Set<Object>        keys;
+
+    SentRequest(final ServerMapRequestID requestID, final Set<Object> keys) {
+      this.requestID = requestID;
+      this.keys = keys;
+    }
+  }
+
+  private class Waiter extends Thread {
+    private final Object                     key;
+    private final AtomicReference<Object>    result = new AtomicReference<Object>();
+    private final AtomicReference<Throwable> error  = new AtomicReference<Throwable>();
+
+    Waiter(final Object key) {
+      this.key = key;
+      setDaemon(true);
+    }
+
+    @Override
+    public void run() {
+      try {
+        this.result.set(manager.getMappingForKey(MAP_ID, this.key));
+      } catch (Throwable t) {
+        this.error.set(t);
+      }
+    }
+  }
+}
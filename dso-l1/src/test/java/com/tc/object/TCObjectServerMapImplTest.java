@@ -38,14 +38,18 @@ import com.google.common.collect.HashMultimap;
 import com.google.common.collect.SetMultimap;
 import com.tc.abortable.AbortedOperationException;
 import com.tc.net.GroupID;
+import com.tc.object.bytecode.TCServerMap;
 import com.tc.object.servermap.ExpirableMapEntry;
 import com.tc.object.servermap.localcache.L1ServerMapLocalCacheManager;
 import com.tc.object.servermap.localcache.L1ServerMapLocalCacheStore;
 import com.tc.object.servermap.localcache.PinnedEntryFaultCallback;
 import com.tc.object.servermap.localcache.ServerMapLocalCache;
 import com.tc.platform.PlatformService;
+import com.tc.util.concurrent.CompletedFuture;
 
+import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.Future;
 
 /**
  * @author tim
@@ -106,6 +110,50 @@ public class TCObjectServerMapImplTest {
     assertThat(result, hasEntry((Object) "baz", null));
   }
 
+  @Test
+  public void testGetValueUnlockedAsync() throws Exception {
+    TCObjectServerMap tcObjectServerMap = new TCObjectServerMapImpl(platformService, clientObjectManager,
+        serverMapManager, objectID, null, mock(TCClass.class), false, globalLocalCacheManager);
+    TCServerMap map = mock(TCServerMap.class);
+    when(map.__tc_managed()).thenReturn((TCObject) tcObjectServerMap);
+    when(serverMapManager.getMappingForKeyAsync(objectID, "foo"))
+        .thenReturn(new CompletedFuture<Object>(new CompoundResponse(new ObjectID(3), 1, 2, 3, 4, 5)));
+
+    ExpirableMapEntry expirableMapEntry = mock(ExpirableMapEntry.class);
+    when(clientObjectManager.lookupObjectQuiet(new ObjectID(3))).thenReturn(expirableMapEntry);
+
+    Future<Object> future = tcObjectServerMap.getValueUnlockedAsync(map, "foo");
+
+    assertThat(future.get(), is((Object) expirableMapEntry));
+  }
+
+  @Test
+  public void testGetAllValuesUnlockedAsync() throws Exception {
+    TCObjectServerMap tcObjectServerMap = new TCObjectServerMapImpl(platformService, clientObjectManager,
+        serverMapManager, objectID, null, mock(TCClass.class), false, globalLocalCacheManager);
+    when(clientObjectManager.lookup(objectID)).thenReturn(tcObjectServerMap);
+    when(clientObjectManager.lookup(new ObjectID(2))).thenReturn(tcObjectServerMap);
+
+    Map<Object, Object> responses = new HashMap<Object, Object>();
+    responses.put("foo", new CompoundResponse(new ObjectID(3), 1, 2, 3, 4, 5));
+    responses.put("bar", new CompoundResponse(ObjectID.NULL_ID, 0, 0, 0, 0, 0));
+    when(serverMapManager.getMappingForAllKeysAsync(anyMap()))
+        .thenReturn(new CompletedFuture<Map<Object, Object>>(responses));
+
+    ExpirableMapEntry expirableMapEntry = mock(ExpirableMapEntry.class);
+    when(clientObjectManager.lookupObjectQuiet(new ObjectID(3))).thenReturn(expirableMapEntry);
+
+    SetMultimap<ObjectID, Object> request = HashMultimap.create();
+    request.put(objectID, "foo");
+    request.put(new ObjectID(2), "bar");
+
+    Future<Map<Object, Object>> future = tcObjectServerMap.getAllValuesUnlockedAsync(request);
+    Map<Object, Object> result = future.get();
+
+    assertThat(result, hasEntry((Object) "foo", (Object) expirableMapEntry));
+    assertThat(result, hasEntry((Object) "bar", null));
+  }
+
   @Test
   public void testCleanupReplaceOnTimeout() throws Exception {
     TCObjectServerMap tcObjectServerMap = new TCObjectServerMapImpl(platformService, clientObjectManager,
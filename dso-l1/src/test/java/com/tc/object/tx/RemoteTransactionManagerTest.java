@@ -32,6 +32,7 @@ import com.tc.object.LogicalOperation;
 import com.tc.object.MockTCObject;
 import com.tc.object.ObjectID;
 import com.tc.object.dna.api.LogicalChangeID;
+import com.tc.object.locks.LockFlushCallback;
 import com.tc.object.locks.LockID;
 import com.tc.object.locks.StringLockID;
 import com.tc.object.net.MockChannel;
@@ -51,12 +52,14 @@ import com.tc.util.concurrent.ThreadUtil;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Set;
 import java.util.concurrent.BrokenBarrierException;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.CyclicBarrier;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
@@ -501,6 +504,110 @@ public class RemoteTransactionManagerTest extends TestCase {
     assertTrue(drainQueueInto(batch3.addTxQueue, new LinkedList()).isEmpty());
   }
 
+  public void testBatchReceivedWakesSyncWriteWaiter() throws Exception {
+    final ClientTransaction txn = makeTransaction();
+    this.manager.commit(txn);
+    final CountDownLatch received = new CountDownLatch(1);
+    Thread waiter = new Thread("Sync write waiter") {
+      @Override
+      public void run() {
+        try {
+          RemoteTransactionManagerTest.this.manager.waitForServerToReceiveTxnsForThisLock(txn.getLockID());
+          received.countDown();
+        } catch (Throwable t) {
+          RemoteTransactionManagerTest.this.error.set(t);
+        }
+      }
+    };
+    waiter.start();
+    assertFalse(received.await(500, TimeUnit.MILLISECONDS));
+    this.manager.batchReceived(new TxnBatchID(1), Collections.singleton(txn.getTransactionID()), GroupID.NULL_ID);
+    // well within the flush wait interval, so the waiter was woken by the stripe of its lock and did not time out
+    assertTrue(received.await(5, TimeUnit.SECONDS));
+    waiter.join();
+  }
+
+  /**
+   * Writers commit transactions and register flush callbacks concurrently while a single thread plays the server and
+   * acknowledges everything that is sent. Every callback has to fire exactly once, whichever stripe its lock maps to.
+   */
+  public void testConcurrentCommitsFlushEveryLockOnce() throws Exception {
+    final int threads = 4;
+    final int commitsPerThread = 200;
+    final AtomicInteger flushed = new AtomicInteger();
+    final CountDownLatch allFlushed = new CountDownLatch(threads * commitsPerThread);
+    final Thread acker = new Thread("Acker") {
+      @Override
+      public void run() {
+        try {
+          while (!isInterrupted()) {
+            TestTransactionBatch batch = RemoteTransactionManagerTest.this.batchSendQueue.poll(100,
+                                                                                               TimeUnit.MILLISECONDS);
+            if (batch == null) {
+              continue;
+            }
+            List<TransactionID> tids = new ArrayList<TransactionID>();
+            batch.addTransactionIDsTo(tids);
+            RemoteTransactionManagerTest.this.manager.receivedBatchAcknowledgement(batch.getTransactionBatchID(),
+                                                                                   GroupID.NULL_ID);
+            for (TransactionID tid : tids) {
+              RemoteTransactionManagerTest.this.manager.receivedAcknowledgement(SessionID.NULL_ID, tid,
+                                                                                GroupID.NULL_ID);
+            }
+          }
+        } catch (InterruptedException e) {
+          // done
+        } catch (Throwable t) {
+          RemoteTransactionManagerTest.this.error.set(t);
+        }
+      }
+    };
+    acker.start();
+    final CyclicBarrier start = new CyclicBarrier(threads);
+    Thread[] committers = new Thread[threads];
+    try {
+      for (int i = 0; i < threads; i++) {
+        committers[i] = new Thread("Committer " + i) {
+          @Override
+          public void run() {
+            try {
+              start.await();
+              for (int j = 0; j < commitsPerThread; j++) {
+                ClientTransaction txn = makeTransaction();
+                RemoteTransactionManagerTest.this.manager.commit(txn);
+                boolean done = RemoteTransactionManagerTest.this.manager
+                    .asyncFlush(txn.getLockID(), new LockFlushCallback() {
+                      @Override
+                      public void transactionsForLockFlushed(LockID id) {
+                        flushed.incrementAndGet();
+                        allFlushed.countDown();
+                      }
+                    });
+                if (done) {
+                  flushed.incrementAndGet();
+                  allFlushed.countDown();
+                }
+              }
+            } catch (Throwable t) {
+              RemoteTransactionManagerTest.this.error.set(t);
+            }
+          }
+        };
+        committers[i].start();
+      }
+      for (Thread committer : committers) {
+        committer.join();
+      }
+      assertNull(this.error.get());
+      assertTrue(allFlushed.await(60, TimeUnit.SECONDS));
+    } finally {
+      acker.interrupt();
+      acker.join();
+    }
+    // nothing is left to flush and no callback fired twice
+    assertEquals(threads * commitsPerThread, flushed.get());
+  }
+
   private Collection drainQueueInto(LinkedBlockingQueue queue, Collection dest) {
     Object o = queue.poll();
     while (o != null) {
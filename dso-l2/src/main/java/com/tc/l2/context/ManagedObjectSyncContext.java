@@ -122,6 +122,14 @@ public class ManagedObjectSyncContext implements EventContext {
     return this.dnaCount;
   }
 
+  public long getSerializedDNASize() {
+    long size = 0;
+    for (TCByteBuffer buffer : getSerializedDNAs()) {
+      size += buffer.limit();
+    }
+    return size;
+  }
+
   public boolean hasMore() {
     return this.more || !notSyncedOids.isEmpty();
   }
@@ -0,0 +1,60 @@
+/* 
+ * The contents of this file are subject to the Terracotta Public License Version
+ * 2.0 (the "License"); You may not use this file except in compliance with the
+ * License. You may obtain a copy of the License at 
+ *
+ *      http://terracotta.org/legal/terracotta-public-license.
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ * the specific language governing rights and limitations under the License.
+ *
+ * The Covered Software is Terracotta Platform.
+ *
+ * The Initial Developer of the Covered Software is 
+ *      Terracotta, Inc., a Software AG company
+ */
+package com.tc.l2.context;
+
+import com.tc.async.api.EventContext;
+import com.tc.l2.objectserver.ObjectStoreDigest;
+import com.tc.object.ObjectID;
+
+import java.util.Iterator;
+import java.util.Set;
+
+/**
+ * A digest of the object store being computed a batch at a time on the object store digest stage.
+ */
+public class ObjectStoreDigestContext implements EventContext {
+
+  public interface Callback {
+    void digestComputed(ObjectStoreDigest digest);
+  }
+
+  private final ObjectStoreDigest  digest    = new ObjectStoreDigest();
+  private final long               startTime = System.currentTimeMillis();
+  private final Iterator<ObjectID> oids;
+  private final Callback           callback;
+
+  public ObjectStoreDigestContext(final Set<ObjectID> oids, final Callback callback) {
+    this.oids = oids.iterator();
+    this.callback = callback;
+  }
+
+  public ObjectStoreDigest getDigest() {
+    return this.digest;
+  }
+
+  public Iterator<ObjectID> getObjectIDs() {
+    return this.oids;
+  }
+
+  public long getStartTime() {
+    return this.startTime;
+  }
+
+  public void digestComputed() {
+    this.callback.digestComputed(this.digest);
+  }
+}
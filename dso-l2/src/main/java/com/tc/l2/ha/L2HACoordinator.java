@@ -34,6 +34,7 @@ import com.tc.l2.handler.L2ObjectSyncRequestHandler;
 import com.tc.l2.handler.L2ObjectSyncSendHandler;
 import com.tc.l2.handler.L2StateChangeHandler;
 import com.tc.l2.handler.L2StateMessageHandler;
+import com.tc.l2.handler.ObjectStoreDigestHandler;
 import com.tc.l2.handler.ServerTransactionAckHandler;
 import com.tc.l2.handler.TransactionRelayHandler;
 import com.tc.l2.msg.GCResultMessage;
@@ -194,6 +195,9 @@ public class L2HACoordinator implements L2Coordinator, GroupEventsListener, Sequ
                                                                  new L2ObjectSyncRequestHandler(this.sequenceGenerator,
                                                                                                 objectStateManager), 1,
                                                                  MAX_STAGE_SIZE).getSink();
+    final Sink objectStoreDigestSink = stageManager.createStage(ServerConfigurationContext.OBJECT_STORE_DIGEST_STAGE,
+                                                                new ObjectStoreDigestHandler(), 1, MAX_STAGE_SIZE)
+        .getSink();
     final Sink objectsSyncSink = stageManager.createStage(ServerConfigurationContext.OBJECTS_SYNC_STAGE,
                                                           new L2ObjectSyncHandler(serverTransactionFactory,
                                                                                   objectSyncAckManager, this.server
@@ -238,7 +242,8 @@ public class L2HACoordinator implements L2Coordinator, GroupEventsListener, Sequ
 
     this.rObjectManager = new ReplicatedObjectManagerImpl(this.groupManager, this.stateManager,
                                                           this.l2PassiveSyncStateManager, this.l2ObjectStateManager,
-                                                          objectManager, transactionManager, objectsSyncRequestSink,
+                                                          objectManager, transactionManager, this.rTxnManager,
+                                                          objectsSyncRequestSink, objectStoreDigestSink,
                                                           indexSyncRequestSink, transactionRelaySink,
                                                           this.sequenceGenerator, this.indexSequenceGenerator,
                                                           dataStorage, statePersistor);
@@ -134,7 +134,8 @@ public class L2ObjectSyncRequestHandler extends AbstractEventHandler {
       try {
         ObjectID oid = i.next();
         i.remove();
-        m = objectManager.getObjectByIDReadOnly(oid);
+        // a full sync walks every object once, so don't let it churn the object cache
+        m = objectManager.getObjectByIDReadOnlyUncached(oid);
         if ( m != null ) {
           m.toDNA(out, serializer, DNAType.L2_SYNC);
           synced.add(oid);
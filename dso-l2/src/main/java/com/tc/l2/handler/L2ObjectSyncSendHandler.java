@@ -29,6 +29,7 @@ import com.tc.l2.objectserver.ReplicatedTransactionManager;
 import com.tc.l2.objectserver.ServerTransactionFactory;
 import com.tc.logging.TCLogger;
 import com.tc.logging.TCLogging;
+import com.tc.net.NodeID;
 import com.tc.net.groups.GroupException;
 import com.tc.net.groups.GroupManager;
 import com.tc.object.tx.ServerTransactionID;
@@ -37,6 +38,12 @@ import com.tc.objectserver.tx.ServerTransactionManager;
 import com.tc.properties.TCPropertiesConsts;
 import com.tc.properties.TCPropertiesImpl;
 
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.concurrent.TimeUnit;
+
 public class L2ObjectSyncSendHandler extends AbstractEventHandler {
 
   private static final TCLogger          logger                               = TCLogging
@@ -54,8 +61,15 @@ public class L2ObjectSyncSendHandler extends AbstractEventHandler {
   private static final long              TIME_TO_THROTTLE_ON_OBJECT_SEND      = TCPropertiesImpl
                                                                                   .getProperties()
                                                                                   .getLong(TCPropertiesConsts.L2_OBJECTMANAGER_PASSIVE_SYNC_THROTTLE_TIME);
+  private static final long              MAX_BYTES_PER_SECOND_ON_OBJECT_SEND  = TCPropertiesImpl
+                                                                                  .getProperties()
+                                                                                  .getLong(TCPropertiesConsts.L2_OBJECTMANAGER_PASSIVE_SYNC_THROTTLE_MAX_BYTES_PER_SECOND);
 
   private final SyncLogger               syncLogger                           = new SyncLogger();
+  private final Timer                    bandwidthThrottleTimer               = MAX_BYTES_PER_SECOND_ON_OBJECT_SEND > 0 ? new Timer(
+                                                                                                                            "L2ObjectSyncSendHandler Bandwidth Throttle Timer",
+                                                                                                                            true)
+                                                                                  : null;
 
   private final ServerTransactionFactory serverTransactionFactory;
   private final L2ObjectStateManager     objectStateManager;
@@ -76,7 +90,9 @@ public class L2ObjectSyncSendHandler extends AbstractEventHandler {
       if (sendObjects(mosc)) {
         if (mosc.hasMore()) {
           throttleOnObjectSync();
-          this.objectStateManager.syncMore(mosc.getNodeID());
+          syncMore(mosc.getNodeID());
+        } else {
+          this.syncLogger.syncComplete(mosc.getNodeID());
         }
       }
     } else if (context instanceof ServerTxnAckMessage) {
@@ -97,6 +113,23 @@ public class L2ObjectSyncSendHandler extends AbstractEventHandler {
     }
   }
 
+  // Paces the batches sent to a passive so that on average they don't go out faster than the configured rate. A batch
+  // that is not due yet is asked for from the timer once it is, rather than parking this stage's thread until then.
+  private void syncMore(final NodeID nodeID) {
+    final long waitMillis = MAX_BYTES_PER_SECOND_ON_OBJECT_SEND > 0 ? TimeUnit.NANOSECONDS.toMillis(this.syncLogger
+        .getProgress(nodeID).nextSendTime - System.nanoTime()) : 0;
+    if (waitMillis > 0) {
+      this.bandwidthThrottleTimer.schedule(new TimerTask() {
+        @Override
+        public void run() {
+          L2ObjectSyncSendHandler.this.objectStateManager.syncMore(nodeID);
+        }
+      }, waitMillis);
+    } else {
+      this.objectStateManager.syncMore(nodeID);
+    }
+  }
+
   private void sendAcks(final ServerTxnAckMessage ackMsg) {
     if (TXN_ACK_THROTTLING_ENABLED) {
       throttleOnTxnAck();
@@ -192,8 +225,33 @@ public class L2ObjectSyncSendHandler extends AbstractEventHandler {
     replicatedTransactionManager = l2Coordinator.getReplicatedTransactionManager();
   }
 
+  private static class SyncProgress {
+    private final long sessionId;
+    private final long startTime = System.nanoTime();
+    private final int  startObjectsSynced;
+    private long       bytesSent;
+    private long       nextSendTime;
+
+    SyncProgress(final long sessionId, final int startObjectsSynced) {
+      this.sessionId = sessionId;
+      this.startObjectsSynced = startObjectsSynced;
+      this.nextSendTime = this.startTime;
+    }
+
+    void sent(final long bytes) {
+      this.bytesSent += bytes;
+      if (MAX_BYTES_PER_SECOND_ON_OBJECT_SEND > 0) {
+        // don't let an idle spell (waiting on acks from the passive) build up credit for a burst
+        this.nextSendTime = Math.max(this.nextSendTime, System.nanoTime())
+                            + TimeUnit.SECONDS.toNanos(1) * bytes / MAX_BYTES_PER_SECOND_ON_OBJECT_SEND;
+      }
+    }
+  }
+
   private static class SyncLogger {
 
+    private final Map<NodeID, SyncProgress> progress = new HashMap<NodeID, SyncProgress>();
+
     public void logSynced(final ManagedObjectSyncContext mosc) {
       final int last = mosc.getTotalObjectsSynced();
       final int current = last + mosc.getSynchedOids().size();
@@ -201,10 +259,34 @@ public class L2ObjectSyncSendHandler extends AbstractEventHandler {
       final int lastPercent = (int) ((last * 100L) / totalObjectsToSync);
       final int currentPercent = (int) ((current * 100L) / totalObjectsToSync);
 
+      SyncProgress p = this.progress.get(mosc.getNodeID());
+      if (p == null || p.sessionId != mosc.getSessionId()) {
+        p = new SyncProgress(mosc.getSessionId(), last);
+        this.progress.put(mosc.getNodeID(), p);
+      }
+      p.sent(mosc.getSerializedDNASize());
+
       if (currentPercent > lastPercent) {
+        final long elapsedMillis = Math.max(1, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - p.startTime));
+        final long objectsPerSec = (current - p.startObjectsSynced) * 1000L / elapsedMillis;
         logger.info("Sent " + current + " (" + currentPercent + "%) objects out of " + mosc.getTotalObjectsToSync()
                     + " to " + mosc.getNodeID()
-                    + (mosc.getRootsMap().size() == 0 ? "" : " roots = " + mosc.getRootsMap().size()));
+                    + (mosc.getRootsMap().size() == 0 ? "" : " roots = " + mosc.getRootsMap().size()) + " : "
+                    + (p.bytesSent / 1024) + " KB at " + (p.bytesSent * 1000L / elapsedMillis / 1024) + " KB/s, "
+                    + objectsPerSec + " objects/s, ETA "
+                    + (objectsPerSec == 0 ? "unknown" : ((totalObjectsToSync - current) / objectsPerSec) + " secs"));
+      }
+    }
+
+    public SyncProgress getProgress(final NodeID nodeID) {
+      return this.progress.get(nodeID);
+    }
+
+    public void syncComplete(final NodeID nodeID) {
+      final SyncProgress p = this.progress.remove(nodeID);
+      if (p != null) {
+        logger.info("Object sync to " + nodeID + " sent " + (p.bytesSent / 1024) + " KB in "
+                    + TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - p.startTime) + " secs");
       }
     }
   }
@@ -0,0 +1,62 @@
+/* 
+ * The contents of this file are subject to the Terracotta Public License Version
+ * 2.0 (the "License"); You may not use this file except in compliance with the
+ * License. You may obtain a copy of the License at 
+ *
+ *      http://terracotta.org/legal/terracotta-public-license.
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ * the specific language governing rights and limitations under the License.
+ *
+ * The Covered Software is Terracotta Platform.
+ *
+ * The Initial Developer of the Covered Software is 
+ *      Terracotta, Inc., a Software AG company
+ */
+package com.tc.l2.handler;
+
+import com.tc.async.api.AbstractEventHandler;
+import com.tc.async.api.ConfigurationContext;
+import com.tc.async.api.EventContext;
+import com.tc.async.api.Sink;
+import com.tc.l2.context.ObjectStoreDigestContext;
+import com.tc.logging.TCLogger;
+import com.tc.logging.TCLogging;
+import com.tc.objectserver.api.ObjectManager;
+import com.tc.objectserver.core.api.ServerConfigurationContext;
+
+public class ObjectStoreDigestHandler extends AbstractEventHandler {
+
+  private static final TCLogger logger     = TCLogging.getLogger(ObjectStoreDigestHandler.class);
+
+  // A digest goes back on the queue after every batch, so digests for several passives make progress side by side
+  private static final int      BATCH_SIZE = 1000;
+
+  private ObjectManager         objectManager;
+  private Sink                  digestSink;
+
+  @Override
+  public void handleEvent(final EventContext context) {
+    if (context instanceof ObjectStoreDigestContext) {
+      final ObjectStoreDigestContext digestContext = (ObjectStoreDigestContext) context;
+      if (digestContext.getDigest().addSome(this.objectManager, digestContext.getObjectIDs(), BATCH_SIZE)) {
+        logger.info("Computed " + digestContext.getDigest() + " in "
+                    + (System.currentTimeMillis() - digestContext.getStartTime()) + " ms");
+        digestContext.digestComputed();
+      } else {
+        this.digestSink.add(digestContext);
+      }
+    } else {
+      throw new AssertionError("Unknown event context " + context);
+    }
+  }
+
+  @Override
+  public void initialize(final ConfigurationContext context) {
+    super.initialize(context);
+    final ServerConfigurationContext oscc = (ServerConfigurationContext) context;
+    this.objectManager = oscc.getObjectManager();
+    this.digestSink = oscc.getStage(ServerConfigurationContext.OBJECT_STORE_DIGEST_STAGE).getSink();
+  }
+}
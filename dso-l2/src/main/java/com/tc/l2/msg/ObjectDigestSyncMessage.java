@@ -0,0 +1,119 @@
+/* 
+ * The contents of this file are subject to the Terracotta Public License Version
+ * 2.0 (the "License"); You may not use this file except in compliance with the
+ * License. You may obtain a copy of the License at 
+ *
+ *      http://terracotta.org/legal/terracotta-public-license.
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ * the specific language governing rights and limitations under the License.
+ *
+ * The Covered Software is Terracotta Platform.
+ *
+ * The Initial Developer of the Covered Software is 
+ *      Terracotta, Inc., a Software AG company
+ */
+package com.tc.l2.msg;
+
+import com.tc.io.TCByteBufferInput;
+import com.tc.io.TCByteBufferOutput;
+import com.tc.l2.objectserver.ObjectStoreDigest;
+import com.tc.net.groups.AbstractGroupMessage;
+
+import java.io.IOException;
+import java.util.BitSet;
+
+/**
+ * Messages exchanged to resync a passive that restarted with its restartable store, instead of syncing every object.
+ * The passive sends a digest of its store, the ACTIVE answers with the buckets of the digest that differ from its own,
+ * and the passive confirms once it dropped its objects in those buckets so that they can be synced over again.
+ */
+public class ObjectDigestSyncMessage extends AbstractGroupMessage {
+
+  public static final int   DIGEST            = 0;
+  public static final int   DIVERGENT_BUCKETS = 1;
+  public static final int   DIVERGENT_DROPPED = 2;
+
+  private ObjectStoreDigest digest;
+  private BitSet            divergentBuckets;
+
+  // To make serialization happy
+  public ObjectDigestSyncMessage() {
+    super(-1);
+  }
+
+  private ObjectDigestSyncMessage(final int type) {
+    super(type);
+  }
+
+  public static ObjectDigestSyncMessage createDigestMessage(final ObjectStoreDigest digest) {
+    final ObjectDigestSyncMessage msg = new ObjectDigestSyncMessage(DIGEST);
+    msg.digest = digest;
+    return msg;
+  }
+
+  public static ObjectDigestSyncMessage createDivergentBucketsMessage(final BitSet divergentBuckets) {
+    final ObjectDigestSyncMessage msg = new ObjectDigestSyncMessage(DIVERGENT_BUCKETS);
+    msg.divergentBuckets = divergentBuckets;
+    return msg;
+  }
+
+  public static ObjectDigestSyncMessage createDivergentDroppedMessage() {
+    return new ObjectDigestSyncMessage(DIVERGENT_DROPPED);
+  }
+
+  public ObjectStoreDigest getDigest() {
+    return this.digest;
+  }
+
+  public BitSet getDivergentBuckets() {
+    return this.divergentBuckets;
+  }
+
+  @Override
+  protected void basicDeserializeFrom(final TCByteBufferInput in) throws IOException {
+    switch (getType()) {
+      case DIGEST:
+        this.digest = ObjectStoreDigest.deserializeFrom(in);
+        break;
+      case DIVERGENT_BUCKETS:
+        this.divergentBuckets = new BitSet();
+        for (int i = in.readInt(); i > 0; i--) {
+          this.divergentBuckets.set(in.readInt());
+        }
+        break;
+      case DIVERGENT_DROPPED:
+        break;
+      default:
+        throw new AssertionError("Unknown type : " + getType());
+    }
+  }
+
+  @Override
+  protected void basicSerializeTo(final TCByteBufferOutput out) {
+    switch (getType()) {
+      case DIGEST:
+        this.digest.serializeTo(out);
+        break;
+      case DIVERGENT_BUCKETS:
+        out.writeInt(this.divergentBuckets.cardinality());
+        for (int i = this.divergentBuckets.nextSetBit(0); i >= 0; i = this.divergentBuckets.nextSetBit(i + 1)) {
+          out.writeInt(i);
+        }
+        break;
+      case DIVERGENT_DROPPED:
+        break;
+      default:
+        throw new AssertionError("Unknown type : " + getType());
+    }
+  }
+
+  @Override
+  public String toString() {
+    return "ObjectDigestSyncMessage [ type = " + getType()
+           + (this.digest == null ? "" : ", digest = " + this.digest)
+           + (this.divergentBuckets == null ? "" : ", divergent buckets = " + this.divergentBuckets.cardinality())
+           + " ]";
+  }
+}
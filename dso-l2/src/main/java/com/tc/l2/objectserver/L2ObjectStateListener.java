@@ -18,10 +18,20 @@ package com.tc.l2.objectserver;
 
 import com.tc.net.NodeID;
 
+import java.util.BitSet;
+
 public interface L2ObjectStateListener {
 
   public void missingObjectsFor(NodeID nodeID, int missingObjects);
 
   public void objectSyncCompleteFor(NodeID nodeID);
 
+  /**
+   * The passive restarted with its data, the digest of the local store is needed to tell what it is missing. It is
+   * handed back through {@link L2ObjectStateManager#localDigestComputed(NodeID, ObjectStoreDigest)}.
+   */
+  public void localDigestNeededFor(NodeID nodeID);
+
+  public void divergentBucketsFor(NodeID nodeID, BitSet divergentBuckets);
+
 }
@@ -48,4 +48,21 @@ public interface L2ObjectStateManager {
 
   public void ackSync(NodeID nodeID);
 
+  /**
+   * Records the digest of the store of a passive that restarted with its data, so that only the objects that differ
+   * are synced when it is added.
+   */
+  public void setPassiveDigest(NodeID nodeID, ObjectStoreDigest digest);
+
+  /**
+   * The digest of the local store to compare with the one of the passive, see
+   * {@link L2ObjectStateListener#localDigestNeededFor(NodeID)}.
+   */
+  public void localDigestComputed(NodeID nodeID, ObjectStoreDigest localDigest);
+
+  /**
+   * The passive dropped its objects in the buckets that differ from this server, sync can start.
+   */
+  public void divergentObjectsDropped(NodeID nodeID);
+
 }
\ No newline at end of file
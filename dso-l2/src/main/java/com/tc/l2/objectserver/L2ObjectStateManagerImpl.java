@@ -33,10 +33,14 @@ import com.tc.util.State;
 import com.tc.util.concurrent.CopyOnWriteSequentialMap;
 import com.tc.util.concurrent.ThrottledTaskExecutor;
 
+import java.util.BitSet;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.CopyOnWriteArrayList;
 
 public class L2ObjectStateManagerImpl implements L2ObjectStateManager {
@@ -48,6 +52,7 @@ public class L2ObjectStateManagerImpl implements L2ObjectStateManager {
   private final CopyOnWriteArrayList<L2ObjectStateListener>         listeners              = new CopyOnWriteArrayList<L2ObjectStateListener>();
   private final ServerTransactionManager transactionManager;
   private final CopyOnWriteSequentialMap<NodeID, SyncExecutorContext> syncExecutorContextMap = new CopyOnWriteSequentialMap<NodeID, SyncExecutorContext>();
+  private final ConcurrentMap<NodeID, ObjectStoreDigest>            passiveDigests         = new ConcurrentHashMap<NodeID, ObjectStoreDigest>();
   private final int                      syncMaxPendingMsgs;
   private long                           currentSessionId       = 0;
 
@@ -81,6 +86,18 @@ public class L2ObjectStateManagerImpl implements L2ObjectStateManager {
     }
   }
 
+  private void fireLocalDigestNeededEvent(final NodeID nodeID) {
+    for (L2ObjectStateListener l : this.listeners) {
+      l.localDigestNeededFor(nodeID);
+    }
+  }
+
+  private void fireDivergentBucketsEvent(final NodeID nodeID, final BitSet divergentBuckets) {
+    for (L2ObjectStateListener l : this.listeners) {
+      l.divergentBucketsFor(nodeID, divergentBuckets);
+    }
+  }
+
   @Override
   public int getL2Count() {
     return this.nodes.size();
@@ -93,6 +110,7 @@ public class L2ObjectStateManagerImpl implements L2ObjectStateManager {
       logger.warn("L2State Not found for " + nodeID);
     }
     this.syncExecutorContextMap.remove(nodeID);
+    this.passiveDigests.remove(nodeID);
   }
 
   @Override
@@ -104,7 +122,7 @@ public class L2ObjectStateManagerImpl implements L2ObjectStateManager {
         logger.warn("L2State already present for " + nodeID + ". " + l2State);
         return false;
       }
-      l2State = new L2ObjectStateImpl(nodeID, this.currentSessionId++);
+      l2State = new L2ObjectStateImpl(nodeID, this.currentSessionId++, this.passiveDigests.remove(nodeID));
       this.nodes.put(nodeID, l2State);
     }
     final L2ObjectStateImpl _l2State = l2State;
@@ -185,6 +203,33 @@ public class L2ObjectStateManagerImpl implements L2ObjectStateManager {
     }
   }
 
+  @Override
+  public void setPassiveDigest(NodeID nodeID, ObjectStoreDigest digest) {
+    if (this.passiveDigests.put(nodeID, digest) != null) {
+      logger.warn("setPassiveDigest: replaced an unused digest for " + nodeID);
+    }
+  }
+
+  @Override
+  public void localDigestComputed(NodeID nodeID, ObjectStoreDigest localDigest) {
+    final L2ObjectStateImpl l2State = this.nodes.get(nodeID);
+    if (l2State != null) {
+      l2State.compareDigests(localDigest);
+    } else {
+      logger.warn("localDigestComputed: L2 State Object Not found for " + nodeID);
+    }
+  }
+
+  @Override
+  public void divergentObjectsDropped(NodeID nodeID) {
+    final L2ObjectStateImpl l2State = this.nodes.get(nodeID);
+    if (l2State != null) {
+      l2State.divergentObjectsDropped();
+    } else {
+      logger.warn("divergentObjectsDropped: L2 State Object Not found for " + nodeID);
+    }
+  }
+
   @Override
   public String toString() {
     StringBuilder strBuilder = new StringBuilder();
@@ -214,6 +259,7 @@ public class L2ObjectStateManagerImpl implements L2ObjectStateManager {
 
   private static final State START                  = new State("START");
   private static final State READY_TO_SYNC          = new State("READY_TO_SYNC");
+  private static final State WAITING_FOR_DROP       = new State("WAITING_FOR_DROP");
   private static final State SYNC_STARTED           = new State("SYNC_STARTED");
   private static final State IN_SYNC_PENDING_NOTIFY = new State("IN_SYNC_PENDING_NOTIFY");
   private static final State IN_SYNC                = new State("IN_SYNC");
@@ -233,9 +279,14 @@ public class L2ObjectStateManagerImpl implements L2ObjectStateManager {
     private int                      totalObjectsSynced;
     private final long               sessionId;
 
-    public L2ObjectStateImpl(final NodeID nodeID, final long currentSessionId) {
+    // Only set for a passive that restarted with its data, see ObjectStoreDigest
+    private final ObjectStoreDigest  passiveDigest;
+    private BitSet                   divergentBuckets;
+
+    public L2ObjectStateImpl(final NodeID nodeID, final long currentSessionId, final ObjectStoreDigest passiveDigest) {
       this.nodeID = nodeID;
       this.sessionId = currentSessionId;
+      this.passiveDigest = passiveDigest;
     }
 
     private void close(final ManagedObjectSyncContext mosc) {
@@ -306,9 +357,15 @@ public class L2ObjectStateManagerImpl implements L2ObjectStateManager {
     }
 
     private int computeDiff() {
-      this.missingOids = L2ObjectStateManagerImpl.this.objectManager.getAllObjectIDs();
+      final ObjectIDSet allOids = L2ObjectStateManagerImpl.this.objectManager.getAllObjectIDs();
+      final int objectCount = allOids.size();
+      if (this.divergentBuckets != null) {
+        // The passive dropped everything it had in these buckets, the rest is up to date
+        this.missingOids = this.passiveDigest.selectFrom(allOids, this.divergentBuckets);
+      } else {
+        this.missingOids = allOids;
+      }
       this.missingRoots = L2ObjectStateManagerImpl.this.objectManager.getRootNamesToIDsMap();
-      final int objectCount = this.missingOids.size();
       this.totalObjectsToSync = this.missingOids.size();
       logger.info(this.nodeID + " : is missing " + this.missingOids.size() + " out of " + objectCount
                   + " objects of which missing roots = " + this.missingRoots.size());
@@ -334,8 +391,47 @@ public class L2ObjectStateManagerImpl implements L2ObjectStateManager {
 
     private void moveToReadyToSyncState() {
       this.state = READY_TO_SYNC;
-      final int missingObjects = computeDiff();
-      fireMissingObjectsStateEvent(this.nodeID, missingObjects);
+      if (this.passiveDigest != null) {
+        fireLocalDigestNeededEvent(this.nodeID);
+      } else {
+        final int missingObjects = computeDiff();
+        fireMissingObjectsStateEvent(this.nodeID, missingObjects);
+      }
+    }
+
+    private void compareDigests(final ObjectStoreDigest localDigest) {
+      Assert.assertTrue(this.state == READY_TO_SYNC);
+      final BitSet divergent = localDigest.divergentBuckets(this.passiveDigest);
+      logger.info(this.nodeID + " : " + divergent.cardinality() + " out of " + localDigest.getBucketCount()
+                  + " buckets differ from the passive's store. Local " + localDigest);
+      if (divergent.isEmpty()) {
+        this.missingOids = new BitSetObjectIDSet();
+        this.missingRoots = Collections.emptyMap();
+        this.state = IN_SYNC;
+        fireMissingObjectsStateEvent(this.nodeID, 0);
+      } else {
+        this.divergentBuckets = divergent;
+        this.state = WAITING_FOR_DROP;
+        fireDivergentBucketsEvent(this.nodeID, divergent);
+      }
+    }
+
+    private void divergentObjectsDropped() {
+      Assert.assertTrue(this.state == WAITING_FOR_DROP);
+      // Changes that reached the passive before it dropped its stale objects are lost with them, wait for them to be
+      // applied here before deciding what to send.
+      L2ObjectStateManagerImpl.this.transactionManager
+          .callBackOnTxnsInSystemCompletion(new TxnsInSystemCompletionListener() {
+            @Override
+            public void onCompletion() {
+              if (L2ObjectStateManagerImpl.this.nodes.get(L2ObjectStateImpl.this.nodeID) != L2ObjectStateImpl.this) {
+                logger.info(L2ObjectStateImpl.this.nodeID + " : left before its divergent objects could be synced");
+                return;
+              }
+              final int missingObjects = computeDiff();
+              fireMissingObjectsStateEvent(L2ObjectStateImpl.this.nodeID, missingObjects);
+            }
+          });
     }
 
     private void moveToInSyncState() {
@@ -0,0 +1,165 @@
+/* 
+ * The contents of this file are subject to the Terracotta Public License Version
+ * 2.0 (the "License"); You may not use this file except in compliance with the
+ * License. You may obtain a copy of the License at 
+ *
+ *      http://terracotta.org/legal/terracotta-public-license.
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ * the specific language governing rights and limitations under the License.
+ *
+ * The Covered Software is Terracotta Platform.
+ *
+ * The Initial Developer of the Covered Software is 
+ *      Terracotta, Inc., a Software AG company
+ */
+package com.tc.l2.objectserver;
+
+import com.tc.io.TCByteBufferInput;
+import com.tc.io.TCByteBufferOutput;
+import com.tc.object.ObjectID;
+import com.tc.objectserver.api.ObjectManager;
+import com.tc.util.BitSetObjectIDSet;
+import com.tc.util.ObjectIDSet;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.Set;
+
+/**
+ * Compact summary of the (ObjectID, version) pairs in an object store. Objects are hashed into a fixed number of
+ * buckets and each bucket keeps a count and an order independent hash of its pairs, so two stores can be compared
+ * bucket by bucket and only the objects in the buckets that differ need to be looked at.
+ */
+public class ObjectStoreDigest {
+
+  public static final int DEFAULT_BUCKETS = 4096;
+
+  private final long[]    hashes;
+  private final int[]     counts;
+
+  public ObjectStoreDigest() {
+    this(DEFAULT_BUCKETS);
+  }
+
+  public ObjectStoreDigest(final int buckets) {
+    if (Integer.bitCount(buckets) != 1 || buckets < 0) {
+      throw new IllegalArgumentException("bucket count must be a power of 2 : " + buckets);
+    }
+    this.hashes = new long[buckets];
+    this.counts = new int[buckets];
+  }
+
+  /**
+   * Digests up to max objects from the iterator, skipping the ones that have been deleted in the mean time. Versions
+   * are read straight from the object store, the objects are neither checked out nor faulted in.
+   *
+   * @return true once the iterator is exhausted
+   */
+  public boolean addSome(final ObjectManager objectManager, final Iterator<ObjectID> oids, int max) {
+    while (max-- > 0 && oids.hasNext()) {
+      final ObjectID oid = oids.next();
+      final long version = objectManager.getObjectVersion(oid);
+      if (version >= 0) {
+        add(oid, version);
+      }
+    }
+    return !oids.hasNext();
+  }
+
+  public void add(final ObjectID oid, final long version) {
+    final int bucket = bucketFor(oid);
+    this.hashes[bucket] += mix(mix(oid.toLong()) + version);
+    this.counts[bucket]++;
+  }
+
+  public int getBucketCount() {
+    return this.hashes.length;
+  }
+
+  public int bucketFor(final ObjectID oid) {
+    return (int) mix(oid.toLong()) & (this.hashes.length - 1);
+  }
+
+  /**
+   * @return the buckets where this digest and the other one differ, all of them if the two were built with a different
+   *         number of buckets.
+   */
+  public BitSet divergentBuckets(final ObjectStoreDigest other) {
+    final BitSet divergent = new BitSet(this.hashes.length);
+    if (other.hashes.length != this.hashes.length) {
+      divergent.set(0, this.hashes.length);
+      return divergent;
+    }
+    for (int i = 0; i < this.hashes.length; i++) {
+      if (this.hashes[i] != other.hashes[i] || this.counts[i] != other.counts[i]) {
+        divergent.set(i);
+      }
+    }
+    return divergent;
+  }
+
+  /**
+   * @return the ids from the given set that fall in one of the given buckets
+   */
+  public ObjectIDSet selectFrom(final Set<ObjectID> oids, final BitSet buckets) {
+    final ObjectIDSet selected = new BitSetObjectIDSet();
+    for (final ObjectID oid : oids) {
+      if (buckets.get(bucketFor(oid))) {
+        selected.add(oid);
+      }
+    }
+    return selected;
+  }
+
+  public void serializeTo(final TCByteBufferOutput out) {
+    out.writeInt(this.hashes.length);
+    for (int i = 0; i < this.hashes.length; i++) {
+      out.writeLong(this.hashes[i]);
+      out.writeInt(this.counts[i]);
+    }
+  }
+
+  public static ObjectStoreDigest deserializeFrom(final TCByteBufferInput in) throws IOException {
+    final ObjectStoreDigest digest = new ObjectStoreDigest(in.readInt());
+    for (int i = 0; i < digest.hashes.length; i++) {
+      digest.hashes[i] = in.readLong();
+      digest.counts[i] = in.readInt();
+    }
+    return digest;
+  }
+
+  // 64 bit finalizer from MurmurHash3
+  private static long mix(long h) {
+    h ^= h >>> 33;
+    h *= 0xff51afd7ed558ccdL;
+    h ^= h >>> 33;
+    h *= 0xc4ceb9fe1a85ec53L;
+    h ^= h >>> 33;
+    return h;
+  }
+
+  @Override
+  public boolean equals(final Object o) {
+    if (!(o instanceof ObjectStoreDigest)) { return false; }
+    final ObjectStoreDigest other = (ObjectStoreDigest) o;
+    return Arrays.equals(this.hashes, other.hashes) && Arrays.equals(this.counts, other.counts);
+  }
+
+  @Override
+  public int hashCode() {
+    return Arrays.hashCode(this.hashes);
+  }
+
+  @Override
+  public String toString() {
+    long objects = 0;
+    for (final int count : this.counts) {
+      objects += count;
+    }
+    return "ObjectStoreDigest [ buckets = " + this.hashes.length + ", objects = " + objects + " ]";
+  }
+}
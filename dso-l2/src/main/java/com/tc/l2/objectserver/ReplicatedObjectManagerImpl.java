@@ -17,6 +17,7 @@
 package com.tc.l2.objectserver;
 
 import com.tc.async.api.Sink;
+import com.tc.l2.context.ObjectStoreDigestContext;
 import com.tc.l2.context.SyncIndexesRequest;
 import com.tc.l2.context.SyncObjectsRequest;
 import com.tc.l2.ha.L2HAZapNodeRequestProcessor;
@@ -24,6 +25,7 @@ import com.tc.l2.msg.GCResultMessage;
 import com.tc.l2.msg.IndexSyncCompleteAckMessage;
 import com.tc.l2.msg.IndexSyncCompleteMessage;
 import com.tc.l2.msg.IndexSyncStartMessage;
+import com.tc.l2.msg.ObjectDigestSyncMessage;
 import com.tc.l2.msg.ObjectListSyncMessage;
 import com.tc.l2.msg.ObjectSyncCompleteAckMessage;
 import com.tc.l2.msg.ObjectSyncCompleteMessage;
@@ -45,6 +47,8 @@ import com.tc.objectserver.persistence.ClusterStatePersistor;
 import com.tc.objectserver.tx.ServerTransactionManager;
 import com.tc.objectserver.tx.TransactionBatchContext;
 import com.tc.objectserver.tx.TxnsInSystemCompletionListener;
+import com.tc.properties.TCPropertiesConsts;
+import com.tc.properties.TCPropertiesImpl;
 import com.tc.util.Assert;
 import com.tc.util.Conversion;
 import com.tc.util.ObjectIDSet;
@@ -54,6 +58,7 @@ import com.tc.util.sequence.SequenceGenerator;
 import com.tc.util.sequence.SequenceGenerator.SequenceGeneratorException;
 import com.terracottatech.config.DataStorage;
 
+import java.util.BitSet;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -68,12 +73,17 @@ public class ReplicatedObjectManagerImpl implements ReplicatedObjectManager, Gro
     L2ObjectStateListener, L2IndexStateListener {
 
   private static final TCLogger              logger = TCLogging.getLogger(ReplicatedObjectManagerImpl.class);
+  private static final boolean               DELTA_SYNC_ENABLED = TCPropertiesImpl
+                                                                    .getProperties()
+                                                                    .getBoolean(TCPropertiesConsts.L2_OBJECTMANAGER_PASSIVE_SYNC_DELTA_ENABLED);
 
   private final ObjectManager                objectManager;
   private final GroupManager                 groupManager;
   private final StateManager                 stateManager;
   private final ServerTransactionManager     transactionManager;
+  private final ReplicatedTransactionManager replicatedTransactionManager;
   private final Sink                         objectsSyncRequestSink;
+  private final Sink                         objectStoreDigestSink;
   private final Sink                         indexSyncRequestSink;
   private final Sink                         transactionRelaySink;
   private final SequenceGenerator            sequenceGenerator;
@@ -85,13 +95,16 @@ public class ReplicatedObjectManagerImpl implements ReplicatedObjectManager, Gro
   private final DataStorage                  dataStorage;
 
   private final AtomicBoolean                syncStarted = new AtomicBoolean();
+  private volatile ObjectStoreDigest         sentDigest;
 
   public ReplicatedObjectManagerImpl(final GroupManager groupManager, final StateManager stateManager,
                                      final L2PassiveSyncStateManager l2PassiveSyncStateManager,
                                      L2ObjectStateManager l2ObjectStateManager,
                                      final ObjectManager objectManager,
                                      final ServerTransactionManager transactionManager,
-                                     final Sink objectsSyncRequestSink, final Sink indexSyncRequestSink,
+                                     final ReplicatedTransactionManager replicatedTransactionManager,
+                                     final Sink objectsSyncRequestSink, final Sink objectStoreDigestSink,
+                                     final Sink indexSyncRequestSink,
                                      final Sink transactionRelaySink, final SequenceGenerator sequenceGenerator,
                                      final SequenceGenerator indexSequenceGenerator, final DataStorage dataStorage,
                                      final ClusterStatePersistor clusterStatePersistor) {
@@ -99,7 +112,9 @@ public class ReplicatedObjectManagerImpl implements ReplicatedObjectManager, Gro
     this.stateManager = stateManager;
     this.objectManager = objectManager;
     this.transactionManager = transactionManager;
+    this.replicatedTransactionManager = replicatedTransactionManager;
     this.objectsSyncRequestSink = objectsSyncRequestSink;
+    this.objectStoreDigestSink = objectStoreDigestSink;
     this.indexSyncRequestSink = indexSyncRequestSink;
     this.transactionRelaySink = transactionRelaySink;
     this.sequenceGenerator = sequenceGenerator;
@@ -111,6 +126,7 @@ public class ReplicatedObjectManagerImpl implements ReplicatedObjectManager, Gro
     this.groupManager.registerForMessages(ObjectListSyncMessage.class, this);
     this.groupManager.registerForMessages(ObjectSyncCompleteAckMessage.class, this);
     this.groupManager.registerForMessages(IndexSyncCompleteAckMessage.class, this);
+    this.groupManager.registerForMessages(ObjectDigestSyncMessage.class, this);
     this.passiveSyncStateManager = l2PassiveSyncStateManager;
     this.l2ObjectStateManager = l2ObjectStateManager;
     this.dataStorage = dataStorage;
@@ -192,6 +208,8 @@ public class ReplicatedObjectManagerImpl implements ReplicatedObjectManager, Gro
       NodeID nodeID = msg.messageFrom();
       logger.info("Received IndexSyncCompleteAckMessage from " + nodeID);
       indexesInSyncOnNode(nodeID);
+    } else if (msg instanceof ObjectDigestSyncMessage) {
+      handleObjectDigestSyncMessage(fromNode, (ObjectDigestSyncMessage) msg);
     } else {
       throw new AssertionError("ReplicatedObjectManagerImpl : Received wrong message type :" + msg.getClass().getName()
                                + " : " + msg);
@@ -203,7 +221,11 @@ public class ReplicatedObjectManagerImpl implements ReplicatedObjectManager, Gro
       // Reject subsequent sync begin requests
       try {
         if (syncStarted.compareAndSet(false, true)) {
-          groupManager.sendTo(fromNode, PassiveSyncBeginMessage.beginResponse(stateManager.getCurrentState()));
+          if (isDeltaSyncCandidate()) {
+            sendDigestAndBeginResponse(fromNode);
+          } else {
+            groupManager.sendTo(fromNode, PassiveSyncBeginMessage.beginResponse(stateManager.getCurrentState()));
+          }
         } else {
           groupManager.sendTo(fromNode, PassiveSyncBeginMessage.beginError());
         }
@@ -221,6 +243,74 @@ public class ReplicatedObjectManagerImpl implements ReplicatedObjectManager, Gro
     }
    }
 
+  /**
+   * A passive that went down in standby still holds a consistent (if stale) copy of the data in its restartable store,
+   * it is worth syncing only what changed since.
+   */
+  private boolean isDeltaSyncCandidate() {
+    return DELTA_SYNC_ENABLED && StateManager.PASSIVE_STANDBY.equals(clusterStatePersistor.getInitialState())
+           && objectManager.getLiveObjectCount() > 0;
+  }
+
+  private void sendDigestAndBeginResponse(final NodeID activeNode) {
+    final ObjectIDSet oids = objectManager.getAllObjectIDs();
+    // Changes relayed from now on to objects we have apply right away, those to objects that turn out to be stale are
+    // held back again once we know which ones they are.
+    replicatedTransactionManager.init(oids);
+    objectStoreDigestSink.add(new ObjectStoreDigestContext(oids, new ObjectStoreDigestContext.Callback() {
+      @Override
+      public void digestComputed(final ObjectStoreDigest digest) {
+        sentDigest = digest;
+        logger.info("Sending " + digest + " to " + activeNode);
+        try {
+          // Sent ahead of the response so that the ACTIVE has it when it adds this node
+          groupManager.sendTo(activeNode, ObjectDigestSyncMessage.createDigestMessage(digest));
+          groupManager.sendTo(activeNode, PassiveSyncBeginMessage.beginResponse(stateManager.getCurrentState()));
+        } catch (GroupException e) {
+          logger.error("Error sending response to active.", e);
+        }
+      }
+    }));
+  }
+
+  private void handleObjectDigestSyncMessage(final NodeID fromNode, final ObjectDigestSyncMessage msg) {
+    switch (msg.getType()) {
+      case ObjectDigestSyncMessage.DIGEST:
+        logger.info("Received " + msg.getDigest() + " from " + fromNode);
+        l2ObjectStateManager.setPassiveDigest(fromNode, msg.getDigest());
+        break;
+      case ObjectDigestSyncMessage.DIVERGENT_BUCKETS:
+        dropDivergentObjects(fromNode, msg.getDivergentBuckets());
+        break;
+      case ObjectDigestSyncMessage.DIVERGENT_DROPPED:
+        logger.info("Passive " + fromNode + " dropped its stale objects");
+        l2ObjectStateManager.divergentObjectsDropped(fromNode);
+        break;
+      default:
+        throw new AssertionError("This message shouldn't have been routed here : " + msg);
+    }
+  }
+
+  private void dropDivergentObjects(final NodeID activeNode, final BitSet divergentBuckets) {
+    Assert.assertNotNull(sentDigest);
+    final ObjectIDSet stale = sentDigest.selectFrom(objectManager.getAllObjectIDs(), divergentBuckets);
+    logger.info("Dropping " + stale.size() + " objects in " + divergentBuckets.cardinality()
+                + " buckets that differ from the ACTIVE " + activeNode);
+    replicatedTransactionManager.removeKnownObjectIDs(stale);
+    // Let the changes already on their way to these objects finish before deleting them
+    transactionManager.callBackOnTxnsInSystemCompletion(new TxnsInSystemCompletionListener() {
+      @Override
+      public void onCompletion() {
+        objectManager.deleteObjects(stale);
+        try {
+          groupManager.sendTo(activeNode, ObjectDigestSyncMessage.createDivergentDroppedMessage());
+        } catch (GroupException e) {
+          logger.error("Failed to tell the active that stale objects were dropped.", e);
+        }
+      }
+    });
+  }
+
   private void moveNodeToPassiveStandByIfPossible(NodeID nodeID) {
     if (this.passiveSyncStateManager.isSyncComplete(nodeID)) {
       this.gcMonitor.syncCompleteFor(nodeID);
@@ -341,6 +431,28 @@ public class ReplicatedObjectManagerImpl implements ReplicatedObjectManager, Gro
     }
   }
 
+  @Override
+  public void localDigestNeededFor(final NodeID nodeID) {
+    objectStoreDigestSink.add(new ObjectStoreDigestContext(objectManager.getAllObjectIDs(),
+                                                           new ObjectStoreDigestContext.Callback() {
+                                                             @Override
+                                                             public void digestComputed(final ObjectStoreDigest digest) {
+                                                               l2ObjectStateManager.localDigestComputed(nodeID, digest);
+                                                             }
+                                                           }));
+  }
+
+  @Override
+  public void divergentBucketsFor(final NodeID nodeID, final BitSet divergentBuckets) {
+    try {
+      this.groupManager.sendTo(nodeID, ObjectDigestSyncMessage.createDivergentBucketsMessage(divergentBuckets));
+    } catch (final GroupException e) {
+      logger.error("Error sending divergent buckets to : " + nodeID, e);
+      this.groupManager.zapNode(nodeID, L2HAZapNodeRequestProcessor.COMMUNICATION_ERROR,
+                                "Error sending divergent buckets " + L2HAZapNodeRequestProcessor.getErrorString(e));
+    }
+  }
+
   @Override
   public void indexSyncStartFor(NodeID nodeID, int idxCtPerCache) {
     try {
@@ -412,7 +524,8 @@ public class ReplicatedObjectManagerImpl implements ReplicatedObjectManager, Gro
           // Handle requests multiple list requests from the same instance of the active. This could happen when the active
           // first starts up. This node joining could trigger one object list request while the active running the sync() method
           // will trigger the other.
-          boolean syncAllowed = !syncStarted.get() && clusterStatePersistor.getInitialState() == null;
+          boolean syncAllowed = !syncStarted.get()
+                                && (clusterStatePersistor.getInitialState() == null || isDeltaSyncCandidate());
           logger.info("Send response to Active's query : syncAllowed = " + syncAllowed +
                       " currentState=" + stateManager.getCurrentState() +
                       " resource total=" + getDataStorageSize());
@@ -28,4 +28,10 @@ public interface ReplicatedTransactionManager extends StateChangeListener, Passi
 
   public void init(Set knownObjectIDs);
 
+  /**
+   * Forgets about objects passed to {@link #init(Set)} that are going to be synced over again, so that changes to them
+   * are held back until they arrive.
+   */
+  public void removeKnownObjectIDs(Set knownObjectIDs);
+
 }
@@ -100,6 +100,15 @@ public class ReplicatedTransactionManagerImpl implements ReplicatedTransactionMa
     }
   }
 
+  @Override
+  public synchronized void removeKnownObjectIDs(Set knownObjectIDs) {
+    if (delegate == passiveUninitTxnMgr) {
+      passiveUninitTxnMgr.removeKnownObjectIDs(knownObjectIDs);
+    } else {
+      logger.info("Not removing known Ids since not in UNINITIALIZED state : " + knownObjectIDs.size());
+    }
+  }
+
   @Override
   public synchronized void clearTransactionsBelowLowWaterMark(GlobalTransactionID lowGlobalTransactionIDWatermark) {
     delegate.clearTransactionsBelowLowWaterMark(lowGlobalTransactionIDWatermark);
@@ -318,6 +327,10 @@ public class ReplicatedTransactionManagerImpl implements ReplicatedTransactionMa
       }
     }
 
+    public void removeKnownObjectIDs(Set knownObjectIDs) {
+      existingOIDs.removeAll(knownObjectIDs);
+    }
+
     @Override
     public void addObjectSyncTransaction(ServerTransaction txn, final Set<ObjectID> deletedObjects) {
       clearPendingChangesFor(deletedObjects);
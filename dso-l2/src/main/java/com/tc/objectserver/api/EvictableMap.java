@@ -33,6 +33,11 @@ public interface EvictableMap {
 
   Map<Object, EvictableEntry> getRandomSamples(int count, ClientObjectReferenceSet serverMapEvictionClientObjectRefSet, final SamplingType samplingType);
 
+  /**
+   * Up to count entries that have already expired, for an expiration pass.
+   */
+  Map<Object, EvictableEntry> getExpiredEntries(int count, ClientObjectReferenceSet serverMapEvictionClientObjectRefSet);
+
   boolean startEviction();
 
   void evictionCompleted();
@@ -162,4 +162,22 @@ public interface ObjectManager extends ManagedObjectProvider, ObjectManagerMBean
    */
   public ManagedObject getObjectByIDReadOnly(ObjectID id);
 
+  /**
+   * Check out an object read only for a one off scan like passive sync. Unlike
+   * {@link #getObjectByIDReadOnly(ObjectID)}, an object that is not already in memory is only held for the duration of
+   * the check out and is not added to the cache, so that a full scan does not push out the working set.
+   *
+   * @param id ObjectID of the object to be checked out
+   * @return ManagedObject if it exists; null otherwise
+   */
+  public ManagedObject getObjectByIDReadOnlyUncached(ObjectID id);
+
+  /**
+   * Reads the version of an object straight from the object store, without checking it out or loading its state.
+   *
+   * @param id ObjectID of the object
+   * @return the version of the object, -1 if it does not exist
+   */
+  public long getObjectVersion(ObjectID id);
+
 }
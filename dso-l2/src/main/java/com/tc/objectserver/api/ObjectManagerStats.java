@@ -20,4 +20,13 @@ public interface ObjectManagerStats {
 
   long getTotalObjectsCreated();
 
+  long getTotalCacheHits();
+
+  long getTotalCacheMisses();
+
+  /**
+   * @return the share of object lookups served from memory since the server started, 0 - 1
+   */
+  double getCacheHitRatio();
+
 }
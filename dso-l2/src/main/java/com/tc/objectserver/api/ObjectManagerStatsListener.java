@@ -19,5 +19,9 @@ package com.tc.objectserver.api;
 public interface ObjectManagerStatsListener {
   
   public void newObjectCreated();
+
+  public void cacheHit();
+
+  public void cacheMiss();
   
 }
@@ -16,6 +16,7 @@
  */
 package com.tc.objectserver.core.impl;
 
+import com.tc.async.api.StageManager;
 import com.tc.management.RemoteManagement;
 import com.tc.management.RemoteManagementException;
 import com.tc.net.NodeID;
@@ -65,13 +66,14 @@ public class ServerManagementContext {
   private final IndexManager                  indexManager;
   private final ConnectionPolicy              connectionPolicy;
   private final RemoteManagement              remoteManagement;
+  private final StageManager                  stageManager;
 
   public ServerManagementContext(ServerTransactionManagerMBean txnMgr, ObjectManagerMBean objMgr,
                                  LockManagerMBean lockMgr, DSOChannelManagerMBean channelMgr,
                                  DSOGlobalServerStats serverStats, ChannelStats channelStats,
                                  ObjectInstanceMonitorMBean instanceMonitor,
                                  IndexManager indexManager, ConnectionPolicy connectionPolicy,
-                                 RemoteManagement remoteManagement) {
+                                 RemoteManagement remoteManagement, StageManager stageManager) {
     this.txnMgr = txnMgr;
     this.objMgr = objMgr;
     this.lockMgr = lockMgr;
@@ -82,6 +84,7 @@ public class ServerManagementContext {
     this.indexManager = indexManager;
     this.connectionPolicy = connectionPolicy;
     this.remoteManagement = remoteManagement;
+    this.stageManager = stageManager;
   }
 
   public IndexManager getIndexManager() {
@@ -124,4 +127,8 @@ public class ServerManagementContext {
     return remoteManagement;
   }
 
+  public StageManager getStageManager() {
+    return stageManager;
+  }
+
 }
@@ -26,4 +26,10 @@ public interface ChangeCollector extends ManagedObjectChangeListener {
   public final ChangeCollector NULL_CHANGE_COLLECTOR = new NullChangeCollector();
 
   public Set<ObjectID> addNewReferencesTo(Set<ObjectID> set);
+
+  /**
+   * Like {@link #addNewReferencesTo(Set)} but also forgets the references handed out, so the next call only returns
+   * references recorded after this one.
+   */
+  public Set<ObjectID> drainNewReferencesTo(Set<ObjectID> set);
 }
\ No newline at end of file
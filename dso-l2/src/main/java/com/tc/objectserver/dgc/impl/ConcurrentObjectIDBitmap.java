@@ -0,0 +1,89 @@
+/*
+ * The contents of this file are subject to the Terracotta Public License Version
+ * 2.0 (the "License"); You may not use this file except in compliance with the
+ * License. You may obtain a copy of the License at
+ *
+ *      http://terracotta.org/legal/terracotta-public-license.
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ * the specific language governing rights and limitations under the License.
+ *
+ * The Covered Software is Terracotta Platform.
+ *
+ * The Initial Developer of the Covered Software is
+ *      Terracotta, Inc., a Software AG company
+ */
+package com.tc.objectserver.dgc.impl;
+
+import com.tc.object.ObjectID;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Sparse bitmap of object ids that many threads can set bits in without locking. Bits are kept in fixed size pages that
+ * are created on first use, so memory is proportional to the ranges of ids actually marked.
+ */
+final class ConcurrentObjectIDBitmap {
+
+  private static final int                           PAGE_SHIFT     = 15;
+  private static final long                          PAGE_MASK      = (1L << PAGE_SHIFT) - 1;
+  private static final int                           WORDS_PER_PAGE = 1 << (PAGE_SHIFT - 6);
+
+  private final ConcurrentMap<Long, AtomicLongArray> pages          = new ConcurrentHashMap<Long, AtomicLongArray>();
+
+  /**
+   * @return true if the bit for this id was not set before, ie. this caller is the one that marked it.
+   */
+  boolean mark(long id) {
+    AtomicLongArray page = pageFor(id);
+    int word = (int) ((id & PAGE_MASK) >>> 6);
+    long bit = 1L << (id & 63);
+    while (true) {
+      long current = page.get(word);
+      if ((current & bit) != 0) { return false; }
+      if (page.compareAndSet(word, current, current | bit)) { return true; }
+    }
+  }
+
+  boolean isMarked(long id) {
+    AtomicLongArray page = pages.get(Long.valueOf(id >>> PAGE_SHIFT));
+    if (page == null) { return false; }
+    return (page.get((int) ((id & PAGE_MASK) >>> 6)) & (1L << (id & 63))) != 0;
+  }
+
+  /**
+   * Removes every marked id from the given set. Must not be called while other threads are still marking.
+   */
+  void removeMarkedFrom(Set<ObjectID> ids) {
+    for (Map.Entry<Long, AtomicLongArray> e : pages.entrySet()) {
+      long base = e.getKey().longValue() << PAGE_SHIFT;
+      AtomicLongArray page = e.getValue();
+      for (int w = 0; w < WORDS_PER_PAGE; w++) {
+        long bits = page.get(w);
+        while (bits != 0) {
+          int b = Long.numberOfTrailingZeros(bits);
+          ids.remove(new ObjectID(base + (w << 6) + b));
+          bits &= bits - 1;
+        }
+      }
+    }
+  }
+
+  private AtomicLongArray pageFor(long id) {
+    Long key = Long.valueOf(id >>> PAGE_SHIFT);
+    AtomicLongArray page = pages.get(key);
+    if (page == null) {
+      page = new AtomicLongArray(WORDS_PER_PAGE);
+      AtomicLongArray old = pages.putIfAbsent(key, page);
+      if (old != null) {
+        page = old;
+      }
+    }
+    return page;
+  }
+}
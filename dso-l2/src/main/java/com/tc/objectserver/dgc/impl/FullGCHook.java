@@ -82,7 +82,7 @@ public class FullGCHook extends AbstractGCHook {
     this.stateManager.addAllReferencedIdsTo(rescueIds);
     int stateManagerIds = rescueIds.size();
 
-    this.collector.addNewReferencesTo(rescueIds);
+    this.collector.drainNewReferencesTo(rescueIds);
     int referenceCollectorIds = rescueIds.size() - stateManagerIds;
 
     logger.debug("rescueIds: " + rescueIds.size() + ", stateManagerIds: " + stateManagerIds
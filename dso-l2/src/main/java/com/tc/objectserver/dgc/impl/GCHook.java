@@ -46,6 +46,10 @@ public interface GCHook {
 
   public Set<ObjectID> getObjectReferencesFrom(ObjectID id);
 
+  /**
+   * Ids referenced by clients plus the references recorded since monitoring started or since the previous call,
+   * whichever is later. Rescue passes rely on this to only revisit what changed in between.
+   */
   public ObjectIDSet getRescueIDs();
 
 }
\ No newline at end of file
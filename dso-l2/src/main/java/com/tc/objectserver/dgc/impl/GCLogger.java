@@ -79,6 +79,20 @@ public class GCLogger {
       if (gcInfo.getRescue2Time() != NOT_INITIALIZED) {
         logGC(id, "rescue 2 time   : " + gcInfo.getRescue2Time() + " ms.");
       }
+      if (gcInfo.getMarkStageTime() != NOT_INITIALIZED && gcInfo.getRescue1Time() != NOT_INITIALIZED) {
+        logGC(id, "mark throughput : "
+                  + perSecond(gcInfo.getBeginObjectCount() - gcInfo.getPreRescueCount(), gcInfo.getMarkStageTime()
+                                                                                         - gcInfo.getRescue1Time())
+                  + " objects/sec.");
+        logGC(id, "rescue 1 throughput : "
+                  + perSecond(gcInfo.getPreRescueCount() - gcInfo.getRescue1Count(), gcInfo.getRescue1Time())
+                  + " objects/sec.");
+      }
+      if (gcInfo.getRescue2Time() != NOT_INITIALIZED) {
+        logGC(id, "rescue 2 throughput : "
+                  + perSecond(gcInfo.getCandidateGarbageCount() - gcInfo.getActualGarbageCount(),
+                              gcInfo.getRescue2Time()) + " objects/sec.");
+      }
       if (gcInfo.getPausedStageTime() != NOT_INITIALIZED) {
         logGC(id, "paused gc time  : " + gcInfo.getPausedStageTime() + " ms.");
       }
@@ -104,6 +118,10 @@ public class GCLogger {
     }
   }
 
+  private static long perSecond(long count, long millis) {
+    return count * 1000 / Math.max(1, millis);
+  }
+
   public boolean verboseGC() {
     return verboseGC;
   }
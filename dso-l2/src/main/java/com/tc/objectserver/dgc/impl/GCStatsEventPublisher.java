@@ -21,6 +21,8 @@ import com.tc.objectserver.api.GCStatsEventListener;
 import com.tc.objectserver.core.impl.GarbageCollectionID;
 import com.tc.objectserver.dgc.api.GCStatsImpl;
 import com.tc.objectserver.dgc.api.GarbageCollectionInfo;
+import com.tc.stats.counter.HistogramSnapshot;
+import com.tc.stats.counter.LogLinearHistogram;
 
 import java.util.LinkedHashMap;
 import java.util.List;
@@ -33,6 +35,7 @@ public class GCStatsEventPublisher extends GarbageCollectorEventListenerAdapter
 
   private final LossyLinkedHashMap gcHistory             = new LossyLinkedHashMap(1500);
   private GCStats                  lastGCStat            = null;
+  private final LogLinearHistogram pauseTimes            = new LogLinearHistogram();
 
   public void addListener(GCStatsEventListener listener) {
     gcStatsEventListeners.add(listener);
@@ -46,6 +49,13 @@ public class GCStatsEventPublisher extends GarbageCollectorEventListenerAdapter
     return this.lastGCStat;
   }
 
+  /**
+   * Distribution of the time in millis transactions were held up by DGC pauses, inline cleanup included.
+   */
+  public HistogramSnapshot getPauseTimeHistogram() {
+    return this.pauseTimes.snapshot();
+  }
+
   @Override
   public void garbageCollectorStart(GarbageCollectionInfo info) {
     if (info.isInlineDGC()) { return; }
@@ -73,6 +83,7 @@ public class GCStatsEventPublisher extends GarbageCollectorEventListenerAdapter
 
   @Override
   public void garbageCollectorMarkComplete(GarbageCollectionInfo info) {
+    pauseTimes.record(info.getPausedStageTime());
     if (info.isInlineDGC()) { return; }
     GCStatsImpl gcStats = getGCStats(info);
     gcStats.setMarkCompleteState();
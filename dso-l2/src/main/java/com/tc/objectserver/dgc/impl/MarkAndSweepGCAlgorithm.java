@@ -32,6 +32,7 @@ import com.tc.util.concurrent.LifeCycleState;
 import java.util.Collection;
 import java.util.Iterator;
 import java.util.Set;
+import java.util.concurrent.Executor;
 
 final class MarkAndSweepGCAlgorithm {
 
@@ -40,15 +41,44 @@ final class MarkAndSweepGCAlgorithm {
   private final GarbageCollector               collector;
   private final GarbageCollectionInfoPublisher gcPublisher;
   private final LifeCycleState                 gcState;
+  private final Executor                       markExecutor;
+  private final int                            markThreads;
+  private final int                            markSegmentSize;
+  private final int                            rescuePasses;
+  private final int                            remarkThreshold;
   private final String                         uuid = UUID.getUUID().toString();
 
   public MarkAndSweepGCAlgorithm(GarbageCollector collector, GCHook gcHook, GarbageCollectionInfoPublisher gcPublisher,
                                  LifeCycleState gcState, long gcIteration) {
+    this(collector, gcHook, gcPublisher, gcState, gcIteration, null, 1, 0);
+  }
+
+  public MarkAndSweepGCAlgorithm(GarbageCollector collector, GCHook gcHook, GarbageCollectionInfoPublisher gcPublisher,
+                                 LifeCycleState gcState, long gcIteration, Executor markExecutor, int markThreads,
+                                 int markSegmentSize) {
+    this(collector, gcHook, gcPublisher, gcState, gcIteration, markExecutor, markThreads, markSegmentSize, 0, 0);
+  }
+
+  /**
+   * @param markExecutor runs the mark workers when markThreads is more than 1, null to always mark on the calling
+   *        thread.
+   * @param rescuePasses maximum number of rescue passes run while transactions are still being applied, after the
+   *        first rescue and before pausing.
+   * @param remarkThreshold the passes stop early once a pass has fewer rescue ids than this to start from.
+   */
+  public MarkAndSweepGCAlgorithm(GarbageCollector collector, GCHook gcHook, GarbageCollectionInfoPublisher gcPublisher,
+                                 LifeCycleState gcState, long gcIteration, Executor markExecutor, int markThreads,
+                                 int markSegmentSize, int rescuePasses, int remarkThreshold) {
     this.collector = collector;
     this.gcHook = gcHook;
     this.gcPublisher = gcPublisher;
     this.gcState = gcState;
     this.gcIteration = gcIteration;
+    this.markExecutor = markExecutor;
+    this.markThreads = markThreads;
+    this.markSegmentSize = markSegmentSize;
+    this.rescuePasses = rescuePasses;
+    this.remarkThreshold = remarkThreshold;
   }
 
   void doGC() {
@@ -85,6 +115,12 @@ final class MarkAndSweepGCAlgorithm {
     gcInfo.setMarkStageTime(System.currentTimeMillis() - startMillis);
     gcPublisher.fireGCRescue1CompleteEvent(gcInfo);
 
+    // Catch up with the references changed while rescue-1 ran without holding up transactions, so that the paused
+    // rescue-2 below only has to look at what changed during the last of these passes.
+    gcResults = concurrentRescue(gcResults);
+
+    if (gcState.isStopRequested()) { return; }
+
     if (gcResults.isEmpty()) {
       // No garbage, short circuit DGC cycle, don't pass objectMgr etc.
       gcHook.stopMonitoringReferenceChanges();
@@ -149,29 +185,39 @@ final class MarkAndSweepGCAlgorithm {
     long start = System.currentTimeMillis();
     logstart_collect(rootIds, managedObjectIds);
 
+    if (markExecutor != null && markThreads > 1 && !rootIds.isEmpty() && !managedObjectIds.isEmpty()) {
+      ParallelMarker marker = new ParallelMarker(gcHook, markExecutor, markThreads, markSegmentSize);
+      if (!marker.mark(filter, rootIds, managedObjectIds, lifeCycleState)) return TCCollections.EMPTY_OBJECT_ID_SET;
+      profile_collect(start, marker.getVisitedCount(), marker.getWorkerCount());
+      return managedObjectIds;
+    }
+
+    long visited = 0;
     for (Iterator i = rootIds.iterator(); i.hasNext() && !managedObjectIds.isEmpty();) {
       ObjectID rootId = (ObjectID) i.next();
       managedObjectIds.remove(rootId);
       if (lifeCycleState.isStopRequested()) return TCCollections.EMPTY_OBJECT_ID_SET;
-      collectRoot(filter, rootId, managedObjectIds, lifeCycleState);
+      visited += collectRoot(filter, rootId, managedObjectIds, lifeCycleState);
     }
 
-    profile_collect(start);
+    profile_collect(start, visited, 1);
 
     return managedObjectIds;
   }
 
-  private void collectRoot(Filter filter, ObjectID rootId, Set managedObjectIds, LifeCycleState lifeCycleState) {
+  private long collectRoot(Filter filter, ObjectID rootId, Set managedObjectIds, LifeCycleState lifeCycleState) {
     Set<ObjectID> toBeVisited = new BitSetObjectIDSet();
     toBeVisited.add(rootId);
+    long visited = 0;
 
     while (!toBeVisited.isEmpty() && !managedObjectIds.isEmpty()) {
 
       for (Iterator i = new BitSetObjectIDSet(toBeVisited).iterator(); i.hasNext() && !managedObjectIds.isEmpty();) {
         ObjectID id = (ObjectID) i.next();
-        if (lifeCycleState.isStopRequested()) return;
+        if (lifeCycleState.isStopRequested()) return visited;
         Set<ObjectID> references = gcHook.getObjectReferencesFrom(id);
         toBeVisited.remove(id);
+        visited++;
 
         for (final ObjectID mid : references) {
           if (mid == null) {
@@ -185,6 +231,7 @@ final class MarkAndSweepGCAlgorithm {
         }
       }
     }
+    return visited;
   }
 
   private ObjectIDSet rescue(final ObjectIDSet gcResults) {
@@ -195,14 +242,37 @@ final class MarkAndSweepGCAlgorithm {
     return collect(rescueFilter, rescueIds, gcResults, gcState);
   }
 
+  ObjectIDSet concurrentRescue(ObjectIDSet gcResults) {
+    for (int pass = 1; pass <= rescuePasses && !gcResults.isEmpty(); pass++) {
+      Set<ObjectID> rescueIds = gcHook.getRescueIDs();
+      rescueIds.retainAll(gcResults);
+      int rescueCount = rescueIds.size();
+      if (rescueCount > 0) {
+        gcResults = collect(new SelectiveFilter(gcResults), rescueIds, gcResults, gcState);
+      }
+      if (MarkAndSweepGarbageCollector.logger.isDebugEnabled()) {
+        MarkAndSweepGarbageCollector.logger.debug("concurrent rescue pass " + pass + ": rescueIds=" + rescueCount
+                                                  + ", candidates left=" + gcResults.size());
+      }
+      if (rescueCount == 0 || rescueCount < remarkThreshold || gcState.isStopRequested()) {
+        break;
+      }
+    }
+    return gcResults;
+  }
+
   private void logstart_collect(Collection rootIds, Set managedObjectIds) {
     if (MarkAndSweepGarbageCollector.logger.isDebugEnabled()) MarkAndSweepGarbageCollector.logger
         .debug("collect(): rootIds=" + rootIds.size() + ", managedObjectIds=" + managedObjectIds.size());
   }
 
-  private void profile_collect(long start) {
-    if (MarkAndSweepGarbageCollector.logger.isDebugEnabled()) MarkAndSweepGarbageCollector.logger
-        .debug("collect: " + (System.currentTimeMillis() - start) + " ms.");
+  private void profile_collect(long start, long visited, int threads) {
+    if (MarkAndSweepGarbageCollector.logger.isDebugEnabled()) {
+      long elapsed = System.currentTimeMillis() - start;
+      MarkAndSweepGarbageCollector.logger.debug("collect: " + elapsed + " ms, visited " + visited + " objects ("
+                                                + (visited * 1000 / Math.max(1, elapsed)) + " objects/sec) using "
+                                                + threads + " thread(s).");
+    }
   }
 
 }
\ No newline at end of file
@@ -27,12 +27,19 @@ import com.tc.objectserver.dgc.api.GarbageCollectionInfoPublisher;
 import com.tc.objectserver.dgc.api.GarbageCollectorEventListener;
 import com.tc.objectserver.impl.ObjectManagerConfig;
 import com.tc.objectserver.l1.api.ClientStateManager;
+import com.tc.properties.TCPropertiesConsts;
+import com.tc.properties.TCPropertiesImpl;
 import com.tc.util.ObjectIDSet;
 import com.tc.util.concurrent.LifeCycleState;
 import com.tc.util.sequence.DGCSequenceProvider;
 
 import java.util.Collection;
 import java.util.Set;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  */
@@ -41,10 +48,25 @@ public class MarkAndSweepGarbageCollector extends AbstractGarbageCollector {
   static final TCLogger                        logger                     = TCLogging
                                                                               .getLogger(MarkAndSweepGarbageCollector.class);
 
+  private static final int                     MARK_THREADS               = markThreads(TCPropertiesImpl
+                                                                              .getProperties()
+                                                                              .getInt(TCPropertiesConsts.L2_OBJECTMANAGER_DGC_MARK_THREADS));
+  private static final int                     MARK_SEGMENT_SIZE          = TCPropertiesImpl
+                                                                              .getProperties()
+                                                                              .getInt(TCPropertiesConsts.L2_OBJECTMANAGER_DGC_MARK_SEGMENT_SIZE);
+  private static final int                     RESCUE_CONCURRENT_PASSES   = TCPropertiesImpl
+                                                                              .getProperties()
+                                                                              .getInt(TCPropertiesConsts.L2_OBJECTMANAGER_DGC_RESCUE_CONCURRENT_PASSES);
+  private static final int                     RESCUE_REMARK_THRESHOLD    = TCPropertiesImpl
+                                                                              .getProperties()
+                                                                              .getInt(TCPropertiesConsts.L2_OBJECTMANAGER_DGC_RESCUE_REMARK_THRESHOLD);
+
   private final GarbageCollectionInfoPublisher gcPublisher;
   private final ClientStateManager             stateManager;
   private final ObjectManager                  objectManager;
   private final DGCSequenceProvider            dgcSequenceProvider;
+  // shared by the collect() calls of a dgc cycle, its threads go away when idle in between cycles
+  private final ThreadPoolExecutor             markExecutor;
 
   private volatile ChangeCollector             referenceCollector         = ChangeCollector.NULL_CHANGE_COLLECTOR;
   protected volatile boolean                   started                    = false;
@@ -58,6 +80,7 @@ public class MarkAndSweepGarbageCollector extends AbstractGarbageCollector {
     this.stateManager = stateManager;
     this.gcPublisher = gcPublisher;
     this.dgcSequenceProvider = dgcSequenceProvider;
+    this.markExecutor = MARK_THREADS > 1 ? newMarkExecutor(MARK_THREADS) : null;
     addListener(new GCLoggerEventPublisher(new GCLogger(logger, objectManagerConfig.verboseGC())));
   }
 
@@ -73,7 +96,10 @@ public class MarkAndSweepGarbageCollector extends AbstractGarbageCollector {
         break;
     }
     final MarkAndSweepGCAlgorithm gcAlgo = new MarkAndSweepGCAlgorithm(this, hook, this.gcPublisher, this.gcState,
-                                                                       this.dgcSequenceProvider.getNextId());
+                                                                       this.dgcSequenceProvider.getNextId(),
+                                                                       this.markExecutor, MARK_THREADS,
+                                                                       MARK_SEGMENT_SIZE, RESCUE_CONCURRENT_PASSES,
+                                                                       RESCUE_REMARK_THRESHOLD);
     gcAlgo.doGC();
   }
 
@@ -107,6 +133,10 @@ public class MarkAndSweepGarbageCollector extends AbstractGarbageCollector {
     this.referenceCollector.addNewReferencesTo(rescueIds);
   }
 
+  public void drainNewReferencesTo(final Set rescueIds) {
+    this.referenceCollector.drainNewReferencesTo(rescueIds);
+  }
+
   /**
    * Used for Tests.
    */
@@ -125,6 +155,27 @@ public class MarkAndSweepGarbageCollector extends AbstractGarbageCollector {
     return gcAlgo.collect(traverser, roots, managedObjectIds, lstate);
   }
 
+  private static int markThreads(int configured) {
+    if (configured > 0) { return configured; }
+    return Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+  }
+
+  private static ThreadPoolExecutor newMarkExecutor(int threads) {
+    final AtomicInteger threadNumber = new AtomicInteger();
+    ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                                                         new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+                                                           @Override
+                                                           public Thread newThread(Runnable r) {
+                                                             Thread t = new Thread(r, "DGC-Mark-Worker-"
+                                                                                      + threadNumber.getAndIncrement());
+                                                             t.setDaemon(true);
+                                                             return t;
+                                                           }
+                                                         });
+    executor.allowCoreThreadTimeOut(true);
+    return executor;
+  }
+
   @Override
   public void start() {
     this.started = true;
@@ -139,6 +190,9 @@ public class MarkAndSweepGarbageCollector extends AbstractGarbageCollector {
       count++;
       logger.warn("DGC Thread did not stop");
     }
+    if (markExecutor != null) {
+      markExecutor.shutdown();
+    }
   }
 
   @Override
@@ -23,7 +23,7 @@ import java.util.Set;
 
 public class NewReferenceCollector implements ChangeCollector {
 
-  private final Set<ObjectID> newReferences = new BitSetObjectIDSet();
+  private Set<ObjectID> newReferences = new BitSetObjectIDSet();
 
   @Override
   public synchronized void changed(ObjectID changedObject, ObjectID oldReference, ObjectID newReference) {
@@ -36,4 +36,16 @@ public class NewReferenceCollector implements ChangeCollector {
     return set;
   }
 
+  @Override
+  public Set<ObjectID> drainNewReferencesTo(Set<ObjectID> set) {
+    Set<ObjectID> drained;
+    synchronized (this) {
+      // swap rather than copy so the apply threads recording changes are not held up
+      drained = this.newReferences;
+      this.newReferences = new BitSetObjectIDSet();
+    }
+    set.addAll(drained);
+    return set;
+  }
+
 }
\ No newline at end of file
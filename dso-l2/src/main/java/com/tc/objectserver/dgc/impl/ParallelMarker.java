@@ -0,0 +1,265 @@
+/*
+ * The contents of this file are subject to the Terracotta Public License Version
+ * 2.0 (the "License"); You may not use this file except in compliance with the
+ * License. You may obtain a copy of the License at
+ *
+ *      http://terracotta.org/legal/terracotta-public-license.
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ * the specific language governing rights and limitations under the License.
+ *
+ * The Covered Software is Terracotta Platform.
+ *
+ * The Initial Developer of the Covered Software is
+ *      Terracotta, Inc., a Software AG company
+ */
+package com.tc.objectserver.dgc.impl;
+
+import com.tc.exception.TCRuntimeException;
+import com.tc.object.ObjectID;
+import com.tc.objectserver.core.api.Filter;
+import com.tc.util.ObjectIDSet;
+import com.tc.util.concurrent.LifeCycleState;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Marks the object graph reachable from a set of roots with several threads taken from a pool.
+ * <p>
+ * Work is handed around as segments of object ids on a shared deque. Workers push the frontier they discover onto its
+ * tail and take from the tail too, so marking goes depth first and the deque stays short. Idle workers block on the
+ * deque, and once no segment is left anywhere every worker is handed an end marker. Whether an id has been marked is
+ * decided through a shared {@link ConcurrentObjectIDBitmap} so every object is traversed at most once.
+ * <p>
+ * The candidate set is not thread safe, so the workers look ids up in a bitmap copy of it instead. Marked ids are
+ * removed from the candidate set once all workers are done, which leaves it holding the same unreachable ids the single
+ * threaded traversal in {@link MarkAndSweepGCAlgorithm} would have left.
+ */
+final class ParallelMarker {
+
+  private static final List<ObjectID>               NO_MORE_WORK               = Collections.unmodifiableList(new ArrayList<ObjectID>(0));
+  private static final long                         STOP_CHECK_INTERVAL_MILLIS = 100;
+
+  private final GCHook                              gcHook;
+  private final Executor                            executor;
+  private final int                                 workerCount;
+  private final int                                 segmentSize;
+
+  private final LinkedBlockingDeque<List<ObjectID>> work                       = new LinkedBlockingDeque<List<ObjectID>>();
+  private final ConcurrentObjectIDBitmap            candidates                 = new ConcurrentObjectIDBitmap();
+  private final ConcurrentObjectIDBitmap            marked                     = new ConcurrentObjectIDBitmap();
+  private final AtomicInteger                       pendingSegments            = new AtomicInteger();
+  private final AtomicBoolean                       finished                   = new AtomicBoolean();
+  private final AtomicLong                          markedCount                = new AtomicLong();
+  private final AtomicLong                          visitedCount               = new AtomicLong();
+  private final AtomicReference<Throwable>          failure                    = new AtomicReference<Throwable>();
+  private final CountDownLatch                      workersDone;
+
+  private volatile boolean                          aborted                    = false;
+
+  ParallelMarker(GCHook gcHook, Executor executor, int workerCount, int segmentSize) {
+    if (workerCount < 2) { throw new IllegalArgumentException("Parallel marking needs at least 2 workers : "
+                                                              + workerCount); }
+    this.gcHook = gcHook;
+    this.executor = executor;
+    this.workerCount = workerCount;
+    this.segmentSize = Math.max(1, segmentSize);
+    this.workersDone = new CountDownLatch(workerCount);
+  }
+
+  /**
+   * Removes every id reachable from the roots from managedObjectIds.
+   *
+   * @return false if marking was stopped before completion, in which case managedObjectIds is left untouched.
+   */
+  boolean mark(Filter filter, Collection rootIds, ObjectIDSet managedObjectIds, LifeCycleState lifeCycleState) {
+    long candidateCount = 0;
+    for (ObjectID id : managedObjectIds) {
+      candidates.mark(id.toLong());
+      candidateCount++;
+    }
+    seedRoots(rootIds);
+    if (pendingSegments.get() == 0) {
+      finish();
+    }
+
+    for (int i = 0; i < workerCount; i++) {
+      try {
+        executor.execute(new Worker(filter, lifeCycleState, candidateCount));
+      } catch (RejectedExecutionException e) {
+        // the pool is shut down, the server is stopping
+        abort();
+        workersDone.countDown();
+      }
+    }
+
+    boolean interrupted = false;
+    while (true) {
+      try {
+        if (workersDone.await(STOP_CHECK_INTERVAL_MILLIS, TimeUnit.MILLISECONDS)) {
+          break;
+        }
+        if (lifeCycleState.isStopRequested()) {
+          abort();
+        }
+      } catch (InterruptedException e) {
+        interrupted = true;
+        abort();
+      }
+    }
+    if (interrupted) {
+      Thread.currentThread().interrupt();
+    }
+
+    Throwable t = failure.get();
+    if (t != null) { throw new TCRuntimeException(t); }
+    if (aborted) { return false; }
+
+    marked.removeMarkedFrom(managedObjectIds);
+    return true;
+  }
+
+  long getVisitedCount() {
+    return visitedCount.get();
+  }
+
+  long getMarkedCount() {
+    return markedCount.get();
+  }
+
+  int getWorkerCount() {
+    return workerCount;
+  }
+
+  private void seedRoots(Collection rootIds) {
+    // Roots are always traversed, even if they have already been reached from another root, just like the single
+    // threaded traversal does.
+    List<ObjectID> segment = new ArrayList<ObjectID>(segmentSize);
+    for (Iterator i = rootIds.iterator(); i.hasNext();) {
+      ObjectID rootId = (ObjectID) i.next();
+      if (candidates.isMarked(rootId.toLong()) && marked.mark(rootId.toLong())) {
+        markedCount.incrementAndGet();
+      }
+      segment.add(rootId);
+      if (segment.size() == segmentSize) {
+        push(segment);
+        segment = new ArrayList<ObjectID>(segmentSize);
+      }
+    }
+    if (!segment.isEmpty()) {
+      push(segment);
+    }
+  }
+
+  private void push(List<ObjectID> segment) {
+    pendingSegments.incrementAndGet();
+    work.addLast(segment);
+  }
+
+  /**
+   * Hands every worker an end marker, they take it ahead of whatever segments an abort left behind.
+   */
+  private void finish() {
+    if (finished.compareAndSet(false, true)) {
+      for (int i = 0; i < workerCount; i++) {
+        work.addLast(NO_MORE_WORK);
+      }
+    }
+  }
+
+  private void abort() {
+    aborted = true;
+    finish();
+  }
+
+  private final class Worker implements Runnable {
+    private final Filter         filter;
+    private final LifeCycleState lifeCycleState;
+    private final long           candidateCount;
+
+    Worker(Filter filter, LifeCycleState lifeCycleState, long candidateCount) {
+      this.filter = filter;
+      this.lifeCycleState = lifeCycleState;
+      this.candidateCount = candidateCount;
+    }
+
+    @Override
+    public void run() {
+      try {
+        while (true) {
+          List<ObjectID> segment = work.takeLast();
+          if (segment == NO_MORE_WORK) { return; }
+          try {
+            if (lifeCycleState.isStopRequested()) {
+              abort();
+            } else if (!aborted) {
+              process(segment);
+            }
+          } finally {
+            if (pendingSegments.decrementAndGet() == 0) {
+              finish();
+            }
+          }
+        }
+      } catch (InterruptedException e) {
+        // the pool is being shut down
+        abort();
+        Thread.currentThread().interrupt();
+      } catch (Throwable t) {
+        failure.compareAndSet(null, t);
+        abort();
+      } finally {
+        workersDone.countDown();
+      }
+    }
+
+    private void process(List<ObjectID> segment) {
+      List<ObjectID> frontier = new ArrayList<ObjectID>(segmentSize);
+      for (ObjectID id : segment) {
+        if (aborted || allCandidatesMarked()) { break; }
+        Set<ObjectID> references = gcHook.getObjectReferencesFrom(id);
+        visitedCount.incrementAndGet();
+
+        for (final ObjectID mid : references) {
+          if (mid == null) {
+            // see CDV-765
+            MarkAndSweepGarbageCollector.logger.error("null value returned from getObjectReferences() on " + id);
+            continue;
+          }
+          if (mid.isNull() || !candidates.isMarked(mid.toLong())) continue;
+          if (!marked.mark(mid.toLong())) continue;
+          markedCount.incrementAndGet();
+          if (filter.shouldVisit(mid)) {
+            frontier.add(mid);
+            if (frontier.size() == segmentSize) {
+              push(frontier);
+              frontier = new ArrayList<ObjectID>(segmentSize);
+            }
+          }
+        }
+      }
+      if (!frontier.isEmpty()) {
+        push(frontier);
+      }
+    }
+
+    private boolean allCandidatesMarked() {
+      return markedCount.get() >= candidateCount;
+    }
+  }
+}
@@ -17,6 +17,7 @@
 package com.tc.objectserver.handler;
 
 import com.tc.async.api.AbstractEventHandler;
+import com.tc.async.api.BatchedEventHandler;
 import com.tc.async.api.ConfigurationContext;
 import com.tc.async.api.EventContext;
 import com.tc.async.api.Sink;
@@ -63,8 +64,9 @@ import java.util.concurrent.TimeUnit;
  * 
  * @author steve
  */
-public class ApplyTransactionChangeHandler extends AbstractEventHandler {
+public class ApplyTransactionChangeHandler extends AbstractEventHandler implements BatchedEventHandler {
 
+  private static final int                 MAX_BATCH_SIZE      = 32;
   private static final int                 LWM_UPDATE_INTERVAL = TCPropertiesImpl.getProperties()
                                                                    .getInt("lwm.update.intervalInMillis", 10000);
 
@@ -102,6 +104,11 @@ public class ApplyTransactionChangeHandler extends AbstractEventHandler {
     }, 0, LWM_UPDATE_INTERVAL, TimeUnit.MILLISECONDS);
   }
 
+  @Override
+  public int getMaxBatchSize() {
+    return MAX_BATCH_SIZE;
+  }
+
   @Override
   public void handleEvent(final EventContext context) {
 
@@ -18,6 +18,7 @@ package com.tc.objectserver.handler;
 
 import com.google.common.collect.Multimap;
 import com.tc.async.api.AbstractEventHandler;
+import com.tc.async.api.BatchedEventHandler;
 import com.tc.async.api.ConfigurationContext;
 import com.tc.async.api.EventContext;
 import com.tc.async.api.Sink;
@@ -36,33 +37,44 @@ import com.tc.object.dna.api.LogicalChangeID;
 import com.tc.object.dna.api.LogicalChangeResult;
 import com.tc.object.msg.BroadcastTransactionMessage;
 import com.tc.object.net.DSOChannelManager;
+import com.tc.object.net.NoSuchChannelException;
 import com.tc.object.tx.TransactionID;
 import com.tc.objectserver.context.BroadcastChangeContext;
 import com.tc.objectserver.context.ObjectRequestServerContextImpl;
 import com.tc.objectserver.core.api.ServerConfigurationContext;
 import com.tc.objectserver.l1.api.ClientStateManager;
 import com.tc.objectserver.l1.api.InvalidateObjectManager;
+import com.tc.objectserver.managedobject.ApplyTransactionInfo;
 import com.tc.objectserver.mgmt.ObjectStatsRecorder;
 import com.tc.objectserver.tx.BroadcastDurabilityLevel;
 import com.tc.objectserver.tx.ServerTransactionManager;
+import com.tc.properties.TCPropertiesConsts;
 import com.tc.properties.TCPropertiesImpl;
 import com.tc.server.ServerEvent;
 import com.tc.stats.counter.sampled.SampledCounter;
 import com.tc.stats.counter.sampled.derived.SampledRateCounter;
 import com.tc.util.BitSetObjectIDSet;
+import com.tc.util.ObjectIDSet;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.SortedSet;
 
 /**
- * Broadcast the change to all connected clients
+ * Broadcast the change to the connected clients that are interested in it. Unless the transaction creates new roots,
+ * those are looked up from the reference index of the {@link ClientStateManager} rather than by pruning the changes
+ * for every connected client.
  */
-public class BroadcastChangeHandler extends AbstractEventHandler {
-  private static final TCLogger         logger = TCLogging.getLogger(BroadcastChangeHandler.class);
+public class BroadcastChangeHandler extends AbstractEventHandler implements BatchedEventHandler {
+  private static final TCLogger         logger         = TCLogging.getLogger(BroadcastChangeHandler.class);
+  private static final int              MAX_BATCH_SIZE = 32;
 
   private DSOChannelManager             channelManager;
   private ClientStateManager            clientStateManager;
@@ -74,6 +86,7 @@ public class BroadcastChangeHandler extends AbstractEventHandler {
   private final SampledRateCounter      changesPerBroadcast;
   private final InvalidateObjectManager invalidateObjMgr;
   private final BroadcastDurabilityLevel broadcastDurabilityLevel;
+  private final boolean                 coalesce;
 
   public BroadcastChangeHandler(final SampledCounter broadcastCounter, final ObjectStatsRecorder objectStatsRecorder,
                                 final SampledRateCounter changesPerBroadcast, InvalidateObjectManager invalidateObjMgr) {
@@ -82,14 +95,70 @@ public class BroadcastChangeHandler extends AbstractEventHandler {
     this.changesPerBroadcast = changesPerBroadcast;
     this.invalidateObjMgr = invalidateObjMgr;
     this.broadcastDurabilityLevel = BroadcastDurabilityLevel.getFromProperties(TCPropertiesImpl.getProperties());
+    this.coalesce = TCPropertiesImpl.getProperties()
+        .getBoolean(TCPropertiesConsts.L2_TRANSACTIONMANAGER_BROADCAST_COALESCE_ENABLED, true);
+  }
+
+  @Override
+  public int getMaxBatchSize() {
+    return MAX_BATCH_SIZE;
   }
 
   @Override
   public void handleEvent(final EventContext context) {
     final BroadcastChangeContext bcc = (BroadcastChangeContext) context;
+    broadcast(bcc, null);
+    broadcastCompleted(bcc);
+  }
+
+  /**
+   * With coalescing on, the messages built for the whole batch are only sent once every transaction in it has been
+   * processed, grouped by client and in transaction order for each client. Each message is still built only after the
+   * durability level of its own transaction is satisfied.
+   */
+  @Override
+  public void handleEvents(final Collection contexts) {
+    if (!this.coalesce || contexts.size() <= 1) {
+      for (final Object context : contexts) {
+        handleEvent((EventContext) context);
+      }
+      return;
+    }
+
+    final Map<ClientID, List<PendingBroadcast>> pending = new LinkedHashMap<ClientID, List<PendingBroadcast>>();
+    final List<BroadcastChangeContext> processed = new ArrayList<BroadcastChangeContext>(contexts.size());
+    try {
+      for (final Object context : contexts) {
+        final BroadcastChangeContext bcc = (BroadcastChangeContext) context;
+        broadcast(bcc, pending);
+        processed.add(bcc);
+      }
+    } finally {
+      for (final List<PendingBroadcast> broadcasts : pending.values()) {
+        for (final PendingBroadcast broadcast : broadcasts) {
+          send(broadcast.clientID, broadcast.message, broadcast.lookupObjectIDs);
+        }
+      }
+      for (final BroadcastChangeContext bcc : processed) {
+        broadcastCompleted(bcc);
+      }
+    }
+  }
+
+  private void broadcastCompleted(final BroadcastChangeContext bcc) {
+    this.transactionManager.broadcasted(bcc.getNodeID(), bcc.getTransactionID());
+    if (bcc.getServerTransactionID().isServerGeneratedTransaction()) {
+      bcc.getApplyInfo().getServerEventBuffer().removeEventsForTransaction(bcc.getGlobalTransactionID());
+    }
+  }
+
+  /**
+   * Builds the messages for the given transaction, they are sent right away when pending is null and added to it
+   * otherwise.
+   */
+  private void broadcast(final BroadcastChangeContext bcc, final Map<ClientID, List<PendingBroadcast>> pending) {
     final NodeID committerID = bcc.getNodeID();
     final TransactionID txnID = bcc.getTransactionID();
-    final MessageChannel[] channels = this.channelManager.getActiveChannels();
 
     final Multimap<ClientID, ServerEvent> serverEventsPerClient = bcc.getApplyInfo()
         .getServerEventBuffer().getServerEventsPerClient(bcc.getGlobalTransactionID());
@@ -103,6 +172,8 @@ public class BroadcastChangeHandler extends AbstractEventHandler {
       }
     }
 
+    final Collection<MessageChannel> channels = getInterestedChannels(bcc, serverEventsPerClient.keySet());
+
     for (final MessageChannel client : channels) {
       // TODO:: make message channel return clientID and short channelManager call.
       final ClientID clientID = this.channelManager.getClientIDFor(client.getChannelID());
@@ -149,13 +220,6 @@ public class BroadcastChangeHandler extends AbstractEventHandler {
           continue;
         }
 
-        if (lookupObjectIDs.size() > 0) {
-          this.managedObjectRequestSink.add(new ObjectRequestServerContextImpl(clientID, ObjectRequestID.NULL_ID,
-                                                                               lookupObjectIDs, Thread.currentThread()
-                                                                                   .getName(), -1,
-                                                                               LOOKUP_STATE.SERVER_INITIATED));
-        }
-
         final BroadcastTransactionMessage responseMessage = (BroadcastTransactionMessage) client
             .createMessage(TCMessageType.BROADCAST_TRANSACTION_MESSAGE);
         responseMessage.initialize(prunedChanges, bcc.getSerializer(), bcc.getLockIDs(), getNextChangeIDFor(clientID),
@@ -163,7 +227,16 @@ public class BroadcastChangeHandler extends AbstractEventHandler {
                                    bcc.getLowGlobalTransactionIDWatermark(), notifiedWaiters, newRoots,
                                    logicalChangeResults, serverEvents);
 
-        responseMessage.send();
+        if (pending == null) {
+          send(clientID, responseMessage, lookupObjectIDs);
+        } else {
+          List<PendingBroadcast> broadcasts = pending.get(clientID);
+          if (broadcasts == null) {
+            broadcasts = new ArrayList<PendingBroadcast>();
+            pending.put(clientID, broadcasts);
+          }
+          broadcasts.add(new PendingBroadcast(clientID, responseMessage, lookupObjectIDs));
+        }
 
         if (logger.isDebugEnabled() && !notifiedWaiters.isEmpty()) {
           logger.debug("Notified waiters " + clientID + " " + notifiedWaiters);
@@ -174,10 +247,60 @@ public class BroadcastChangeHandler extends AbstractEventHandler {
         this.changesPerBroadcast.increment(prunedChanges.size(), 1);
       }
     }
-    this.transactionManager.broadcasted(committerID, txnID);
-    if (bcc.getServerTransactionID().isServerGeneratedTransaction()) {
-      bcc.getApplyInfo().getServerEventBuffer().removeEventsForTransaction(bcc.getGlobalTransactionID());
+  }
+
+  private void send(final ClientID clientID, final BroadcastTransactionMessage message,
+                    final SortedSet<ObjectID> lookupObjectIDs) {
+    if (lookupObjectIDs.size() > 0) {
+      this.managedObjectRequestSink.add(new ObjectRequestServerContextImpl(clientID, ObjectRequestID.NULL_ID,
+                                                                           lookupObjectIDs, Thread.currentThread()
+                                                                               .getName(), -1,
+                                                                           LOOKUP_STATE.SERVER_INITIATED));
+    }
+    message.send();
+  }
+
+  private Collection<MessageChannel> getInterestedChannels(final BroadcastChangeContext bcc,
+                                                           final Set<ClientID> serverEventClients) {
+    // every client gets to see new roots
+    if (!bcc.getNewRoots().isEmpty()) { return Arrays.asList(this.channelManager.getActiveChannels()); }
+
+    final ApplyTransactionInfo applyInfo = bcc.getApplyInfo();
+    final Set<ObjectID> oids = new HashSet<ObjectID>();
+    for (final Object change : bcc.getChanges()) {
+      oids.add(((DNA) change).getObjectID());
+    }
+    // clients holding a parent get sent its newly referenced children
+    oids.addAll(applyInfo.getAllParents());
+    final Invalidations invalidations = applyInfo.getObjectIDsToInvalidate();
+    if (invalidations != null && !invalidations.isEmpty()) {
+      for (final ObjectID mapID : invalidations.getMapIds()) {
+        final ObjectIDSet invalidated = invalidations.getObjectIDSetForMapId(mapID);
+        for (final ObjectID oid : invalidated) {
+          oids.add(oid);
+        }
+      }
     }
+
+    final Set<NodeID> clients = this.clientStateManager.addClientsReferencingTo(oids, new HashSet<NodeID>());
+    // the committer may need its apply results or echoed changes
+    clients.add(bcc.getNodeID());
+    clients.addAll(bcc.getNewlyPendingWaiters().getNodeIDs());
+    clients.addAll(serverEventClients);
+
+    final List<MessageChannel> channels = new ArrayList<MessageChannel>(clients.size());
+    for (final NodeID nodeID : clients) {
+      // server generated transactions are committed by a ServerID
+      if (!(nodeID instanceof ClientID)) {
+        continue;
+      }
+      try {
+        channels.add(this.channelManager.getActiveChannel(nodeID));
+      } catch (NoSuchChannelException e) {
+        // client is gone or not active yet, it would not have been broadcasted to either way
+      }
+    }
+    return channels;
   }
 
   private void updateStats(final List prunedChanges) {
@@ -197,6 +320,19 @@ public class BroadcastChangeHandler extends AbstractEventHandler {
     return 0;
   }
 
+  private static final class PendingBroadcast {
+    private final ClientID                    clientID;
+    private final BroadcastTransactionMessage message;
+    private final SortedSet<ObjectID>         lookupObjectIDs;
+
+    private PendingBroadcast(final ClientID clientID, final BroadcastTransactionMessage message,
+                             final SortedSet<ObjectID> lookupObjectIDs) {
+      this.clientID = clientID;
+      this.message = message;
+      this.lookupObjectIDs = lookupObjectIDs;
+    }
+  }
+
   @Override
   protected void initialize(final ConfigurationContext context) {
     final ServerConfigurationContext scc = (ServerConfigurationContext) context;
@@ -48,6 +48,16 @@ public class DeleteReference implements ManagedObjectReference {
     return true;
   }
 
+  @Override
+  public void markDeleted() {
+
+  }
+
+  @Override
+  public boolean isCacheable() {
+    return false;
+  }
+
   @Override
   public boolean markReference() {
     return false;
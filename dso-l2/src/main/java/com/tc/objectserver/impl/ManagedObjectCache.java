@@ -0,0 +1,233 @@
+/* 
+ * The contents of this file are subject to the Terracotta Public License Version
+ * 2.0 (the "License"); You may not use this file except in compliance with the
+ * License. You may obtain a copy of the License at 
+ *
+ *      http://terracotta.org/legal/terracotta-public-license.
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ * the specific language governing rights and limitations under the License.
+ *
+ * The Covered Software is Terracotta Platform.
+ *
+ * The Initial Developer of the Covered Software is 
+ *      Terracotta, Inc., a Software AG company
+ */
+package com.tc.objectserver.impl;
+
+import com.tc.object.ObjectID;
+import com.tc.objectserver.core.api.ManagedObject;
+import com.tc.objectserver.managedobject.SerializedClusterObjectState;
+import com.tc.text.PrettyPrintable;
+import com.tc.text.PrettyPrinter;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Bounded cache of leaf objects that are not checked out. Leaf objects are dropped from the object manager's
+ * references as soon as they are released, so without it every lookup of a hot value faults and deserializes it from
+ * the object store again.
+ * <p>
+ * The cache is split into segments, each evicting with CLOCK on the estimated heap size of its objects : an object
+ * found in the cache gets a second chance, an object that was only faulted in once goes first. Objects that were
+ * evicted or never cached are still in the object store in their serialized form.
+ * <p>
+ * An object stays cached while it is checked out, so the cache has to be told about every object that is deleted.
+ */
+class ManagedObjectCache implements PrettyPrintable {
+
+  // ManagedObjectImpl, its state, the ObjectID and the entry
+  static final int         ENTRY_OVERHEAD = 160;
+  private static final int SEGMENTS       = 16;
+
+  private final Segment[]  segments;
+
+  ManagedObjectCache(long maxBytes) {
+    this.segments = new Segment[SEGMENTS];
+    for (int i = 0; i < SEGMENTS; i++) {
+      segments[i] = new Segment(Math.max(0, maxBytes) / SEGMENTS);
+    }
+  }
+
+  /**
+   * @return the cached object or null
+   */
+  ManagedObject get(ObjectID id) {
+    return segmentFor(id).get(id);
+  }
+
+  /**
+   * Caches a released object, only leaf objects are cached.
+   */
+  void add(ManagedObject object) {
+    if (!(object.getManagedObjectState() instanceof SerializedClusterObjectState)) { return; }
+    segmentFor(object.getID()).add(object, weigh(object));
+  }
+
+  void remove(ObjectID id) {
+    segmentFor(id).remove(id);
+  }
+
+  void addCachedIDsTo(Collection<ObjectID> ids) {
+    for (Segment segment : segments) {
+      segment.addCachedIDsTo(ids);
+    }
+  }
+
+  int size() {
+    int size = 0;
+    for (Segment segment : segments) {
+      size += segment.size();
+    }
+    return size;
+  }
+
+  long getSizeInBytes() {
+    long bytes = 0;
+    for (Segment segment : segments) {
+      bytes += segment.getSizeInBytes();
+    }
+    return bytes;
+  }
+
+  @Override
+  public PrettyPrinter prettyPrint(PrettyPrinter out) {
+    out.print(getClass().getName()).print(" objects: " + size()).print(" bytes: " + getSizeInBytes()).flush();
+    return out;
+  }
+
+  private Segment segmentFor(ObjectID id) {
+    long l = id.toLong();
+    int h = (int) (l ^ (l >>> 32));
+    h ^= (h >>> 16);
+    return segments[h & (SEGMENTS - 1)];
+  }
+
+  static int weigh(ManagedObject object) {
+    return ENTRY_OVERHEAD + ((SerializedClusterObjectState) object.getManagedObjectState()).getValueLength();
+  }
+
+  private static final class Segment {
+    private final long                 maxBytes;
+    private final Map<ObjectID, Entry> entries = new HashMap<ObjectID, Entry>();
+    // the clock hand, entries form a ring behind it
+    private Entry                      hand;
+    private long                       bytes;
+
+    Segment(long maxBytes) {
+      this.maxBytes = maxBytes;
+    }
+
+    synchronized ManagedObject get(ObjectID id) {
+      Entry entry = entries.get(id);
+      if (entry == null) { return null; }
+      entry.referenced = true;
+      return entry.object;
+    }
+
+    synchronized void add(ManagedObject object, int weight) {
+      if (weight > maxBytes) {
+        remove(object.getID());
+        return;
+      }
+      Entry entry = entries.get(object.getID());
+      if (entry == null) {
+        entry = new Entry(object);
+        entries.put(object.getID(), entry);
+        link(entry);
+      } else {
+        entry.object = object;
+        bytes -= entry.weight;
+      }
+      entry.weight = weight;
+      bytes += weight;
+      while (bytes > maxBytes) {
+        evict(entry);
+      }
+    }
+
+    synchronized void remove(ObjectID id) {
+      Entry entry = entries.remove(id);
+      if (entry != null) {
+        unlink(entry);
+      }
+    }
+
+    synchronized void addCachedIDsTo(Collection<ObjectID> ids) {
+      ids.addAll(entries.keySet());
+    }
+
+    synchronized int size() {
+      return entries.size();
+    }
+
+    synchronized long getSizeInBytes() {
+      return bytes;
+    }
+
+    /**
+     * Sweeps the hand until it finds an entry that was not used since the last sweep, the entry that is being added is
+     * only evicted when it is the last one left.
+     */
+    private void evict(Entry added) {
+      while (true) {
+        Entry victim = hand;
+        hand = hand.next;
+        if (victim == added && victim.next != victim) {
+          continue;
+        }
+        if (victim.referenced) {
+          victim.referenced = false;
+        } else {
+          entries.remove(victim.object.getID());
+          unlink(victim);
+          return;
+        }
+      }
+    }
+
+    private void link(Entry entry) {
+      if (hand == null) {
+        entry.next = entry;
+        entry.prev = entry;
+        hand = entry;
+      } else {
+        // just behind the hand, so it is looked at last
+        entry.next = hand;
+        entry.prev = hand.prev;
+        hand.prev.next = entry;
+        hand.prev = entry;
+      }
+    }
+
+    private void unlink(Entry entry) {
+      bytes -= entry.weight;
+      if (entry.next == entry) {
+        hand = null;
+      } else {
+        entry.prev.next = entry.next;
+        entry.next.prev = entry.prev;
+        if (hand == entry) {
+          hand = entry.next;
+        }
+      }
+      entry.next = null;
+      entry.prev = null;
+    }
+  }
+
+  private static final class Entry {
+    private ManagedObject object;
+    private int           weight;
+    private boolean       referenced;
+    private Entry         next;
+    private Entry         prev;
+
+    Entry(ManagedObject object) {
+      this.object = object;
+    }
+  }
+}
@@ -27,6 +27,18 @@ public interface ManagedObjectReference {
 
   public boolean isRemoveOnRelease();
 
+  /**
+   * The object was deleted while checked out, its reference is to be removed once it is released and it is never to go
+   * back to the object cache.
+   */
+  public void markDeleted();
+
+  /**
+   * @return false if the object was faulted in for a single check out or was deleted, and is not to be cached once it is
+   *         released
+   */
+  public boolean isCacheable();
+
   public boolean markReference();
 
   public boolean unmarkReference();
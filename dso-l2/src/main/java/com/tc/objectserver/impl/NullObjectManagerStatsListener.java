@@ -24,10 +24,12 @@ public class NullObjectManagerStatsListener implements ObjectManagerStatsListene
     //
   }
 
+  @Override
   public void cacheHit() {
     //
   }
 
+  @Override
   public void cacheMiss() {
     //
   }
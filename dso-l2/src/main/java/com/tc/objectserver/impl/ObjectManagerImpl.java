@@ -37,6 +37,8 @@ import com.tc.objectserver.dgc.impl.NullGarbageCollector;
 import com.tc.objectserver.l1.api.ClientStateManager;
 import com.tc.objectserver.managedobject.ManagedObjectChangeListener;
 import com.tc.objectserver.managedobject.ManagedObjectTraverser;
+import com.tc.properties.TCPropertiesConsts;
+import com.tc.properties.TCPropertiesImpl;
 import com.tc.text.PrettyPrintable;
 import com.tc.text.PrettyPrinter;
 import com.tc.util.Assert;
@@ -83,7 +85,7 @@ public class ObjectManagerImpl implements ObjectManager, ManagedObjectChangeList
   }
 
   private static enum AccessLevel {
-    READ, READ_WRITE
+    READ, READ_UNCACHED, READ_WRITE
   }
 
   private static final TCLogger                                 logger          = TCLogging
@@ -91,6 +93,7 @@ public class ObjectManagerImpl implements ObjectManager, ManagedObjectChangeList
 
   private final PersistentManagedObjectStore                    objectStore;
   private final ConcurrentMap<ObjectID, ManagedObjectReference> references;
+  private final ManagedObjectCache                              objectCache;
   private final AtomicInteger                                   checkedOutCount = new AtomicInteger();
   private final PendingList                                     pending         = new PendingList();
   private final AtomicBoolean                                   inShutdown      = new AtomicBoolean();
@@ -116,6 +119,8 @@ public class ObjectManagerImpl implements ObjectManager, ManagedObjectChangeList
     this.objectStore = objectStore;
     this.persistenceTransactionProvider = persistenceTransactionProvider;
     this.references = new ConcurrentHashMap<ObjectID, ManagedObjectReference>(16384, 0.75f, 256);
+    this.objectCache = new ManagedObjectCache(TCPropertiesImpl.getProperties()
+        .getLong(TCPropertiesConsts.L2_OBJECTMANAGER_CACHE_MAX_BYTES));
   }
 
   @Override
@@ -155,6 +160,7 @@ public class ObjectManagerImpl implements ObjectManager, ManagedObjectChangeList
     out.print(this.getClass().getName()).flush();
     out.indent().print("collector: ").visit(this.collector).flush();
     out.indent().print("references: ").visit(this.references).flush();
+    out.indent().print("objectCache: ").visit(this.objectCache).flush();
     out.indent().print("checkedOutCount: " + this.checkedOutCount.get()).flush();
     out.indent().print("pending: ").visit(this.pending).flush();
     out.indent().print("objectStore: ").duplicateAndIndent().visit(this.objectStore).flush();
@@ -235,6 +241,16 @@ public class ObjectManagerImpl implements ObjectManager, ManagedObjectChangeList
     return lookup(id, MissingObjects.OK, NewObjects.DONT_LOOKUP, AccessLevel.READ);
   }
 
+  @Override
+  public ManagedObject getObjectByIDReadOnlyUncached(final ObjectID id) {
+    return lookup(id, MissingObjects.OK, NewObjects.DONT_LOOKUP, AccessLevel.READ_UNCACHED);
+  }
+
+  @Override
+  public long getObjectVersion(final ObjectID id) {
+    return this.objectStore.getObjectVersion(id);
+  }
+
   private boolean markReferenced(final ManagedObjectReference reference) {
     final boolean marked = reference.markReference();
     if (marked) {
@@ -264,22 +280,32 @@ public class ObjectManagerImpl implements ObjectManager, ManagedObjectChangeList
   }
 
   /**
-   * Retrieves materialized references -- if not materialized, will initiate a request to materialize them from the
-   * object store.
+   * Retrieves materialized references -- if not materialized, will take them from the object cache or initiate a
+   * request to materialize them from the object store. References materialized with removeOnRelease set are dropped
+   * again when they are released.
    * 
    * @return null if the object is missing
    */
-  private ManagedObjectReference getOrLookupReference(final ObjectID id) {
+  private ManagedObjectReference getOrLookupReference(final ObjectID id, final boolean removeOnRelease) {
     ManagedObjectReference rv = getReference(id);
 
-    if (rv == null) {
-      ManagedObject mo = objectStore.getObjectByID(id);
-      if (mo == null) {
-        // Object doesn't exist, bail out early.
-        return null;
-      } else {
-        rv = addNewReference(mo, false);
-      }
+    if (rv != null) {
+      this.stats.cacheHit();
+      return rv;
+    }
+    ManagedObject mo = this.objectCache.get(id);
+    if (mo != null) {
+      this.stats.cacheHit();
+      // it was cached already, so it goes back to the cache on release whatever the lookup
+      return addNewReference(mo, false);
+    }
+    this.stats.cacheMiss();
+    mo = objectStore.getObjectByID(id);
+    if (mo == null) {
+      // Object doesn't exist, bail out early.
+      return null;
+    } else {
+      rv = addNewReference(mo, removeOnRelease);
     }
     return rv;
   }
@@ -357,7 +383,8 @@ public class ObjectManagerImpl implements ObjectManager, ManagedObjectChangeList
       // We don't check available flag before doing calling getOrLookupReference() for two reasons.
       // 1) To get the right hit/miss count and
       // 2) to Fault objects that are not available
-      final ManagedObjectReference reference = getOrLookupReference(id);
+      final ManagedObjectReference reference = getOrLookupReference(id,
+                                                                    context.getAccessLevel() == AccessLevel.READ_UNCACHED);
       if (reference == null) {
         context.missingObject(id);
         continue;
@@ -510,6 +537,7 @@ public class ObjectManagerImpl implements ObjectManager, ManagedObjectChangeList
         if ( ref != null ) {
             i.remove();
             objectStore.removeAllObjectsByID(Collections.singleton(id));
+            objectCache.remove(id);
             removeReferenceAndDestroyIfNecessary(id);
             unmarkReferenced(ref);
             makeUnBlocked(id);
@@ -528,6 +556,12 @@ public class ObjectManagerImpl implements ObjectManager, ManagedObjectChangeList
       if (checkedOutObjects.contains(objectID)) {
         // If the object is already checked out by this operation, just delete it.
         objectStore.removeAllObjectsByID(Collections.singleton(objectID));
+        objectCache.remove(objectID);
+        ManagedObjectReference checkedOut = getReference(objectID);
+        if (checkedOut != null) {
+          // keep it from going back to the object cache when it is released
+          checkedOut.markDeleted();
+        }
         if ( deleteable == null ) {
           continue;
         }
@@ -538,6 +572,7 @@ public class ObjectManagerImpl implements ObjectManager, ManagedObjectChangeList
       } else {
         // The object exists and is deletable, delete it.
         objectStore.removeAllObjectsByID(Collections.singleton(objectID));
+        objectCache.remove(objectID);
         removeReferenceAndDestroyIfNecessary(objectID);
       }
       unmarkReferenced(deleteable);
@@ -571,6 +606,7 @@ public class ObjectManagerImpl implements ObjectManager, ManagedObjectChangeList
   public ObjectIDSet getObjectIDsInCache() {
     final ObjectIDSet ids = new BitSetObjectIDSet();
     ids.addAll(this.references.keySet()); // CDM doesn't throw ConcurrentModificationException
+    this.objectCache.addCachedIDsTo(ids);
     return ids;
   }
 
@@ -635,7 +671,14 @@ public class ObjectManagerImpl implements ObjectManager, ManagedObjectChangeList
         logger.info(mor + " is DIRTY but isRemoveOnRelease is true, resetting it");
         mor.setRemoveOnRelease(false);
       } else {
-        final ManagedObjectReference removed = this.removeReferenceAndDestroyIfNecessary(mor.getObjectID());
+        if (mor.isCacheable() && !mor.isNew()) {
+          // Cached while it is still checked out, so that nobody can delete it before it is in the cache. Objects
+          // faulted in for a single check out or deleted while checked out are not cacheable.
+          this.objectCache.add(mor.getObject());
+        }
+        // Only drop the reference, the object may well still be in the store (say faulted in by an uncached lookup).
+        // States are destroyed on the delete path alone.
+        final ManagedObjectReference removed = this.references.remove(mor.getObjectID());
 
         if (removed == null) { throw new AssertionError("Removed is null : " + mor); }
       }
@@ -28,6 +28,8 @@ import java.util.concurrent.atomic.AtomicLong;
 public class ObjectManagerStatsImpl implements ObjectManagerStatsListener, ObjectManagerStats {
 
   private final AtomicLong     objectsCreated = new AtomicLong();
+  private final AtomicLong     cacheHits      = new AtomicLong();
+  private final AtomicLong     cacheMisses    = new AtomicLong();
   private final SampledCounter newObjectCounter;
 
   public ObjectManagerStatsImpl(SampledCounter newObjectCounter) {
@@ -40,9 +42,36 @@ public class ObjectManagerStatsImpl implements ObjectManagerStatsListener, Objec
     this.newObjectCounter.increment();
   }
 
+  @Override
+  public void cacheHit() {
+    this.cacheHits.incrementAndGet();
+  }
+
+  @Override
+  public void cacheMiss() {
+    this.cacheMisses.incrementAndGet();
+  }
+
   @Override
   public long getTotalObjectsCreated() {
     return this.objectsCreated.get();
   }
 
+  @Override
+  public long getTotalCacheHits() {
+    return this.cacheHits.get();
+  }
+
+  @Override
+  public long getTotalCacheMisses() {
+    return this.cacheMisses.get();
+  }
+
+  @Override
+  public double getCacheHitRatio() {
+    long hits = this.cacheHits.get();
+    long total = hits + this.cacheMisses.get();
+    return total == 0 ? 0 : (double) hits / total;
+  }
+
 }
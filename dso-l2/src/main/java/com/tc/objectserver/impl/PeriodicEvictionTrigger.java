@@ -108,6 +108,11 @@ public class PeriodicEvictionTrigger extends AbstractEvictionTrigger {
             return Collections.<ObjectID>emptySet();
         }
 
+        @Override
+        public Set<NodeID> addClientsReferencingTo(Collection<ObjectID> oids, Set<NodeID> clients) {
+            return clients;
+        }
+
         @Override
         public void removeReferencedFrom(NodeID nodeID, Set<ObjectID> secondPass) {
             throw new UnsupportedOperationException("Not supported yet.");
@@ -207,9 +212,14 @@ public class PeriodicEvictionTrigger extends AbstractEvictionTrigger {
         int samples = calculateSampleCount(max, map);
 
         final SamplingType samplingType = (dumpLive) ? SamplingType.FOR_EVICTION : SamplingType.FOR_EXPIRATION;
-        Map<Object, EvictableEntry> grabbed = ( !stop ) ?
-            map.getRandomSamples(samples, (dumpLive) ? clients : noReference, samplingType) :
-            Collections.<Object,EvictableEntry>emptyMap();
+        Map<Object, EvictableEntry> grabbed;
+        if ( stop ) {
+            grabbed = Collections.<Object,EvictableEntry>emptyMap();
+        } else if ( dumpLive ) {
+            grabbed = map.getRandomSamples(samples, clients, samplingType);
+        } else {
+            grabbed = map.getExpiredEntries(samples, noReference);
+        }
 
         sampled = grabbed.size();
 
@@ -116,6 +116,14 @@ public class PersistentManagedObjectStore {
     return rv;
   }
 
+  /**
+   * @return the version of the object in the store, -1 if it is not there
+   */
+  public long getObjectVersion(final ObjectID id) {
+    assertNotInShutdown();
+    return this.objectPersistor.loadObjectVersion(id);
+  }
+
   public void shutdown() {
     assertNotInShutdown();
     this.inShutdown = true;
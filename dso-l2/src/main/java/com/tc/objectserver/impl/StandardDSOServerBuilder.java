@@ -76,12 +76,14 @@ import com.tc.objectserver.persistence.ClusterStatePersistor;
 import com.tc.objectserver.persistence.HeapStorageManagerFactory;
 import com.tc.objectserver.persistence.OffheapStorageManagerFactory;
 import com.tc.objectserver.persistence.Persistor;
+import com.tc.objectserver.persistence.TransactionLogPersistor;
 import com.tc.objectserver.persistence.offheap.DataStorageConfig;
 import com.tc.objectserver.search.IndexHACoordinator;
 import com.tc.objectserver.search.IndexManager;
 import com.tc.objectserver.search.NullIndexHACoordinator;
 import com.tc.objectserver.search.NullSearchRequestManager;
 import com.tc.objectserver.search.SearchRequestManager;
+import com.tc.objectserver.search.inmemory.InMemoryIndexHACoordinator;
 import com.tc.objectserver.tx.CommitTransactionMessageToTransactionBatchReader;
 import com.tc.objectserver.tx.PassThruTransactionFilter;
 import com.tc.objectserver.tx.ServerTransactionManager;
@@ -117,6 +119,7 @@ public class StandardDSOServerBuilder implements DSOServerBuilder {
   private static final boolean OFFHEAP_DISABLED = TCPropertiesImpl
       .getProperties()
       .getBoolean(TCPropertiesConsts.L2_OFFHEAP_DISABLED, false);
+  private static final String  TRANSACTION_LOG_DIRECTORY = "transaction-log";
   private final HaConfig            haConfig;
 
   protected final TCSecurityManager securityManager;
@@ -156,6 +159,9 @@ public class StandardDSOServerBuilder implements DSOServerBuilder {
   @Override
   public IndexHACoordinator createIndexHACoordinator(L2ConfigurationSetupManager configSetupManager, Sink sink, StorageManager storageManager)
       throws IOException {
+    if (TCPropertiesImpl.getProperties().getBoolean(TCPropertiesConsts.L2_SEARCH_INMEMORY_ENABLED, false)) {
+      return new InMemoryIndexHACoordinator();
+    }
     return new NullIndexHACoordinator();
   }
 
@@ -335,10 +341,16 @@ public class StandardDSOServerBuilder implements DSOServerBuilder {
     }
 
     if (persistent) throw new UnsupportedOperationException("Restartability is not supported in open source servers.");
+    File transactionLogDirectory = null;
+    if (TCPropertiesImpl.getProperties().getBoolean(TCPropertiesConsts.L2_TRANSACTION_LOG_ENABLED, false)) {
+      transactionLogDirectory = new File(l2DataPath, TRANSACTION_LOG_DIRECTORY);
+      // nothing else of this server survives a restart, the transactions committed before it must not either
+      TransactionLogPersistor.clear(transactionLogDirectory);
+    }
     if (offHeapConfig.enabled()) {
-      return new Persistor(new OffheapStorageManagerFactory(offHeapConfig));
+      return new Persistor(new OffheapStorageManagerFactory(offHeapConfig), transactionLogDirectory);
     } else {
-      return new Persistor(HeapStorageManagerFactory.INSTANCE);
+      return new Persistor(HeapStorageManagerFactory.INSTANCE, transactionLogDirectory);
     }
   }
 
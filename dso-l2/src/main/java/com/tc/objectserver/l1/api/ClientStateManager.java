@@ -72,6 +72,14 @@ public interface ClientStateManager {
 
   public Set<ObjectID> addAllReferencedIdsTo(Set<ObjectID> rescueIds);
 
+  /**
+   * Adds the clients that currently reference any of the given objects to clients, without looking at the state of
+   * the other clients.
+   *
+   * @return clients
+   */
+  public Set<NodeID> addClientsReferencingTo(Collection<ObjectID> oids, Set<NodeID> clients);
+
   public void removeReferencedFrom(NodeID nodeID, Set<ObjectID> secondPass);
 
   public Set<ObjectID> addReferences(NodeID nodeID, Set<ObjectID> oids);
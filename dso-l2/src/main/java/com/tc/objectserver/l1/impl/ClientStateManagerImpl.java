@@ -49,10 +49,12 @@ public class ClientStateManagerImpl implements ClientStateManager, PrettyPrintab
 
   private final ConcurrentHashMap<NodeID, ClientStateImpl>      clientStates;
   private final CopyOnWriteArraySet<ObjectReferenceAddListener> objectRefsAddListener;
+  private final ObjectReferenceIndex                            referenceIndex;
 
   public ClientStateManagerImpl() {
     this.clientStates = new ConcurrentHashMap<NodeID, ClientStateImpl>();
     this.objectRefsAddListener = new CopyOnWriteArraySet<ObjectReferenceAddListener>();
+    this.referenceIndex = new ObjectReferenceIndex();
   }
 
   @Override
@@ -211,6 +213,14 @@ public class ClientStateManagerImpl implements ClientStateManager, PrettyPrintab
     return ids;
   }
 
+  @Override
+  public Set<NodeID> addClientsReferencingTo(final Collection<ObjectID> oids, final Set<NodeID> clients) {
+    for (final ObjectID oid : oids) {
+      this.referenceIndex.addReferencingNodesTo(oid, clients);
+    }
+    return clients;
+  }
+
   @Override
   public void removeReferencedFrom(final NodeID id, final Set<ObjectID> oids) {
     final ClientStateImpl c = getClientState(id);
@@ -240,14 +250,15 @@ public class ClientStateManagerImpl implements ClientStateManager, PrettyPrintab
     final Set<ObjectID> newReferences = new HashSet<ObjectID>();
     c.lock();
     try {
-      final Set<ObjectID> refs = c.getReferences();
-      if (refs.isEmpty()) {
-        refs.addAll(oids);
+      if (c.getReferences().isEmpty()) {
+        for (final ObjectID oid : oids) {
+          c.addReference(oid);
+        }
         return oids;
       }
 
       for (final ObjectID oid : oids) {
-        if (refs.add(oid)) {
+        if (c.addReference(oid)) {
           newReferences.add(oid);
         }
       }
@@ -264,12 +275,20 @@ public class ClientStateManagerImpl implements ClientStateManager, PrettyPrintab
 
   @Override
   public void shutdownNode(final NodeID waitee) {
-    this.clientStates.remove(waitee);
+    final ClientStateImpl c = this.clientStates.remove(waitee);
+    if (c != null) {
+      c.lock();
+      try {
+        c.dispose();
+      } finally {
+        c.unlock();
+      }
+    }
   }
 
   @Override
   public boolean startupNode(final NodeID nodeID) {
-    return (this.clientStates.putIfAbsent(nodeID, new ClientStateImpl(nodeID)) == null);
+    return (this.clientStates.putIfAbsent(nodeID, new ClientStateImpl(nodeID, this.referenceIndex)) == null);
   }
 
   private ClientStateImpl getClientState(final NodeID id) {
@@ -312,12 +331,15 @@ public class ClientStateManagerImpl implements ClientStateManager, PrettyPrintab
   }
 
   private static class ClientStateImpl implements PrettyPrintable, ClientState {
-    private final NodeID        nodeID;
-    private final Set<ObjectID> managed = new BitSetObjectIDSet();
-    private final ReentrantLock lock    = new ReentrantLock();
+    private final NodeID               nodeID;
+    private final ObjectReferenceIndex referenceIndex;
+    private final Set<ObjectID>        managed  = new BitSetObjectIDSet();
+    private final ReentrantLock        lock     = new ReentrantLock();
+    private boolean                    disposed = false;
 
-    public ClientStateImpl(final NodeID nodeID) {
+    public ClientStateImpl(final NodeID nodeID, final ObjectReferenceIndex referenceIndex) {
       this.nodeID = nodeID;
+      this.referenceIndex = referenceIndex;
     }
 
     public void lock() {
@@ -357,7 +379,11 @@ public class ClientStateManagerImpl implements ClientStateManager, PrettyPrintab
 
     @Override
     public boolean addReference(final ObjectID id) {
-      return this.managed.add(id);
+      if (!this.managed.add(id)) { return false; }
+      if (!this.disposed) {
+        this.referenceIndex.add(id, this.nodeID);
+      }
+      return true;
     }
 
     @Override
@@ -367,7 +393,21 @@ public class ClientStateManagerImpl implements ClientStateManager, PrettyPrintab
 
     @Override
     public void removeReferences(final Set<ObjectID> references) {
-      this.managed.removeAll(references);
+      for (final ObjectID id : references) {
+        if (this.managed.remove(id) && !this.disposed) {
+          this.referenceIndex.remove(id, this.nodeID);
+        }
+      }
+    }
+
+    /**
+     * Drops this client from the reference index, the state is no longer reachable from the manager after this.
+     */
+    public void dispose() {
+      this.disposed = true;
+      for (final ObjectID id : this.managed) {
+        this.referenceIndex.remove(id, this.nodeID);
+      }
     }
 
     @Override
@@ -381,6 +421,11 @@ public class ClientStateManagerImpl implements ClientStateManager, PrettyPrintab
     }
   }
 
+  // testing
+  int getIndexedObjectCount() {
+    return this.referenceIndex.size();
+  }
+
   // testing
   public ObjectReferenceAddListener[] getObjectReferenceAddRegisteredListeners() {
     return this.objectRefsAddListener.toArray(new ObjectReferenceAddListener[] {});
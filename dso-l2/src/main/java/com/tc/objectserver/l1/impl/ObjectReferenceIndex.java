@@ -0,0 +1,163 @@
+/* 
+ * The contents of this file are subject to the Terracotta Public License Version
+ * 2.0 (the "License"); You may not use this file except in compliance with the
+ * License. You may obtain a copy of the License at 
+ *
+ *      http://terracotta.org/legal/terracotta-public-license.
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ * the specific language governing rights and limitations under the License.
+ *
+ * The Covered Software is Terracotta Platform.
+ *
+ * The Initial Developer of the Covered Software is 
+ *      Terracotta, Inc., a Software AG company
+ */
+package com.tc.objectserver.l1.impl;
+
+import com.tc.net.NodeID;
+import com.tc.object.ObjectID;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Inverted view of the client states : for every object referenced by at least one client, the clients referencing it.
+ * Most objects are only held by one client, so a single holder is stored as is, a handful of them as a small array and
+ * only widely shared objects get a set of their own.
+ */
+class ObjectReferenceIndex {
+
+  private static final int             SEGMENTS        = 64;
+  private static final int             MAX_ARRAY_NODES = 8;
+
+  private final Map<ObjectID, Object>[] segments;
+
+  @SuppressWarnings("unchecked")
+  ObjectReferenceIndex() {
+    this.segments = new Map[SEGMENTS];
+    for (int i = 0; i < SEGMENTS; i++) {
+      this.segments[i] = new HashMap<ObjectID, Object>();
+    }
+  }
+
+  void add(final ObjectID oid, final NodeID nodeID) {
+    final Map<ObjectID, Object> segment = segmentFor(oid);
+    synchronized (segment) {
+      final Object current = segment.get(oid);
+      if (current == null) {
+        segment.put(oid, nodeID);
+      } else if (current instanceof NodeID) {
+        if (!current.equals(nodeID)) {
+          segment.put(oid, new NodeID[] { (NodeID) current, nodeID });
+        }
+      } else if (current instanceof NodeID[]) {
+        final NodeID[] nodes = (NodeID[]) current;
+        if (indexOf(nodes, nodeID) >= 0) { return; }
+        if (nodes.length < MAX_ARRAY_NODES) {
+          final NodeID[] grown = new NodeID[nodes.length + 1];
+          System.arraycopy(nodes, 0, grown, 0, nodes.length);
+          grown[nodes.length] = nodeID;
+          segment.put(oid, grown);
+        } else {
+          final Set<NodeID> set = new HashSet<NodeID>();
+          for (final NodeID node : nodes) {
+            set.add(node);
+          }
+          set.add(nodeID);
+          segment.put(oid, set);
+        }
+      } else {
+        asSet(current).add(nodeID);
+      }
+    }
+  }
+
+  void remove(final ObjectID oid, final NodeID nodeID) {
+    final Map<ObjectID, Object> segment = segmentFor(oid);
+    synchronized (segment) {
+      final Object current = segment.get(oid);
+      if (current == null) {
+        return;
+      } else if (current instanceof NodeID) {
+        if (current.equals(nodeID)) {
+          segment.remove(oid);
+        }
+      } else if (current instanceof NodeID[]) {
+        final NodeID[] nodes = (NodeID[]) current;
+        final int index = indexOf(nodes, nodeID);
+        if (index < 0) { return; }
+        if (nodes.length == 2) {
+          segment.put(oid, nodes[1 - index]);
+        } else {
+          final NodeID[] shrunk = new NodeID[nodes.length - 1];
+          System.arraycopy(nodes, 0, shrunk, 0, index);
+          System.arraycopy(nodes, index + 1, shrunk, index, shrunk.length - index);
+          segment.put(oid, shrunk);
+        }
+      } else {
+        final Set<NodeID> set = asSet(current);
+        if (set.remove(nodeID) && set.isEmpty()) {
+          segment.remove(oid);
+        }
+      }
+    }
+  }
+
+  /**
+   * Adds the clients referencing oid to the given collection.
+   */
+  void addReferencingNodesTo(final ObjectID oid, final Collection<NodeID> nodeIDs) {
+    final Map<ObjectID, Object> segment = segmentFor(oid);
+    synchronized (segment) {
+      final Object current = segment.get(oid);
+      if (current == null) {
+        return;
+      } else if (current instanceof NodeID) {
+        nodeIDs.add((NodeID) current);
+      } else if (current instanceof NodeID[]) {
+        for (final NodeID node : (NodeID[]) current) {
+          nodeIDs.add(node);
+        }
+      } else {
+        nodeIDs.addAll(asSet(current));
+      }
+    }
+  }
+
+  /**
+   * @return the number of objects referenced by at least one client
+   */
+  int size() {
+    int size = 0;
+    for (final Map<ObjectID, Object> segment : this.segments) {
+      synchronized (segment) {
+        size += segment.size();
+      }
+    }
+    return size;
+  }
+
+  private Map<ObjectID, Object> segmentFor(final ObjectID oid) {
+    final long id = oid.toLong();
+    int hash = (int) (id ^ (id >>> 32));
+    hash ^= (hash >>> 16);
+    return this.segments[hash & (SEGMENTS - 1)];
+  }
+
+  private static int indexOf(final NodeID[] nodes, final NodeID nodeID) {
+    for (int i = 0; i < nodes.length; i++) {
+      if (nodes[i].equals(nodeID)) { return i; }
+    }
+    return -1;
+  }
+
+  @SuppressWarnings("unchecked")
+  private static Set<NodeID> asSet(final Object value) {
+    return (Set<NodeID>) value;
+  }
+}
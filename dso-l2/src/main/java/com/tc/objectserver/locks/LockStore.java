@@ -19,85 +19,79 @@ package com.tc.objectserver.locks;
 import com.tc.object.locks.LockID;
 import com.tc.util.Assert;
 
-import java.util.HashMap;
 import java.util.Iterator;
-import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * LockStore is used for storing all the locks present in the system. Access to any lock can be obtained by checking out
- * a lock and then by checking it in. Locks will be distributed into segments and the location of the lock will be
- * decided on the basis of the a hash function
+ * a lock and then by checking it in. Locks are kept in a concurrent map and guarded by a fixed set of stripes, the
+ * stripe of a lock being decided on the basis of a hash function. There are many more stripes than lock stage threads,
+ * so checking out a lock rarely waits for a thread working on an unrelated lock, and the guards cost the same memory
+ * whether there are a hundred locks or millions.
  * <p>
  * Apart from this getNextLock (for scanning all the locks) has been provided which takes care of the checking out/in of
  * lock.
  */
 public class LockStore {
-  private static final int                  DEFAULT_SEGMENTS = 32;
-  private final HashMap<LockID, ServerLock> segments[];
-  private final ReentrantLock[]             guards;
-  private final int                         segmentShift;
-  private final int                         segmentMask;
-  private final LockFactory                 lockFactory;
+  private static final int                            DEFAULT_STRIPES = 256;
+  private final ConcurrentHashMap<LockID, ServerLock> locks;
+  private final ReentrantLock[]                       guards;
+  private final int                                   stripeMask;
+  private final LockFactory                           lockFactory;
 
   public LockStore(LockFactory factory) {
-    this(DEFAULT_SEGMENTS, factory);
+    this(Math.max(DEFAULT_STRIPES, Runtime.getRuntime().availableProcessors() * 16), factory);
   }
 
-  public LockStore(int numberOfSegments, LockFactory factory) {
-    if (numberOfSegments <= 0) throw new IllegalArgumentException();
+  /**
+   * @param numberOfStripes - the number of guards, rounded up to a power of two
+   */
+  public LockStore(int numberOfStripes, LockFactory factory) {
+    if (numberOfStripes <= 0) throw new IllegalArgumentException();
 
     this.lockFactory = factory;
-    // Find power-of-two sizes best matching arguments
-    int sshift = 0;
-    int ssize = 1;
-    while (ssize < numberOfSegments) {
-      ++sshift;
-      ssize <<= 1;
+    int size = 1;
+    while (size < numberOfStripes) {
+      size <<= 1;
     }
-    segmentShift = 32 - sshift;
-    segmentMask = ssize - 1;
-    numberOfSegments = ssize;
-
-    segments = new HashMap[numberOfSegments];
-    guards = new ReentrantLock[numberOfSegments];
-
-    for (int i = 0; i < segments.length; i++) {
-      segments[i] = new HashMap();
+    stripeMask = size - 1;
+    guards = new ReentrantLock[size];
+    for (int i = 0; i < guards.length; i++) {
       guards[i] = new ReentrantLock();
     }
+    this.locks = new ConcurrentHashMap<LockID, ServerLock>(size, 0.75f, size);
   }
 
   public ServerLock checkOut(LockID lockID) {
-    int index = indexFor(lockID);
-    guards[index].lock();
-    ServerLock lock = segments[index].get(lockID);
+    guardFor(lockID).lock();
+    ServerLock lock = locks.get(lockID);
     if (lock == null) {
       lock = lockFactory.createLock(lockID);
-      segments[index].put(lockID, lock);
+      locks.put(lockID, lock);
     }
     return lock;
   }
 
   // Assumption that the lock is already held i.e. checked out
   public ServerLock remove(LockID lockID) {
-    int index = indexFor(lockID);
-    Assert.assertTrue(guards[index].isHeldByCurrentThread());
-    ServerLock lock = segments[index].remove(lockID);
-    return lock;
+    Assert.assertTrue(guardFor(lockID).isHeldByCurrentThread());
+    return locks.remove(lockID);
   }
 
   public void checkIn(ServerLock lock) {
-    LockID lockID = lock.getLockID();
-    int index = indexFor(lockID);
-    if (!guards[index].isHeldByCurrentThread()) { throw new AssertionError("Server Lock " + lock
-                                                                           + " was not checked out by the same thread"); }
-    guards[index].unlock();
+    ReentrantLock guard = guardFor(lock.getLockID());
+    if (!guard.isHeldByCurrentThread()) { throw new AssertionError("Server Lock " + lock
+                                                                   + " was not checked out by the same thread"); }
+    guard.unlock();
+  }
+
+  private ReentrantLock guardFor(LockID lockID) {
+    return guards[stripeFor(lockID)];
   }
 
-  private final int indexFor(Object o) {
-    int hash = hash(o);
-    return ((hash >>> segmentShift) & segmentMask);
+  int stripeFor(LockID lockID) {
+    return hash(lockID) & stripeMask;
   }
 
   /**
@@ -113,12 +107,13 @@ public class LockStore {
   }
 
   public void clear() {
-    for (int i = 0; i < guards.length; i++) {
-      guards[i].lock();
+    for (LockID lockID : locks.keySet()) {
+      ReentrantLock guard = guardFor(lockID);
+      guard.lock();
       try {
-        segments[i].clear();
+        locks.remove(lockID);
       } finally {
-        guards[i].unlock();
+        guard.unlock();
       }
     }
   }
@@ -128,36 +123,48 @@ public class LockStore {
   }
 
   public class LockIterator {
-    private Iterator<Entry<LockID, ServerLock>> currentIter;
-    private int                                 currentIndex = -1;
-    private ServerLock                          oldLock;
+    private final Iterator<ServerLock> currentIter = locks.values().iterator();
+    private ServerLock                 oldLock;
+    private boolean                    oldLockRemoved;
 
     /**
      * This method basically fetches the next lock by checking it out and checks back in the oldLock (that was given
      * last by this method). This method is a replacement for iterator keeping in the check out/in logic. NOTE: If you
-     * do not complete the iteration then please check back in the lock. Otherwise it might result in a segment locked
+     * do not complete the iteration then please check back in the lock. Otherwise it might result in a stripe locked
      * forever.
      */
     public ServerLock getNextLock(ServerLock lock) {
       validateOldLock(lock);
-      while (currentIter == null || !currentIter.hasNext()) {
-        HashMap<LockID, ServerLock> nextSegment = fetchNextSegment();
-        if (nextSegment == null) { return null; }
-        currentIter = nextSegment.entrySet().iterator();
+      if (oldLock != null) {
+        LockStore.this.checkIn(oldLock);
+        oldLock = null;
       }
-      Assert.assertNotNull(currentIter);
-      oldLock = currentIter.next().getValue();
-      return oldLock;
+      while (currentIter.hasNext()) {
+        ServerLock next = currentIter.next();
+        ReentrantLock guard = guardFor(next.getLockID());
+        guard.lock();
+        // the lock might have been removed while we were waiting for its stripe
+        if (locks.get(next.getLockID()) == next) {
+          oldLock = next;
+          oldLockRemoved = false;
+          return oldLock;
+        }
+        guard.unlock();
+      }
+      return null;
     }
 
     public void remove() {
-      Assert.assertNotNull(currentIter);
-      currentIter.remove();
+      Assert.assertNotNull(oldLock);
+      Assert.assertFalse(oldLockRemoved);
+      LockStore.this.remove(oldLock.getLockID());
+      oldLockRemoved = true;
     }
 
     public void checkIn(ServerLock lock) {
       Assert.assertEquals(oldLock, lock);
       LockStore.this.checkIn(lock);
+      oldLock = null;
     }
 
     private void validateOldLock(ServerLock lock) {
@@ -166,18 +173,6 @@ public class LockStore {
       } else {
         Assert.assertNull(lock);
       }
-
-    }
-
-    private HashMap<LockID, ServerLock> fetchNextSegment() {
-      if (currentIndex >= 0 && currentIndex < segments.length) {
-        guards[currentIndex].unlock();
-      }
-      currentIndex++;
-      if (currentIndex >= segments.length) { return null; }
-
-      guards[currentIndex].lock();
-      return segments[currentIndex];
     }
   }
-}
\ No newline at end of file
+}
@@ -53,6 +53,15 @@ public class NotifiedWaiters {
     }
   }
 
+  /**
+   * @return the nodes that have notified waiters
+   */
+  public Set<NodeID> getNodeIDs() {
+    synchronized (notifiedSets) {
+      return new HashSet<NodeID>(notifiedSets.keySet());
+    }
+  }
+
   private Set getSetFor(NodeID nodeID) {
     return (Set) notifiedSets.get(nodeID);
   }
@@ -0,0 +1,74 @@
+/* 
+ * The contents of this file are subject to the Terracotta Public License Version
+ * 2.0 (the "License"); You may not use this file except in compliance with the
+ * License. You may obtain a copy of the License at 
+ *
+ *      http://terracotta.org/legal/terracotta-public-license.
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ * the specific language governing rights and limitations under the License.
+ *
+ * The Covered Software is Terracotta Platform.
+ *
+ * The Initial Developer of the Covered Software is 
+ *      Terracotta, Inc., a Software AG company
+ */
+package com.tc.objectserver.managedobject;
+
+import java.util.Random;
+
+/**
+ * Packs what eviction needs to know about the use of an entry into an int: the minute it was last accessed in the low
+ * {@link #MINUTE_BITS} bits and a logarithmic access counter in the top 8 bits. The counter goes up with a chance that
+ * halves every {@link #LOG_FACTOR} accesses, so 255 stands for about a million of them, and comes down by one for every
+ * {@link #DECAY_MINUTES} the entry goes unused. A clock of 0 is an entry that was never accessed since it is tracked.
+ */
+public final class AccessClock {
+
+  static final int            MINUTE_BITS       = 24;
+  private static final int    MINUTE_MASK       = (1 << MINUTE_BITS) - 1;
+  static final int            MAX_FREQUENCY     = 255;
+  // new entries start a little above 0 so that they get a chance to be used before being evicted
+  static final int            INITIAL_FREQUENCY = 5;
+  static final int            LOG_FACTOR        = 10;
+  static final int            DECAY_MINUTES     = 1;
+
+  private static final Random RANDOM            = new Random();
+
+  private AccessClock() {
+    // static utility
+  }
+
+  public static int nowMinutes() {
+    return (int) ((System.currentTimeMillis() / 60000) & MINUTE_MASK);
+  }
+
+  /**
+   * @return the clock of an entry accessed at the given minute, having been accessed as the given clock says before.
+   */
+  public static int touch(final int clock, final int nowMinutes) {
+    return touch(clock, nowMinutes, RANDOM.nextDouble());
+  }
+
+  static int touch(final int clock, final int nowMinutes, final double random) {
+    int frequency = clock == 0 ? INITIAL_FREQUENCY : frequency(clock, nowMinutes);
+    if (frequency < MAX_FREQUENCY) {
+      int above = Math.max(0, frequency - INITIAL_FREQUENCY);
+      if (random < 1.0 / (above * LOG_FACTOR + 1)) {
+        frequency++;
+      }
+    }
+    return (frequency << MINUTE_BITS) | (nowMinutes & MINUTE_MASK);
+  }
+
+  public static int idleMinutes(final int clock, final int nowMinutes) {
+    if (clock == 0) { return MINUTE_MASK; }
+    return (nowMinutes - clock) & MINUTE_MASK;
+  }
+
+  public static int frequency(final int clock, final int nowMinutes) {
+    int frequency = clock >>> MINUTE_BITS;
+    return Math.max(0, frequency - idleMinutes(clock, nowMinutes) / DECAY_MINUTES);
+  }
+}
@@ -32,6 +32,8 @@ public class CDSMValue implements EvictableEntry {
 
   private long lastAccessedTime;
   private long version;
+  // eviction bookkeeping local to this server, left out of equals and hashCode
+  private int accessClock;
 
   public CDSMValue(final ObjectID objectID) {
     this(objectID, 0, 0, 0, 0, 0L);
@@ -82,6 +84,17 @@ public class CDSMValue implements EvictableEntry {
     this.version = version;
   }
 
+  /**
+   * @see AccessClock
+   */
+  public int getAccessClock() {
+    return accessClock;
+  }
+
+  public void setAccessClock(final int accessClock) {
+    this.accessClock = accessClock;
+  }
+
   public void setLastAccessedTime(final long lastAccessedTime) {
     checkArgument(lastAccessedTime >= creationTime);
     this.lastAccessedTime = lastAccessedTime;
@@ -132,6 +145,6 @@ public class CDSMValue implements EvictableEntry {
 
   @Override
   public String toString() {
-    return "CDSMValue{" + "objectID=" + objectID + ", creationTime=" + creationTime + ", timeToIdle=" + timeToIdle + ", timeToLive=" + timeToLive + ", lastAccessedTime=" + lastAccessedTime + ", version=" + version + '}';
+    return "CDSMValue{" + "objectID=" + objectID + ", creationTime=" + creationTime + ", timeToIdle=" + timeToIdle + ", timeToLive=" + timeToLive + ", lastAccessedTime=" + lastAccessedTime + ", version=" + version + ", accessClock=" + accessClock + '}';
   }
 }
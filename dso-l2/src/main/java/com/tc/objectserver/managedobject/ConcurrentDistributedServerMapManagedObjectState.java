@@ -77,6 +77,21 @@ public class ConcurrentDistributedServerMapManagedObjectState extends PartialMap
   protected int                 dsoLockType;
 
   private static final double   OVERSHOOT                      = getOvershoot();
+  private static final boolean  EXPIRATION_INDEX_ENABLED       = TCPropertiesImpl
+                                                                   .getProperties()
+                                                                   .getBoolean(TCPropertiesConsts.EHCACHE_STORAGESTRATEGY_DCV2_EXPIRATION_INDEX_ENABLED,
+                                                                               true);
+  // how long an expired entry handed out for eviction waits before it is handed out again if it is still around, and
+  // how long after a walk over all the keys for expiry the next one starts
+  private static final int      EXPIRATION_RETRY_SECONDS       = 60;
+  // keys held by the expiration index at most
+  private static final int      EXPIRATION_INDEX_CAPACITY      = 16 * 1024;
+  // keys walked past per expiration pass to find those the index does not hold
+  private static final int      EXPIRATION_SCAN_BATCH          = 1024;
+  // reads kept between two transactions on the map, a uniform sample of them once there are more
+  private static final int      MAX_RECORDED_READS             = 256;
+  // at most this many keys are walked past per entry looked at when sampling for the coldest entries
+  private static final int      MAX_SAMPLE_STRIDE              = 8;
 
   static {
     LOGGER.info("Eviction overshoot threshold is " + OVERSHOOT);
@@ -95,6 +110,14 @@ public class ConcurrentDistributedServerMapManagedObjectState extends PartialMap
   private boolean               compressionEnabled;
   private boolean               copyOnReadEnabled;
   private final SetMultimap<ServerEventType, ClientID> eventRegistry                  = HashMultimap.create();
+  // created on the first expiration pass after the state is loaded, not persisted
+  private ExpirationWheel       expirationIndex;
+  private Iterator<Object>      expirationScanIterator;
+  private long                  nextExpirationScan;
+  private EvictionPolicy        evictionPolicy;
+  private Object[]              recordedReads;
+  private int                   readsSinceLastApply;
+  private Random                readSampler;
 
   protected ConcurrentDistributedServerMapManagedObjectState(final ObjectInput in, PersistentObjectFactory factory)
       throws IOException {
@@ -174,6 +197,7 @@ public class ConcurrentDistributedServerMapManagedObjectState extends PartialMap
       throws IOException {
     boolean broadcast = false;
     int eventCount = 0;
+    applyRecordedReads();
     while (cursor.next()) {
       final Object action = cursor.getAction();
       if (action instanceof PhysicalAction) {
@@ -219,8 +243,10 @@ public class ConcurrentDistributedServerMapManagedObjectState extends PartialMap
       this.dsoLockType = (Integer) action.getObject();
     } else if (MAX_TTI_SECONDS_FIELDNAME.equals(fieldName)) {
       this.maxTTISeconds = (Integer) action.getObject();
+      dropExpirationIndex();
     } else if (MAX_TTL_SECONDS_FIELDNAME.equals(fieldName)) {
       this.maxTTLSeconds = (Integer) action.getObject();
+      dropExpirationIndex();
     } else if (MAX_COUNT_IN_CLUSTER_FIELDNAME.equals(fieldName)) {
       this.targetMaxTotalCount = (Integer) action.getObject();
     } else if (INVALIDATE_ON_CHANGE_FIELDNAME.equals(fieldName)) {
@@ -228,6 +254,7 @@ public class ConcurrentDistributedServerMapManagedObjectState extends PartialMap
     } else if (fieldName.equals(CACHE_NAME_FIELDNAME)) {
       Object value = action.getObject();
       this.cacheName = asString(value);
+      this.evictionPolicy = null;
     } else if (LOCAL_CACHE_ENABLED_FIELDNAME.equals(fieldName)) {
       this.localCacheEnabled = (Boolean) action.getObject();
     } else if (COMPRESSION_ENABLED_FIELDNAME.equals(fieldName)) {
@@ -261,8 +288,10 @@ public class ConcurrentDistributedServerMapManagedObjectState extends PartialMap
         final int intValue = (Integer) params[1];
         if (MAX_TTI_SECONDS_FIELDNAME.equals(intFieldName)) {
           this.maxTTISeconds = intValue;
+          dropExpirationIndex();
         } else if (MAX_TTL_SECONDS_FIELDNAME.equals(intFieldName)) {
           this.maxTTLSeconds = intValue;
+          dropExpirationIndex();
         } else if (MAX_COUNT_IN_CLUSTER_FIELDNAME.equals(intFieldName)) {
           this.targetMaxTotalCount = intValue;
         } else {
@@ -417,7 +446,14 @@ public class ConcurrentDistributedServerMapManagedObjectState extends PartialMap
     final Object key = params[0];
     final ObjectID oid = (ObjectID) params[1];
 
+    if (getEvictionPolicy().tracksAccess()) {
+      value.setAccessClock(AccessClock.touch(old == null ? 0 : old.getAccessClock(), AccessClock.nowMinutes()));
+    }
     references.put(key, value);
+    if (old == null) {
+      // an entry already indexed comes up at its old expiry and is indexed again at its new one then
+      indexExpiry(key, value);
+    }
     addedReferences(applyInfo, key, value);
     removedReferences(applyInfo, old);
 
@@ -553,6 +589,9 @@ public class ConcurrentDistributedServerMapManagedObjectState extends PartialMap
     CDSMValue wrappedValue = getValueForKey(key);
     if (wrappedValue != null && value.equals(wrappedValue.getObjectID())) {
       wrappedValue.setLastAccessedTime(lastAccessedTime);
+      if (getEvictionPolicy().tracksAccess()) {
+        wrappedValue.setAccessClock(AccessClock.touch(wrappedValue.getAccessClock(), AccessClock.nowMinutes()));
+      }
       references.put(key, wrappedValue);
     }
   }
@@ -572,6 +611,7 @@ public class ConcurrentDistributedServerMapManagedObjectState extends PartialMap
           0, 0, 0, 0, value.getVersion() + 1), cacheName);
     }
     references.clear();
+    dropExpirationIndex();
   }
 
   /**
@@ -585,6 +625,7 @@ public class ConcurrentDistributedServerMapManagedObjectState extends PartialMap
                                                          ServerEventType.REMOVE, key, NULL_CDSM_VALUE, cacheName);
     }
     this.references.clear();
+    dropExpirationIndex();
   }
 
   private void applyRegisterServerEventListener(ApplyTransactionInfo applyInfo, Object[] params) {
@@ -640,6 +681,54 @@ public class ConcurrentDistributedServerMapManagedObjectState extends PartialMap
     out.writeBoolean(evictionEnabled);
   }
 
+  /**
+   * Notes that a client read the key, its access clock is brought up to date in the next transaction on this map so
+   * that reads do not write. Past {@link #MAX_RECORDED_READS} reads in between, a uniform sample of them is kept
+   * (reservoir sampling) so that the keys read late count as much as the ones read early.
+   */
+  public void recordRead(final Object portableKey) {
+    if (!getEvictionPolicy().tracksAccess()) { return; }
+    if (recordedReads == null) {
+      recordedReads = new Object[MAX_RECORDED_READS];
+      readSampler = new Random();
+    }
+    final int seen = readsSinceLastApply;
+    if (seen < recordedReads.length) {
+      recordedReads[seen] = portableKey;
+    } else {
+      final int slot = readSampler.nextInt(seen + 1);
+      if (slot < recordedReads.length) {
+        recordedReads[slot] = portableKey;
+      }
+    }
+    if (seen < Integer.MAX_VALUE) {
+      readsSinceLastApply = seen + 1;
+    }
+  }
+
+  private void applyRecordedReads() {
+    if (readsSinceLastApply == 0) { return; }
+    final int now = AccessClock.nowMinutes();
+    final int recorded = Math.min(readsSinceLastApply, recordedReads.length);
+    for (int i = 0; i < recorded; i++) {
+      final Object key = recordedReads[i];
+      recordedReads[i] = null;
+      final CDSMValue value = getValueForKey(key);
+      if (value != null) {
+        value.setAccessClock(AccessClock.touch(value.getAccessClock(), now));
+        references.put(key, value);
+      }
+    }
+    readsSinceLastApply = 0;
+  }
+
+  private EvictionPolicy getEvictionPolicy() {
+    if (evictionPolicy == null) {
+      evictionPolicy = EvictionPolicy.forCache(cacheName);
+    }
+    return evictionPolicy;
+  }
+
   public CDSMValue getValueForKey(final Object portableKey) {
     return (CDSMValue) this.references.get(portableKey);
   }
@@ -719,6 +808,9 @@ public class ConcurrentDistributedServerMapManagedObjectState extends PartialMap
                                                       final ClientObjectReferenceSet clientObjectRefSet,
                                                       final SamplingType smpType) {
     this.samplingType = smpType;
+    if (smpType == SamplingType.FOR_EVICTION && getEvictionPolicy().tracksAccess()) {
+      return getColdestSamples(count, clientObjectRefSet);
+    }
     final Map<Object, EvictableEntry> samples = new HashMap<Object, EvictableEntry>(count);
     final Set<Object> ignored = new HashSet<Object>(count);
     final Random r = new Random();
@@ -753,6 +845,101 @@ public class ConcurrentDistributedServerMapManagedObjectState extends PartialMap
     return samples;
   }
 
+  private Map<Object, EvictableEntry> getColdestSamples(final int count,
+                                                       final ClientObjectReferenceSet clientObjectRefSet) {
+    final EvictionSampler sampler = new EvictionSampler(getEvictionPolicy(), AccessClock.nowMinutes(), count);
+    final int size = getSize();
+    // the storage has no random access, so entries are picked at random along the walk instead: each key is looked at
+    // with a chance of one in stride, spreading the sample over up to MAX_SAMPLE_STRIDE times as many keys as it holds.
+    // The walk carries on from where the last pass stopped so that over time every entry gets a chance.
+    final int stride = Math.max(1, Math.min(size / sampler.capacity(), MAX_SAMPLE_STRIDE));
+    final Random r = new Random();
+    for (int i = 0; !sampler.isFull() && i < size; i++) {
+      if (evictionIterator == null || !evictionIterator.hasNext()) {
+        evictionIterator = references.keySet().iterator();
+      }
+      final Object k = evictionIterator.next();
+      if (stride > 1 && r.nextInt(stride) != 0) {
+        continue;
+      }
+      final CDSMValue value = getValueForKey(k);
+      if (value != null && !clientObjectRefSet.contains(value.getObjectID())) {
+        sampler.offer(k, value);
+      }
+    }
+    return sampler.coldest(count);
+  }
+
+  @Override
+  public Map<Object, EvictableEntry> getExpiredEntries(final int count,
+                                                       final ClientObjectReferenceSet clientObjectRefSet) {
+    if (!EXPIRATION_INDEX_ENABLED) { return getRandomSamples(count, clientObjectRefSet, SamplingType.FOR_EXPIRATION); }
+
+    this.samplingType = SamplingType.FOR_EXPIRATION;
+    final int now = (int) (System.currentTimeMillis() / 1000);
+    if (expirationIndex == null) {
+      expirationIndex = new ExpirationWheel(now, EXPIRATION_INDEX_CAPACITY);
+      nextExpirationScan = now;
+    }
+    scanForExpiry(now);
+    final Map<Object, EvictableEntry> expired = new HashMap<Object, EvictableEntry>();
+    for (final Object key : expirationIndex.pollExpired(now, count)) {
+      final CDSMValue value = getValueForKey(key);
+      // the index does not follow removes and later expiry times, what it hands out may be gone or not due any more
+      if (value == null) {
+        continue;
+      }
+      if (value.expiresIn(now, maxTTISeconds, maxTTLSeconds) >= 0) {
+        indexExpiry(key, value);
+        continue;
+      }
+      // should the eviction not go through, it gets another go later
+      expirationIndex.schedule(key, now + EXPIRATION_RETRY_SECONDS);
+      if (!clientObjectRefSet.contains(value.getObjectID())) {
+        expired.put(key, value);
+      }
+    }
+    return expired;
+  }
+
+  /**
+   * The index only holds keys that expire soon and only so many of them, so every pass walks on over a batch of the
+   * keys to index those the index missed. A walk over all the keys starts at most once per EXPIRATION_RETRY_SECONDS so
+   * that entries already handed out are not found again before their retry comes up.
+   */
+  private void scanForExpiry(final long now) {
+    if (expirationScanIterator == null) {
+      if (now < nextExpirationScan) { return; }
+      expirationScanIterator = references.keySet().iterator();
+    }
+    for (int i = 0; i < EXPIRATION_SCAN_BATCH && !expirationIndex.isFull(); i++) {
+      if (!expirationScanIterator.hasNext()) {
+        expirationScanIterator = null;
+        nextExpirationScan = now + EXPIRATION_RETRY_SECONDS;
+        return;
+      }
+      final Object key = expirationScanIterator.next();
+      final CDSMValue value = getValueForKey(key);
+      if (value != null) {
+        indexExpiry(key, value);
+      }
+    }
+  }
+
+  private void indexExpiry(final Object key, final CDSMValue value) {
+    if (expirationIndex == null) { return; }
+    // relative to 0 this is the absolute time of expiry, the entry counts as expired a second later
+    final long expiresAt = value.expiresIn(0, maxTTISeconds, maxTTLSeconds);
+    if (expiresAt != Long.MAX_VALUE) {
+      expirationIndex.schedule(key, expiresAt + 1);
+    }
+  }
+
+  private void dropExpirationIndex() {
+    expirationIndex = null;
+    expirationScanIterator = null;
+  }
+
   @Override
   public String getCacheName() {
     return cacheName;
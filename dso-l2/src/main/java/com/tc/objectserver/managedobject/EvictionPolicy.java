@@ -0,0 +1,88 @@
+/* 
+ * The contents of this file are subject to the Terracotta Public License Version
+ * 2.0 (the "License"); You may not use this file except in compliance with the
+ * License. You may obtain a copy of the License at 
+ *
+ *      http://terracotta.org/legal/terracotta-public-license.
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ * the specific language governing rights and limitations under the License.
+ *
+ * The Covered Software is Terracotta Platform.
+ *
+ * The Initial Developer of the Covered Software is 
+ *      Terracotta, Inc., a Software AG company
+ */
+package com.tc.objectserver.managedobject;
+
+import com.tc.logging.TCLogging;
+import com.tc.properties.TCProperties;
+import com.tc.properties.TCPropertiesConsts;
+import com.tc.properties.TCPropertiesImpl;
+
+/**
+ * How capacity eviction picks the entries of a server map to evict. The policy of a cache comes from
+ * ehcache.storageStrategy.dcv2.eviction.policy.&lt;cache name&gt; if set, ehcache.storageStrategy.dcv2.eviction.policy
+ * otherwise.
+ */
+public enum EvictionPolicy {
+  /**
+   * Evicts whatever sample it comes across, access clocks are not kept.
+   */
+  RANDOM {
+    @Override
+    long coldness(final int accessClock, final int nowMinutes) {
+      return 0;
+    }
+  },
+  /**
+   * Evicts the least recently used of a sample of entries.
+   */
+  LRU {
+    @Override
+    long coldness(final int accessClock, final int nowMinutes) {
+      return AccessClock.idleMinutes(accessClock, nowMinutes);
+    }
+  },
+  /**
+   * Evicts the least frequently used of a sample of entries, the least recently used of those on a tie.
+   */
+  LFU {
+    @Override
+    long coldness(final int accessClock, final int nowMinutes) {
+      int frequency = AccessClock.frequency(accessClock, nowMinutes);
+      int idle = AccessClock.idleMinutes(accessClock, nowMinutes);
+      return ((long) (AccessClock.MAX_FREQUENCY - frequency) << AccessClock.MINUTE_BITS) | idle;
+    }
+  };
+
+  /**
+   * @return a non negative number that is the larger the better an entry with the given clock is to evict.
+   */
+  abstract long coldness(int accessClock, int nowMinutes);
+
+  public boolean tracksAccess() {
+    return this != RANDOM;
+  }
+
+  public static EvictionPolicy forCache(final String cacheName) {
+    TCProperties properties = TCPropertiesImpl.getProperties();
+    String policy = null;
+    if (cacheName != null) {
+      policy = properties.getProperty(TCPropertiesConsts.EHCACHE_STORAGESTRATEGY_DCV2_EVICTION_POLICY + "." + cacheName,
+                                      true);
+    }
+    if (policy == null) {
+      policy = properties.getProperty(TCPropertiesConsts.EHCACHE_STORAGESTRATEGY_DCV2_EVICTION_POLICY, true);
+    }
+    if (policy == null) { return RANDOM; }
+    try {
+      return valueOf(policy.trim().toUpperCase());
+    } catch (IllegalArgumentException e) {
+      TCLogging.getLogger(EvictionPolicy.class).warn("Unknown eviction policy " + policy + " for cache " + cacheName
+                                                         + ", evicting at random");
+      return RANDOM;
+    }
+  }
+}
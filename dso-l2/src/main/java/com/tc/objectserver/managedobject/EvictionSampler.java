@@ -0,0 +1,86 @@
+/* 
+ * The contents of this file are subject to the Terracotta Public License Version
+ * 2.0 (the "License"); You may not use this file except in compliance with the
+ * License. You may obtain a copy of the License at 
+ *
+ *      http://terracotta.org/legal/terracotta-public-license.
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ * the specific language governing rights and limitations under the License.
+ *
+ * The Covered Software is Terracotta Platform.
+ *
+ * The Initial Developer of the Covered Software is 
+ *      Terracotta, Inc., a Software AG company
+ */
+package com.tc.objectserver.managedobject;
+
+import com.tc.objectserver.api.EvictableEntry;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Collects a sample of {@link #SAMPLES_PER_EVICTION} candidates for every entry to evict and keeps the coldest of them
+ * according to an {@link EvictionPolicy}. Candidates go into plain arrays and are ranked by sorting a single long array
+ * holding the coldness and index of each, so sampling does not allocate per candidate.
+ */
+public class EvictionSampler {
+
+  static final int             SAMPLES_PER_EVICTION = 5;
+  private static final int     INDEX_BITS           = 20;
+  private static final int     MAX_CANDIDATES       = 1 << INDEX_BITS;
+  private static final long    INDEX_MASK           = MAX_CANDIDATES - 1;
+
+  private final EvictionPolicy policy;
+  private final int            nowMinutes;
+  private final Object[]       keys;
+  private final CDSMValue[]    values;
+  private final long[]         ranks;
+  private int                  size;
+
+  public EvictionSampler(final EvictionPolicy policy, final int nowMinutes, final int evictionCount) {
+    this.policy = policy;
+    this.nowMinutes = nowMinutes;
+    int capacity = (int) Math.min(MAX_CANDIDATES, Math.max(1L, (long) evictionCount * SAMPLES_PER_EVICTION));
+    this.keys = new Object[capacity];
+    this.values = new CDSMValue[capacity];
+    this.ranks = new long[capacity];
+  }
+
+  public boolean isFull() {
+    return size == ranks.length;
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public int capacity() {
+    return ranks.length;
+  }
+
+  public void offer(final Object key, final CDSMValue value) {
+    if (isFull()) { throw new IllegalStateException("sample is full"); }
+    ranks[size] = (policy.coldness(value.getAccessClock(), nowMinutes) << INDEX_BITS) | size;
+    keys[size] = key;
+    values[size] = value;
+    size++;
+  }
+
+  /**
+   * @return the count coldest candidates, or all of them if there are not as many.
+   */
+  public Map<Object, EvictableEntry> coldest(final int count) {
+    Arrays.sort(ranks, 0, size);
+    final int selected = Math.min(count, size);
+    final Map<Object, EvictableEntry> coldest = new HashMap<Object, EvictableEntry>(selected * 4 / 3 + 1);
+    for (int i = size - 1; i >= size - selected; i--) {
+      int index = (int) (ranks[i] & INDEX_MASK);
+      coldest.put(keys[index], values[index]);
+    }
+    return coldest;
+  }
+}
@@ -0,0 +1,106 @@
+/* 
+ * The contents of this file are subject to the Terracotta Public License Version
+ * 2.0 (the "License"); You may not use this file except in compliance with the
+ * License. You may obtain a copy of the License at 
+ *
+ *      http://terracotta.org/legal/terracotta-public-license.
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ * the specific language governing rights and limitations under the License.
+ *
+ * The Covered Software is Terracotta Platform.
+ *
+ * The Initial Developer of the Covered Software is 
+ *      Terracotta, Inc., a Software AG company
+ */
+package com.tc.objectserver.managedobject;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Bounded timing wheel of keys by expiry time, in seconds. Each of the {@link #WHEEL_SIZE} slots covers a second, so
+ * the wheel only takes keys that expire less than {@link #WHEEL_SIZE} seconds out and never more than its capacity of
+ * them, whatever the size of the map. There is no index from a key to its slot: a key that is removed or scheduled
+ * again stays where it was and is handed out when that slot comes due, so the caller has to check that what it polls
+ * is still there and still expired, and a key may be handed out more than once.
+ * <p>
+ * Not thread safe, the owning map state is only accessed while checked out.
+ */
+public class ExpirationWheel {
+
+  static final int             WHEEL_SIZE = 1 << 10;
+  private static final int     WHEEL_MASK = WHEEL_SIZE - 1;
+
+  private final List<Object>[] slots;
+  private final List<Object>   due        = new ArrayList<Object>();
+  private final int            capacity;
+  private int                  size;
+  // every slot up to and including this second has been handed out
+  private long                 polledUpTo;
+
+  @SuppressWarnings("unchecked")
+  public ExpirationWheel(long now, int capacity) {
+    this.slots = new List[WHEEL_SIZE];
+    this.capacity = capacity;
+    this.polledUpTo = now - 1;
+  }
+
+  /**
+   * Schedules the key to expire at the given time, keys that are already due come out on the next poll.
+   *
+   * @return false if the key expires too far out or the wheel is full, it is not scheduled then
+   */
+  public boolean schedule(Object key, long expiresAt) {
+    if (size >= capacity || expiresAt - polledUpTo > WHEEL_SIZE) { return false; }
+    if (expiresAt <= polledUpTo) {
+      due.add(key);
+    } else {
+      int slot = (int) (expiresAt & WHEEL_MASK);
+      if (slots[slot] == null) {
+        slots[slot] = new ArrayList<Object>();
+      }
+      slots[slot].add(key);
+    }
+    size++;
+    return true;
+  }
+
+  /**
+   * Takes at most max of the keys that are due by now out of the wheel, earliest first.
+   */
+  public List<Object> pollExpired(long now, int max) {
+    List<Object> expired = new ArrayList<Object>(Math.min(max, size));
+    while (!due.isEmpty() && expired.size() < max) {
+      expired.add(due.remove(due.size() - 1));
+      size--;
+    }
+    while (expired.size() < max && polledUpTo < now) {
+      if (size == 0) {
+        polledUpTo = now;
+        break;
+      }
+      int slot = (int) ((polledUpTo + 1) & WHEEL_MASK);
+      List<Object> keys = slots[slot];
+      while (keys != null && !keys.isEmpty() && expired.size() < max) {
+        expired.add(keys.remove(keys.size() - 1));
+        size--;
+      }
+      if (keys == null || keys.isEmpty()) {
+        // given back once drained, a map that stops expiring does not hold on to its peak
+        slots[slot] = null;
+        polledUpTo++;
+      }
+    }
+    return expired;
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public boolean isFull() {
+    return size >= capacity;
+  }
+}
@@ -61,6 +61,7 @@ public class ManagedObjectImpl implements ManagedObject, ManagedObjectReference,
   private final static byte                IS_DIRTY_OFFSET          = 2;
   private final static byte                REFERENCED_OFFSET        = 4;
   private final static byte                REMOVE_ON_RELEASE_OFFSET = 8;
+  private final static byte                DELETED_OFFSET           = 16;
 
   private final static byte                INITIAL_FLAG_VALUE       = IS_DIRTY_OFFSET | IS_NEW_OFFSET;
 
@@ -286,9 +287,19 @@ public class ManagedObjectImpl implements ManagedObject, ManagedObjectReference,
   public boolean isRemoveOnRelease() {
     // Serialized entries are always remove on release
     return (state instanceof SerializedClusterObjectState)
-            || getFlag(REMOVE_ON_RELEASE_OFFSET);
+            || getFlag(REMOVE_ON_RELEASE_OFFSET) || getFlag(DELETED_OFFSET);
   }
-  
+
+  @Override
+  public void markDeleted() {
+    setFlag(DELETED_OFFSET, true);
+  }
+
+  @Override
+  public boolean isCacheable() {
+    return !getFlag(REMOVE_ON_RELEASE_OFFSET) && !getFlag(DELETED_OFFSET);
+  }
+
   @Override
   public boolean markReference() {
     return compareAndSetFlag(REFERENCED_OFFSET, false, true);
@@ -102,6 +102,13 @@ public class SerializedClusterObjectState extends AbstractManagedObjectState {
     return Collections.EMPTY_SET;
   }
 
+  /**
+   * @return the length of the serialized value, 0 if it has not been set
+   */
+  public int getValueLength() {
+    return value == null ? 0 : value.length;
+  }
+
   @Override
   public byte getType() {
     return ManagedObjectStateStaticConfig.SERIALIZED_CLUSTER_OBJECT.getStateObjectType();
@@ -26,11 +26,15 @@ import com.tc.object.dna.impl.UTF8ByteDataHolder;
 import com.tc.objectserver.managedobject.CDSMValue;
 
 import java.nio.ByteBuffer;
-import java.nio.CharBuffer;
 import java.util.HashMap;
 import java.util.Map;
 
 /**
+ * Every literal is written as a type byte followed by its value. Besides the {@link Serializer} methods, which hand
+ * out a new exactly sized buffer, literals can be written straight into a caller supplied buffer with
+ * {@link #serializeTo(Object, ByteBuffer)}, and {@link #equals(Object, ByteBuffer)} compares the fixed size types and
+ * strings against their encoded form without decoding them.
+ *
  * @author tim
  */
 public class LiteralSerializer extends Serializer<Object> {
@@ -40,8 +44,15 @@ public class LiteralSerializer extends Serializer<Object> {
   public static final int INT_SIZE = Integer.SIZE / Byte.SIZE;
   public static final int SHORT_SIZE = Short.SIZE / Byte.SIZE;
 
+  // What follows the fixed part of a CDSMValue, older values only ever have 0 or 1 here. Servers from before the access
+  // clock test for 1 rather than for the bit, so they cannot read values with ACCESS_CLOCK_FLAG set: a store written
+  // while a cache used the LRU or LFU eviction policy does not downgrade. Only those caches ever set it, so with the
+  // default RANDOM policy the format is unchanged. Going back to RANDOM does not rewrite values that already have it.
+  private static final byte TTI_TTL_FLAG = 1;
+  private static final byte ACCESS_CLOCK_FLAG = 2;
+
   private enum Type {
-    LONG {
+    LONG(1 + LONG_SIZE) {
       @Override
       public Long deserialize(final ByteBuffer buffer) {
         if (buffer.get() != ordinal()) {
@@ -51,21 +62,24 @@ public class LiteralSerializer extends Serializer<Object> {
       }
 
       @Override
-      ByteBuffer serialize(final Object object) {
+      void write(final Object object, final ByteBuffer buffer) {
         if (object instanceof Long) {
-          ByteBuffer buffer = ByteBuffer.allocate(1 + LONG_SIZE);
-          buffer.put((byte) ordinal()).putLong((Long)object).flip();
-          return buffer;
+          buffer.put((byte) ordinal()).putLong((Long)object);
         } else {
           throw new AssertionError();
         }
       }
 
+      @Override
+      boolean matches(final Object object, final ByteBuffer buffer, final int index) {
+        return buffer.getLong(index + 1) == (Long) object;
+      }
+
       @Override
       Class<?> toClass() {
         return Long.class;
       }
-    }, INT {
+    }, INT(1 + INT_SIZE) {
       @Override
       public Integer deserialize(final ByteBuffer buffer) {
         if (buffer.get() != ordinal()) {
@@ -75,21 +89,24 @@ public class LiteralSerializer extends Serializer<Object> {
       }
 
       @Override
-      ByteBuffer serialize(final Object object) {
+      void write(final Object object, final ByteBuffer buffer) {
         if (object instanceof Integer) {
-          ByteBuffer buffer = ByteBuffer.allocate(1 + INT_SIZE);
-          buffer.put((byte) ordinal()).putInt((Integer)object).flip();
-          return buffer;
+          buffer.put((byte) ordinal()).putInt((Integer)object);
         } else {
           throw new AssertionError();
         }
       }
 
+      @Override
+      boolean matches(final Object object, final ByteBuffer buffer, final int index) {
+        return buffer.getInt(index + 1) == (Integer) object;
+      }
+
       @Override
       Class<?> toClass() {
         return Integer.class;
       }
-    }, SHORT {
+    }, SHORT(1 + SHORT_SIZE) {
       @Override
       public Short deserialize(final ByteBuffer buffer) {
         if (buffer.get() != ordinal()) {
@@ -99,21 +116,24 @@ public class LiteralSerializer extends Serializer<Object> {
       }
 
       @Override
-      ByteBuffer serialize(final Object object) {
+      void write(final Object object, final ByteBuffer buffer) {
         if (object instanceof Short) {
-          ByteBuffer buffer = ByteBuffer.allocate(1 + SHORT_SIZE);
-          buffer.put((byte) ordinal()).putShort((Short)object).flip();
-          return buffer;
+          buffer.put((byte) ordinal()).putShort((Short)object);
         } else {
           throw new AssertionError();
         }
       }
 
+      @Override
+      boolean matches(final Object object, final ByteBuffer buffer, final int index) {
+        return buffer.getShort(index + 1) == (Short) object;
+      }
+
       @Override
       Class<?> toClass() {
         return Short.class;
       }
-    }, BYTE {
+    }, BYTE(2) {
       @Override
       public Byte deserialize(final ByteBuffer buffer) {
         if (buffer.get() != ordinal()) {
@@ -123,53 +143,78 @@ public class LiteralSerializer extends Serializer<Object> {
       }
 
       @Override
-      ByteBuffer serialize(final Object object) {
+      void write(final Object object, final ByteBuffer buffer) {
         if (object instanceof Byte) {
-          ByteBuffer buffer = ByteBuffer.allocate(2);
-          buffer.put((byte) ordinal()).put((Byte)object).flip();
-          return buffer;
+          buffer.put((byte) ordinal()).put((Byte)object);
         } else {
           throw new AssertionError();
         }
       }
 
+      @Override
+      boolean matches(final Object object, final ByteBuffer buffer, final int index) {
+        return buffer.get(index + 1) == (Byte) object;
+      }
+
       @Override
       Class<?> toClass() {
         return Byte.class;
       }
-    }, STRING {
+    }, STRING(VARIABLE_SIZE) {
       @Override
       public String deserialize(final ByteBuffer buffer) {
         if (buffer.get() != ordinal()) {
           throw new AssertionError();
         }
-        int length = buffer.getInt();
-        CharBuffer charBuffer = buffer.asCharBuffer();
-        charBuffer.limit(length); // length is in characters, not bytes.
-        buffer.position(buffer.position() + length * 2); // Consume the string out of the original buffer
-        return charBuffer.toString();
+        int length = buffer.getInt(); // length is in characters, not bytes.
+        char[] chars = new char[length];
+        for (int i = 0; i < length; i++) {
+          chars[i] = buffer.getChar();
+        }
+        return new String(chars);
       }
 
       @Override
-      ByteBuffer serialize(final Object object) {
+      int size(final Object object) {
+        return 1 + INT_SIZE + ((String) object).length() * 2;
+      }
+
+      @Override
+      void write(final Object object, final ByteBuffer buffer) {
         if (object instanceof String) {
           String s = (String) object;
-          ByteBuffer buffer = ByteBuffer.allocate(1 + INT_SIZE + s.length() * 2);
+          int length = s.length();
           buffer.put((byte)ordinal());
-          buffer.putInt(s.length());
-          buffer.position(buffer.position() + buffer.asCharBuffer().put(s).position() * 2);
-          buffer.flip();
-          return buffer;
+          buffer.putInt(length);
+          for (int i = 0; i < length; i++) {
+            buffer.putChar(s.charAt(i));
+          }
         } else {
           throw new AssertionError();
         }
       }
 
+      @Override
+      boolean matches(final Object object, final ByteBuffer buffer, final int index) {
+        String s = (String) object;
+        int length = s.length();
+        if (buffer.getInt(index + 1) != length) {
+          return false;
+        }
+        int charIndex = index + 1 + INT_SIZE;
+        for (int i = 0; i < length; i++, charIndex += 2) {
+          if (buffer.getChar(charIndex) != s.charAt(i)) {
+            return false;
+          }
+        }
+        return true;
+      }
+
       @Override
       Class<?> toClass() {
         return String.class;
       }
-    }, OBJECTID {
+    }, OBJECTID(1 + LONG_SIZE) {
       @Override
       public ObjectID deserialize(final ByteBuffer buffer) {
         if (buffer.get() != ordinal()) {
@@ -179,21 +224,24 @@ public class LiteralSerializer extends Serializer<Object> {
       }
 
       @Override
-      ByteBuffer serialize(final Object object) {
+      void write(final Object object, final ByteBuffer buffer) {
         if (object instanceof ObjectID) {
-          ByteBuffer buffer = ByteBuffer.allocate(1 + LONG_SIZE);
-          buffer.put((byte)ordinal()).putLong(((ObjectID)object).toLong()).flip();
-          return buffer;
+          buffer.put((byte)ordinal()).putLong(((ObjectID)object).toLong());
         } else {
           throw new AssertionError();
         }
       }
 
+      @Override
+      boolean matches(final Object object, final ByteBuffer buffer, final int index) {
+        return buffer.getLong(index + 1) == ((ObjectID) object).toLong();
+      }
+
       @Override
       Class<?> toClass() {
         return ObjectID.class;
       }
-    }, UTF8BYTES {
+    }, UTF8BYTES(VARIABLE_SIZE) {
       @Override
       Object deserialize(final ByteBuffer buffer) {
         if (buffer.get() != ordinal()) {
@@ -205,12 +253,15 @@ public class LiteralSerializer extends Serializer<Object> {
       }
 
       @Override
-      ByteBuffer serialize(final Object object) {
+      int size(final Object object) {
+        return 1 + INT_SIZE + ((UTF8ByteDataHolder) object).getBytes().length;
+      }
+
+      @Override
+      void write(final Object object, final ByteBuffer buffer) {
         if (object instanceof UTF8ByteDataHolder) {
           byte[] bytes = ((UTF8ByteDataHolder)object).getBytes();
-          ByteBuffer buffer = ByteBuffer.allocate(1 + INT_SIZE + bytes.length);
-          buffer.put((byte)ordinal()).putInt(bytes.length).put(bytes).flip();
-          return buffer;
+          buffer.put((byte)ordinal()).putInt(bytes.length).put(bytes);
         } else {
           throw new AssertionError();
         }
@@ -220,7 +271,7 @@ public class LiteralSerializer extends Serializer<Object> {
       Class<?> toClass() {
         return UTF8ByteDataHolder.class;
       }
-    }, UT8COMPRESSEDBYTES {
+    }, UT8COMPRESSEDBYTES(VARIABLE_SIZE) {
       @Override
       Object deserialize(final ByteBuffer buffer) {
         if (buffer.get() != ordinal()) {
@@ -232,14 +283,17 @@ public class LiteralSerializer extends Serializer<Object> {
       }
 
       @Override
-      ByteBuffer serialize(final Object object) {
+      int size(final Object object) {
+        return 1 + INT_SIZE + ((UTF8ByteCompressedDataHolder) object).getBytes().length + INT_SIZE * 3;
+      }
+
+      @Override
+      void write(final Object object, final ByteBuffer buffer) {
         if (object instanceof UTF8ByteCompressedDataHolder) {
           UTF8ByteCompressedDataHolder holder = (UTF8ByteCompressedDataHolder)object;
           byte[] bytes = holder.getBytes();
-          ByteBuffer buffer = ByteBuffer.allocate(1 + INT_SIZE + bytes.length + INT_SIZE * 3);
           buffer.put((byte)ordinal()).putInt(bytes.length).put(bytes);
-          buffer.putInt(holder.getUncompressedStringLength()).putInt(holder.getStringLength()).putInt(holder.getStringHash()).flip();
-          return buffer;
+          buffer.putInt(holder.getUncompressedStringLength()).putInt(holder.getStringLength()).putInt(holder.getStringHash());
         } else {
           throw new AssertionError();
         }
@@ -249,7 +303,7 @@ public class LiteralSerializer extends Serializer<Object> {
       Class<?> toClass() {
         return UTF8ByteCompressedDataHolder.class;
       }
-    }, ENUM {
+    }, ENUM(VARIABLE_SIZE) {
       @Override
       Object deserialize(final ByteBuffer buffer) {
         if (buffer.get() != ordinal()) {
@@ -264,14 +318,19 @@ public class LiteralSerializer extends Serializer<Object> {
       }
 
       @Override
-      ByteBuffer serialize(final Object object) {
+      int size(final Object object) {
+        EnumInstance enumInstance = (EnumInstance) object;
+        return 1 + INT_SIZE * 2 + enumInstance.getClassInstance().getName().getBytes().length
+               + enumInstance.getEnumName().getBytes().length;
+      }
+
+      @Override
+      void write(final Object object, final ByteBuffer buffer) {
         if (object instanceof EnumInstance) {
           EnumInstance enumInstance = (EnumInstance) object;
           byte[] valueBytes = enumInstance.getEnumName().getBytes();
           byte[] classInstanceBytes = enumInstance.getClassInstance().getName().getBytes();
-          ByteBuffer buffer = ByteBuffer.allocate(1 + INT_SIZE * 2 + classInstanceBytes.length + valueBytes.length);
-          buffer.put((byte)ordinal()).putInt(valueBytes.length).put(valueBytes).putInt(classInstanceBytes.length).put(classInstanceBytes).flip();
-          return buffer;
+          buffer.put((byte)ordinal()).putInt(valueBytes.length).put(valueBytes).putInt(classInstanceBytes.length).put(classInstanceBytes);
         } else {
           throw new AssertionError();
         }
@@ -281,7 +340,7 @@ public class LiteralSerializer extends Serializer<Object> {
       Class<?> toClass() {
         return EnumInstance.class;
       }
-    }, CDSMValue {
+    }, CDSMValue(VARIABLE_SIZE) {
       @Override
       Object deserialize(final ByteBuffer buffer) {
         if (buffer.get() != ordinal()) {
@@ -291,40 +350,59 @@ public class LiteralSerializer extends Serializer<Object> {
         long creationTime = buffer.getLong();
         long lastAccessedTime = buffer.getLong();
 
-        final byte isTtiTtlSet = buffer.get();
-        final long tti = (isTtiTtlSet == 1) ? buffer.getLong() : 0;
-        final long ttl = (isTtiTtlSet == 1) ? buffer.getLong() : 0;
+        final byte flags = buffer.get();
+        final long tti = ((flags & TTI_TTL_FLAG) != 0) ? buffer.getLong() : 0;
+        final long ttl = ((flags & TTI_TTL_FLAG) != 0) ? buffer.getLong() : 0;
         final long version = buffer.getLong();
+        final int accessClock = ((flags & ACCESS_CLOCK_FLAG) != 0) ? buffer.getInt() : 0;
 
-        return new CDSMValue(objectID, creationTime, lastAccessedTime, tti, ttl, version);
+        CDSMValue cdsmValue = new CDSMValue(objectID, creationTime, lastAccessedTime, tti, ttl, version);
+        cdsmValue.setAccessClock(accessClock);
+        return cdsmValue;
       }
 
       @Override
-      ByteBuffer serialize(final Object object) {
+      int size(final Object object) {
+        CDSMValue cdsmValue = (CDSMValue) object;
+        int size = hasTtiTtl(cdsmValue) ? 2 + LONG_SIZE * 6 : 2 + LONG_SIZE * 4;
+        return cdsmValue.getAccessClock() != 0 ? size + INT_SIZE : size;
+      }
+
+      @Override
+      void write(final Object object, final ByteBuffer buffer) {
         if (object instanceof CDSMValue) {
           CDSMValue cdsmValue = (CDSMValue) object;
-          ByteBuffer buffer = ByteBuffer.allocate(2 + LONG_SIZE * 6);
           buffer.put((byte) ordinal());
           buffer.putLong(cdsmValue.getObjectID().toLong()).putLong(cdsmValue.getCreationTime()).putLong(cdsmValue.getLastAccessedTime());
-          if (cdsmValue.getTimeToIdle() != 0 || cdsmValue.getTimeToLive() != 0) {
-            buffer.put((byte)1);
+          byte flags = 0;
+          if (hasTtiTtl(cdsmValue)) {
+            flags |= TTI_TTL_FLAG;
+          }
+          if (cdsmValue.getAccessClock() != 0) {
+            flags |= ACCESS_CLOCK_FLAG;
+          }
+          buffer.put(flags);
+          if (hasTtiTtl(cdsmValue)) {
             buffer.putLong(cdsmValue.getTimeToIdle()).putLong(cdsmValue.getTimeToLive());
-          } else {
-            buffer.put((byte)0);
           }
           buffer.putLong(cdsmValue.getVersion());
-          buffer.flip();
-          return buffer;
+          if (cdsmValue.getAccessClock() != 0) {
+            buffer.putInt(cdsmValue.getAccessClock());
+          }
         } else {
           throw new AssertionError();
         }
       }
 
+      private boolean hasTtiTtl(CDSMValue cdsmValue) {
+        return cdsmValue.getTimeToIdle() != 0 || cdsmValue.getTimeToLive() != 0;
+      }
+
       @Override
       Class<?> toClass() {
         return CDSMValue.class;
       }
-    }, BOOLEAN {
+    }, BOOLEAN(2) {
       @Override
       public Boolean deserialize(final ByteBuffer buffer) {
         if (buffer.get() != ordinal()) {
@@ -334,57 +412,127 @@ public class LiteralSerializer extends Serializer<Object> {
       }
 
       @Override
-      ByteBuffer serialize(final Object object) {
+      void write(final Object object, final ByteBuffer buffer) {
         if (object instanceof Boolean) {
-          ByteBuffer buffer = ByteBuffer.allocate(2);
           boolean b = (Boolean) object;
-          buffer.put((byte) ordinal()).put(b ? (byte) 1 : (byte) 0).flip();
-          return buffer;
+          buffer.put((byte) ordinal()).put(b ? (byte) 1 : (byte) 0);
         } else {
           throw new AssertionError();
         }
       }
 
+      @Override
+      boolean matches(final Object object, final ByteBuffer buffer, final int index) {
+        return (buffer.get(index + 1) != 0) == (Boolean) object;
+      }
+
       @Override
       Class<?> toClass() {
         return Boolean.class;
       }
     };
 
+    private final int fixedSize;
+
+    Type(int fixedSize) {
+      this.fixedSize = fixedSize;
+    }
+
     abstract Object deserialize(ByteBuffer buffer);
 
-    abstract ByteBuffer serialize(Object object);
+    /**
+     * Writes the object at the buffer's position and moves the position past it.
+     */
+    abstract void write(Object object, ByteBuffer buffer);
 
     abstract Class<?> toClass();
+
+    int size(Object object) {
+      return fixedSize;
+    }
+
+    /**
+     * Compares the object against the value encoded at the given index, after the type byte has been checked.
+     */
+    boolean matches(Object object, ByteBuffer buffer, int index) {
+      ByteBuffer duplicate = buffer.duplicate();
+      duplicate.position(index);
+      return object.equals(deserialize(duplicate));
+    }
+
+    ByteBuffer serialize(Object object) {
+      ByteBuffer buffer = ByteBuffer.allocate(size(object));
+      write(object, buffer);
+      buffer.flip();
+      return buffer;
+    }
   }
 
+  /**
+   * Returned by {@link #getFixedSize(Class)} for types whose encoded size depends on the value.
+   */
+  public static final int VARIABLE_SIZE = -1;
+
+  private static final Type[] TYPES = Type.values();
   private static final Map<Class<?>, Type> classToType;
   static {
     classToType = new HashMap<Class<?>, Type>();
-    for (Type type : Type.values()) {
+    for (Type type : TYPES) {
       classToType.put(type.toClass(), type);
     }
   }
 
-
   @Override
   public Object recover(final ByteBuffer buffer) {
-    return Type.values()[buffer.duplicate().get()].deserialize(buffer);
+    return TYPES[buffer.get(buffer.position())].deserialize(buffer);
   }
 
   @Override
   public ByteBuffer transform(final Object o) {
-    if (o == null) {
-      throw new IllegalArgumentException("Serializing a null is not supported.");
-    }
-    if (!classToType.containsKey(o.getClass())) {
-      throw new IllegalArgumentException("Unknown type " + o + " class " + o.getClass());
+    return typeOf(o).serialize(o);
+  }
+
+  /**
+   * @return the number of bytes {@link #serializeTo(Object, ByteBuffer)} writes for this object.
+   */
+  public int getSerializedSize(final Object o) {
+    return typeOf(o).size(o);
+  }
+
+  /**
+   * Writes the object at the buffer's current position, which is left just past it. The buffer can be heap or direct
+   * and needs {@link #getSerializedSize(Object)} bytes remaining.
+   */
+  public void serializeTo(final Object o, final ByteBuffer buffer) {
+    typeOf(o).write(o, buffer);
+  }
+
+  /**
+   * @return the encoded size shared by every instance of the given class, or {@link #VARIABLE_SIZE}.
+   */
+  public static int getFixedSize(final Class<?> c) {
+    Type type = classToType.get(c);
+    if (type == null) {
+      throw new IllegalArgumentException("Unknown type " + c);
     }
-    return classToType.get(o.getClass()).serialize(o);
+    return type.fixedSize;
   }
 
   @Override
   public boolean equals(final Object left, final ByteBuffer right) {
-    return left.equals(recover(right));
+    int index = right.position();
+    Type type = TYPES[right.get(index)];
+    return type == classToType.get(left.getClass()) && type.matches(left, right, index);
+  }
+
+  private static Type typeOf(final Object o) {
+    if (o == null) {
+      throw new IllegalArgumentException("Serializing a null is not supported.");
+    }
+    Type type = classToType.get(o.getClass());
+    if (type == null) {
+      throw new IllegalArgumentException("Unknown type " + o + " class " + o.getClass());
+    }
+    return type;
   }
 }
@@ -0,0 +1,121 @@
+/*
+ * The contents of this file are subject to the Terracotta Public License Version
+ * 2.0 (the "License"); You may not use this file except in compliance with the
+ * License. You may obtain a copy of the License at
+ *
+ *      http://terracotta.org/legal/terracotta-public-license.
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ * the specific language governing rights and limitations under the License.
+ *
+ * The Covered Software is Terracotta Platform.
+ *
+ * The Initial Developer of the Covered Software is
+ *      Terracotta, Inc., a Software AG company
+ */
+package com.tc.objectserver.persistence;
+
+import com.tc.io.serializer.TCObjectInputStream;
+import com.tc.io.serializer.TCObjectOutputStream;
+import com.tc.objectserver.core.api.ManagedObject;
+import com.tc.objectserver.managedobject.ManagedObjectSerializer;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+
+/**
+ * Binary encoding of {@link ManagedObject}s for the node and leaf object stores.
+ * <p>
+ * Records are a single format byte followed by the {@link TCObjectOutputStream} encoding of the object. There is no
+ * stream header and no class descriptors. Records written by older versions through {@link java.io.ObjectOutputStream}
+ * always start with the java serialization stream magic, which can never be a valid format byte, so they are still
+ * readable and get rewritten in the new format the next time the object is saved.
+ */
+final class ManagedObjectCodec {
+
+  static final byte                       FORMAT_V1           = 1;
+
+  private static final byte               JAVA_STREAM_MAGIC_0 = (byte) 0xAC;
+  private static final byte               JAVA_STREAM_MAGIC_1 = (byte) 0xED;
+
+  private static final int                INITIAL_BUFFER_SIZE = 4 * 1024;
+  private static final int                MAX_RETAINED_BUFFER = 1024 * 1024;
+
+  private final ManagedObjectSerializer   serializer;
+  private final ThreadLocal<EncodeBuffer> encodeBuffers       = new ThreadLocal<EncodeBuffer>() {
+    @Override
+    protected EncodeBuffer initialValue() {
+      return new EncodeBuffer();
+    }
+  };
+
+  ManagedObjectCodec(ManagedObjectSerializer serializer) {
+    this.serializer = serializer;
+  }
+
+  byte[] encode(ManagedObject managedObject) {
+    EncodeBuffer buffer = encodeBuffers.get();
+    try {
+      buffer.write(FORMAT_V1);
+      serializer.serializeTo(managedObject, buffer.out);
+      buffer.out.flush();
+      return buffer.toByteArray();
+    } catch (IOException e) {
+      throw new AssertionError(e);
+    } finally {
+      if (buffer.capacity() > MAX_RETAINED_BUFFER) {
+        encodeBuffers.remove();
+      } else {
+        buffer.reset();
+      }
+    }
+  }
+
+  ManagedObject decode(byte[] data) throws IOException {
+    if (isLegacyFormat(data)) {
+      return (ManagedObject) serializer.deserializeFrom(new ObjectInputStream(new ByteArrayInputStream(data)));
+    }
+    if (data.length == 0 || data[0] != FORMAT_V1) {
+      throw new IOException("Unknown managed object record format "
+                            + (data.length == 0 ? "<empty>" : Byte.toString(data[0])));
+    }
+    return (ManagedObject) serializer.deserializeFrom(new TCObjectInputStream(new ByteArrayInputStream(data, 1,
+                                                                                                       data.length - 1)));
+  }
+
+  /**
+   * Reads the version of an encoded object without decoding its state.
+   */
+  long decodeVersion(byte[] data) throws IOException {
+    if (isLegacyFormat(data)) {
+      return new ObjectInputStream(new ByteArrayInputStream(data)).readLong();
+    }
+    if (data.length == 0 || data[0] != FORMAT_V1) {
+      throw new IOException("Unknown managed object record format "
+                            + (data.length == 0 ? "<empty>" : Byte.toString(data[0])));
+    }
+    return new TCObjectInputStream(new ByteArrayInputStream(data, 1, data.length - 1)).readLong();
+  }
+
+  static boolean isLegacyFormat(byte[] data) {
+    return data.length >= 2 && data[0] == JAVA_STREAM_MAGIC_0 && data[1] == JAVA_STREAM_MAGIC_1;
+  }
+
+  /**
+   * Per thread scratch buffer, reused across encodes so a steady state put only allocates the returned array.
+   */
+  private static final class EncodeBuffer extends ByteArrayOutputStream {
+    private final TCObjectOutputStream out = new TCObjectOutputStream(this);
+
+    EncodeBuffer() {
+      super(INITIAL_BUFFER_SIZE);
+    }
+
+    int capacity() {
+      return buf.length;
+    }
+  }
+}
@@ -43,7 +43,7 @@ public class ManagedObjectPersistor  {
 
 
   private final KeyValueStorage<String, ObjectID> rootMap;
-  private final KeyValueStorage<ObjectID, ManagedObject> objectMap;
+  private final ObjectMap objectMap;
   private final ObjectIDSequence objectIDSequence;
 
   private final ObjectIDSetMaintainer oidSetMaintainer;
@@ -88,6 +88,13 @@ public class ManagedObjectPersistor  {
     return objectMap.get(id);
   }
 
+  /**
+   * @return the version of the object, read without loading its state, or -1 if it is not in the store
+   */
+  public long loadObjectVersion(ObjectID id) {
+    return objectMap.getVersion(id);
+  }
+
   public void saveObject(Transaction tx, ManagedObject managedObject) {
     objectMap.put(managedObject.getID(), managedObject, managedObject.getManagedObjectState().getType());
     managedObject.setIsDirty(false);
@@ -28,13 +28,7 @@ import com.tc.objectserver.managedobject.ManagedObjectSerializer;
 import com.tc.objectserver.managedobject.ManagedObjectStateSerializer;
 import com.tc.objectserver.managedobject.SerializedClusterObjectState;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.io.ObjectInput;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutput;
-import java.io.ObjectOutputStream;
 import java.util.Collection;
 import java.util.Map;
 import java.util.Set;
@@ -48,12 +42,12 @@ class ObjectMap implements KeyValueStorage<ObjectID, ManagedObject> {
 
   private final KeyValueStorage<Long, byte[]> nodeObjects;
   private final KeyValueStorage<Long, byte[]> leafObjects;
-  private final ManagedObjectSerializer serializer;
+  private final ManagedObjectCodec codec;
 
   ObjectMap(ManagedObjectPersistor persistor, StorageManager storageManager) {
     this.nodeObjects = storageManager.getKeyValueStorage(NODE_OBJECT_DB, Long.class, byte[].class);
     this.leafObjects = storageManager.getKeyValueStorage(LEAF_OBJECT_DB, Long.class, byte[].class);
-    this.serializer = new ManagedObjectSerializer(new ManagedObjectStateSerializer(), persistor);
+    this.codec = new ManagedObjectCodec(new ManagedObjectSerializer(new ManagedObjectStateSerializer(), persistor));
   }
 
   public static void addConfigTo(Map<String, KeyValueStorageConfig<?, ?>> configMap, KeyValueStorageMutationListener<Long, byte[]> listener,
@@ -86,21 +80,11 @@ class ObjectMap implements KeyValueStorage<ObjectID, ManagedObject> {
 
   @Override
   public void put(final ObjectID key, final ManagedObject value, byte metadata) {
-    ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
-    try {
-      ObjectOutput oo = new ObjectOutputStream(byteArrayOutputStream);
-      try {
-        serializer.serializeTo(value, oo);
-      } finally {
-        oo.close();
-      }
-    } catch (IOException e) {
-      throw new AssertionError(e);
-    }
+    byte[] data = codec.encode(value);
     if ( value.getManagedObjectState() instanceof SerializedClusterObjectState  ) {
-        leafObjects.put(key.toLong(), byteArrayOutputStream.toByteArray(), metadata);
+        leafObjects.put(key.toLong(), data, metadata);
     } else {
-        nodeObjects.put(key.toLong(), byteArrayOutputStream.toByteArray(), metadata);
+        nodeObjects.put(key.toLong(), data, metadata);
   }
   }
 
@@ -117,8 +101,7 @@ class ObjectMap implements KeyValueStorage<ObjectID, ManagedObject> {
       return null;
     }
     try {
-      ObjectInput oi = new ObjectInputStream(new ByteArrayInputStream(data));
-      return (ManagedObject)serializer.deserializeFrom(oi);
+      return codec.decode(data);
     } catch (ObjectNotFoundException e) {
       // Clean up the backing map if the object winds up missing (see MNK-5031)
       if ( leaf ) {
@@ -132,6 +115,24 @@ class ObjectMap implements KeyValueStorage<ObjectID, ManagedObject> {
     }
   }
 
+  /**
+   * @return the version of the object, -1 if it is not in the map
+   */
+  long getVersion(final ObjectID key) {
+    byte[] data = leafObjects.get(key.toLong());
+    if (data == null) {
+      data = nodeObjects.get(key.toLong());
+    }
+    if (data == null) {
+      return -1;
+    }
+    try {
+      return codec.decodeVersion(data);
+    } catch (IOException e) {
+      throw new AssertionError(e);
+    }
+  }
+
     @Override
     public boolean remove(final ObjectID key) {
         if ( !leafObjects.remove(key.toLong()) ) {
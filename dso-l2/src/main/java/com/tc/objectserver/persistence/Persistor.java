@@ -26,6 +26,7 @@ import com.tc.text.PrettyPrinter;
 import com.tc.util.Conversion;
 import com.tc.util.sequence.MutableSequence;
 
+import java.io.File;
 import java.io.IOException;
 import java.util.Collection;
 import java.util.HashMap;
@@ -44,6 +45,7 @@ public class Persistor implements PrettyPrintable {
   private final PersistentObjectFactory persistentObjectFactory;
   private final PersistenceTransactionProvider persistenceTransactionProvider;
   private final ClusterStatePersistor clusterStatePersistor;
+  private final File transactionLogDirectory;
 
   private TransactionPersistor transactionPersistor;
   private ManagedObjectPersistor managedObjectPersistor;
@@ -56,6 +58,15 @@ public class Persistor implements PrettyPrintable {
   private EvictionTransactionPersistor evictionTransactionPersistor;
 
   public Persistor(StorageManagerFactory storageManagerFactory) {
+    this(storageManagerFactory, null);
+  }
+
+  /**
+   * @param transactionLogDirectory where to keep the committed transactions in a {@link TransactionLogPersistor}, null
+   *        not to keep them
+   */
+  public Persistor(StorageManagerFactory storageManagerFactory, File transactionLogDirectory) {
+    this.transactionLogDirectory = transactionLogDirectory;
     objectIDSetMaintainer = new ObjectIDSetMaintainer();
     try {
       storageManager = storageManagerFactory
@@ -107,7 +118,14 @@ public class Persistor implements PrettyPrintable {
   }
 
   protected TransactionPersistor createTransactionPersistor(StorageManager storageManagerParam) {
-    return new NullTransactionPersistor();
+    if (transactionLogDirectory == null) {
+      return new NullTransactionPersistor();
+    }
+    try {
+      return new TransactionLogPersistor(transactionLogDirectory, TransactionLogPersistor.DEFAULT_SEGMENT_SIZE);
+    } catch (IOException e) {
+      throw new AssertionError(e);
+    }
   }
 
   protected InlineGCPersistor createInlineGCPersistor(StorageManager storageMgr) {
@@ -115,6 +133,9 @@ public class Persistor implements PrettyPrintable {
   }
 
   public void close() {
+    if (transactionPersistor instanceof TransactionLogPersistor) {
+      ((TransactionLogPersistor) transactionPersistor).close();
+    }
     storageManager.close();
   }
   
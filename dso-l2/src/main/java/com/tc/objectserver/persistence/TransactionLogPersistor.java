@@ -0,0 +1,485 @@
+/*
+ * The contents of this file are subject to the Terracotta Public License Version
+ * 2.0 (the "License"); You may not use this file except in compliance with the
+ * License. You may obtain a copy of the License at
+ *
+ *      http://terracotta.org/legal/terracotta-public-license.
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ * the specific language governing rights and limitations under the License.
+ *
+ * The Covered Software is Terracotta Platform.
+ *
+ * The Initial Developer of the Covered Software is
+ *      Terracotta, Inc., a Software AG company
+ */
+package com.tc.objectserver.persistence;
+
+import com.tc.logging.TCLogger;
+import com.tc.logging.TCLogging;
+import com.tc.object.gtx.GlobalTransactionID;
+import com.tc.objectserver.gtx.GlobalTransactionDescriptor;
+import com.tc.objectserver.persistence.TransactionPersistorImpl.GlobalTransactionDescriptorSerializer;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.SortedSet;
+
+/**
+ * Append only log of committed {@link GlobalTransactionDescriptor}s, keyed by the primitive global transaction id.
+ * <p>
+ * Descriptors are encoded straight into fixed size segments, either direct buffers or files mapped from a directory,
+ * and located through an open addressing long to long index, so a commit doesn't allocate anything on the heap once the
+ * current segment has room. Deleting a descriptor only flips the state byte of its record; a segment is dropped as soon
+ * as none of its records are live, which is what happens to whole ranges of old segments once the low water mark moves
+ * past them. With a directory the segments survive a restart and recovery is a sequential scan of the live records.
+ * <p>
+ * Commits are not forced to disk one by one: the segments written to since are forced together with every batch of
+ * deletes, that is every time the low water mark moves. The only server that uses the log clears it at startup, so a
+ * force per commit would be an fsync per transaction under this monitor with nothing ever recovering from it.
+ */
+public class TransactionLogPersistor implements TransactionPersistor {
+  private static final TCLogger logger               = TCLogging.getLogger(TransactionLogPersistor.class);
+
+  public static final int       DEFAULT_SEGMENT_SIZE = 1024 * 1024;
+
+  private static final String   SEGMENT_PREFIX       = "txnlog-";
+  private static final String   SEGMENT_SUFFIX       = ".seg";
+
+  // record layout : state (1 byte), payload length (4 bytes), payload
+  private static final byte     END_OF_SEGMENT       = 0;
+  private static final byte     LIVE                 = 1;
+  private static final byte     DELETED              = 2;
+  private static final int      RECORD_HEADER_SIZE   = 1 + Integer.SIZE / Byte.SIZE;
+
+  private final File            directory;
+  private final int             segmentSize;
+  private final List<Segment>   segments             = new ArrayList<Segment>();
+  private final LongLongIndex   index                = new LongLongIndex();
+  private int                   nextSegmentId        = 0;
+  private Segment               current;
+
+  /**
+   * A log held in direct buffers, it does not outlive the process.
+   */
+  public TransactionLogPersistor(int segmentSize) {
+    this.directory = null;
+    this.segmentSize = segmentSize;
+  }
+
+  /**
+   * A log held in files mapped from the given directory. Segments already in the directory are recovered.
+   */
+  public TransactionLogPersistor(File directory, int segmentSize) throws IOException {
+    if (!directory.isDirectory() && !directory.mkdirs()) { throw new IOException("Unable to create " + directory); }
+    this.directory = directory;
+    this.segmentSize = segmentSize;
+    recover();
+  }
+
+  @Override
+  public synchronized Collection<GlobalTransactionDescriptor> loadAllGlobalTransactionDescriptors() {
+    List<GlobalTransactionDescriptor> descriptors = new ArrayList<GlobalTransactionDescriptor>(index.size());
+    for (Segment segment : segments) {
+      ByteBuffer buffer = segment.buffer.duplicate();
+      buffer.position(0);
+      while (buffer.remaining() >= RECORD_HEADER_SIZE) {
+        byte state = buffer.get();
+        if (state == END_OF_SEGMENT) {
+          break;
+        }
+        int length = buffer.getInt();
+        if (state == LIVE) {
+          ByteBuffer record = buffer.slice();
+          record.limit(length);
+          descriptors.add(GlobalTransactionDescriptorSerializer.decode(record));
+        }
+        buffer.position(buffer.position() + length);
+      }
+    }
+    return descriptors;
+  }
+
+  @Override
+  public synchronized void saveGlobalTransactionDescriptor(GlobalTransactionDescriptor gtx) {
+    long gid = gtx.getGlobalTransactionID().toLong();
+    int length = GlobalTransactionDescriptorSerializer.encodedSize(gtx);
+    if (current == null || current.buffer.remaining() < RECORD_HEADER_SIZE + length) {
+      current = newSegment(RECORD_HEADER_SIZE + length);
+    }
+    ByteBuffer buffer = current.buffer;
+    int recordStart = buffer.position();
+    buffer.position(recordStart + 1);
+    buffer.putInt(length);
+    GlobalTransactionDescriptorSerializer.encode(gtx, buffer);
+    // Terminate the chain in case this overwrote a longer incomplete record, and set the state byte last so a torn
+    // write is never recovered as a live record
+    if (buffer.hasRemaining()) {
+      buffer.put(buffer.position(), END_OF_SEGMENT);
+    }
+    buffer.put(recordStart, LIVE);
+
+    long previous = index.put(gid, position(current.id, recordStart));
+    current.live++;
+    if (previous != LongLongIndex.NOT_FOUND) {
+      // committed again, ie. resent after a failover, only the latest record stays live
+      delete(previous);
+    }
+    current.dirty = true;
+  }
+
+  @Override
+  public synchronized void deleteAllGlobalTransactionDescriptors(SortedSet<GlobalTransactionID> globalTransactionIDs) {
+    for (GlobalTransactionID gid : globalTransactionIDs) {
+      long position = index.remove(gid.toLong());
+      if (position != LongLongIndex.NOT_FOUND) {
+        delete(position);
+      }
+    }
+    forceDirtySegments();
+  }
+
+  /**
+   * Unmaps the segments, the log can't be used anymore.
+   */
+  public synchronized void close() {
+    for (Segment segment : segments) {
+      unmap(segment.buffer);
+    }
+    segments.clear();
+    current = null;
+  }
+
+  /**
+   * Deletes the segments left in the given directory, for a server whose other data does not survive a restart either.
+   */
+  public static void clear(File directory) {
+    File[] files = directory.listFiles(new SegmentFileFilter());
+    if (files == null) { return; }
+    for (File file : files) {
+      if (!file.delete()) {
+        logger.warn("Unable to delete transaction log segment " + file);
+      }
+    }
+  }
+
+  synchronized int getSegmentCount() {
+    return segments.size();
+  }
+
+  private void delete(long position) {
+    Segment segment = segmentFor((int) (position >>> 32));
+    segment.buffer.put((int) position, DELETED);
+    segment.dirty = true;
+    if (--segment.live == 0 && segment != current) {
+      release(segment);
+    }
+  }
+
+  private Segment segmentFor(int id) {
+    // segments are kept in id order and old ones go away first, so this is almost always the first probe
+    for (Segment segment : segments) {
+      if (segment.id == id) { return segment; }
+    }
+    throw new AssertionError("No segment " + id + " in the transaction log");
+  }
+
+  private Segment newSegment(int minSize) {
+    if (current != null && current.live == 0) {
+      release(current);
+    }
+    int size = Math.max(segmentSize, minSize);
+    int id = nextSegmentId++;
+    Segment segment;
+    if (directory == null) {
+      segment = new Segment(id, ByteBuffer.allocateDirect(size), null);
+    } else {
+      File file = new File(directory, SEGMENT_PREFIX + id + SEGMENT_SUFFIX);
+      try {
+        segment = new Segment(id, map(file, size), file);
+      } catch (IOException e) {
+        throw new AssertionError(e);
+      }
+    }
+    segments.add(segment);
+    return segment;
+  }
+
+  private void forceDirtySegments() {
+    for (Segment segment : segments) {
+      if (segment.dirty) {
+        segment.force();
+      }
+    }
+  }
+
+  private void release(Segment segment) {
+    segments.remove(segment);
+    // a file still mapped can't be deleted on some platforms, and the mapping would hold on to its disk space anyway
+    unmap(segment.buffer);
+    if (segment.file != null && !segment.file.delete()) {
+      logger.warn("Unable to delete transaction log segment " + segment.file);
+    }
+  }
+
+  private void recover() throws IOException {
+    File[] files = directory.listFiles(new SegmentFileFilter());
+    Arrays.sort(files, new Comparator<File>() {
+      @Override
+      public int compare(File f1, File f2) {
+        int id1 = segmentId(f1);
+        int id2 = segmentId(f2);
+        return id1 < id2 ? -1 : (id1 == id2 ? 0 : 1);
+      }
+    });
+    for (File file : files) {
+      int id = segmentId(file);
+      Segment segment = new Segment(id, map(file, (int) file.length()), file);
+      segments.add(segment);
+      nextSegmentId = id + 1;
+      current = segment;
+      scan(segment);
+    }
+    for (Iterator<Segment> i = segments.iterator(); i.hasNext();) {
+      Segment segment = i.next();
+      if (segment.live == 0 && segment != current) {
+        i.remove();
+        unmap(segment.buffer);
+        if (!segment.file.delete()) {
+          logger.warn("Unable to delete transaction log segment " + segment.file);
+        }
+      }
+    }
+    logger.info("Recovered " + index.size() + " committed transactions from " + segments.size()
+                + " transaction log segments in " + directory);
+  }
+
+  private void scan(Segment segment) {
+    ByteBuffer buffer = segment.buffer;
+    while (buffer.remaining() >= RECORD_HEADER_SIZE) {
+      int recordStart = buffer.position();
+      byte state = buffer.get();
+      if (state == END_OF_SEGMENT) {
+        buffer.position(recordStart);
+        return;
+      }
+      if (state != LIVE && state != DELETED) {
+        logger.warn("Unknown record state " + state + " at " + recordStart + " in " + segment.file);
+        truncate(buffer, recordStart);
+        return;
+      }
+      int length = buffer.getInt();
+      if (length < 0 || length > buffer.remaining()) {
+        logger.warn("Truncated record at " + recordStart + " in " + segment.file);
+        truncate(buffer, recordStart);
+        return;
+      }
+      if (state == LIVE) {
+        long previous = index.put(buffer.getLong(buffer.position()), position(segment.id, recordStart));
+        segment.live++;
+        if (previous != LongLongIndex.NOT_FOUND) {
+          delete(previous);
+        }
+      }
+      buffer.position(buffer.position() + length);
+    }
+  }
+
+  /**
+   * Clears whatever is left of an incomplete record so records appended after it can't run into stale bytes.
+   */
+  private static void truncate(ByteBuffer buffer, int from) {
+    for (int i = from; i < buffer.limit(); i++) {
+      buffer.put(i, END_OF_SEGMENT);
+    }
+    buffer.position(from);
+  }
+
+  private static MappedByteBuffer map(File file, int size) throws IOException {
+    RandomAccessFile raf = new RandomAccessFile(file, "rw");
+    try {
+      if (raf.length() < size) {
+        raf.setLength(size);
+      }
+      // the mapping stays valid after the channel is closed
+      return raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+    } finally {
+      raf.close();
+    }
+  }
+
+  /**
+   * Frees a direct or mapped buffer right away rather than whenever it gets collected. There is no public API for this,
+   * if the JVM doesn't have the cleaner the buffer is left to the garbage collector.
+   */
+  private static void unmap(ByteBuffer buffer) {
+    if (!buffer.isDirect()) { return; }
+    try {
+      Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+      cleanerMethod.setAccessible(true);
+      Object cleaner = cleanerMethod.invoke(buffer);
+      if (cleaner != null) {
+        Method cleanMethod = cleaner.getClass().getMethod("clean");
+        cleanMethod.setAccessible(true);
+        cleanMethod.invoke(cleaner);
+      }
+    } catch (Exception e) {
+      logger.debug("Unable to unmap transaction log segment buffer", e);
+    }
+  }
+
+  private static int segmentId(File file) {
+    String name = file.getName();
+    return Integer.parseInt(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+  }
+
+  private static long position(int segmentId, int offset) {
+    return ((long) segmentId << 32) | offset;
+  }
+
+  private static final class SegmentFileFilter implements FileFilter {
+    @Override
+    public boolean accept(File file) {
+      return file.isFile() && file.getName().startsWith(SEGMENT_PREFIX) && file.getName().endsWith(SEGMENT_SUFFIX);
+    }
+  }
+
+  private static final class Segment {
+    private final int        id;
+    private final ByteBuffer buffer;
+    private final File       file;
+    private int              live;
+    // has commits or deletes not forced to disk yet
+    private boolean          dirty;
+
+    Segment(int id, ByteBuffer buffer, File file) {
+      this.id = id;
+      this.buffer = buffer;
+      this.file = file;
+    }
+
+    void force() {
+      if (buffer instanceof MappedByteBuffer) {
+        ((MappedByteBuffer) buffer).force();
+      }
+      dirty = false;
+    }
+  }
+
+  /**
+   * Open addressing hash map from long to non negative long, with linear probing and backward shift deletion so there
+   * are no tombstones to clean up.
+   */
+  static final class LongLongIndex {
+    static final long         NOT_FOUND = -1L;
+
+    private static final long FREE      = Long.MIN_VALUE;
+
+    private long[]            keys;
+    private long[]            values;
+    private int               size;
+
+    LongLongIndex() {
+      allocate(1024);
+    }
+
+    int size() {
+      return size;
+    }
+
+    long get(long key) {
+      for (int i = slot(key);; i = next(i)) {
+        if (keys[i] == FREE) { return NOT_FOUND; }
+        if (keys[i] == key) { return values[i]; }
+      }
+    }
+
+    /**
+     * @return the previous value, or {@link #NOT_FOUND}
+     */
+    long put(long key, long value) {
+      if (key == FREE) { throw new IllegalArgumentException("Reserved key " + key); }
+      if ((size + 1) * 4 > keys.length * 3) {
+        rehash();
+      }
+      for (int i = slot(key);; i = next(i)) {
+        if (keys[i] == FREE) {
+          keys[i] = key;
+          values[i] = value;
+          size++;
+          return NOT_FOUND;
+        }
+        if (keys[i] == key) {
+          long previous = values[i];
+          values[i] = value;
+          return previous;
+        }
+      }
+    }
+
+    /**
+     * @return the removed value, or {@link #NOT_FOUND}
+     */
+    long remove(long key) {
+      int i = slot(key);
+      while (keys[i] != key) {
+        if (keys[i] == FREE) { return NOT_FOUND; }
+        i = next(i);
+      }
+      long removed = values[i];
+      size--;
+      // shift back the entries that probed past the freed slot
+      int gap = i;
+      for (int j = next(i); keys[j] != FREE; j = next(j)) {
+        int home = slot(keys[j]);
+        if (((j - home) & (keys.length - 1)) >= ((j - gap) & (keys.length - 1))) {
+          keys[gap] = keys[j];
+          values[gap] = values[j];
+          gap = j;
+        }
+      }
+      keys[gap] = FREE;
+      return removed;
+    }
+
+    private int slot(long key) {
+      long h = key * 0x9E3779B97F4A7C15L;
+      return (int) (h ^ (h >>> 32)) & (keys.length - 1);
+    }
+
+    private int next(int i) {
+      return (i + 1) & (keys.length - 1);
+    }
+
+    private void allocate(int capacity) {
+      keys = new long[capacity];
+      values = new long[capacity];
+      Arrays.fill(keys, FREE);
+    }
+
+    private void rehash() {
+      long[] oldKeys = keys;
+      long[] oldValues = values;
+      allocate(keys.length * 2);
+      size = 0;
+      for (int i = 0; i < oldKeys.length; i++) {
+        if (oldKeys[i] != FREE) {
+          put(oldKeys[i], oldValues[i]);
+        }
+      }
+    }
+  }
+}
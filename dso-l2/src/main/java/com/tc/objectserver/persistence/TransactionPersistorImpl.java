@@ -88,33 +88,36 @@ public class TransactionPersistorImpl implements TransactionPersistor {
   static class GlobalTransactionDescriptorSerializer extends Serializer<GlobalTransactionDescriptor> {
     static final GlobalTransactionDescriptorSerializer INSTANCE = new GlobalTransactionDescriptorSerializer();
 
+    private static final int                           HEADER_SIZE = Long.SIZE / Byte.SIZE * 3 + Integer.SIZE / Byte.SIZE;
+    private static final int                           RESULT_SIZE = Long.SIZE / Byte.SIZE + 1;
+
     @Override
     public GlobalTransactionDescriptor recover(final ByteBuffer buffer) {
-      GlobalTransactionID gid = new GlobalTransactionID(buffer.getLong());
-      ServerTransactionID sid = new ServerTransactionID(new ClientID(buffer.getLong()),
-                                                        new TransactionID(buffer.getLong()));
-      GlobalTransactionDescriptor globalTransactionDescriptor = new GlobalTransactionDescriptor(sid, gid);
-      int changeResultSize = buffer.getInt();
-      if (changeResultSize > 0) {
-        Map<LogicalChangeID, LogicalChangeResult> changeResults = new HashMap<LogicalChangeID, LogicalChangeResult>(
-                                                                                                                    changeResultSize);
-        for (int i = 0; i < changeResultSize; i++) {
-          LogicalChangeID id = new LogicalChangeID(buffer.getLong());
-          LogicalChangeResult result = new LogicalChangeResult(buffer.get() != 0);
-          changeResults.put(id, result);
-        }
-        globalTransactionDescriptor.recordLogicalChangeResults(changeResults);
-      }
-      return globalTransactionDescriptor;
+      return decode(buffer);
     }
 
     @Override
     public ByteBuffer transform(final GlobalTransactionDescriptor globalTransactionDescriptor) {
-      Map<LogicalChangeID, LogicalChangeResult> changeResults = globalTransactionDescriptor.getApplyResults();
-      int bufferSize = Long.SIZE / Byte.SIZE * 3 + Integer.SIZE / Byte.SIZE * 1
-                       + (changeResults.size() * (Long.SIZE / Byte.SIZE + Byte.SIZE));
+      ByteBuffer buffer = ByteBuffer.allocate(encodedSize(globalTransactionDescriptor));
+      encode(globalTransactionDescriptor, buffer);
+      buffer.flip();
+      return buffer;
+    }
+
+    @Override
+    public boolean equals(final GlobalTransactionDescriptor left, final ByteBuffer right) {
+      return left.equals(recover(right));
+    }
+
+    static int encodedSize(final GlobalTransactionDescriptor globalTransactionDescriptor) {
+      return HEADER_SIZE + globalTransactionDescriptor.getApplyResults().size() * RESULT_SIZE;
+    }
 
-      ByteBuffer buffer = ByteBuffer.allocate(bufferSize);
+    /**
+     * Writes the descriptor at the buffer's position, which must have {@link #encodedSize} bytes remaining.
+     */
+    static void encode(final GlobalTransactionDescriptor globalTransactionDescriptor, final ByteBuffer buffer) {
+      Map<LogicalChangeID, LogicalChangeResult> changeResults = globalTransactionDescriptor.getApplyResults();
       buffer.putLong(globalTransactionDescriptor.getGlobalTransactionID().toLong());
       buffer.putLong(((ClientID) globalTransactionDescriptor.getServerTransactionID().getSourceID()).toLong());
       buffer.putLong(globalTransactionDescriptor.getClientTransactionID().toLong());
@@ -124,13 +127,25 @@ public class TransactionPersistorImpl implements TransactionPersistor {
         buffer.putLong(entry.getKey().toLong());
         buffer.put(entry.getValue().isSuccess() ? (byte) 1 : (byte) 0);
       }
-      buffer.flip();
-      return buffer;
     }
 
-    @Override
-    public boolean equals(final GlobalTransactionDescriptor left, final ByteBuffer right) {
-      return left.equals(recover(right));
+    static GlobalTransactionDescriptor decode(final ByteBuffer buffer) {
+      GlobalTransactionID gid = new GlobalTransactionID(buffer.getLong());
+      ServerTransactionID sid = new ServerTransactionID(new ClientID(buffer.getLong()),
+                                                        new TransactionID(buffer.getLong()));
+      GlobalTransactionDescriptor globalTransactionDescriptor = new GlobalTransactionDescriptor(sid, gid);
+      int changeResultSize = buffer.getInt();
+      if (changeResultSize > 0) {
+        Map<LogicalChangeID, LogicalChangeResult> changeResults = new HashMap<LogicalChangeID, LogicalChangeResult>(
+                                                                                                                    changeResultSize);
+        for (int i = 0; i < changeResultSize; i++) {
+          LogicalChangeID id = new LogicalChangeID(buffer.getLong());
+          LogicalChangeResult result = new LogicalChangeResult(buffer.get() != 0);
+          changeResults.put(id, result);
+        }
+        globalTransactionDescriptor.recordLogicalChangeResults(changeResults);
+      }
+      return globalTransactionDescriptor;
     }
   }
 }
@@ -0,0 +1,145 @@
+/* 
+ * The contents of this file are subject to the Terracotta Public License Version
+ * 2.0 (the "License"); You may not use this file except in compliance with the
+ * License. You may obtain a copy of the License at 
+ *
+ *      http://terracotta.org/legal/terracotta-public-license.
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ * the specific language governing rights and limitations under the License.
+ *
+ * The Covered Software is Terracotta Platform.
+ *
+ * The Initial Developer of the Covered Software is 
+ *      Terracotta, Inc., a Software AG company
+ */
+package com.tc.objectserver.search.inmemory;
+
+/**
+ * An aggregate function computed over one attribute of all the rows matching a query, or of every group when the
+ * query groups its results.
+ */
+public final class Aggregation {
+
+  public enum Type {
+    COUNT, SUM, MIN, MAX, AVERAGE
+  }
+
+  private final Type   type;
+  private final String attribute;
+
+  /**
+   * @param attribute the attribute to aggregate, may be null for {@link Type#COUNT} to count rows
+   */
+  public Aggregation(Type type, String attribute) {
+    if (type == null || (attribute == null && type != Type.COUNT)) { throw new NullPointerException(); }
+    this.type = type;
+    this.attribute = attribute;
+  }
+
+  public Type getType() {
+    return type;
+  }
+
+  public String getAttribute() {
+    return attribute;
+  }
+
+  Accumulator newAccumulator() {
+    return new ValueAccumulator();
+  }
+
+  @Override
+  public String toString() {
+    return type + "(" + (attribute == null ? "*" : attribute) + ")";
+  }
+
+  /**
+   * Running state of an aggregation for one result (or group).
+   */
+  interface Accumulator {
+    void accept(Object value);
+
+    /**
+     * @return the aggregated value, or whatever the accumulator aggregates into
+     */
+    Object result();
+  }
+
+  /**
+   * Creates the accumulators of a query, so that a caller can aggregate straight into the type it returns the results
+   * as.
+   */
+  interface AccumulatorFactory {
+    /**
+     * @param index the index of the aggregation in the query
+     */
+    Accumulator newAccumulator(int index);
+  }
+
+  /**
+   * Aggregates into a plain value. Sums stay integral while all the values are.
+   */
+  final class ValueAccumulator implements Accumulator {
+    private long   count;
+    private long   longSum;
+    private double doubleSum;
+    private boolean integral = true;
+    private Object  extreme;
+
+    @Override
+    public void accept(Object value) {
+      if (attribute == null) {
+        count++;
+        return;
+      }
+      if (value == null) { return; }
+      count++;
+      switch (type) {
+        case SUM:
+        case AVERAGE:
+          if (!(value instanceof Number)) {
+            throw new IllegalArgumentException("Cannot " + type + " non numeric " + attribute + " value " + value);
+          }
+          Number n = (Number) value;
+          if (integral && (n instanceof Long || n instanceof Integer || n instanceof Short || n instanceof Byte)) {
+            longSum += n.longValue();
+          } else {
+            integral = false;
+            doubleSum += n.doubleValue();
+          }
+          break;
+        case MIN:
+          if (extreme == null || AttributeColumn.VALUE_ORDER.compare(value, extreme) < 0) {
+            extreme = value;
+          }
+          break;
+        case MAX:
+          if (extreme == null || AttributeColumn.VALUE_ORDER.compare(value, extreme) > 0) {
+            extreme = value;
+          }
+          break;
+        default:
+          break;
+      }
+    }
+
+    @Override
+    public Object result() {
+      switch (type) {
+        case COUNT:
+          return count;
+        case SUM:
+          if (count == 0) { return null; }
+          // not a conditional expression, that would unbox the long sum to a double
+          if (integral) { return Long.valueOf(longSum); }
+          return Double.valueOf(doubleSum + longSum);
+        case AVERAGE:
+          return count == 0 ? null : Double.valueOf((doubleSum + longSum) / count);
+        default:
+          return extreme;
+      }
+    }
+  }
+}
@@ -0,0 +1,135 @@
+/* 
+ * The contents of this file are subject to the Terracotta Public License Version
+ * 2.0 (the "License"); You may not use this file except in compliance with the
+ * License. You may obtain a copy of the License at 
+ *
+ *      http://terracotta.org/legal/terracotta-public-license.
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ * the specific language governing rights and limitations under the License.
+ *
+ * The Covered Software is Terracotta Platform.
+ *
+ * The Initial Developer of the Covered Software is 
+ *      Terracotta, Inc., a Software AG company
+ */
+package com.tc.objectserver.search.inmemory;
+
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.regex.Pattern;
+
+/**
+ * All the values of one attribute, stored by row. Every distinct value maps to the bitmap of the rows holding it, the
+ * bitmaps are reachable through a hash index for equality and through a sorted index for ranges.
+ */
+final class AttributeColumn {
+
+  /**
+   * Orders values of the same type by their natural order, numbers of different types by value and anything else by
+   * type name so that mixed columns can still be sorted.
+   */
+  static final Comparator<Object> VALUE_ORDER = new Comparator<Object>() {
+                                                @Override
+                                                public int compare(Object o1, Object o2) {
+                                                  if (o1.getClass() == o2.getClass() && o1 instanceof Comparable) { return ((Comparable) o1)
+                                                      .compareTo(o2); }
+                                                  if (o1 instanceof Number && o2 instanceof Number) { return Double
+                                                      .compare(((Number) o1).doubleValue(),
+                                                               ((Number) o2).doubleValue()); }
+                                                  return o1.getClass().getName().compareTo(o2.getClass().getName());
+                                                }
+                                              };
+
+  private Object[]                          values      = new Object[16];
+  private final Map<Object, BitSet>         hashIndex   = new HashMap<Object, BitSet>();
+  private final NavigableMap<Object, BitSet> sortedIndex = new TreeMap<Object, BitSet>(VALUE_ORDER);
+
+  Object get(int row) {
+    return row < values.length ? values[row] : null;
+  }
+
+  void set(int row, Object value) {
+    clear(row);
+    if (value == null) { return; }
+    if (row >= values.length) {
+      Object[] grown = new Object[Math.max(values.length * 2, row + 1)];
+      System.arraycopy(values, 0, grown, 0, values.length);
+      values = grown;
+    }
+    values[row] = value;
+    BitSet rows = hashIndex.get(value);
+    if (rows == null) {
+      rows = new BitSet();
+      hashIndex.put(value, rows);
+      sortedIndex.put(value, rows);
+    }
+    rows.set(row);
+  }
+
+  void clear(int row) {
+    Object old = get(row);
+    if (old == null) { return; }
+    values[row] = null;
+    BitSet rows = hashIndex.get(old);
+    rows.clear(row);
+    if (rows.isEmpty()) {
+      hashIndex.remove(old);
+      sortedIndex.remove(old);
+    }
+  }
+
+  boolean isEmpty() {
+    return hashIndex.isEmpty();
+  }
+
+  BitSet equalTo(Object value) {
+    BitSet rows = hashIndex.get(value);
+    return rows == null ? new BitSet() : (BitSet) rows.clone();
+  }
+
+  /**
+   * @param lower null for no lower bound
+   * @param upper null for no upper bound
+   */
+  BitSet range(Object lower, boolean lowerInclusive, Object upper, boolean upperInclusive) {
+    NavigableMap<Object, BitSet> range = sortedIndex;
+    if (lower != null && upper != null) {
+      if (VALUE_ORDER.compare(lower, upper) > 0) { return new BitSet(); }
+      range = range.subMap(lower, lowerInclusive, upper, upperInclusive);
+    } else if (lower != null) {
+      range = range.tailMap(lower, lowerInclusive);
+    } else if (upper != null) {
+      range = range.headMap(upper, upperInclusive);
+    }
+    BitSet result = new BitSet();
+    for (BitSet rows : range.values()) {
+      result.or(rows);
+    }
+    return result;
+  }
+
+  /**
+   * Matches the pattern against every distinct string or enum value, the other values never match.
+   */
+  BitSet matching(Pattern pattern) {
+    BitSet result = new BitSet();
+    for (Map.Entry<Object, BitSet> e : hashIndex.entrySet()) {
+      Object value = e.getKey();
+      String text = value instanceof String ? (String) value : value instanceof Enum ? ((Enum) value).name() : null;
+      if (text != null && pattern.matcher(text).matches()) {
+        result.or(e.getValue());
+      }
+    }
+    return result;
+  }
+
+  int distinctValues() {
+    return hashIndex.size();
+  }
+}
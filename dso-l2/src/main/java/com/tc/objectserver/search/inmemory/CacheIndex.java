@@ -0,0 +1,437 @@
+/* 
+ * The contents of this file are subject to the Terracotta Public License Version
+ * 2.0 (the "License"); You may not use this file except in compliance with the
+ * License. You may obtain a copy of the License at 
+ *
+ *      http://terracotta.org/legal/terracotta-public-license.
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ * the specific language governing rights and limitations under the License.
+ *
+ * The Covered Software is Terracotta Platform.
+ *
+ * The Initial Developer of the Covered Software is 
+ *      Terracotta, Inc., a Software AG company
+ */
+package com.tc.objectserver.search.inmemory;
+
+import com.tc.object.ObjectID;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * The searchable contents of one cache. Every entry lives in a row; the key, value and segment of a row are kept in
+ * arrays and every attribute in an {@link AttributeColumn}, so a query only touches the columns it names. Rows of
+ * removed entries are reused by later inserts.
+ * <p>
+ * Updates take the write lock, queries the read lock and materialize their results before releasing it.
+ */
+final class CacheIndex {
+
+  private final String               name;
+  private final ReadWriteLock        lock           = new ReentrantReadWriteLock();
+  private final Map<String, Integer> rowsByKey      = new HashMap<String, Integer>();
+  private final Map<ObjectID, BitSet> rowsBySegment = new HashMap<ObjectID, BitSet>();
+  private final Map<String, AttributeColumn> columns = new HashMap<String, AttributeColumn>();
+  private final BitSet               live           = new BitSet();
+  private String[]                   keys           = new String[16];
+  private Object[]                   values         = new Object[16];
+  private ObjectID[]                 segments       = new ObjectID[16];
+
+  CacheIndex(String name) {
+    this.name = name;
+  }
+
+  String getName() {
+    return name;
+  }
+
+  int size() {
+    lock.readLock().lock();
+    try {
+      return rowsByKey.size();
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Inserts the entry or replaces it, along with all its attributes, if the key is already present.
+   */
+  void upsert(String key, Object value, Map<String, Object> attributes, ObjectID segment) {
+    lock.writeLock().lock();
+    try {
+      basicUpsert(key, value, attributes, segment);
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  boolean putIfAbsent(String key, Object value, Map<String, Object> attributes, ObjectID segment) {
+    lock.writeLock().lock();
+    try {
+      if (rowsByKey.containsKey(key)) { return false; }
+      basicUpsert(key, value, attributes, segment);
+      return true;
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Replaces the entry only if it is currently mapped to the expected value.
+   */
+  boolean replace(String key, Object value, Object expected, Map<String, Object> attributes, ObjectID segment) {
+    lock.writeLock().lock();
+    try {
+      Integer row = rowsByKey.get(key);
+      if (row == null || !equal(values[row], expected)) { return false; }
+      basicUpsert(key, value, attributes, segment);
+      return true;
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  boolean remove(String key) {
+    lock.writeLock().lock();
+    try {
+      Integer row = rowsByKey.remove(key);
+      if (row == null) { return false; }
+      freeRow(row);
+      return true;
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  boolean removeIfValueEqual(String key, Object expected) {
+    lock.writeLock().lock();
+    try {
+      Integer row = rowsByKey.get(key);
+      if (row == null || !equal(values[row], expected)) { return false; }
+      rowsByKey.remove(key);
+      freeRow(row);
+      return true;
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Removes all the entries of the given segment.
+   */
+  void clear(ObjectID segment) {
+    lock.writeLock().lock();
+    try {
+      BitSet rows = rowsBySegment.get(segment);
+      if (rows == null) { return; }
+      // freeRow() clears bits of this very set, so walk a copy
+      rows = (BitSet) rows.clone();
+      for (int row = rows.nextSetBit(0); row >= 0; row = rows.nextSetBit(row + 1)) {
+        rowsByKey.remove(keys[row]);
+        freeRow(row);
+      }
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  IndexQueryResults search(IndexQuery query) {
+    lock.readLock().lock();
+    try {
+      BitSet matches = query.getCriteria().evaluate(this);
+      matches.and(live);
+      boolean anyMatched = !matches.isEmpty();
+      if (query.isGrouped()) {
+        return new IndexQueryResults(groupedRows(query, matches), Collections.emptyList(), anyMatched);
+      }
+
+      List<Object> aggregates = aggregate(query, matches);
+      List<ResultRow> rows = query.needsRows() ? rows(query, matches) : Collections.<ResultRow> emptyList();
+      return new IndexQueryResults(rows, aggregates, anyMatched);
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  // the two below are only called by Criteria, under the read lock
+
+  BitSet liveRows() {
+    return (BitSet) live.clone();
+  }
+
+  AttributeColumn column(String attribute) {
+    return columns.get(attribute);
+  }
+
+  private void basicUpsert(String key, Object value, Map<String, Object> attributes, ObjectID segment) {
+    Integer existing = rowsByKey.get(key);
+    int row;
+    if (existing == null) {
+      row = live.nextClearBit(0);
+      ensureCapacity(row);
+      live.set(row);
+      keys[row] = key;
+      rowsByKey.put(key, row);
+    } else {
+      row = existing;
+      clearAttributes(row);
+      setSegment(row, null);
+    }
+    values[row] = value;
+    setSegment(row, segment);
+    for (Entry<String, Object> attribute : attributes.entrySet()) {
+      if (attribute.getValue() == null) {
+        continue;
+      }
+      AttributeColumn column = columns.get(attribute.getKey());
+      if (column == null) {
+        column = new AttributeColumn();
+        columns.put(attribute.getKey(), column);
+      }
+      column.set(row, attribute.getValue());
+    }
+  }
+
+  private void freeRow(int row) {
+    clearAttributes(row);
+    setSegment(row, null);
+    keys[row] = null;
+    values[row] = null;
+    live.clear(row);
+  }
+
+  private void clearAttributes(int row) {
+    for (Iterator<AttributeColumn> i = columns.values().iterator(); i.hasNext();) {
+      AttributeColumn column = i.next();
+      column.clear(row);
+      if (column.isEmpty()) {
+        i.remove();
+      }
+    }
+  }
+
+  private void setSegment(int row, ObjectID segment) {
+    ObjectID old = segments[row];
+    if (old != null) {
+      BitSet rows = rowsBySegment.get(old);
+      rows.clear(row);
+      if (rows.isEmpty()) {
+        rowsBySegment.remove(old);
+      }
+    }
+    segments[row] = segment;
+    if (segment != null) {
+      BitSet rows = rowsBySegment.get(segment);
+      if (rows == null) {
+        rows = new BitSet();
+        rowsBySegment.put(segment, rows);
+      }
+      rows.set(row);
+    }
+  }
+
+  private void ensureCapacity(int row) {
+    if (row < keys.length) { return; }
+    int length = Math.max(keys.length * 2, row + 1);
+    String[] newKeys = new String[length];
+    Object[] newValues = new Object[length];
+    ObjectID[] newSegments = new ObjectID[length];
+    System.arraycopy(keys, 0, newKeys, 0, keys.length);
+    System.arraycopy(values, 0, newValues, 0, values.length);
+    System.arraycopy(segments, 0, newSegments, 0, segments.length);
+    keys = newKeys;
+    values = newValues;
+    segments = newSegments;
+  }
+
+  private List<ResultRow> rows(IndexQuery query, BitSet matches) {
+    List<SortAttribute> sort = query.getSortAttributes();
+    int max = query.getMaxResults();
+    List<Integer> selected = new ArrayList<Integer>(max >= 0 && sort.isEmpty() ? Math.min(max, matches.cardinality())
+        : matches.cardinality());
+    for (int row = matches.nextSetBit(0); row >= 0; row = matches.nextSetBit(row + 1)) {
+      // without a sort order any max rows will do
+      if (sort.isEmpty() && max >= 0 && selected.size() >= max) {
+        break;
+      }
+      selected.add(row);
+    }
+    if (!sort.isEmpty()) {
+      Collections.sort(selected, new RowOrder(sort));
+      if (max >= 0 && selected.size() > max) {
+        selected = selected.subList(0, max);
+      }
+    }
+
+    List<ResultRow> results = new ArrayList<ResultRow>(selected.size());
+    for (int row : selected) {
+      Map<String, Object> attributes = new HashMap<String, Object>();
+      for (String attribute : query.getAttributes()) {
+        Object value = valueOf(columns.get(attribute), row);
+        if (value != null) {
+          attributes.put(attribute, value);
+        }
+      }
+      results.add(new ResultRow(query.isIncludeKeys() ? keys[row] : null, query.isIncludeValues() ? values[row] : null,
+                                attributes, Collections.emptyList()));
+    }
+    return results;
+  }
+
+  private List<ResultRow> groupedRows(IndexQuery query, BitSet matches) {
+    final List<String> groupBy = new ArrayList<String>(query.getGroupBy());
+    AttributeColumn[] groupColumns = new AttributeColumn[groupBy.size()];
+    for (int i = 0; i < groupColumns.length; i++) {
+      groupColumns[i] = columns.get(groupBy.get(i));
+    }
+
+    List<Aggregation> aggregations = query.getAggregations();
+    AttributeColumn[] aggregatedColumns = aggregatedColumns(aggregations);
+    Map<List<Object>, Aggregation.Accumulator[]> groups = new LinkedHashMap<List<Object>, Aggregation.Accumulator[]>();
+    for (int row = matches.nextSetBit(0); row >= 0; row = matches.nextSetBit(row + 1)) {
+      List<Object> group = new ArrayList<Object>(groupColumns.length);
+      for (AttributeColumn column : groupColumns) {
+        group.add(valueOf(column, row));
+      }
+      Aggregation.Accumulator[] accumulators = groups.get(group);
+      if (accumulators == null) {
+        accumulators = newAccumulators(query);
+        groups.put(group, accumulators);
+      }
+      accumulate(accumulators, aggregatedColumns, row);
+    }
+
+    List<Entry<List<Object>, Aggregation.Accumulator[]>> ordered;
+    ordered = new ArrayList<Entry<List<Object>, Aggregation.Accumulator[]>>(groups.entrySet());
+    final List<SortAttribute> sort = query.getSortAttributes();
+    if (!sort.isEmpty()) {
+      Collections.sort(ordered, new Comparator<Entry<List<Object>, Aggregation.Accumulator[]>>() {
+        @Override
+        public int compare(Entry<List<Object>, Aggregation.Accumulator[]> o1,
+                           Entry<List<Object>, Aggregation.Accumulator[]> o2) {
+          for (SortAttribute s : sort) {
+            int index = groupBy.indexOf(s.getAttribute());
+            int c = compareValues(o1.getKey().get(index), o2.getKey().get(index), s.isAscending());
+            if (c != 0) { return c; }
+          }
+          return 0;
+        }
+      });
+    }
+    int max = query.getMaxResults();
+    if (max >= 0 && ordered.size() > max) {
+      ordered = ordered.subList(0, max);
+    }
+
+    List<ResultRow> results = new ArrayList<ResultRow>(ordered.size());
+    for (Entry<List<Object>, Aggregation.Accumulator[]> group : ordered) {
+      Map<String, Object> attributes = new HashMap<String, Object>();
+      for (String attribute : query.getAttributes()) {
+        Object value = group.getKey().get(groupBy.indexOf(attribute));
+        if (value != null) {
+          attributes.put(attribute, value);
+        }
+      }
+      results.add(new ResultRow(null, null, attributes, results(group.getValue())));
+    }
+    return results;
+  }
+
+  private List<Object> aggregate(IndexQuery query, BitSet matches) {
+    if (query.getAggregations().isEmpty()) { return Collections.emptyList(); }
+    AttributeColumn[] aggregatedColumns = aggregatedColumns(query.getAggregations());
+    Aggregation.Accumulator[] accumulators = newAccumulators(query);
+    for (int row = matches.nextSetBit(0); row >= 0; row = matches.nextSetBit(row + 1)) {
+      accumulate(accumulators, aggregatedColumns, row);
+    }
+    return results(accumulators);
+  }
+
+  private AttributeColumn[] aggregatedColumns(List<Aggregation> aggregations) {
+    AttributeColumn[] aggregated = new AttributeColumn[aggregations.size()];
+    for (int i = 0; i < aggregated.length; i++) {
+      String attribute = aggregations.get(i).getAttribute();
+      aggregated[i] = attribute == null ? null : columns.get(attribute);
+    }
+    return aggregated;
+  }
+
+  private static Aggregation.Accumulator[] newAccumulators(IndexQuery query) {
+    Aggregation.Accumulator[] accumulators = new Aggregation.Accumulator[query.getAggregations().size()];
+    for (int i = 0; i < accumulators.length; i++) {
+      accumulators[i] = query.newAccumulator(i);
+    }
+    return accumulators;
+  }
+
+  private static void accumulate(Aggregation.Accumulator[] accumulators, AttributeColumn[] aggregatedColumns, int row) {
+    for (int i = 0; i < accumulators.length; i++) {
+      accumulators[i].accept(valueOf(aggregatedColumns[i], row));
+    }
+  }
+
+  private static List<Object> results(Aggregation.Accumulator[] accumulators) {
+    List<Object> results = new ArrayList<Object>(accumulators.length);
+    for (Aggregation.Accumulator accumulator : accumulators) {
+      results.add(accumulator.result());
+    }
+    return results;
+  }
+
+  private static Object valueOf(AttributeColumn column, int row) {
+    return column == null ? null : column.get(row);
+  }
+
+  private static int compareValues(Object v1, Object v2, boolean ascending) {
+    // missing values sort last whatever the direction
+    if (v1 == null) { return v2 == null ? 0 : 1; }
+    if (v2 == null) { return -1; }
+    int c = AttributeColumn.VALUE_ORDER.compare(v1, v2);
+    return ascending ? c : -c;
+  }
+
+  private static boolean equal(Object o1, Object o2) {
+    return o1 == null ? o2 == null : o1.equals(o2);
+  }
+
+  private final class RowOrder implements Comparator<Integer> {
+    private final List<SortAttribute> sort;
+    private final AttributeColumn[]   sortColumns;
+
+    private RowOrder(List<SortAttribute> sort) {
+      this.sort = sort;
+      this.sortColumns = new AttributeColumn[sort.size()];
+      for (int i = 0; i < sortColumns.length; i++) {
+        sortColumns[i] = columns.get(sort.get(i).getAttribute());
+      }
+    }
+
+    @Override
+    public int compare(Integer row1, Integer row2) {
+      for (int i = 0; i < sortColumns.length; i++) {
+        int c = compareValues(valueOf(sortColumns[i], row1), valueOf(sortColumns[i], row2), sort.get(i).isAscending());
+        if (c != 0) { return c; }
+      }
+      return 0;
+    }
+  }
+
+  @Override
+  public String toString() {
+    return "CacheIndex[" + name + ", size=" + size() + "]";
+  }
+}
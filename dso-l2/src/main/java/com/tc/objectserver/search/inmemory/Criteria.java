@@ -0,0 +1,265 @@
+/* 
+ * The contents of this file are subject to the Terracotta Public License Version
+ * 2.0 (the "License"); You may not use this file except in compliance with the
+ * License. You may obtain a copy of the License at 
+ *
+ *      http://terracotta.org/legal/terracotta-public-license.
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ * the specific language governing rights and limitations under the License.
+ *
+ * The Covered Software is Terracotta Platform.
+ *
+ * The Initial Developer of the Covered Software is 
+ *      Terracotta, Inc., a Software AG company
+ */
+package com.tc.objectserver.search.inmemory;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * A search predicate over the attributes of a cache. Evaluating a criteria yields the bitmap of the matching rows:
+ * equality is answered by the hash index of an attribute, ranges by its sorted index, and conjunctions and
+ * disjunctions by intersecting and merging the bitmaps of their parts.
+ */
+public abstract class Criteria {
+
+  private static final Criteria ALL = new Criteria() {
+                                      @Override
+                                      BitSet evaluate(CacheIndex index) {
+                                        return index.liveRows();
+                                      }
+
+                                      @Override
+                                      public String toString() {
+                                        return "all";
+                                      }
+                                    };
+
+  /**
+   * Called with the read lock of the index held, the returned bitmap is owned by the caller.
+   */
+  abstract BitSet evaluate(CacheIndex index);
+
+  public static Criteria all() {
+    return ALL;
+  }
+
+  public static Criteria eq(String attribute, Object value) {
+    return new EqualTo(attribute, value);
+  }
+
+  public static Criteria notEq(String attribute, Object value) {
+    return not(eq(attribute, value));
+  }
+
+  public static Criteria between(String attribute, Object min, Object max) {
+    return between(attribute, min, max, true, true);
+  }
+
+  public static Criteria between(String attribute, Object min, Object max, boolean minInclusive, boolean maxInclusive) {
+    if (min == null || max == null) { throw new NullPointerException(); }
+    return new Range(attribute, min, minInclusive, max, maxInclusive);
+  }
+
+  public static Criteria gt(String attribute, Object value) {
+    return new Range(attribute, checkNotNull(value), false, null, false);
+  }
+
+  public static Criteria ge(String attribute, Object value) {
+    return new Range(attribute, checkNotNull(value), true, null, false);
+  }
+
+  public static Criteria lt(String attribute, Object value) {
+    return new Range(attribute, null, false, checkNotNull(value), false);
+  }
+
+  public static Criteria le(String attribute, Object value) {
+    return new Range(attribute, null, false, checkNotNull(value), true);
+  }
+
+  /**
+   * Case insensitive match of a string attribute against a pattern where '*' stands for any characters and '?' for a
+   * single one. Scans the distinct values of the attribute.
+   */
+  public static Criteria ilike(String attribute, String pattern) {
+    return new ILike(attribute, checkNotNull(pattern).toString());
+  }
+
+  public static Criteria and(Criteria... criteria) {
+    return new And(Arrays.asList(criteria));
+  }
+
+  public static Criteria or(Criteria... criteria) {
+    return new Or(Arrays.asList(criteria));
+  }
+
+  public static Criteria not(Criteria criteria) {
+    return new Not(criteria);
+  }
+
+  private static Object checkNotNull(Object value) {
+    if (value == null) { throw new NullPointerException(); }
+    return value;
+  }
+
+  private static final class EqualTo extends Criteria {
+    private final String attribute;
+    private final Object value;
+
+    private EqualTo(String attribute, Object value) {
+      this.attribute = attribute;
+      this.value = checkNotNull(value);
+    }
+
+    @Override
+    BitSet evaluate(CacheIndex index) {
+      AttributeColumn column = index.column(attribute);
+      return column == null ? new BitSet() : column.equalTo(value);
+    }
+
+    @Override
+    public String toString() {
+      return attribute + " = " + value;
+    }
+  }
+
+  private static final class Range extends Criteria {
+    private final String  attribute;
+    private final Object  lower;
+    private final boolean lowerInclusive;
+    private final Object  upper;
+    private final boolean upperInclusive;
+
+    private Range(String attribute, Object lower, boolean lowerInclusive, Object upper, boolean upperInclusive) {
+      this.attribute = attribute;
+      this.lower = lower;
+      this.lowerInclusive = lowerInclusive;
+      this.upper = upper;
+      this.upperInclusive = upperInclusive;
+    }
+
+    @Override
+    BitSet evaluate(CacheIndex index) {
+      AttributeColumn column = index.column(attribute);
+      return column == null ? new BitSet() : column.range(lower, lowerInclusive, upper, upperInclusive);
+    }
+
+    @Override
+    public String toString() {
+      return attribute + " in " + (lower == null ? "(*" : (lowerInclusive ? "[" : "(") + lower) + ", "
+             + (upper == null ? "*)" : upper + (upperInclusive ? "]" : ")"));
+    }
+  }
+
+  private static final class ILike extends Criteria {
+    private final String  attribute;
+    private final String  pattern;
+    private final Pattern regex;
+
+    private ILike(String attribute, String pattern) {
+      this.attribute = attribute;
+      this.pattern = pattern;
+      this.regex = toRegex(pattern);
+    }
+
+    private static Pattern toRegex(String glob) {
+      StringBuilder regex = new StringBuilder();
+      int literalStart = 0;
+      for (int i = 0; i < glob.length(); i++) {
+        char c = glob.charAt(i);
+        if (c == '*' || c == '?') {
+          if (i > literalStart) {
+            regex.append(Pattern.quote(glob.substring(literalStart, i)));
+          }
+          regex.append(c == '*' ? ".*" : ".");
+          literalStart = i + 1;
+        }
+      }
+      if (literalStart < glob.length()) {
+        regex.append(Pattern.quote(glob.substring(literalStart)));
+      }
+      return Pattern.compile(regex.toString(), Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE | Pattern.DOTALL);
+    }
+
+    @Override
+    BitSet evaluate(CacheIndex index) {
+      AttributeColumn column = index.column(attribute);
+      return column == null ? new BitSet() : column.matching(regex);
+    }
+
+    @Override
+    public String toString() {
+      return attribute + " ilike " + pattern;
+    }
+  }
+
+  private static final class And extends Criteria {
+    private final List<Criteria> criteria;
+
+    private And(List<Criteria> criteria) {
+      this.criteria = criteria;
+    }
+
+    @Override
+    BitSet evaluate(CacheIndex index) {
+      if (criteria.isEmpty()) { return index.liveRows(); }
+      BitSet result = criteria.get(0).evaluate(index);
+      for (int i = 1; i < criteria.size() && !result.isEmpty(); i++) {
+        result.and(criteria.get(i).evaluate(index));
+      }
+      return result;
+    }
+
+    @Override
+    public String toString() {
+      return "and" + criteria;
+    }
+  }
+
+  private static final class Or extends Criteria {
+    private final List<Criteria> criteria;
+
+    private Or(List<Criteria> criteria) {
+      this.criteria = criteria;
+    }
+
+    @Override
+    BitSet evaluate(CacheIndex index) {
+      BitSet result = new BitSet();
+      for (Criteria c : criteria) {
+        result.or(c.evaluate(index));
+      }
+      return result;
+    }
+
+    @Override
+    public String toString() {
+      return "or" + criteria;
+    }
+  }
+
+  private static final class Not extends Criteria {
+    private final Criteria criteria;
+
+    private Not(Criteria criteria) {
+      this.criteria = criteria;
+    }
+
+    @Override
+    BitSet evaluate(CacheIndex index) {
+      BitSet result = index.liveRows();
+      result.andNot(criteria.evaluate(index));
+      return result;
+    }
+
+    @Override
+    public String toString() {
+      return "not(" + criteria + ")";
+    }
+  }
+}
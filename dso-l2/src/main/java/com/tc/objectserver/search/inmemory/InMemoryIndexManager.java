@@ -0,0 +1,465 @@
+/* 
+ * The contents of this file are subject to the Terracotta Public License Version
+ * 2.0 (the "License"); You may not use this file except in compliance with the
+ * License. You may obtain a copy of the License at 
+ *
+ *      http://terracotta.org/legal/terracotta-public-license.
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ * the specific language governing rights and limitations under the License.
+ *
+ * The Covered Software is Terracotta Platform.
+ *
+ * The Initial Developer of the Covered Software is 
+ *      Terracotta, Inc., a Software AG company
+ */
+package com.tc.objectserver.search.inmemory;
+
+import com.tc.logging.TCLogger;
+import com.tc.logging.TCLogging;
+import com.tc.net.ClientID;
+import com.tc.object.ObjectID;
+import com.tc.objectserver.metadata.MetaDataProcessingContext;
+import com.tc.objectserver.search.IndexManager;
+import com.tc.search.SearchRequestID;
+import com.terracottatech.search.AbstractNVPair;
+import com.terracottatech.search.AggregatorOperations;
+import com.terracottatech.search.GroupedIndexQueryResultImpl;
+import com.terracottatech.search.IndexException;
+import com.terracottatech.search.IndexFile;
+import com.terracottatech.search.IndexQueryResult;
+import com.terracottatech.search.NVPair;
+import com.terracottatech.search.NonGroupedIndexQueryResultImpl;
+import com.terracottatech.search.QueryID;
+import com.terracottatech.search.SearchResult;
+import com.terracottatech.search.SyncSnapshot;
+import com.terracottatech.search.ValueID;
+import com.terracottatech.search.ValueType;
+import com.terracottatech.search.aggregator.Aggregator;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * An {@link IndexManager} keeping the attributes of every cache in memory, see {@link CacheIndex}. The indexes are
+ * maintained incrementally from the search event stream and are lost on restart, they are neither persisted nor synced
+ * to a passive.
+ * <p>
+ * Client queries are translated by {@link QueryStackTranslator} and run through {@link #search}. Their results are
+ * materialized once and, when the query names a client and request, kept until released so that later pages are cut
+ * from the same snapshot.
+ */
+public class InMemoryIndexManager implements IndexManager {
+
+  private static final TCLogger                                                            logger  = TCLogging
+                                                                                                       .getLogger(InMemoryIndexManager.class);
+
+  private final ConcurrentMap<String, CacheIndex>                                          indexes = new ConcurrentHashMap<String, CacheIndex>();
+  // results kept for paging, by client and request
+  private final ConcurrentMap<ClientID, ConcurrentMap<SearchRequestID, KeptResults>> results;
+
+  public InMemoryIndexManager() {
+    this.results = new ConcurrentHashMap<ClientID, ConcurrentMap<SearchRequestID, KeptResults>>();
+  }
+
+  @Override
+  public void deleteIndex(String indexName, MetaDataProcessingContext processingContext) {
+    indexes.remove(indexName);
+    processed(processingContext);
+  }
+
+  @Override
+  public void removeIfValueEqual(String indexName, Map<String, ValueID> toRemove, ObjectID segmentOid,
+                                 MetaDataProcessingContext metaDataContext, boolean fromEviction) {
+    CacheIndex index = indexes.get(indexName);
+    if (index != null) {
+      for (Entry<String, ValueID> e : toRemove.entrySet()) {
+        index.removeIfValueEqual(e.getKey(), e.getValue());
+      }
+    }
+    processed(metaDataContext);
+  }
+
+  @Override
+  public void remove(String indexName, String key, ObjectID segmentOid, MetaDataProcessingContext metaDataContext) {
+    CacheIndex index = indexes.get(indexName);
+    if (index != null) {
+      index.remove(key);
+    }
+    processed(metaDataContext);
+  }
+
+  @Override
+  public void update(String indexName, String key, ValueID value, List<NVPair> attributes, ObjectID segmentOid,
+                     MetaDataProcessingContext metaDataContext) {
+    getOrCreateIndex(indexName).upsert(key, value, toMap(attributes), segmentOid);
+    processed(metaDataContext);
+  }
+
+  @Override
+  public void insert(String cacheName, String key, ValueID cacheValue, List<NVPair> attributes, ObjectID segmentOid,
+                     MetaDataProcessingContext metaDataContext) {
+    getOrCreateIndex(cacheName).upsert(key, cacheValue, toMap(attributes), segmentOid);
+    processed(metaDataContext);
+  }
+
+  @Override
+  public void putIfAbsent(String indexName, String key, ValueID value, List<NVPair> attributes, ObjectID segmentOid,
+                          MetaDataProcessingContext metaDataContext) {
+    getOrCreateIndex(indexName).putIfAbsent(key, value, toMap(attributes), segmentOid);
+    processed(metaDataContext);
+  }
+
+  @Override
+  public void clear(String indexName, ObjectID segmentOid, MetaDataProcessingContext metaDataContext) {
+    CacheIndex index = indexes.get(indexName);
+    if (index != null) {
+      index.clear(segmentOid);
+    }
+    processed(metaDataContext);
+  }
+
+  @Override
+  public void replace(String indexName, String key, ValueID value, ValueID previousValue, List<NVPair> attributes,
+                      ObjectID segmentOid, MetaDataProcessingContext metaDataContext) {
+    getOrCreateIndex(indexName).replace(key, value, previousValue, toMap(attributes), segmentOid);
+    processed(metaDataContext);
+  }
+
+  /**
+   * Runs the query against the named cache. When both clientId and reqId are given the results are kept for
+   * {@link #getResultPage} until they are released.
+   */
+  public IndexQueryResults search(String indexName, ClientID clientId, SearchRequestID reqId, IndexQuery query) {
+    return run(indexName, clientId, reqId, query, query.getAttributes(), null).results;
+  }
+
+  /**
+   * @return a page of the results kept for the given request, or null if there are none
+   */
+  public List<ResultRow> getResultPage(ClientID clientId, SearchRequestID reqId, int start, int pageSize) {
+    KeptResults kept = kept(clientId, reqId);
+    return kept == null ? null : kept.results.getPage(start, pageSize);
+  }
+
+  public void releaseResults(ClientID clientId, SearchRequestID reqId) {
+    Map<SearchRequestID, KeptResults> clientResults = results.get(clientId);
+    if (clientResults != null) {
+      clientResults.remove(reqId);
+    }
+  }
+
+  /**
+   * Answers with the first fetchSize results, or all of them for a negative fetchSize. The rest are paged through with
+   * {@link #getSearchResults}.
+   */
+  @Override
+  public SearchResult searchIndex(String indexName, ClientID clientId, SearchRequestID reqId, List queryStack,
+                                  boolean includeKeys, boolean includeValues, Set<String> attributeSet,
+                                  Set<String> groupByAttributes, List<NVPair> sortAttributes, List<NVPair> aggregators,
+                                  int maxResults, int fetchSize) throws IndexException {
+    IndexQuery query = query(queryStack, includeKeys, includeValues, attributeSet, groupByAttributes, sortAttributes,
+                             aggregators, maxResults);
+    KeptResults kept = runClientQuery(indexName, clientId, reqId, query, attributeSet, aggregators);
+    return kept.toSearchResult(0, fetchSize < 0 ? Integer.MAX_VALUE : fetchSize);
+  }
+
+  /**
+   * Pages through the results kept by an earlier query of the same request, running the query if there are none.
+   */
+  @Override
+  public SearchResult getSearchResults(String name, ClientID clientId, SearchRequestID reqId, List queryStack,
+                                       boolean includeKeys, boolean includeValues, Set<String> attributeSet,
+                                       List<NVPair> sortAttributes, List<NVPair> aggregators, int maxResults,
+                                       int start, int pageSize) throws IndexException {
+    if (start < 0 || pageSize < 0) { throw new IndexException("Invalid page start=" + start + ", size=" + pageSize); }
+    KeptResults kept = kept(clientId, reqId);
+    if (kept == null) {
+      IndexQuery query = query(queryStack, includeKeys, includeValues, attributeSet, null, sortAttributes,
+                               aggregators, maxResults);
+      kept = runClientQuery(name, clientId, reqId, query, attributeSet, aggregators);
+    }
+    return kept.toSearchResult(start, pageSize);
+  }
+
+  @Override
+  public SyncSnapshot snapshot(String id) {
+    // nothing on disk to sync
+    return new SyncSnapshot() {
+      @Override
+      public void release() {
+        //
+      }
+
+      @Override
+      public Map<String, List<IndexFile>> getFilesToSync() {
+        return Collections.emptyMap();
+      }
+    };
+  }
+
+  @Override
+  public void backup(File destDir, SyncSnapshot syncSnapshot) {
+    //
+  }
+
+  @Override
+  public void shutdown() {
+    indexes.clear();
+    results.clear();
+  }
+
+  @Override
+  public void optimizeSearchIndex(String indexName) {
+    //
+  }
+
+  @Override
+  public String[] getSearchIndexNames() {
+    return indexes.keySet().toArray(new String[0]);
+  }
+
+  @Override
+  public InputStream getIndexFile(String cacheName, String indexId, String fileName) throws IOException {
+    throw new IOException("In memory index " + cacheName + " has no files");
+  }
+
+  @Override
+  public void releaseAllResultsFor(ClientID clientId) {
+    results.remove(clientId);
+  }
+
+  /**
+   * Drops the results kept for all the clients that are not in the given set.
+   */
+  @Override
+  public void pruneSearchResults(Set<ClientID> clientFilter) {
+    results.keySet().retainAll(clientFilter);
+  }
+
+  @Override
+  public void releaseSearchResults(String indexName, QueryID query, MetaDataProcessingContext context) {
+    // results are materialized when the query runs, there is no snapshot to release
+    processed(context);
+  }
+
+  @Override
+  public void snapshotForQuery(String indexName, QueryID query, MetaDataProcessingContext context) {
+    // results are materialized when the query runs and already are a snapshot
+    processed(context);
+  }
+
+  private static IndexQuery query(List queryStack, boolean includeKeys, boolean includeValues,
+                                  Set<String> attributeSet, Set<String> groupBy, List<NVPair> sortAttributes,
+                                  List<NVPair> aggregators, int maxResults) throws IndexException {
+    Criteria criteria = QueryStackTranslator.criteria(queryStack);
+    List<SortAttribute> sorts = QueryStackTranslator.sortAttributes(sortAttributes);
+    List<Aggregation> aggregations = QueryStackTranslator.aggregations(aggregators);
+    // the rows also need the values sorted and grouped on, they are split from the requested ones in KeptResults
+    Set<String> attributes = new HashSet<String>();
+    if (attributeSet != null) {
+      attributes.addAll(attributeSet);
+    }
+    if (groupBy != null) {
+      attributes.addAll(groupBy);
+    }
+    for (SortAttribute sort : sorts) {
+      attributes.add(sort.getAttribute());
+    }
+    try {
+      return new IndexQuery(criteria, includeKeys, includeValues, attributes, groupBy, sorts, aggregations, maxResults,
+                            countAggregators(aggregations, aggregators));
+    } catch (IllegalArgumentException e) {
+      throw new IndexException(e);
+    }
+  }
+
+  /**
+   * Counts straight into the library aggregators while the matches are walked, any other aggregation is computed into
+   * a plain value and only wrapped when a page is answered.
+   */
+  private static Aggregation.AccumulatorFactory countAggregators(final List<Aggregation> aggregations,
+                                                                 final List<NVPair> aggregators) {
+    return new Aggregation.AccumulatorFactory() {
+      @Override
+      public Aggregation.Accumulator newAccumulator(int index) {
+        Aggregation aggregation = aggregations.get(index);
+        if (aggregation.getType() != Aggregation.Type.COUNT) { return aggregation.newAccumulator(); }
+        final Aggregator count = Aggregator.aggregator(AggregatorOperations.COUNT,
+                                                       aggregatorName(aggregations, aggregators, index), ValueType.LONG);
+        return new Aggregation.Accumulator() {
+          @Override
+          public void accept(Object value) {
+            count.accept(value);
+          }
+
+          @Override
+          public Object result() {
+            return count;
+          }
+        };
+      }
+    };
+  }
+
+  private static String aggregatorName(List<Aggregation> aggregations, List<NVPair> aggregators, int index) {
+    return aggregators != null ? aggregators.get(index).getName() : String.valueOf(aggregations.get(index)
+        .getAttribute());
+  }
+
+  private KeptResults runClientQuery(String indexName, ClientID clientId, SearchRequestID reqId, IndexQuery query,
+                                     Set<String> attributes, List<NVPair> aggregators) throws IndexException {
+    try {
+      return run(indexName, clientId, reqId, query, attributes, aggregators);
+    } catch (IllegalArgumentException e) {
+      // aggregating values of the wrong type
+      throw new IndexException(e);
+    }
+  }
+
+  private KeptResults run(String indexName, ClientID clientId, SearchRequestID reqId, IndexQuery query,
+                          Set<String> attributes, List<NVPair> aggregators) {
+    CacheIndex index = indexes.get(indexName);
+    IndexQueryResults queryResults = index == null ? new CacheIndex(indexName).search(query) : index.search(query);
+    KeptResults kept = new KeptResults(queryResults, query, attributes, aggregators);
+    if (clientId != null && reqId != null) {
+      ConcurrentMap<SearchRequestID, KeptResults> clientResults = results.get(clientId);
+      if (clientResults == null) {
+        clientResults = new ConcurrentHashMap<SearchRequestID, KeptResults>();
+        ConcurrentMap<SearchRequestID, KeptResults> racer = results.putIfAbsent(clientId, clientResults);
+        if (racer != null) {
+          clientResults = racer;
+        }
+      }
+      clientResults.put(reqId, kept);
+    }
+    return kept;
+  }
+
+  private KeptResults kept(ClientID clientId, SearchRequestID reqId) {
+    if (clientId == null || reqId == null) { return null; }
+    Map<SearchRequestID, KeptResults> clientResults = results.get(clientId);
+    return clientResults == null ? null : clientResults.get(reqId);
+  }
+
+  private CacheIndex getOrCreateIndex(String indexName) {
+    CacheIndex index = indexes.get(indexName);
+    if (index == null) {
+      CacheIndex newIndex = new CacheIndex(indexName);
+      index = indexes.putIfAbsent(indexName, newIndex);
+      if (index == null) {
+        index = newIndex;
+        logger.info("Created in memory search index " + indexName);
+      }
+    }
+    return index;
+  }
+
+  private static Map<String, Object> toMap(List<NVPair> attributes) {
+    if (attributes == null || attributes.isEmpty()) { return Collections.emptyMap(); }
+    Map<String, Object> map = new HashMap<String, Object>(attributes.size() * 2);
+    for (NVPair pair : attributes) {
+      map.put(pair.getName(), pair.getObjectValue());
+    }
+    return map;
+  }
+
+  private static void processed(MetaDataProcessingContext context) {
+    if (context != null) {
+      context.processed();
+    }
+  }
+
+  /**
+   * The results of a query together with what it asked for, so that any page of them can be answered with.
+   */
+  private static final class KeptResults {
+    private final IndexQueryResults results;
+    private final IndexQuery        query;
+    private final Set<String>       attributes;
+    private final List<String>      sortAttributes;
+    private final List<String>      aggregatorNames;
+
+    private KeptResults(IndexQueryResults results, IndexQuery query, Set<String> attributes, List<NVPair> aggregators) {
+      this.results = results;
+      this.query = query;
+      this.attributes = attributes == null ? Collections.<String> emptySet() : attributes;
+      this.sortAttributes = new ArrayList<String>();
+      for (SortAttribute sort : query.getSortAttributes()) {
+        sortAttributes.add(sort.getAttribute());
+      }
+      this.aggregatorNames = new ArrayList<String>();
+      for (int i = 0; i < query.getAggregations().size(); i++) {
+        aggregatorNames.add(aggregatorName(query.getAggregations(), aggregators, i));
+      }
+    }
+
+    SearchResult toSearchResult(int start, int pageSize) throws IndexException {
+      List<ResultRow> rows = results.getPage(start, pageSize);
+      List<IndexQueryResult> page = new ArrayList<IndexQueryResult>(rows.size());
+      for (ResultRow row : rows) {
+        if (query.isGrouped()) {
+          page.add(new GroupedIndexQueryResultImpl(pairs(row, attributes), pairs(row, sortAttributes),
+                                                   new HashSet<NVPair>(pairs(row, query.getGroupBy())),
+                                                   aggregators(row.getAggregateResults())));
+        } else {
+          page.add(new NonGroupedIndexQueryResultImpl(row.getKey(), (ValueID) row.getValue(), pairs(row, attributes),
+                                                      pairs(row, sortAttributes)));
+        }
+      }
+      return new SearchResult(page, aggregators(results.getAggregateResults()), results.isAnyCriteriaMatched());
+    }
+
+    private static List<NVPair> pairs(ResultRow row, Collection<String> names) {
+      List<NVPair> pairs = new ArrayList<NVPair>(names.size());
+      for (String name : names) {
+        Object value = row.getAttributes().get(name);
+        if (value != null) {
+          pairs.add(AbstractNVPair.createNVPair(name, value));
+        }
+      }
+      return pairs;
+    }
+
+    /**
+     * Wraps the computed values into library aggregators, counts already were aggregated into theirs by the query.
+     */
+    private List<Aggregator> aggregators(List<Object> values) throws IndexException {
+      List<Aggregator> aggregators = new ArrayList<Aggregator>(values.size());
+      for (int i = 0; i < values.size(); i++) {
+        Aggregation aggregation = query.getAggregations().get(i);
+        String name = aggregatorNames.get(i);
+        Object value = values.get(i);
+        if (aggregation.getType() == Aggregation.Type.COUNT) {
+          aggregators.add((Aggregator) value);
+          continue;
+        }
+        ValueType type = value == null ? ValueType.LONG : AbstractNVPair.createNVPair(name, value).getType();
+        Aggregator aggregator = Aggregator.aggregator(AggregatorOperations.valueOf(aggregation.getType().name()),
+                                                      name, type);
+        try {
+          if (value != null) {
+            aggregator.accept(value);
+          }
+        } catch (IllegalArgumentException e) {
+          throw new IndexException(e);
+        }
+        aggregators.add(aggregator);
+      }
+      return aggregators;
+    }
+  }
+}
@@ -0,0 +1,138 @@
+/* 
+ * The contents of this file are subject to the Terracotta Public License Version
+ * 2.0 (the "License"); You may not use this file except in compliance with the
+ * License. You may obtain a copy of the License at 
+ *
+ *      http://terracotta.org/legal/terracotta-public-license.
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ * the specific language governing rights and limitations under the License.
+ *
+ * The Covered Software is Terracotta Platform.
+ *
+ * The Initial Developer of the Covered Software is 
+ *      Terracotta, Inc., a Software AG company
+ */
+package com.tc.objectserver.search.inmemory;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A query against one cache, with the same parts as the query handed to
+ * {@link com.tc.objectserver.search.IndexManager#searchIndex}: a criteria, what to return for every match, an optional
+ * group by, the sort order, aggregators and a limit.
+ */
+public final class IndexQuery {
+
+  private final Criteria                       criteria;
+  private final boolean                        includeKeys;
+  private final boolean                        includeValues;
+  private final Set<String>                    attributes;
+  private final Set<String>                    groupBy;
+  private final List<SortAttribute>            sortAttributes;
+  private final List<Aggregation>              aggregations;
+  private final int                            maxResults;
+  private final Aggregation.AccumulatorFactory accumulators;
+
+  /**
+   * @param attributes the attributes to return for every result
+   * @param groupBy when not empty one result is returned per distinct combination of these attributes, only grouped
+   *        attributes can then be returned or sorted on
+   * @param maxResults the maximum number of results, negative for no limit. Aggregations are always computed over all
+   *        the matches.
+   */
+  public IndexQuery(Criteria criteria, boolean includeKeys, boolean includeValues, Set<String> attributes,
+                    Set<String> groupBy, List<SortAttribute> sortAttributes, List<Aggregation> aggregations,
+                    int maxResults) {
+    this(criteria, includeKeys, includeValues, attributes, groupBy, sortAttributes, aggregations, maxResults, null);
+  }
+
+  /**
+   * @param accumulators creates the accumulators of the aggregations, null to aggregate into plain values
+   */
+  IndexQuery(Criteria criteria, boolean includeKeys, boolean includeValues, Set<String> attributes,
+             Set<String> groupBy, List<SortAttribute> sortAttributes, List<Aggregation> aggregations, int maxResults,
+             Aggregation.AccumulatorFactory accumulators) {
+    this.criteria = criteria == null ? Criteria.all() : criteria;
+    this.includeKeys = includeKeys;
+    this.includeValues = includeValues;
+    this.attributes = attributes == null ? Collections.<String> emptySet() : attributes;
+    this.groupBy = groupBy == null ? Collections.<String> emptySet() : groupBy;
+    this.sortAttributes = sortAttributes == null ? Collections.<SortAttribute> emptyList() : sortAttributes;
+    this.aggregations = aggregations == null ? Collections.<Aggregation> emptyList() : aggregations;
+    this.maxResults = maxResults;
+    this.accumulators = accumulators;
+
+    if (!this.groupBy.isEmpty()) {
+      if (includeKeys || includeValues) {
+        throw new IllegalArgumentException("Keys and values cannot be returned from a grouped query");
+      }
+      if (!this.groupBy.containsAll(this.attributes)) {
+        throw new IllegalArgumentException("Only grouped attributes can be returned from a grouped query: "
+                                           + this.attributes);
+      }
+      for (SortAttribute sort : this.sortAttributes) {
+        if (!this.groupBy.contains(sort.getAttribute())) {
+          throw new IllegalArgumentException("Only grouped attributes can be sorted on in a grouped query: " + sort);
+        }
+      }
+    }
+  }
+
+  public Criteria getCriteria() {
+    return criteria;
+  }
+
+  public boolean isIncludeKeys() {
+    return includeKeys;
+  }
+
+  public boolean isIncludeValues() {
+    return includeValues;
+  }
+
+  public Set<String> getAttributes() {
+    return attributes;
+  }
+
+  public Set<String> getGroupBy() {
+    return groupBy;
+  }
+
+  public List<SortAttribute> getSortAttributes() {
+    return sortAttributes;
+  }
+
+  public List<Aggregation> getAggregations() {
+    return aggregations;
+  }
+
+  public int getMaxResults() {
+    return maxResults;
+  }
+
+  Aggregation.Accumulator newAccumulator(int index) {
+    return accumulators == null ? aggregations.get(index).newAccumulator() : accumulators.newAccumulator(index);
+  }
+
+  boolean isGrouped() {
+    return !groupBy.isEmpty();
+  }
+
+  /**
+   * A query returning neither keys, values nor attributes only needs its aggregations computed.
+   */
+  boolean needsRows() {
+    return includeKeys || includeValues || !attributes.isEmpty() || !groupBy.isEmpty();
+  }
+
+  @Override
+  public String toString() {
+    return "IndexQuery[criteria=" + criteria + ", keys=" + includeKeys + ", values=" + includeValues + ", attributes="
+           + attributes + ", groupBy=" + groupBy + ", sort=" + sortAttributes + ", aggregations=" + aggregations
+           + ", max=" + maxResults + "]";
+  }
+}
@@ -0,0 +1,71 @@
+/* 
+ * The contents of this file are subject to the Terracotta Public License Version
+ * 2.0 (the "License"); You may not use this file except in compliance with the
+ * License. You may obtain a copy of the License at 
+ *
+ *      http://terracotta.org/legal/terracotta-public-license.
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ * the specific language governing rights and limitations under the License.
+ *
+ * The Covered Software is Terracotta Platform.
+ *
+ * The Initial Developer of the Covered Software is 
+ *      Terracotta, Inc., a Software AG company
+ */
+package com.tc.objectserver.search.inmemory;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The materialized results of a query. They do not change with later updates to the cache, so they can be kept and
+ * handed out a page at a time.
+ */
+public final class IndexQueryResults {
+
+  private final List<ResultRow> rows;
+  private final List<Object>    aggregateResults;
+  private final boolean         anyCriteriaMatched;
+
+  IndexQueryResults(List<ResultRow> rows, List<Object> aggregateResults, boolean anyCriteriaMatched) {
+    this.rows = rows;
+    this.aggregateResults = aggregateResults;
+    this.anyCriteriaMatched = anyCriteriaMatched;
+  }
+
+  public List<ResultRow> getRows() {
+    return Collections.unmodifiableList(rows);
+  }
+
+  public int size() {
+    return rows.size();
+  }
+
+  /**
+   * @return the rows from start on, at most pageSize of them, empty past the end
+   */
+  public List<ResultRow> getPage(int start, int pageSize) {
+    if (start < 0 || pageSize < 0) { throw new IllegalArgumentException("start=" + start + ", pageSize=" + pageSize); }
+    if (start >= rows.size()) { return Collections.emptyList(); }
+    return Collections.unmodifiableList(rows.subList(start, (int) Math.min(rows.size(), (long) start + pageSize)));
+  }
+
+  /**
+   * @return the aggregations over all the matches in query order, empty for grouped queries
+   */
+  public List<Object> getAggregateResults() {
+    return Collections.unmodifiableList(aggregateResults);
+  }
+
+  public boolean isAnyCriteriaMatched() {
+    return anyCriteriaMatched;
+  }
+
+  @Override
+  public String toString() {
+    return "IndexQueryResults[size=" + rows.size() + ", aggregates=" + aggregateResults + ", anyCriteriaMatched="
+           + anyCriteriaMatched + "]";
+  }
+}
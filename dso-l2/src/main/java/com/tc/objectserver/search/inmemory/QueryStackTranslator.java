@@ -0,0 +1,199 @@
+/* 
+ * The contents of this file are subject to the Terracotta Public License Version
+ * 2.0 (the "License"); You may not use this file except in compliance with the
+ * License. You may obtain a copy of the License at 
+ *
+ *      http://terracotta.org/legal/terracotta-public-license.
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ * the specific language governing rights and limitations under the License.
+ *
+ * The Covered Software is Terracotta Platform.
+ *
+ * The Initial Developer of the Covered Software is 
+ *      Terracotta, Inc., a Software AG company
+ */
+package com.tc.objectserver.search.inmemory;
+
+import com.terracottatech.search.IndexException;
+import com.terracottatech.search.NVPair;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Turns the parts of a query sent by a client into their {@link IndexQuery} counterparts.
+ * <p>
+ * The query stack is a prefix expression of operations, each followed by the name value pairs it applies to:
+ * 
+ * <pre>
+ * criteria := ALL | TERM nv | NOT_TERM nv | NOT_EQUAL nv | GREATER_THAN nv | GREATER_THAN_EQUAL nv | LESS_THAN nv
+ *           | LESS_THAN_EQUAL nv | ILIKE nv | BETWEEN nv nv [Boolean Boolean]
+ *           | (AND | OR | NOT) (BEGIN_GROUP criteria* END_GROUP | criteria criteria) | BEGIN_GROUP criteria* END_GROUP
+ * </pre>
+ * 
+ * Criteria next to each other are and'ed. Operations, sort orders and aggregator types are matched on their enum names
+ * so the search library enums are not needed here.
+ */
+final class QueryStackTranslator {
+
+  private final List stack;
+  private int        next;
+
+  private QueryStackTranslator(List stack) {
+    this.stack = stack;
+  }
+
+  static Criteria criteria(List queryStack) throws IndexException {
+    if (queryStack == null || queryStack.isEmpty()) { return Criteria.all(); }
+    QueryStackTranslator translator = new QueryStackTranslator(queryStack);
+    List<Criteria> criteria = new ArrayList<Criteria>();
+    while (translator.next < queryStack.size()) {
+      criteria.add(translator.criteria());
+    }
+    return and(criteria);
+  }
+
+  /**
+   * @param sortAttributes pairs of attribute names and ASCENDING or DESCENDING
+   */
+  static List<SortAttribute> sortAttributes(List<NVPair> sortAttributes) throws IndexException {
+    List<SortAttribute> sorts = new ArrayList<SortAttribute>();
+    if (sortAttributes == null) { return sorts; }
+    for (NVPair pair : sortAttributes) {
+      String order = nameOf(pair.getObjectValue());
+      if ("ASCENDING".equals(order)) {
+        sorts.add(new SortAttribute(pair.getName(), true));
+      } else if ("DESCENDING".equals(order)) {
+        sorts.add(new SortAttribute(pair.getName(), false));
+      } else {
+        throw new IndexException("Unknown sort order " + order + " for " + pair.getName());
+      }
+    }
+    return sorts;
+  }
+
+  /**
+   * @param aggregators pairs of attribute names and aggregator types, counts ignore their attribute
+   */
+  static List<Aggregation> aggregations(List<NVPair> aggregators) throws IndexException {
+    List<Aggregation> aggregations = new ArrayList<Aggregation>();
+    if (aggregators == null) { return aggregations; }
+    for (NVPair pair : aggregators) {
+      String type = nameOf(pair.getObjectValue());
+      Aggregation.Type aggregationType;
+      try {
+        aggregationType = Aggregation.Type.valueOf(type);
+      } catch (IllegalArgumentException e) {
+        throw new IndexException("Unknown aggregator " + type + " for " + pair.getName());
+      }
+      aggregations.add(new Aggregation(aggregationType, aggregationType == Aggregation.Type.COUNT ? null : pair
+          .getName()));
+    }
+    return aggregations;
+  }
+
+  private Criteria criteria() throws IndexException {
+    String op = operation();
+    if ("ALL".equals(op)) {
+      return Criteria.all();
+    } else if ("TERM".equals(op)) {
+      NVPair pair = pair(op);
+      return Criteria.eq(pair.getName(), pair.getObjectValue());
+    } else if ("NOT_TERM".equals(op) || "NOT_EQUAL".equals(op)) {
+      NVPair pair = pair(op);
+      return Criteria.notEq(pair.getName(), pair.getObjectValue());
+    } else if ("GREATER_THAN".equals(op)) {
+      NVPair pair = pair(op);
+      return Criteria.gt(pair.getName(), pair.getObjectValue());
+    } else if ("GREATER_THAN_EQUAL".equals(op)) {
+      NVPair pair = pair(op);
+      return Criteria.ge(pair.getName(), pair.getObjectValue());
+    } else if ("LESS_THAN".equals(op)) {
+      NVPair pair = pair(op);
+      return Criteria.lt(pair.getName(), pair.getObjectValue());
+    } else if ("LESS_THAN_EQUAL".equals(op)) {
+      NVPair pair = pair(op);
+      return Criteria.le(pair.getName(), pair.getObjectValue());
+    } else if ("ILIKE".equals(op)) {
+      NVPair pair = pair(op);
+      return Criteria.ilike(pair.getName(), String.valueOf(pair.getObjectValue()));
+    } else if ("BETWEEN".equals(op)) {
+      NVPair min = pair(op);
+      NVPair max = pair(op);
+      boolean minInclusive = true;
+      boolean maxInclusive = true;
+      if (next < stack.size() && stack.get(next) instanceof Boolean) {
+        minInclusive = bool(op);
+        maxInclusive = bool(op);
+      }
+      return Criteria.between(min.getName(), min.getObjectValue(), max.getObjectValue(), minInclusive, maxInclusive);
+    } else if ("AND".equals(op) || "OR".equals(op) || "NOT".equals(op)) {
+      List<Criteria> operands = new ArrayList<Criteria>();
+      if (atOperation("BEGIN_GROUP")) {
+        next++;
+        operands.addAll(group());
+      } else {
+        operands.add(criteria());
+        if (!"NOT".equals(op)) {
+          operands.add(criteria());
+        }
+      }
+      if ("AND".equals(op)) { return and(operands); }
+      if ("OR".equals(op)) { return Criteria.or(operands.toArray(new Criteria[operands.size()])); }
+      return Criteria.not(and(operands));
+    } else if ("BEGIN_GROUP".equals(op)) {
+      return and(group());
+    } else {
+      throw new IndexException("Unsupported query operation " + op + " at " + (next - 1) + " in " + stack);
+    }
+  }
+
+  private List<Criteria> group() throws IndexException {
+    List<Criteria> criteria = new ArrayList<Criteria>();
+    while (!atOperation("END_GROUP")) {
+      if (next >= stack.size()) { throw new IndexException("Unterminated group in query " + stack); }
+      criteria.add(criteria());
+    }
+    next++;
+    return criteria;
+  }
+
+  private boolean atOperation(String op) {
+    return next < stack.size() && stack.get(next) instanceof Enum && op.equals(((Enum) stack.get(next)).name());
+  }
+
+  private String operation() throws IndexException {
+    Object element = stack.get(next++);
+    if (!(element instanceof Enum)) {
+      throw new IndexException("Expected an operation at " + (next - 1) + " in query " + stack + ", found " + element);
+    }
+    return ((Enum) element).name();
+  }
+
+  private NVPair pair(String op) throws IndexException {
+    Object element = next < stack.size() ? stack.get(next++) : null;
+    if (!(element instanceof NVPair)) {
+      throw new IndexException(op + " expects an attribute value in query " + stack + ", found " + element);
+    }
+    return (NVPair) element;
+  }
+
+  private boolean bool(String op) throws IndexException {
+    Object element = next < stack.size() ? stack.get(next++) : null;
+    if (!(element instanceof Boolean)) {
+      throw new IndexException(op + " expects inclusive flags in query " + stack + ", found " + element);
+    }
+    return (Boolean) element;
+  }
+
+  private static Criteria and(List<Criteria> criteria) {
+    if (criteria.size() == 1) { return criteria.get(0); }
+    return Criteria.and(criteria.toArray(new Criteria[criteria.size()]));
+  }
+
+  private static String nameOf(Object value) {
+    return value instanceof Enum ? ((Enum) value).name() : String.valueOf(value);
+  }
+}
@@ -0,0 +1,65 @@
+/* 
+ * The contents of this file are subject to the Terracotta Public License Version
+ * 2.0 (the "License"); You may not use this file except in compliance with the
+ * License. You may obtain a copy of the License at 
+ *
+ *      http://terracotta.org/legal/terracotta-public-license.
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ * the specific language governing rights and limitations under the License.
+ *
+ * The Covered Software is Terracotta Platform.
+ *
+ * The Initial Developer of the Covered Software is 
+ *      Terracotta, Inc., a Software AG company
+ */
+package com.tc.objectserver.search.inmemory;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * One result of a query: a matching entry, or a group of them when the query groups its results. Parts the query did
+ * not ask for are null.
+ */
+public final class ResultRow {
+
+  private final String              key;
+  private final Object              value;
+  private final Map<String, Object> attributes;
+  private final List<Object>        aggregateResults;
+
+  ResultRow(String key, Object value, Map<String, Object> attributes, List<Object> aggregateResults) {
+    this.key = key;
+    this.value = value;
+    this.attributes = attributes;
+    this.aggregateResults = aggregateResults;
+  }
+
+  public String getKey() {
+    return key;
+  }
+
+  public Object getValue() {
+    return value;
+  }
+
+  public Map<String, Object> getAttributes() {
+    return Collections.unmodifiableMap(attributes);
+  }
+
+  /**
+   * @return the aggregations of the group in query order, empty for ungrouped results
+   */
+  public List<Object> getAggregateResults() {
+    return Collections.unmodifiableList(aggregateResults);
+  }
+
+  @Override
+  public String toString() {
+    return "ResultRow[key=" + key + ", value=" + value + ", attributes=" + attributes + ", aggregates="
+           + aggregateResults + "]";
+  }
+}
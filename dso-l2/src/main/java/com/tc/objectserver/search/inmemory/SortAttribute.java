@@ -0,0 +1,45 @@
+/* 
+ * The contents of this file are subject to the Terracotta Public License Version
+ * 2.0 (the "License"); You may not use this file except in compliance with the
+ * License. You may obtain a copy of the License at 
+ *
+ *      http://terracotta.org/legal/terracotta-public-license.
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ * the specific language governing rights and limitations under the License.
+ *
+ * The Covered Software is Terracotta Platform.
+ *
+ * The Initial Developer of the Covered Software is 
+ *      Terracotta, Inc., a Software AG company
+ */
+package com.tc.objectserver.search.inmemory;
+
+/**
+ * Orders the results of a query on the value of one attribute, rows without a value come last.
+ */
+public final class SortAttribute {
+
+  private final String  attribute;
+  private final boolean ascending;
+
+  public SortAttribute(String attribute, boolean ascending) {
+    if (attribute == null) { throw new NullPointerException(); }
+    this.attribute = attribute;
+    this.ascending = ascending;
+  }
+
+  public String getAttribute() {
+    return attribute;
+  }
+
+  public boolean isAscending() {
+    return ascending;
+  }
+
+  @Override
+  public String toString() {
+    return attribute + (ascending ? " asc" : " desc");
+  }
+}
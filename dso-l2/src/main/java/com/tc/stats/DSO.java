@@ -18,6 +18,8 @@ package com.tc.stats;
 
 import org.apache.commons.collections.set.ListOrderedSet;
 
+import com.tc.async.api.StageLatencySnapshot;
+import com.tc.async.api.StageManager;
 import com.tc.logging.TCLogger;
 import com.tc.logging.TCLogging;
 import com.tc.management.RemoteManagement;
@@ -49,6 +51,7 @@ import com.tc.operatorevent.TerracottaOperatorEventHistoryProvider;
 import com.tc.stats.api.DSOClassInfo;
 import com.tc.stats.api.DSOMBean;
 import com.tc.stats.api.DSOStats;
+import com.tc.stats.counter.HistogramSnapshot;
 
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -103,6 +106,7 @@ public class DSO extends AbstractNotifyingMBean implements DSOMBean {
   private final IndexManager                           indexManager;
   private final ConnectionPolicy                       connectionPolicy;
   private final RemoteManagement                       remoteManagement;
+  private final StageManager                           stageManager;
 
   public DSO(final ServerManagementContext managementContext, final ServerConfigurationContext configContext,
              final MBeanServer mbeanServer, final GCStatsEventPublisher gcStatsPublisher,
@@ -130,6 +134,7 @@ public class DSO extends AbstractNotifyingMBean implements DSOMBean {
     this.storageStats = storageStats;
     this.connectionPolicy = managementContext.getConnectionPolicy();
     this.remoteManagement = managementContext.getRemoteManagement();
+    this.stageManager = managementContext.getStageManager();
 
     // add various listeners (do this before the setupXXX() methods below so we don't ever miss anything)
     txnMgr.addRootListener(new TransactionManagerListener());
@@ -491,6 +496,16 @@ public class DSO extends AbstractNotifyingMBean implements DSOMBean {
     return gcStats != null ? gcStats.getElapsedTime() : -1;
   }
 
+  @Override
+  public HistogramSnapshot getGarbageCollectorPauseHistogram() {
+    return gcStatsPublisher.getPauseTimeHistogram();
+  }
+
+  @Override
+  public StageLatencySnapshot[] getStageLatencyHistograms() {
+    return stageManager.getLatencySnapshots();
+  }
+
   @Override
   public Map<ObjectName, Integer> getClientLiveObjectCount() {
     Map<ObjectName, Integer> result = new HashMap<ObjectName, Integer>();
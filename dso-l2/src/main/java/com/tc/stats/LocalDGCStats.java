@@ -19,6 +19,7 @@ package com.tc.stats;
 import com.tc.objectserver.api.GCStats;
 import com.tc.objectserver.dgc.impl.GCStatsEventPublisher;
 import com.tc.stats.api.DGCMBean;
+import com.tc.stats.counter.HistogramSnapshot;
 
 import javax.management.NotCompliantMBeanException;
 
@@ -48,6 +49,11 @@ public class LocalDGCStats extends AbstractNotifyingMBean implements DGCMBean {
     return gcStats != null ? gcStats.getElapsedTime() : -1;
   }
 
+  @Override
+  public HistogramSnapshot getGarbageCollectorPauseHistogram() {
+    return gcStatsPublisher.getPauseTimeHistogram();
+  }
+
   @Override
   public void reset() {
     // TODO: implement this?
@@ -17,6 +17,7 @@
 package com.tc.stats.api;
 
 import com.tc.objectserver.api.GCStats;
+import com.tc.stats.counter.HistogramSnapshot;
 
 public interface DGCMBean {
 
@@ -26,4 +27,9 @@ public interface DGCMBean {
 
   GCStats[] getGarbageCollectorStats();
 
+  /**
+   * Distribution of DGC pause times in millis since the server started.
+   */
+  HistogramSnapshot getGarbageCollectorPauseHistogram();
+
 }
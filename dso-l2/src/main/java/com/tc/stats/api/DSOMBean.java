@@ -16,6 +16,7 @@
  */
 package com.tc.stats.api;
 
+import com.tc.async.api.StageLatencySnapshot;
 import com.tc.management.RemoteManagement;
 import com.tc.management.TerracottaMBean;
 import com.tc.net.NodeID;
@@ -87,6 +88,12 @@ public interface DSOMBean extends DSOStats, OffheapStats, StorageDataStats, DGCM
 
   int getLiveObjectCount();
 
+  /**
+   * Queue wait, service time and batch size distributions of every SEDA stage since the server started, in stage name
+   * order.
+   */
+  StageLatencySnapshot[] getStageLatencyHistograms();
+
   boolean isResident(NodeID node, ObjectID oid);
 
   Map<ObjectName, Exception> setAttribute(Set<ObjectName> onSet, String attrName, Object attrValue);
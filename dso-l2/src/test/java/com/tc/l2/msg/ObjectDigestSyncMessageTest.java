@@ -0,0 +1,64 @@
+/* 
+ * The contents of this file are subject to the Terracotta Public License Version
+ * 2.0 (the "License"); You may not use this file except in compliance with the
+ * License. You may obtain a copy of the License at 
+ *
+ *      http://terracotta.org/legal/terracotta-public-license.
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ * the specific language governing rights and limitations under the License.
+ *
+ * The Covered Software is Terracotta Platform.
+ *
+ * The Initial Developer of the Covered Software is 
+ *      Terracotta, Inc., a Software AG company
+ */
+package com.tc.l2.msg;
+
+import com.tc.io.TCByteBufferInputStream;
+import com.tc.io.TCByteBufferOutputStream;
+import com.tc.l2.objectserver.ObjectStoreDigest;
+import com.tc.object.ObjectID;
+
+import java.util.BitSet;
+
+import junit.framework.TestCase;
+
+public class ObjectDigestSyncMessageTest extends TestCase {
+
+  private ObjectDigestSyncMessage writeAndRead(ObjectDigestSyncMessage msg) throws Exception {
+    TCByteBufferOutputStream bo = new TCByteBufferOutputStream();
+    msg.serializeTo(bo);
+    TCByteBufferInputStream bi = new TCByteBufferInputStream(bo.toArray());
+    ObjectDigestSyncMessage read = new ObjectDigestSyncMessage();
+    read.deserializeFrom(bi);
+    assertEquals(msg.getType(), read.getType());
+    assertEquals(msg.getMessageID(), read.getMessageID());
+    return read;
+  }
+
+  public void testDigest() throws Exception {
+    ObjectStoreDigest digest = new ObjectStoreDigest();
+    for (int i = 0; i < 100; i++) {
+      digest.add(new ObjectID(i), 1);
+    }
+    assertEquals(digest, writeAndRead(ObjectDigestSyncMessage.createDigestMessage(digest)).getDigest());
+  }
+
+  public void testDivergentBuckets() throws Exception {
+    BitSet buckets = new BitSet();
+    buckets.set(3);
+    buckets.set(4095);
+    assertEquals(buckets, writeAndRead(ObjectDigestSyncMessage.createDivergentBucketsMessage(buckets))
+        .getDivergentBuckets());
+    assertEquals(new BitSet(), writeAndRead(ObjectDigestSyncMessage.createDivergentBucketsMessage(new BitSet()))
+        .getDivergentBuckets());
+  }
+
+  public void testDivergentDropped() throws Exception {
+    ObjectDigestSyncMessage read = writeAndRead(ObjectDigestSyncMessage.createDivergentDroppedMessage());
+    assertNull(read.getDigest());
+    assertNull(read.getDivergentBuckets());
+  }
+}
@@ -0,0 +1,194 @@
+/*
+ * The contents of this file are subject to the Terracotta Public License Version
+ * 2.0 (the "License"); You may not use this file except in compliance with the
+ * License. You may obtain a copy of the License at
+ *
+ *      http://terracotta.org/legal/terracotta-public-license.
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ * the specific language governing rights and limitations under the License.
+ *
+ * The Covered Software is Terracotta Platform.
+ *
+ * The Initial Developer of the Covered Software is
+ *      Terracotta, Inc., a Software AG company
+ */
+package com.tc.l2.objectserver;
+
+import org.mockito.ArgumentCaptor;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import com.tc.l2.context.ManagedObjectSyncContext;
+import com.tc.net.NodeID;
+import com.tc.net.ServerID;
+import com.tc.object.ObjectID;
+import com.tc.objectserver.api.ObjectManager;
+import com.tc.objectserver.tx.ServerTransactionManager;
+import com.tc.objectserver.tx.TxnsInSystemCompletionListener;
+import com.tc.util.BitSetObjectIDSet;
+import com.tc.util.ObjectIDSet;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class L2ObjectStateManagerImplTest extends TestCase {
+
+  private static final int                           OBJECTS      = 1000;
+
+  private final NodeID                                passive      = new ServerID("passive", new byte[] { 1, 2, 3 });
+  private final ObjectIDSet                           allOids      = new BitSetObjectIDSet();
+  private final List<TxnsInSystemCompletionListener> txnsInSystem = new ArrayList<TxnsInSystemCompletionListener>();
+  private ObjectManager                               objectManager;
+  private L2ObjectStateListener                       listener;
+  private L2ObjectStateManagerImpl                    stateManager;
+
+  @Override
+  protected void setUp() throws Exception {
+    for (int i = 0; i < OBJECTS; i++) {
+      allOids.add(new ObjectID(i));
+    }
+    objectManager = mock(ObjectManager.class);
+    // the state manager consumes the set it gets
+    when(objectManager.getAllObjectIDs()).thenAnswer(new Answer<ObjectIDSet>() {
+      @Override
+      public ObjectIDSet answer(InvocationOnMock invocation) {
+        return new BitSetObjectIDSet(allOids);
+      }
+    });
+    when(objectManager.getRootNamesToIDsMap()).thenReturn(new HashMap());
+
+    ServerTransactionManager transactionManager = mock(ServerTransactionManager.class);
+    doAnswer(new Answer<Object>() {
+      @Override
+      public Object answer(InvocationOnMock invocation) {
+        ((TxnsInSystemCompletionListener) invocation.getArguments()[0]).onCompletion();
+        return null;
+      }
+    }).when(transactionManager).callBackOnResentTxnsInSystemCompletion(any(TxnsInSystemCompletionListener.class));
+    doAnswer(new Answer<Object>() {
+      @Override
+      public Object answer(InvocationOnMock invocation) {
+        ((Runnable) invocation.getArguments()[0]).run();
+        return null;
+      }
+    }).when(transactionManager).callbackOnLowWaterMarkInSystemCompletion(any(Runnable.class));
+    // left pending, the tests decide when the transactions in flight complete
+    doAnswer(new Answer<Object>() {
+      @Override
+      public Object answer(InvocationOnMock invocation) {
+        txnsInSystem.add((TxnsInSystemCompletionListener) invocation.getArguments()[0]);
+        return null;
+      }
+    }).when(transactionManager).callBackOnTxnsInSystemCompletion(any(TxnsInSystemCompletionListener.class));
+
+    listener = mock(L2ObjectStateListener.class);
+    stateManager = new L2ObjectStateManagerImpl(objectManager, transactionManager);
+    stateManager.registerForL2ObjectStateChangeEvents(listener);
+  }
+
+  public void testMatchingDigestsNeedNoSync() {
+    stateManager.setPassiveDigest(passive, digest(-1, -1));
+    stateManager.addL2(passive);
+    verify(listener).localDigestNeededFor(passive);
+    verify(listener, never()).missingObjectsFor(any(NodeID.class), anyInt());
+
+    stateManager.localDigestComputed(passive, digest(-1, -1));
+    verify(listener).missingObjectsFor(passive, 0);
+    verify(listener, never()).divergentBucketsFor(any(NodeID.class), any(BitSet.class));
+    verify(objectManager, never()).getAllObjectIDs();
+    assertTrue(txnsInSystem.isEmpty());
+  }
+
+  public void testOnlyDivergentBucketsAreSynced() {
+    // 10 is stale on the passive and 20 was created since it went down
+    ObjectStoreDigest passiveDigest = digest(10, 20);
+    ObjectStoreDigest localDigest = digest(-1, -1);
+    stateManager.setPassiveDigest(passive, passiveDigest);
+    stateManager.addL2(passive);
+    stateManager.localDigestComputed(passive, localDigest);
+
+    ArgumentCaptor<BitSet> divergent = ArgumentCaptor.forClass(BitSet.class);
+    verify(listener).divergentBucketsFor(any(NodeID.class), divergent.capture());
+    assertEquals(localDigest.divergentBuckets(passiveDigest), divergent.getValue());
+    assertTrue(divergent.getValue().get(localDigest.bucketFor(new ObjectID(10))));
+    assertTrue(divergent.getValue().get(localDigest.bucketFor(new ObjectID(20))));
+
+    // nothing is sent before the passive dropped the divergent objects and the transactions in flight completed
+    stateManager.divergentObjectsDropped(passive);
+    verify(listener, never()).missingObjectsFor(any(NodeID.class), anyInt());
+    assertEquals(1, txnsInSystem.size());
+    txnsInSystem.remove(0).onCompletion();
+
+    ObjectIDSet expected = localDigest.selectFrom(allOids, divergent.getValue());
+    assertTrue(expected.size() < OBJECTS / 4);
+    verify(listener).missingObjectsFor(passive, expected.size());
+
+    ManagedObjectSyncContext context = stateManager.getSomeObjectsToSyncContext(passive, OBJECTS);
+    assertEquals(expected.size(), context.getRequestedObjectIDs().size());
+    assertTrue(context.getRequestedObjectIDs().containsAll(expected));
+    assertTrue(context.getRequestedObjectIDs().contains(new ObjectID(10)));
+    assertTrue(context.getRequestedObjectIDs().contains(new ObjectID(20)));
+    assertEquals(expected.size(), context.getTotalObjectsToSync());
+    assertFalse(context.hasMore());
+  }
+
+  public void testPassiveLeavingWhileWaitingForDrop() {
+    stateManager.setPassiveDigest(passive, digest(10, -1));
+    stateManager.addL2(passive);
+    stateManager.localDigestComputed(passive, digest(-1, -1));
+    verify(listener).divergentBucketsFor(any(NodeID.class), any(BitSet.class));
+
+    stateManager.removeL2(passive);
+    assertEquals(0, stateManager.getL2Count());
+    // a late acknowledgement from the departed passive is ignored
+    stateManager.divergentObjectsDropped(passive);
+    assertTrue(txnsInSystem.isEmpty());
+    verify(listener, never()).missingObjectsFor(any(NodeID.class), anyInt());
+
+    // the digest was used up, coming back without a new one is a full sync
+    stateManager.addL2(passive);
+    verify(listener, times(1)).localDigestNeededFor(passive);
+    verify(listener).missingObjectsFor(passive, OBJECTS);
+  }
+
+  public void testPassiveLeavingBeforeDropCompletes() {
+    stateManager.setPassiveDigest(passive, digest(10, -1));
+    stateManager.addL2(passive);
+    stateManager.localDigestComputed(passive, digest(-1, -1));
+    stateManager.divergentObjectsDropped(passive);
+    assertEquals(1, txnsInSystem.size());
+
+    stateManager.removeL2(passive);
+    txnsInSystem.remove(0).onCompletion();
+    verify(listener, never()).missingObjectsFor(any(NodeID.class), anyInt());
+    verify(objectManager, never()).getAllObjectIDs();
+  }
+
+  /**
+   * Digest of all the objects at version 1, but for a stale object at version 0 and a missing one.
+   */
+  private static ObjectStoreDigest digest(int stale, int missing) {
+    ObjectStoreDigest digest = new ObjectStoreDigest();
+    for (int i = 0; i < OBJECTS; i++) {
+      if (i != missing) {
+        digest.add(new ObjectID(i), i == stale ? 0 : 1);
+      }
+    }
+    return digest;
+  }
+}
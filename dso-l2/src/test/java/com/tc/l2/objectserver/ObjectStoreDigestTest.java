@@ -0,0 +1,86 @@
+/* 
+ * The contents of this file are subject to the Terracotta Public License Version
+ * 2.0 (the "License"); You may not use this file except in compliance with the
+ * License. You may obtain a copy of the License at 
+ *
+ *      http://terracotta.org/legal/terracotta-public-license.
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ * the specific language governing rights and limitations under the License.
+ *
+ * The Covered Software is Terracotta Platform.
+ *
+ * The Initial Developer of the Covered Software is 
+ *      Terracotta, Inc., a Software AG company
+ */
+package com.tc.l2.objectserver;
+
+import com.tc.io.TCByteBufferInputStream;
+import com.tc.io.TCByteBufferOutputStream;
+import com.tc.object.ObjectID;
+import com.tc.util.BitSetObjectIDSet;
+import com.tc.util.ObjectIDSet;
+
+import java.util.BitSet;
+
+import junit.framework.TestCase;
+
+public class ObjectStoreDigestTest extends TestCase {
+
+  public void testOrderDoesNotMatter() {
+    ObjectStoreDigest forward = new ObjectStoreDigest(64);
+    ObjectStoreDigest backward = new ObjectStoreDigest(64);
+    for (int i = 0; i < 1000; i++) {
+      forward.add(new ObjectID(i), i * 3);
+      backward.add(new ObjectID(999 - i), (999 - i) * 3);
+    }
+    assertEquals(forward, backward);
+    assertTrue(forward.divergentBuckets(backward).isEmpty());
+  }
+
+  public void testDivergentBuckets() {
+    ObjectStoreDigest active = new ObjectStoreDigest(64);
+    ObjectStoreDigest passive = new ObjectStoreDigest(64);
+    ObjectIDSet all = new BitSetObjectIDSet();
+    for (int i = 0; i < 1000; i++) {
+      ObjectID oid = new ObjectID(i);
+      all.add(oid);
+      active.add(oid, i == 10 ? 7 : 1);
+      // 10 is stale on the passive and 20 was deleted since
+      if (i != 20) {
+        passive.add(oid, 1);
+      }
+    }
+    // 2000 only exists on the passive
+    passive.add(new ObjectID(2000), 1);
+
+    BitSet divergent = active.divergentBuckets(passive);
+    assertTrue(divergent.get(active.bucketFor(new ObjectID(10))));
+    assertTrue(divergent.get(active.bucketFor(new ObjectID(20))));
+    assertTrue(divergent.get(active.bucketFor(new ObjectID(2000))));
+    assertTrue(divergent.cardinality() <= 3);
+
+    ObjectIDSet resync = active.selectFrom(all, divergent);
+    assertTrue(resync.contains(new ObjectID(10)));
+    assertTrue(resync.contains(new ObjectID(20)));
+    assertTrue(resync.size() < all.size() / 4);
+  }
+
+  public void testBucketCountMismatch() {
+    BitSet divergent = new ObjectStoreDigest(16).divergentBuckets(new ObjectStoreDigest(32));
+    assertEquals(16, divergent.cardinality());
+  }
+
+  public void testSerialization() throws Exception {
+    ObjectStoreDigest digest = new ObjectStoreDigest();
+    for (int i = 0; i < 5000; i++) {
+      digest.add(new ObjectID(i * 7), i);
+    }
+    TCByteBufferOutputStream out = new TCByteBufferOutputStream();
+    digest.serializeTo(out);
+    ObjectStoreDigest read = ObjectStoreDigest.deserializeFrom(new TCByteBufferInputStream(out.toArray()));
+    assertEquals(digest, read);
+    assertEquals(ObjectStoreDigest.DEFAULT_BUCKETS, read.getBucketCount());
+  }
+}
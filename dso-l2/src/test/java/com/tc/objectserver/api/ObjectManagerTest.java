@@ -20,6 +20,7 @@ import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
 import com.tc.exception.ImplementMe;
+import com.tc.io.TCByteBufferOutputStream;
 import com.tc.logging.LogLevelImpl;
 import com.tc.logging.TCLogger;
 import com.tc.logging.TCLogging;
@@ -28,11 +29,13 @@ import com.tc.object.LogicalOperation;
 import com.tc.object.ObjectID;
 import com.tc.object.TestDNACursor;
 import com.tc.object.dna.api.DNA;
+import com.tc.object.dna.api.DNA.DNAType;
 import com.tc.object.dna.api.DNACursor;
 import com.tc.object.dna.api.DNAEncoding;
 import com.tc.object.dna.api.DNAException;
 import com.tc.object.dna.api.LogicalAction;
 import com.tc.object.dna.api.PhysicalAction;
+import com.tc.object.dna.impl.ObjectStringSerializerImpl;
 import com.tc.object.dna.impl.UTF8ByteDataHolder;
 import com.tc.object.tx.TransactionID;
 import com.tc.objectserver.context.DGCResultContext;
@@ -49,6 +52,7 @@ import com.tc.objectserver.l1.api.ClientStateManager;
 import com.tc.objectserver.l1.impl.ClientStateManagerImpl;
 import com.tc.objectserver.managedobject.ApplyTransactionInfo;
 import com.tc.objectserver.managedobject.ManagedObjectStateFactory;
+import com.tc.objectserver.managedobject.MapManagedObjectState;
 import com.tc.objectserver.managedobject.ManagedObjectStateStaticConfig;
 import com.tc.objectserver.managedobject.NullManagedObjectChangeListenerProvider;
 import com.tc.objectserver.persistence.HeapStorageManagerFactory;
@@ -707,6 +711,100 @@ public class ObjectManagerTest extends TCTestCase {
     executorService.shutdown();
   }
 
+  public void testUncachedLookupKeepsMapEntries() throws Exception {
+    final ObjectID oid = new ObjectID(1);
+    initObjectManager();
+    ManagedObject mo = objectStore.createObject(oid);
+    mo.apply(new TestMapDNA(oid), new TransactionID(1), new ApplyTransactionInfo(), new ObjectInstanceMonitorImpl(),
+             false);
+
+    // the way a passive sync sends the map over
+    mo = objectManager.getObjectByIDReadOnlyUncached(oid);
+    mo.toDNA(new TCByteBufferOutputStream(), new ObjectStringSerializerImpl(), DNAType.L2_SYNC);
+    objectManager.releaseReadOnly(mo);
+    assertFalse(objectManager.isReferenced(oid));
+
+    persistor.getPersistentObjectFactory().getKeyValueStorage(oid, false);
+    mo = objectManager.getObjectByIDReadOnly(oid);
+    MapManagedObjectState state = (MapManagedObjectState) mo.getManagedObjectState();
+    assertEquals(3, state.keySet().size());
+    assertEquals(new UTF8ByteDataHolder("val1"), state.get(new UTF8ByteDataHolder("key1")));
+    objectManager.releaseReadOnly(mo);
+    assertEquals(0, objectManager.getCheckedOutCount());
+  }
+
+  public void testUncachedLookupDoesNotFillCache() throws Exception {
+    final ObjectID faulted = new ObjectID(1);
+    final ObjectID cached = new ObjectID(2);
+    initObjectManager();
+    for (ObjectID oid : new ObjectID[] { faulted, cached }) {
+      ManagedObject mo = objectStore.createObject(oid);
+      mo.apply(new TestSerialziedEntryDNA(oid), new TransactionID(1), new ApplyTransactionInfo(),
+               mock(ObjectInstanceMonitor.class), true);
+    }
+    objectManager.releaseReadOnly(objectManager.getObjectByIDReadOnly(cached));
+    assertTrue(objectManager.getObjectIDsInCache().contains(cached));
+
+    ManagedObject mo = objectManager.getObjectByIDReadOnlyUncached(faulted);
+    Assert.assertNotNull(mo);
+    assertTrue(objectManager.getObjectIDsInCache().contains(faulted));
+    objectManager.releaseReadOnly(mo);
+    assertFalse(objectManager.getObjectIDsInCache().contains(faulted));
+
+    // objects that were already in memory stay there
+    mo = objectManager.getObjectByIDReadOnlyUncached(cached);
+    Assert.assertNotNull(mo);
+    objectManager.releaseReadOnly(mo);
+    assertTrue(objectManager.getObjectIDsInCache().contains(cached));
+    assertEquals(0, objectManager.getCheckedOutCount());
+
+    assertNull(objectManager.getObjectByIDReadOnlyUncached(new ObjectID(3)));
+  }
+
+  public void testReleasedLeafObjectsAreCached() throws Exception {
+    final ObjectID oid = new ObjectID(1);
+    initObjectManager();
+    ManagedObject mo = objectStore.createObject(oid);
+    mo.apply(new TestSerialziedEntryDNA(oid), new TransactionID(1), new ApplyTransactionInfo(),
+             mock(ObjectInstanceMonitor.class), true);
+
+    ManagedObject first = objectManager.getObjectByIDReadOnly(oid);
+    objectManager.releaseReadOnly(first);
+    assertEquals(1, stats.getTotalCacheMisses());
+    assertFalse(objectManager.isReferenced(oid));
+    assertTrue(objectManager.getObjectIDsInCache().contains(oid));
+
+    ManagedObject second = objectManager.getObjectByID(oid);
+    assertSame(first, second);
+    objectManager.release(second);
+    assertEquals(1, stats.getTotalCacheMisses());
+    assertEquals(1, stats.getTotalCacheHits());
+    assertEquals(0.5d, stats.getCacheHitRatio(), 0.001d);
+
+    objectManager.deleteObjects(Collections.singleton(oid));
+    assertFalse(objectManager.getObjectIDsInCache().contains(oid));
+    assertNull(objectManager.getObjectByIDReadOnly(oid));
+    assertEquals(0, objectManager.getCheckedOutCount());
+  }
+
+  public void testDeleteWhileCheckedOutIsNotCached() throws Exception {
+    final ObjectID oid = new ObjectID(1);
+    initObjectManager();
+    ManagedObject mo = objectStore.createObject(oid);
+    mo.apply(new TestSerialziedEntryDNA(oid), new TransactionID(1), new ApplyTransactionInfo(),
+             mock(ObjectInstanceMonitor.class), true);
+    objectManager.releaseReadOnly(objectManager.getObjectByIDReadOnly(oid));
+
+    ManagedObject checkedOut = objectManager.getObjectByID(oid);
+    assertTrue(objectManager.tryDeleteObjects(Collections.singleton(oid), Collections.singleton(oid)).isEmpty());
+    objectManager.release(checkedOut);
+
+    assertFalse(objectManager.getObjectIDsInCache().contains(oid));
+    assertFalse(objectManager.isReferenced(oid));
+    assertNull(objectManager.getObjectByIDReadOnly(oid));
+    assertEquals(0, objectManager.getCheckedOutCount());
+  }
+
   public void testDeleteNewObject() throws Exception {
     final ObjectID id = new ObjectID(1);
     initObjectManager();
@@ -188,6 +188,16 @@ public class GCTestObjectManager implements ObjectManager {
     return mo;
   }
 
+  @Override
+  public ManagedObject getObjectByIDReadOnlyUncached(ObjectID id) {
+    return getObjectByIDReadOnly(id);
+  }
+
+  @Override
+  public long getObjectVersion(ObjectID id) {
+    throw new ImplementMe();
+  }
+
   @Override
   public void notifyGCComplete(DGCResultContext dgcResultContext) {
     SortedSet<ObjectID> ids = dgcResultContext.getGarbageIDs();
@@ -153,6 +153,18 @@ public class TestManagedObject implements ManagedObject, ManagedObjectReference,
     return this.removeOnRelease;
   }
 
+  boolean deleted;
+
+  @Override
+  public void markDeleted() {
+    this.deleted = true;
+  }
+
+  @Override
+  public boolean isCacheable() {
+    return !this.removeOnRelease && !this.deleted;
+  }
+
   boolean referenced = false;
 
   @Override
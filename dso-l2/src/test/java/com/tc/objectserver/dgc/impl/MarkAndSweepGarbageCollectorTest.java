@@ -194,6 +194,20 @@ public class MarkAndSweepGarbageCollectorTest extends TestCase {
     assertTrue(this.lookedUp.equals(this.released));
   }
 
+  public void testRescueIDsOnlyHoldChangesSinceLastCall() {
+    FullGCHook hook = new FullGCHook(this.collector, this.objectManager, this.stateManager, false);
+    hook.startMonitoringReferenceChanges();
+    this.collector.changed(this.root1.getID(), ObjectID.NULL_ID, new ObjectID(100));
+    assertTrue(hook.getRescueIDs().contains(new ObjectID(100)));
+
+    this.collector.changed(this.root1.getID(), ObjectID.NULL_ID, new ObjectID(101));
+    Set<ObjectID> rescueIds = hook.getRescueIDs();
+    assertFalse(rescueIds.contains(new ObjectID(100)));
+    assertTrue(rescueIds.contains(new ObjectID(101)));
+    assertTrue(hook.getRescueIDs().isEmpty());
+    hook.stopMonitoringReferenceChanges();
+  }
+
   public void testIsInGCPause() throws Exception {
     assertFalse(this.collector.isPausingOrPaused());
     this.collector.requestGCPause();
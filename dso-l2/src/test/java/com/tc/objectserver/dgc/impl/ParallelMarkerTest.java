@@ -0,0 +1,290 @@
+/*
+ * The contents of this file are subject to the Terracotta Public License Version
+ * 2.0 (the "License"); You may not use this file except in compliance with the
+ * License. You may obtain a copy of the License at
+ *
+ *      http://terracotta.org/legal/terracotta-public-license.
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ * the specific language governing rights and limitations under the License.
+ *
+ * The Covered Software is Terracotta Platform.
+ *
+ * The Initial Developer of the Covered Software is
+ *      Terracotta, Inc., a Software AG company
+ */
+package com.tc.objectserver.dgc.impl;
+
+import com.tc.object.ObjectID;
+import com.tc.objectserver.core.api.Filter;
+import com.tc.objectserver.core.impl.GarbageCollectionID;
+import com.tc.objectserver.dgc.api.GarbageCollectionInfo;
+import com.tc.util.BitSetObjectIDSet;
+import com.tc.util.ObjectIDSet;
+import com.tc.util.concurrent.LifeCycleState;
+import com.tc.util.concurrent.NullLifeCycleState;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Queue;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.TestCase;
+
+public class ParallelMarkerTest extends TestCase {
+
+  private static final Filter  ALL    = new Filter() {
+                                       @Override
+                                       public boolean shouldVisit(ObjectID referencedObject) {
+                                         return true;
+                                       }
+                                     };
+
+  private final GraphHook      hook   = new GraphHook();
+  private final LifeCycleState noStop = new NullLifeCycleState();
+  private ExecutorService      executor;
+
+  @Override
+  protected void setUp() {
+    executor = Executors.newFixedThreadPool(4);
+  }
+
+  @Override
+  protected void tearDown() {
+    executor.shutdownNow();
+  }
+
+  public void testBitmapMarksOnce() {
+    ConcurrentObjectIDBitmap bitmap = new ConcurrentObjectIDBitmap();
+    assertTrue(bitmap.mark(5));
+    assertFalse(bitmap.mark(5));
+    assertTrue(bitmap.mark(1L << 40));
+    assertTrue(bitmap.isMarked(1L << 40));
+    assertFalse(bitmap.isMarked(6));
+
+    Set<ObjectID> ids = new HashSet<ObjectID>();
+    ids.add(new ObjectID(5));
+    ids.add(new ObjectID(6));
+    ids.add(new ObjectID(1L << 40));
+    bitmap.removeMarkedFrom(ids);
+    assertEquals(Collections.singleton(new ObjectID(6)), ids);
+  }
+
+  public void testMatchesSequentialMark() {
+    Random r = new Random(42);
+    int count = 20000;
+    for (int i = 0; i < count; i++) {
+      List<ObjectID> refs = new ArrayList<ObjectID>();
+      for (int j = r.nextInt(4); j > 0; j--) {
+        // Mostly point forward so part of the id space ends up unreachable
+        refs.add(new ObjectID(Math.min(count - 1, i + 1 + r.nextInt(50))));
+      }
+      if (r.nextInt(10) == 0) {
+        refs.add(ObjectID.NULL_ID);
+      }
+      hook.graph.put(new ObjectID(i), new BitSetObjectIDSet(refs));
+    }
+    Set<ObjectID> roots = new HashSet<ObjectID>();
+    for (int i = 0; i < 20; i++) {
+      roots.add(new ObjectID(r.nextInt(count)));
+    }
+
+    ObjectIDSet sequential = newAlgorithm(1).collect(ALL, roots, allIDs(), noStop);
+    ObjectIDSet parallel = newAlgorithm(4).collect(ALL, roots, allIDs(), noStop);
+
+    assertFalse(sequential.isEmpty());
+    assertEquals(sequential, parallel);
+  }
+
+  public void testFilterStopsTraversal() {
+    link(0, 1);
+    link(1, 2);
+    link(2, 3);
+    link(4);
+    Filter skipOne = new Filter() {
+      @Override
+      public boolean shouldVisit(ObjectID referencedObject) {
+        return referencedObject.toLong() != 1;
+      }
+    };
+
+    ObjectIDSet garbage = newAlgorithm(3).collect(skipOne, Collections.singleton(new ObjectID(0)), allIDs(), noStop);
+
+    // 1 is reachable so it's marked, but it's never traversed so 2 and 3 are left behind
+    assertEquals(new HashSet<ObjectID>(ids(2, 3, 4)), new HashSet<ObjectID>(garbage));
+    assertFalse(hook.visited.containsKey(new ObjectID(1)));
+  }
+
+  public void testObjectsAreNotRevisited() {
+    for (int i = 0; i < 1000; i++) {
+      link(i, (i + 1) % 1000, (i + 7) % 1000);
+    }
+
+    ObjectIDSet garbage = newAlgorithm(4).collect(ALL, ids(0, 500), allIDs(), noStop);
+
+    assertTrue(garbage.isEmpty());
+    for (ObjectID id : hook.visited.keySet()) {
+      // roots get traversed again when they have already been reached from another root
+      int expected = id.toLong() == 0 || id.toLong() == 500 ? 2 : 1;
+      assertTrue(hook.visited.get(id).get() <= expected);
+    }
+  }
+
+  public void testMoreWorkersThanPoolThreads() {
+    for (int i = 0; i < 1000; i++) {
+      link(i, (i + 1) % 1000);
+    }
+    link(1000);
+    ExecutorService single = Executors.newSingleThreadExecutor();
+    try {
+      ObjectIDSet candidates = allIDs();
+      // the workers run one after the other, the first one does all the work and the others only see the end of it
+      assertTrue(new ParallelMarker(hook, single, 4, 16).mark(ALL, ids(0), candidates, noStop));
+      assertEquals(new HashSet<ObjectID>(ids(1000)), new HashSet<ObjectID>(candidates));
+    } finally {
+      single.shutdownNow();
+    }
+  }
+
+  public void testShutDownPoolAbortsMarking() {
+    link(0, 1);
+    link(1);
+    executor.shutdown();
+    ObjectIDSet candidates = allIDs();
+    assertFalse(new ParallelMarker(hook, executor, 2, 16).mark(ALL, ids(0), candidates, noStop));
+    assertEquals(2, candidates.size());
+  }
+
+  public void testStopRequested() {
+    link(0, 1);
+    link(1);
+    LifeCycleState stopped = new NullLifeCycleState() {
+      @Override
+      public boolean isStopRequested() {
+        return true;
+      }
+    };
+
+    ObjectIDSet candidates = allIDs();
+    ParallelMarker marker = new ParallelMarker(hook, executor, 2, 16);
+    assertFalse(marker.mark(ALL, ids(0), candidates, stopped));
+    assertEquals(2, candidates.size());
+  }
+
+  public void testConcurrentRescuePasses() {
+    link(0, 1);
+    link(1);
+    link(2, 3);
+    link(3);
+    link(4);
+    link(5);
+    hook.rescues.add(new BitSetObjectIDSet(ids(0, 2)));
+    hook.rescues.add(new BitSetObjectIDSet(ids(4, 6)));
+    hook.rescues.add(new BitSetObjectIDSet(ids(5)));
+
+    MarkAndSweepGCAlgorithm algorithm = new MarkAndSweepGCAlgorithm(null, hook, null, noStop, 1, null, 1, 64, 4,
+                                                                    2);
+    ObjectIDSet garbage = algorithm.concurrentRescue(allIDs());
+
+    // the second pass starts from less than the remark threshold, what is left is for the paused rescue
+    assertEquals(new HashSet<ObjectID>(ids(5)), new HashSet<ObjectID>(garbage));
+    assertEquals(1, hook.rescues.size());
+  }
+
+  private MarkAndSweepGCAlgorithm newAlgorithm(int threads) {
+    return new MarkAndSweepGCAlgorithm(null, hook, null, noStop, 1, executor, threads, 64);
+  }
+
+  private ObjectIDSet allIDs() {
+    return new BitSetObjectIDSet(hook.graph.keySet());
+  }
+
+  private void link(long from, long... to) {
+    hook.graph.put(new ObjectID(from), new BitSetObjectIDSet(ids(to)));
+  }
+
+  private static List<ObjectID> ids(long... ids) {
+    List<ObjectID> rv = new ArrayList<ObjectID>();
+    for (long id : ids) {
+      rv.add(new ObjectID(id));
+    }
+    return rv;
+  }
+
+  private static class GraphHook implements GCHook {
+    private final ConcurrentMap<ObjectID, Set<ObjectID>>  graph   = new ConcurrentHashMap<ObjectID, Set<ObjectID>>();
+    private final ConcurrentMap<ObjectID, AtomicInteger> visited = new ConcurrentHashMap<ObjectID, AtomicInteger>();
+    private final Queue<ObjectIDSet>                     rescues = new LinkedList<ObjectIDSet>();
+
+    @Override
+    public Set<ObjectID> getObjectReferencesFrom(ObjectID id) {
+      AtomicInteger count = visited.putIfAbsent(id, new AtomicInteger(1));
+      if (count != null) {
+        count.incrementAndGet();
+      }
+      Set<ObjectID> refs = graph.get(id);
+      return refs == null ? Collections.<ObjectID> emptySet() : refs;
+    }
+
+    @Override
+    public ObjectIDSet getGCCandidates() {
+      return new BitSetObjectIDSet(graph.keySet());
+    }
+
+    @Override
+    public ObjectIDSet getRootObjectIDs(ObjectIDSet candidateIDs) {
+      return new BitSetObjectIDSet();
+    }
+
+    @Override
+    public int getLiveObjectCount() {
+      return graph.size();
+    }
+
+    @Override
+    public GarbageCollectionInfo createGCInfo(GarbageCollectionID id) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public String getDescription() {
+      return "Graph";
+    }
+
+    @Override
+    public void startMonitoringReferenceChanges() {
+      //
+    }
+
+    @Override
+    public void stopMonitoringReferenceChanges() {
+      //
+    }
+
+    @Override
+    public Filter getCollectCycleFilter(Set candidateIDs) {
+      return ALL;
+    }
+
+    @Override
+    public void waitUntilReadyToGC() {
+      //
+    }
+
+    @Override
+    public ObjectIDSet getRescueIDs() {
+      ObjectIDSet rescueIds = rescues.poll();
+      return rescueIds == null ? new BitSetObjectIDSet() : rescueIds;
+    }
+  }
+}
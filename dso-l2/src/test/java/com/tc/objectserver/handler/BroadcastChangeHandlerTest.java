@@ -16,16 +16,23 @@
  */
 package com.tc.objectserver.handler;
 
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyCollection;
+import static org.mockito.Matchers.anySet;
 import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.inOrder;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import com.google.common.collect.HashMultimap;
 import com.google.common.collect.Lists;
 import com.tc.async.impl.MockStage;
+import com.tc.invalidation.Invalidations;
 import com.tc.net.ClientID;
 import com.tc.net.ServerID;
 import com.tc.net.protocol.tcm.ChannelID;
@@ -61,6 +68,8 @@ import com.tc.stats.counter.sampled.derived.SampledRateCounterConfig;
 import com.tc.stats.counter.sampled.derived.SampledRateCounterImpl;
 import com.tc.test.TCTestCase;
 
+import org.mockito.InOrder;
+
 import java.util.Arrays;
 import java.util.List;
 
@@ -115,6 +124,51 @@ public class BroadcastChangeHandlerTest extends TCTestCase {
     verify(transactionManager).broadcasted(new ClientID(1), new TransactionID(1));
   }
 
+  public void testOnlyReferencingClientsArePruned() throws Exception {
+    createChannels(3);
+    clientStateManager.addReference(new ClientID(2), new ObjectID(1));
+    clientStateManager.addReference(new ClientID(0), new ObjectID(5));
+
+    handler.handleEvent(new BroadcastChangeContext(txn, new GlobalTransactionID(1), new NotifiedWaiters(),
+                                                   applyTransactionInfo));
+    verify(clientStateManager, times(1)).createPrunedChangesAndAddObjectIDTo(anyCollection(),
+                                                                            any(ApplyTransactionInfo.class),
+                                                                            eq(new ClientID(2)), anySet(),
+                                                                            any(Invalidations.class));
+    verify(clientStateManager, never()).createPrunedChangesAndAddObjectIDTo(anyCollection(),
+                                                                           any(ApplyTransactionInfo.class),
+                                                                           eq(new ClientID(0)), anySet(),
+                                                                           any(Invalidations.class));
+    verify(transactionManager).addWaitingForAcknowledgement(new ClientID(1), new TransactionID(1), new ClientID(2));
+
+    // a client that went away is no longer in the index
+    clientStateManager.shutdownNode(new ClientID(2));
+    handler.handleEvent(new BroadcastChangeContext(txn, new GlobalTransactionID(2), new NotifiedWaiters(),
+                                                   applyTransactionInfo));
+    verify(clientStateManager, times(1)).createPrunedChangesAndAddObjectIDTo(anyCollection(),
+                                                                            any(ApplyTransactionInfo.class),
+                                                                            eq(new ClientID(2)), anySet(),
+                                                                            any(Invalidations.class));
+  }
+
+  public void testBatchIsCoalesced() throws Exception {
+    BroadcastTransactionMessage broadcastTransactionMessage =
+        (BroadcastTransactionMessage)channelManager.getActiveChannels()[0].createMessage(TCMessageType.BROADCAST_TRANSACTION_MESSAGE);
+    clientStateManager.addReference(new ClientID(0), new ObjectID(1));
+    ServerTransaction txn2 = createTransaction(1, 2, 2);
+
+    handler.handleEvents(Arrays.asList(new BroadcastChangeContext(txn, new GlobalTransactionID(1),
+                                                                  new NotifiedWaiters(), applyTransactionInfo),
+                                       new BroadcastChangeContext(txn2, new GlobalTransactionID(2),
+                                                                  new NotifiedWaiters(), applyTransactionInfo)));
+
+    // both messages go out before either transaction is marked as broadcasted
+    InOrder inOrder = inOrder(broadcastTransactionMessage, transactionManager);
+    inOrder.verify(broadcastTransactionMessage, times(2)).send();
+    inOrder.verify(transactionManager).broadcasted(new ClientID(1), new TransactionID(1));
+    inOrder.verify(transactionManager).broadcasted(new ClientID(1), new TransactionID(2));
+  }
+
   public void testSuccessResultNoneMode() throws Exception {
     // Set mode to disk and recreate the handler
     TCPropertiesImpl.getProperties().setProperty(TCPropertiesConsts.L2_TRANSACTIONMANAGER_BROADCAST_DURABILITY_LEVEL, "NONE");
@@ -182,7 +236,7 @@ public class BroadcastChangeHandlerTest extends TCTestCase {
     return transaction;
   }
 
-  private void createChannels(int count) {
+  private void createChannels(int count) throws Exception {
     List<MessageChannel> channels = Lists.newArrayList();
     for (int i = 0; i < count; i++) {
       MessageChannel channel = mock(MessageChannel.class);
@@ -191,6 +245,7 @@ public class BroadcastChangeHandlerTest extends TCTestCase {
       when(channel.createMessage(TCMessageType.BROADCAST_TRANSACTION_MESSAGE)).thenReturn(message);
       channels.add(channel);
       when(channelManager.getClientIDFor(new ChannelID(i))).thenReturn(new ClientID(i));
+      when(channelManager.getActiveChannel(new ClientID(i))).thenReturn(channel);
       clientStateManager.startupNode(new ClientID(i));
     }
     when(channelManager.getActiveChannels()).thenReturn(channels.toArray(new MessageChannel[count]));
@@ -0,0 +1,112 @@
+/* 
+ * The contents of this file are subject to the Terracotta Public License Version
+ * 2.0 (the "License"); You may not use this file except in compliance with the
+ * License. You may obtain a copy of the License at 
+ *
+ *      http://terracotta.org/legal/terracotta-public-license.
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ * the specific language governing rights and limitations under the License.
+ *
+ * The Covered Software is Terracotta Platform.
+ *
+ * The Initial Developer of the Covered Software is 
+ *      Terracotta, Inc., a Software AG company
+ */
+package com.tc.objectserver.impl;
+
+import com.tc.object.ObjectID;
+import com.tc.objectserver.core.api.ManagedObject;
+import com.tc.objectserver.core.api.ManagedObjectState;
+import com.tc.objectserver.managedobject.SerializedClusterObjectState;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import junit.framework.TestCase;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class ManagedObjectCacheTest extends TestCase {
+
+  private static final int SEGMENTS = 16;
+  private static final int LENGTH   = 40;
+  private static final int WEIGHT   = ManagedObjectCache.ENTRY_OVERHEAD + LENGTH;
+
+  public void testSecondChance() {
+    // room for 3 objects per segment, ids that are multiples of 16 share a segment
+    ManagedObjectCache cache = new ManagedObjectCache(SEGMENTS * 3 * WEIGHT);
+    ManagedObject a = leaf(16, LENGTH);
+    ManagedObject b = leaf(32, LENGTH);
+    ManagedObject c = leaf(48, LENGTH);
+    cache.add(a);
+    cache.add(b);
+    cache.add(c);
+    assertSame(a, cache.get(a.getID()));
+
+    cache.add(leaf(64, LENGTH));
+    assertEquals(3, cache.size());
+    assertSame(a, cache.get(a.getID()));
+    assertNull(cache.get(b.getID()));
+    assertSame(c, cache.get(c.getID()));
+    assertNotNull(cache.get(new ObjectID(64)));
+  }
+
+  public void testStaysWithinBounds() {
+    long maxBytes = SEGMENTS * 10L * WEIGHT;
+    ManagedObjectCache cache = new ManagedObjectCache(maxBytes);
+    Random r = new Random(11);
+    for (int i = 0; i < 10000; i++) {
+      cache.add(leaf(r.nextInt(1000), r.nextInt(2 * LENGTH)));
+      assertTrue(cache.getSizeInBytes() <= maxBytes);
+    }
+    Set<ObjectID> ids = new HashSet<ObjectID>();
+    cache.addCachedIDsTo(ids);
+    assertEquals(cache.size(), ids.size());
+    assertTrue(ids.size() >= SEGMENTS * 5);
+
+    for (ObjectID id : ids) {
+      cache.remove(id);
+    }
+    assertEquals(0, cache.size());
+    assertEquals(0, cache.getSizeInBytes());
+  }
+
+  public void testReAddUpdatesWeight() {
+    ManagedObjectCache cache = new ManagedObjectCache(SEGMENTS * 3 * WEIGHT);
+    cache.add(leaf(1, LENGTH));
+    assertEquals(WEIGHT, cache.getSizeInBytes());
+    cache.add(leaf(1, 2 * LENGTH));
+    assertEquals(WEIGHT + LENGTH, cache.getSizeInBytes());
+
+    // too big for a segment
+    cache.add(leaf(1, 3 * WEIGHT));
+    assertNull(cache.get(new ObjectID(1)));
+    assertEquals(0, cache.getSizeInBytes());
+  }
+
+  public void testOnlyLeafObjectsAreCached() {
+    ManagedObjectCache cache = new ManagedObjectCache(SEGMENTS * 3 * WEIGHT);
+    ManagedObject mo = mock(ManagedObject.class);
+    when(mo.getID()).thenReturn(new ObjectID(1));
+    when(mo.getManagedObjectState()).thenReturn(mock(ManagedObjectState.class));
+    cache.add(mo);
+    assertNull(cache.get(new ObjectID(1)));
+
+    ManagedObjectCache disabled = new ManagedObjectCache(0);
+    disabled.add(leaf(1, LENGTH));
+    assertEquals(0, disabled.size());
+  }
+
+  private static ManagedObject leaf(long id, int length) {
+    SerializedClusterObjectState state = mock(SerializedClusterObjectState.class);
+    when(state.getValueLength()).thenReturn(length);
+    ManagedObject mo = mock(ManagedObject.class);
+    when(mo.getID()).thenReturn(new ObjectID(id));
+    when(mo.getManagedObjectState()).thenReturn(state);
+    return mo;
+  }
+}
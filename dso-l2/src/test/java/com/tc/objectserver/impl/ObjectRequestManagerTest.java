@@ -794,6 +794,11 @@ public class ObjectRequestManagerTest extends TestCase {
       throw new NotImplementedException(TestClientStateManager.class);
     }
 
+    @Override
+    public Set<NodeID> addClientsReferencingTo(final Collection<ObjectID> oids, final Set<NodeID> clients) {
+      return clients;
+    }
+
     @Override
     public Set<ObjectID> addReferences(final NodeID nodeID, final Set<ObjectID> oids) {
 
@@ -1018,6 +1023,16 @@ public class ObjectRequestManagerTest extends TestCase {
       throw new NotImplementedException(TestObjectManager.class);
     }
 
+    @Override
+    public ManagedObject getObjectByIDReadOnlyUncached(final ObjectID id) {
+      throw new NotImplementedException(TestObjectManager.class);
+    }
+
+    @Override
+    public long getObjectVersion(final ObjectID id) {
+      throw new NotImplementedException(TestObjectManager.class);
+    }
+
     @Override
     public Set<ObjectID> deleteObjects(final Set<ObjectID> objectsToDelete) {
       return Collections.EMPTY_SET;
@@ -239,6 +239,16 @@ public class TestObjectManager implements ObjectManager {
     throw new ImplementMe();
   }
 
+  @Override
+  public ManagedObject getObjectByIDReadOnlyUncached(ObjectID id) {
+    throw new ImplementMe();
+  }
+
+  @Override
+  public long getObjectVersion(ObjectID id) {
+    throw new ImplementMe();
+  }
+
   @Override
   public ObjectIDSet getObjectIDsInCache() {
     throw new ImplementMe();
@@ -77,6 +77,11 @@ public class TestClientStateManager implements ClientStateManager {
     return rescueIds;
   }
 
+  @Override
+  public Set<NodeID> addClientsReferencingTo(final Collection<ObjectID> oids, final Set<NodeID> clients) {
+    return clients;
+  }
+
   @Override
   public int getReferenceCount(final NodeID node) {
     return 0;
@@ -0,0 +1,69 @@
+/* 
+ * The contents of this file are subject to the Terracotta Public License Version
+ * 2.0 (the "License"); You may not use this file except in compliance with the
+ * License. You may obtain a copy of the License at 
+ *
+ *      http://terracotta.org/legal/terracotta-public-license.
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ * the specific language governing rights and limitations under the License.
+ *
+ * The Covered Software is Terracotta Platform.
+ *
+ * The Initial Developer of the Covered Software is 
+ *      Terracotta, Inc., a Software AG company
+ */
+package com.tc.objectserver.l1.impl;
+
+import com.tc.net.ClientID;
+import com.tc.net.NodeID;
+import com.tc.object.ObjectID;
+import com.tc.test.TCTestCase;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+public class ClientStateManagerImplTest extends TCTestCase {
+
+  public void testReferenceIndexFollowsClientStates() {
+    ClientStateManagerImpl mgr = new ClientStateManagerImpl();
+    NodeID[] clients = new NodeID[20];
+    for (int i = 0; i < clients.length; i++) {
+      clients[i] = new ClientID(i);
+      mgr.startupNode(clients[i]);
+    }
+
+    // object 1 is held by every client, object i + 100 only by client i
+    for (int i = 0; i < clients.length; i++) {
+      mgr.addReference(clients[i], new ObjectID(1));
+      mgr.addReferences(clients[i], new HashSet<ObjectID>(Arrays.asList(new ObjectID(i + 100))));
+    }
+    assertEquals(clients.length + 1, mgr.getIndexedObjectCount());
+    assertEquals(new HashSet<NodeID>(Arrays.asList(clients)), referencing(mgr, 1));
+    assertEquals(Collections.singleton(clients[3]), referencing(mgr, 103));
+    assertEquals(Collections.emptySet(), referencing(mgr, 99));
+
+    for (int i = 0; i < clients.length; i += 2) {
+      mgr.removeReferences(clients[i], Collections.singleton(new ObjectID(1)), new HashSet<ObjectID>());
+    }
+    for (int i = 1; i < clients.length - 1; i += 2) {
+      mgr.shutdownNode(clients[i]);
+    }
+    assertEquals(Collections.singleton(clients[clients.length - 1]), referencing(mgr, 1));
+    assertEquals(Collections.emptySet(), referencing(mgr, 103));
+    assertEquals(Collections.singleton(clients[4]), referencing(mgr, 104));
+
+    mgr.shutdownNode(clients[clients.length - 1]);
+    for (int i = 0; i < clients.length; i += 2) {
+      mgr.shutdownNode(clients[i]);
+    }
+    assertEquals(0, mgr.getIndexedObjectCount());
+  }
+
+  private static Set<NodeID> referencing(ClientStateManagerImpl mgr, long oid) {
+    return mgr.addClientsReferencingTo(Collections.singleton(new ObjectID(oid)), new HashSet<NodeID>());
+  }
+}
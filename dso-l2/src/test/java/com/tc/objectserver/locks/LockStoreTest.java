@@ -0,0 +1,196 @@
+/* 
+ * The contents of this file are subject to the Terracotta Public License Version
+ * 2.0 (the "License"); You may not use this file except in compliance with the
+ * License. You may obtain a copy of the License at 
+ *
+ *      http://terracotta.org/legal/terracotta-public-license.
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ * the specific language governing rights and limitations under the License.
+ *
+ * The Covered Software is Terracotta Platform.
+ *
+ * The Initial Developer of the Covered Software is 
+ *      Terracotta, Inc., a Software AG company
+ */
+package com.tc.objectserver.locks;
+
+import com.tc.object.locks.LockID;
+import com.tc.object.locks.StringLockID;
+import com.tc.objectserver.locks.LockStore.LockIterator;
+import com.tc.objectserver.locks.factory.NonGreedyLockPolicyFactory;
+import com.tc.test.TCTestCase;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class LockStoreTest extends TCTestCase {
+
+  private final LockStore store = new LockStore(new NonGreedyLockPolicyFactory());
+
+  public void testCheckOutCreatesAndRemoveForgets() {
+    LockID lid = new StringLockID("lock");
+    ServerLock lock = store.checkOut(lid);
+    store.checkIn(lock);
+    assertSame(lock, checkOutAndIn(lid));
+
+    store.checkOut(lid);
+    assertSame(lock, store.remove(lid));
+    store.checkIn(lock);
+    assertNotSame(lock, checkOutAndIn(lid));
+  }
+
+  public void testCheckInByOtherThreadFails() throws Exception {
+    final ServerLock lock = store.checkOut(new StringLockID("lock"));
+    final AtomicReference<Throwable> error = new AtomicReference<Throwable>();
+    Thread other = new Thread() {
+      @Override
+      public void run() {
+        try {
+          store.checkIn(lock);
+        } catch (Throwable t) {
+          error.set(t);
+        }
+      }
+    };
+    other.start();
+    other.join();
+    assertTrue(error.get() instanceof AssertionError);
+    store.checkIn(lock);
+  }
+
+  public void testLocksOnOtherStripesDoNotBlock() throws Exception {
+    final LockID heldID = new StringLockID("held");
+    ServerLock held = store.checkOut(heldID);
+    final CountDownLatch done = new CountDownLatch(1);
+    Thread other = new Thread() {
+      @Override
+      public void run() {
+        for (int i = 0; i < 10000; i++) {
+          LockID lid = new StringLockID("other-" + i);
+          if (store.stripeFor(lid) != store.stripeFor(heldID)) {
+            checkOutAndIn(lid);
+          }
+        }
+        done.countDown();
+      }
+    };
+    other.start();
+    assertTrue(done.await(30, TimeUnit.SECONDS));
+    store.checkIn(held);
+  }
+
+  public void testWaiterStartsOverWhenLockIsRemoved() throws Exception {
+    final LockID lid = new StringLockID("lock");
+    ServerLock removed = store.checkOut(lid);
+    final AtomicReference<ServerLock> seen = new AtomicReference<ServerLock>();
+    Thread waiter = new Thread() {
+      @Override
+      public void run() {
+        seen.set(checkOutAndIn(lid));
+      }
+    };
+    waiter.start();
+    waiter.join(500);
+    assertTrue(waiter.isAlive());
+
+    store.remove(lid);
+    store.checkIn(removed);
+    waiter.join();
+    assertNotNull(seen.get());
+    assertNotSame(removed, seen.get());
+  }
+
+  public void testIteratorRemove() {
+    for (int i = 0; i < 100; i++) {
+      checkOutAndIn(new StringLockID("lock-" + i));
+    }
+    LockIterator iter = store.iterator();
+    int count = 0;
+    ServerLock lock = iter.getNextLock(null);
+    while (lock != null) {
+      if (count++ % 2 == 0) {
+        iter.remove();
+      }
+      lock = iter.getNextLock(lock);
+    }
+    assertEquals(100, count);
+    assertEquals(50, countLocks());
+  }
+
+  /**
+   * Lock stage threads checking out, and now and then removing, a few shared locks: whoever has a lock checked out is
+   * alone with it, and a removed lock is replaced by a fresh one.
+   */
+  public void testConcurrentCheckOutsAreExclusive() throws Exception {
+    final LockStore smallStore = new LockStore(4, new NonGreedyLockPolicyFactory());
+    final int lockCount = 16;
+    final int threads = 8;
+    final int iterations = 20000;
+    // not thread safe on purpose, only the lock store keeps the updates apart
+    final int[] counts = new int[lockCount];
+    final CyclicBarrier barrier = new CyclicBarrier(threads);
+    final AtomicReference<Throwable> error = new AtomicReference<Throwable>();
+    Thread[] workers = new Thread[threads];
+    for (int i = 0; i < threads; i++) {
+      final int worker = i;
+      workers[i] = new Thread() {
+        @Override
+        public void run() {
+          try {
+            barrier.await();
+            for (int j = 0; j < iterations; j++) {
+              int k = (j * 7 + worker) % lockCount;
+              LockID lid = new StringLockID("lock-" + k);
+              ServerLock lock = smallStore.checkOut(lid);
+              try {
+                assertEquals(lid, lock.getLockID());
+                int count = counts[k];
+                if (j % 64 == 0) {
+                  Thread.yield();
+                  assertSame(lock, smallStore.remove(lid));
+                }
+                counts[k] = count + 1;
+              } finally {
+                smallStore.checkIn(lock);
+              }
+            }
+          } catch (Throwable t) {
+            error.set(t);
+          }
+        }
+      };
+      workers[i].start();
+    }
+    for (Thread worker : workers) {
+      worker.join();
+    }
+
+    assertNull(error.get());
+    long total = 0;
+    for (int count : counts) {
+      total += count;
+    }
+    assertEquals((long) threads * iterations, total);
+  }
+
+  private ServerLock checkOutAndIn(LockID lid) {
+    ServerLock lock = store.checkOut(lid);
+    store.checkIn(lock);
+    return lock;
+  }
+
+  private int countLocks() {
+    int count = 0;
+    LockIterator iter = store.iterator();
+    ServerLock lock = iter.getNextLock(null);
+    while (lock != null) {
+      count++;
+      lock = iter.getNextLock(lock);
+    }
+    return count;
+  }
+}
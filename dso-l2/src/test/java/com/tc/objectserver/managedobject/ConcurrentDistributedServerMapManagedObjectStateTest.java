@@ -29,6 +29,8 @@ import static org.mockito.Mockito.when;
 
 import org.apache.commons.lang.ArrayUtils;
 import org.junit.Assert;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 import org.terracotta.corestorage.KeyValueStorage;
 
 import com.google.common.collect.ImmutableSet;
@@ -44,16 +46,21 @@ import com.tc.object.dna.api.DNA.DNAType;
 import com.tc.object.dna.api.DNAWriter;
 import com.tc.object.dna.api.PhysicalAction;
 import com.tc.object.tx.ServerTransactionID;
+import com.tc.objectserver.api.EvictableEntry;
 import com.tc.objectserver.event.ClientChannelMonitor;
 import com.tc.objectserver.event.MutationEventPublisher;
 import com.tc.objectserver.impl.SamplingType;
 import com.tc.objectserver.l1.impl.ClientObjectReferenceSet;
 import com.tc.objectserver.persistence.PersistentObjectFactory;
+import com.tc.properties.TCPropertiesConsts;
+import com.tc.properties.TCPropertiesImpl;
 import com.tc.server.ServerEventType;
 import com.tc.test.TCTestCase;
 import com.tc.util.Events;
 
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Map;
 import java.util.Set;
 
 public class ConcurrentDistributedServerMapManagedObjectStateTest extends TCTestCase {
@@ -363,6 +370,76 @@ public class ConcurrentDistributedServerMapManagedObjectStateTest extends TCTest
                                                 new CDSMValue(ObjectID.NULL_ID), null);
   }
 
+  public void testExpiredEntriesComeFromTheIndex() throws Exception {
+    long now = System.currentTimeMillis() / 1000;
+    CDSMValue expired = new CDSMValue(new ObjectID(2), 1, 1, 0, 1);
+    CDSMValue live = new CDSMValue(new ObjectID(3), now, now, 0, 3600);
+    CDSMValue eternal = new CDSMValue(new ObjectID(4), 1, 1, 0, 0);
+    when(keyValueStorage.keySet()).thenReturn(new HashSet<Object>(asList("expired", "live", "eternal")));
+    when(keyValueStorage.get("expired")).thenReturn(expired);
+    when(keyValueStorage.get("live")).thenReturn(live);
+    when(keyValueStorage.get("eternal")).thenReturn(eternal);
+    ClientObjectReferenceSet noReferences = mock(ClientObjectReferenceSet.class);
+
+    Assert.assertEquals(ImmutableSet.of("expired"), state.getExpiredEntries(10, noReferences).keySet());
+    // handed out already, it only comes back if the eviction does not go through
+    Assert.assertTrue(state.getExpiredEntries(10, noReferences).isEmpty());
+
+    ObjectID putOid = new ObjectID(5);
+    state.applyLogicalAction(oid, applyTransactionInfo, LogicalOperation.PUT, new Object[] { "put", putOid, 1L, 1L, 0L,
+        1L });
+    when(keyValueStorage.get("put")).thenReturn(new CDSMValue(putOid, 1, 1, 0, 1));
+    Assert.assertEquals(ImmutableSet.of("put"), state.getExpiredEntries(10, noReferences).keySet());
+
+    // removes are not taken out of the index, what it hands out is checked against the map
+    state.applyLogicalAction(oid, applyTransactionInfo, LogicalOperation.PUT, new Object[] { "gone", new ObjectID(6),
+        1L, 1L, 0L, 1L });
+    Assert.assertTrue(state.getExpiredEntries(10, noReferences).isEmpty());
+  }
+
+  public void testRecordedReadsKeepEntriesFromLruEviction() throws Exception {
+    TCPropertiesImpl.getProperties().setProperty(TCPropertiesConsts.EHCACHE_STORAGESTRATEGY_DCV2_EVICTION_POLICY
+                                                     + ".lruReads", "LRU");
+    state.applyPhysicalAction(new PhysicalAction(ConcurrentDistributedServerMapManagedObjectState.CACHE_NAME_FIELDNAME,
+                                                 "lruReads", false), oid, applyTransactionInfo);
+    final int now = AccessClock.nowMinutes();
+    final Map<Object, CDSMValue> stored = new HashMap<Object, CDSMValue>();
+    for (int i = 0; i < 200; i++) {
+      CDSMValue value = new CDSMValue(new ObjectID(100 + i));
+      value.setAccessClock(AccessClock.touch(0, now - 60));
+      stored.put("key-" + i, value);
+    }
+    when(keyValueStorage.keySet()).thenReturn(stored.keySet());
+    when(keyValueStorage.size()).thenReturn((long) stored.size());
+    when(keyValueStorage.get(any())).then(new Answer<CDSMValue>() {
+      @Override
+      public CDSMValue answer(InvocationOnMock invocation) {
+        return stored.get(invocation.getArguments()[0]);
+      }
+    });
+
+    // more reads than are kept in between two transactions, the hot keys come last
+    for (int i = 0; i < 300; i++) {
+      state.recordRead("key-100");
+    }
+    for (int i = 0; i < 50; i++) {
+      for (int hot = 0; hot < 10; hot++) {
+        state.recordRead("key-" + hot);
+      }
+    }
+    state.apply(oid, new TestDNACursor(), applyTransactionInfo);
+    for (int hot = 0; hot < 10; hot++) {
+      assertTrue(AccessClock.idleMinutes(stored.get("key-" + hot).getAccessClock(), AccessClock.nowMinutes()) <= 1);
+    }
+
+    Map<Object, EvictableEntry> evicted = state.getRandomSamples(20, mock(ClientObjectReferenceSet.class),
+                                                                 SamplingType.FOR_EVICTION);
+    assertEquals(20, evicted.size());
+    for (Object key : evicted.keySet()) {
+      assertEquals(60, AccessClock.idleMinutes(stored.get(key).getAccessClock(), now));
+    }
+  }
+
   public static final class OperationCountChangeEventListener {
     private int count;
 
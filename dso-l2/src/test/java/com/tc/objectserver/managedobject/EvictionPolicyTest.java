@@ -0,0 +1,178 @@
+/* 
+ * The contents of this file are subject to the Terracotta Public License Version
+ * 2.0 (the "License"); You may not use this file except in compliance with the
+ * License. You may obtain a copy of the License at 
+ *
+ *      http://terracotta.org/legal/terracotta-public-license.
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ * the specific language governing rights and limitations under the License.
+ *
+ * The Covered Software is Terracotta Platform.
+ *
+ * The Initial Developer of the Covered Software is 
+ *      Terracotta, Inc., a Software AG company
+ */
+package com.tc.objectserver.managedobject;
+
+import com.tc.object.ObjectID;
+import com.tc.objectserver.api.EvictableEntry;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+public class EvictionPolicyTest extends TestCase {
+
+  public void testAccessClock() {
+    int clock = AccessClock.touch(0, 100, 0.5);
+    assertEquals(0, AccessClock.idleMinutes(clock, 100));
+    assertEquals(AccessClock.INITIAL_FREQUENCY + 1, AccessClock.frequency(clock, 100));
+    assertEquals(7, AccessClock.idleMinutes(clock, 107));
+    // unused for a while, the frequency comes down
+    assertEquals(AccessClock.INITIAL_FREQUENCY + 1 - 3 / AccessClock.DECAY_MINUTES, AccessClock.frequency(clock, 103));
+    // a higher frequency is ever harder to increase
+    assertEquals(AccessClock.INITIAL_FREQUENCY + 1, AccessClock.frequency(AccessClock.touch(clock, 100, 0.5), 100));
+    assertEquals(AccessClock.INITIAL_FREQUENCY + 2, AccessClock.frequency(AccessClock.touch(clock, 100, 0.01), 100));
+
+    int max = (AccessClock.MAX_FREQUENCY << AccessClock.MINUTE_BITS) | 100;
+    assertEquals(AccessClock.MAX_FREQUENCY, AccessClock.frequency(AccessClock.touch(max, 100, 0), 100));
+    // minutes wrap around
+    int wrapped = AccessClock.touch(0, (1 << AccessClock.MINUTE_BITS) - 1, 0.5);
+    assertEquals(2, AccessClock.idleMinutes(wrapped, 1));
+  }
+
+  public void testColdestOfSample() {
+    CDSMValue old = value(1, AccessClock.touch(0, 10, 0.5));
+    CDSMValue recent = value(2, AccessClock.touch(0, 50, 0.5));
+    int frequent = 0;
+    for (int i = 0; i < 50; i++) {
+      frequent = AccessClock.touch(frequent, 10, 0);
+    }
+    CDSMValue oldButFrequent = value(3, frequent);
+    CDSMValue untracked = value(4, 0);
+
+    EvictionSampler lru = new EvictionSampler(EvictionPolicy.LRU, 50, 1);
+    offer(lru, old, recent, oldButFrequent, untracked);
+    assertEquals(Arrays.<Object> asList(4), new ArrayList<Object>(lru.coldest(1).keySet()));
+    assertTrue(new EvictionSampler(EvictionPolicy.LRU, 50, 1).coldest(3).isEmpty());
+
+    EvictionSampler lfu = new EvictionSampler(EvictionPolicy.LFU, 50, 1);
+    offer(lfu, old, recent, oldButFrequent);
+    // the old entries have decayed below the recent one, the frequent one stays above it
+    Map<Object, EvictableEntry> coldest = lfu.coldest(1);
+    assertEquals(Arrays.<Object> asList(1), new ArrayList<Object>(coldest.keySet()));
+    assertSame(old, coldest.get(1));
+  }
+
+  public void testSampleIsBounded() {
+    EvictionSampler sampler = new EvictionSampler(EvictionPolicy.LRU, 0, 2);
+    for (int i = 0; !sampler.isFull(); i++) {
+      sampler.offer(i, value(i, 0));
+    }
+    assertEquals(2 * EvictionSampler.SAMPLES_PER_EVICTION, sampler.size());
+    assertEquals(2, sampler.coldest(2).size());
+  }
+
+  /**
+   * A cache holding a tenth of the keys under a Zipfian workload keeps more of the hot keys with LRU or LFU than with
+   * random eviction.
+   */
+  public void testZipfianHitRate() {
+    double random = hitRate(EvictionPolicy.RANDOM);
+    double lru = hitRate(EvictionPolicy.LRU);
+    double lfu = hitRate(EvictionPolicy.LFU);
+    assertTrue("lru " + lru + " random " + random, lru > random);
+    assertTrue("lfu " + lfu + " random " + random, lfu > random);
+  }
+
+  private static double hitRate(EvictionPolicy policy) {
+    final int keys = 50000;
+    final int capacity = keys / 10;
+    final int operations = 500000;
+    Random r = new Random(42);
+    double[] cdf = zipfCdf(keys, 1.0);
+
+    Map<Integer, CDSMValue> cache = new HashMap<Integer, CDSMValue>();
+    List<Integer> resident = new ArrayList<Integer>();
+    Map<Integer, Integer> positions = new HashMap<Integer, Integer>();
+    int cursor = 0;
+    long hits = 0;
+    for (int i = 0; i < operations; i++) {
+      int now = i / 10000;
+      Integer key = sample(cdf, r);
+      CDSMValue value = cache.get(key);
+      if (value != null) {
+        hits++;
+        if (policy.tracksAccess()) {
+          value.setAccessClock(AccessClock.touch(value.getAccessClock(), now, r.nextDouble()));
+        }
+        continue;
+      }
+      cache.put(key, value(key, policy.tracksAccess() ? AccessClock.touch(0, now, r.nextDouble()) : 0));
+      positions.put(key, resident.size());
+      resident.add(key);
+
+      // as capacity eviction does, let it overshoot a bit before evicting down to capacity
+      if (cache.size() > capacity * 1.15) {
+        int count = cache.size() - capacity;
+        EvictionSampler sampler = new EvictionSampler(policy, now, count);
+        // the same strided walk as the map state, carrying on from where the last one stopped
+        int stride = Math.max(1, Math.min(resident.size() / sampler.capacity(), 8));
+        for (int j = 0; !sampler.isFull() && j < resident.size(); j++) {
+          cursor = cursor >= resident.size() ? 0 : cursor;
+          Integer k = resident.get(cursor++);
+          if (stride == 1 || r.nextInt(stride) == 0) {
+            sampler.offer(k, cache.get(k));
+          }
+        }
+        for (Object k : sampler.coldest(count).keySet()) {
+          cache.remove(k);
+          int position = positions.remove(k);
+          Integer last = resident.remove(resident.size() - 1);
+          if (!last.equals(k)) {
+            resident.set(position, last);
+            positions.put(last, position);
+          }
+        }
+      }
+    }
+    return (double) hits / operations;
+  }
+
+  private static double[] zipfCdf(int n, double exponent) {
+    double[] cdf = new double[n];
+    double sum = 0;
+    for (int i = 0; i < n; i++) {
+      sum += 1 / Math.pow(i + 1, exponent);
+      cdf[i] = sum;
+    }
+    for (int i = 0; i < n; i++) {
+      cdf[i] /= sum;
+    }
+    return cdf;
+  }
+
+  private static Integer sample(double[] cdf, Random r) {
+    int index = Arrays.binarySearch(cdf, r.nextDouble());
+    return index >= 0 ? index : Math.min(cdf.length - 1, -index - 1);
+  }
+
+  private static void offer(EvictionSampler sampler, CDSMValue... values) {
+    for (CDSMValue value : values) {
+      sampler.offer((int) value.getObjectID().toLong(), value);
+    }
+  }
+
+  private static CDSMValue value(int id, int accessClock) {
+    CDSMValue value = new CDSMValue(new ObjectID(id));
+    value.setAccessClock(accessClock);
+    return value;
+  }
+}
@@ -0,0 +1,146 @@
+/* 
+ * The contents of this file are subject to the Terracotta Public License Version
+ * 2.0 (the "License"); You may not use this file except in compliance with the
+ * License. You may obtain a copy of the License at 
+ *
+ *      http://terracotta.org/legal/terracotta-public-license.
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ * the specific language governing rights and limitations under the License.
+ *
+ * The Covered Software is Terracotta Platform.
+ *
+ * The Initial Developer of the Covered Software is 
+ *      Terracotta, Inc., a Software AG company
+ */
+package com.tc.objectserver.managedobject;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import junit.framework.TestCase;
+
+public class ExpirationWheelTest extends TestCase {
+
+  public void testExpiresInOrder() {
+    ExpirationWheel wheel = new ExpirationWheel(1000, 100);
+    assertTrue(wheel.schedule("a", 1010));
+    assertTrue(wheel.schedule("b", 1100));
+    assertTrue(wheel.schedule("c", 900));
+
+    assertEquals(3, wheel.size());
+    assertEquals(asSet("c"), asSet(wheel.pollExpired(1000, 10)));
+    assertEquals(asSet(), asSet(wheel.pollExpired(1009, 10)));
+    assertEquals(asSet("a"), asSet(wheel.pollExpired(1010, 10)));
+    assertEquals(asSet("b"), asSet(wheel.pollExpired(5000, 10)));
+    assertEquals(0, wheel.size());
+  }
+
+  public void testDueKeysComeOutOnTheNextPoll() {
+    ExpirationWheel wheel = new ExpirationWheel(0, 100);
+    assertEquals(asSet(), asSet(wheel.pollExpired(10, 10)));
+    wheel.schedule("a", 10);
+    wheel.schedule("b", 3);
+    assertEquals(asSet("a", "b"), asSet(wheel.pollExpired(10, 10)));
+  }
+
+  public void testRescheduledKeysComeOutAtEveryTime() {
+    ExpirationWheel wheel = new ExpirationWheel(0, 100);
+    wheel.schedule("a", 10);
+    wheel.schedule("a", 20);
+
+    assertEquals(asList("a"), wheel.pollExpired(10, 10));
+    assertEquals(asList("a"), wheel.pollExpired(20, 10));
+  }
+
+  public void testOnlyTakesKeysWithinTheWheel() {
+    ExpirationWheel wheel = new ExpirationWheel(0, 100);
+    assertTrue(wheel.schedule("near", ExpirationWheel.WHEEL_SIZE - 1));
+    assertFalse(wheel.schedule("far", ExpirationWheel.WHEEL_SIZE));
+    assertEquals(1, wheel.size());
+
+    // the wheel turns with the polls
+    wheel.pollExpired(10, 10);
+    assertTrue(wheel.schedule("far", ExpirationWheel.WHEEL_SIZE));
+    assertEquals(asSet("near", "far"), asSet(wheel.pollExpired(ExpirationWheel.WHEEL_SIZE, 10)));
+  }
+
+  public void testCapacityIsBounded() {
+    ExpirationWheel wheel = new ExpirationWheel(0, 3);
+    assertTrue(wheel.schedule("a", 5));
+    assertTrue(wheel.schedule("b", 5));
+    assertTrue(wheel.schedule("c", 5));
+    assertTrue(wheel.isFull());
+    assertFalse(wheel.schedule("d", 5));
+
+    assertEquals(3, wheel.pollExpired(5, 10).size());
+    assertTrue(wheel.schedule("d", 5));
+  }
+
+  public void testPollIsBounded() {
+    ExpirationWheel wheel = new ExpirationWheel(0, 100);
+    for (int i = 0; i < 10; i++) {
+      wheel.schedule(i, 5);
+    }
+    assertEquals(4, wheel.pollExpired(10, 4).size());
+    assertEquals(6, wheel.pollExpired(10, 100).size());
+  }
+
+  public void testMatchesBruteForce() {
+    Random r = new Random(11);
+    long now = 1400000000L;
+    ExpirationWheel wheel = new ExpirationWheel(now, Integer.MAX_VALUE);
+    List<Object[]> expected = new ArrayList<Object[]>();
+    for (int i = 0; i < 100000; i++) {
+      if (r.nextInt(10) < 6) {
+        Integer key = r.nextInt(2000);
+        long expiresAt = now - 10 + (r.nextInt(4) == 0 ? r.nextInt(20000000) : r.nextInt(1000));
+        if (wheel.schedule(key, expiresAt)) {
+          expected.add(new Object[] { key, expiresAt });
+        } else {
+          assertTrue(expiresAt - now >= ExpirationWheel.WHEEL_SIZE);
+        }
+      } else {
+        now += r.nextInt(r.nextInt(100) == 0 ? 100000 : 20);
+        List<Object> due = new ArrayList<Object>();
+        List<Object[]> left = new ArrayList<Object[]>();
+        for (Object[] e : expected) {
+          if ((Long) e[1] <= now) {
+            due.add(e[0]);
+          } else {
+            left.add(e);
+          }
+        }
+        expected = left;
+        List<Object> polled = wheel.pollExpired(now, Integer.MAX_VALUE);
+        assertEquals(due.size(), polled.size());
+        assertEquals(new HashSet<Object>(due), new HashSet<Object>(polled));
+      }
+      assertEquals(expected.size(), wheel.size());
+    }
+  }
+
+  private static List<Object> asList(Object... keys) {
+    List<Object> list = new ArrayList<Object>();
+    for (Object key : keys) {
+      list.add(key);
+    }
+    return list;
+  }
+
+  private static Set<Object> asSet(Object... keys) {
+    Set<Object> set = new HashSet<Object>();
+    for (Object key : keys) {
+      set.add(key);
+    }
+    return set;
+  }
+
+  private static Set<Object> asSet(List<Object> keys) {
+    return new HashSet<Object>(keys);
+  }
+}
@@ -16,6 +16,8 @@
  */
 package com.tc.objectserver.persistence;
 
+import com.tc.object.ObjectID;
+import com.tc.objectserver.managedobject.CDSMValue;
 import com.tc.test.TCTestCase;
 
 import java.nio.ByteBuffer;
@@ -32,4 +34,51 @@ public class LiteralSerializerTest extends TCTestCase {
     assertEquals("foo", LiteralSerializer.INSTANCE.recover(combined));
     assertEquals("bar", LiteralSerializer.INSTANCE.recover(combined));
   }
+
+  public void testSerializeToDirectBuffer() throws Exception {
+    Object[] literals = { 1L, 2, (short) 3, (byte) 4, "foo", new ObjectID(5), Boolean.TRUE };
+    ByteBuffer buffer = ByteBuffer.allocateDirect(128);
+    for (Object literal : literals) {
+      int position = buffer.position();
+      LiteralSerializer.INSTANCE.serializeTo(literal, buffer);
+      assertEquals(LiteralSerializer.INSTANCE.getSerializedSize(literal), buffer.position() - position);
+      ByteBuffer written = (ByteBuffer) buffer.duplicate().position(position);
+      written.limit(buffer.position());
+      assertEquals(LiteralSerializer.INSTANCE.transform(literal), written);
+    }
+    buffer.flip();
+    for (Object literal : literals) {
+      assertEquals(literal, LiteralSerializer.INSTANCE.recover(buffer));
+    }
+    assertFalse(buffer.hasRemaining());
+  }
+
+  public void testEqualsDoesNotConsumeBuffer() throws Exception {
+    ByteBuffer s = LiteralSerializer.INSTANCE.transform("foo");
+    assertTrue(LiteralSerializer.INSTANCE.equals("foo", s));
+    assertFalse(LiteralSerializer.INSTANCE.equals("fop", s));
+    assertFalse(LiteralSerializer.INSTANCE.equals("fo", s));
+    assertEquals(s.capacity(), s.remaining());
+
+    ByteBuffer l = LiteralSerializer.INSTANCE.transform(5L);
+    assertTrue(LiteralSerializer.INSTANCE.equals(5L, l));
+    assertFalse(LiteralSerializer.INSTANCE.equals(5, l));
+    assertFalse(LiteralSerializer.INSTANCE.equals(new ObjectID(5), l));
+    assertEquals(LiteralSerializer.getFixedSize(Long.class), l.remaining());
+    assertEquals(LiteralSerializer.VARIABLE_SIZE, LiteralSerializer.getFixedSize(String.class));
+  }
+
+  public void testCDSMValueAccessClock() throws Exception {
+    CDSMValue plain = new CDSMValue(new ObjectID(1), 2, 3, 4, 5, 6);
+    CDSMValue clocked = new CDSMValue(new ObjectID(1), 2, 3, 4, 5, 6);
+    clocked.setAccessClock(42);
+
+    ByteBuffer plainBuffer = LiteralSerializer.INSTANCE.transform(plain);
+    ByteBuffer clockedBuffer = LiteralSerializer.INSTANCE.transform(clocked);
+    assertEquals(plainBuffer.remaining() + LiteralSerializer.INT_SIZE, clockedBuffer.remaining());
+    assertEquals(0, ((CDSMValue) LiteralSerializer.INSTANCE.recover(plainBuffer)).getAccessClock());
+    CDSMValue recovered = (CDSMValue) LiteralSerializer.INSTANCE.recover(clockedBuffer);
+    assertEquals(clocked, recovered);
+    assertEquals(42, recovered.getAccessClock());
+  }
 }
@@ -0,0 +1,127 @@
+/*
+ * The contents of this file are subject to the Terracotta Public License Version
+ * 2.0 (the "License"); You may not use this file except in compliance with the
+ * License. You may obtain a copy of the License at
+ *
+ *      http://terracotta.org/legal/terracotta-public-license.
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ * the specific language governing rights and limitations under the License.
+ *
+ * The Covered Software is Terracotta Platform.
+ *
+ * The Initial Developer of the Covered Software is
+ *      Terracotta, Inc., a Software AG company
+ */
+package com.tc.objectserver.persistence;
+
+import com.tc.object.LogicalOperation;
+import com.tc.object.ObjectID;
+import com.tc.object.TestDNACursor;
+import com.tc.object.tx.TransactionID;
+import com.tc.objectserver.core.api.ManagedObject;
+import com.tc.objectserver.core.api.TestDNA;
+import com.tc.objectserver.impl.ObjectInstanceMonitorImpl;
+import com.tc.objectserver.managedobject.ApplyTransactionInfo;
+import com.tc.objectserver.managedobject.ManagedObjectImpl;
+import com.tc.objectserver.managedobject.ManagedObjectSerializer;
+import com.tc.objectserver.managedobject.ManagedObjectStateFactory;
+import com.tc.objectserver.managedobject.ManagedObjectStateSerializer;
+import com.tc.objectserver.managedobject.NullManagedObjectChangeListenerProvider;
+import com.tc.test.TCTestCase;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+
+public class ManagedObjectCodecTest extends TCTestCase {
+
+  private Persistor               persistor;
+  private ManagedObjectSerializer serializer;
+  private ManagedObjectCodec      codec;
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    ManagedObjectStateFactory.disableSingleton(true);
+    persistor = new Persistor(HeapStorageManagerFactory.INSTANCE);
+    persistor.start();
+    ManagedObjectStateFactory.createInstance(new NullManagedObjectChangeListenerProvider(), persistor);
+    serializer = new ManagedObjectSerializer(new ManagedObjectStateSerializer(), persistor.getManagedObjectPersistor());
+    codec = new ManagedObjectCodec(serializer);
+  }
+
+  public void testRoundTrip() throws Exception {
+    ManagedObject mo = newManagedObject(1);
+    byte[] data = codec.encode(mo);
+    assertEquals(ManagedObjectCodec.FORMAT_V1, data[0]);
+    assertFalse(ManagedObjectCodec.isLegacyFormat(data));
+
+    ManagedObject decoded = codec.decode(data);
+    mo.setIsDirty(false);
+    assertFalse(decoded.isDirty());
+    assertTrue(mo.isEqual(decoded));
+  }
+
+  public void testBufferReuseDoesNotLeakBetweenEncodes() throws Exception {
+    ManagedObject big = newManagedObject(1, 50);
+    ManagedObject small = newManagedObject(2, 1);
+    byte[] first = codec.encode(big);
+    byte[] second = codec.encode(small);
+    assertTrue(second.length < first.length);
+    small.setIsDirty(false);
+    assertTrue(small.isEqual(codec.decode(second)));
+  }
+
+  public void testReadsLegacyJavaSerializedRecords() throws Exception {
+    ManagedObject mo = newManagedObject(3);
+    byte[] legacy = legacyEncode(mo);
+    assertTrue(ManagedObjectCodec.isLegacyFormat(legacy));
+
+    ManagedObject decoded = codec.decode(legacy);
+    mo.setIsDirty(false);
+    assertTrue(mo.isEqual(decoded));
+  }
+
+  public void testSmallerThanLegacyEncoding() throws Exception {
+    ManagedObject mo = newManagedObject(4);
+    assertTrue(codec.encode(mo).length < legacyEncode(mo).length);
+  }
+
+  public void testRejectsUnknownFormat() throws Exception {
+    try {
+      codec.decode(new byte[] { 42, 0, 0 });
+      fail();
+    } catch (IOException e) {
+      // expected
+    }
+  }
+
+  private byte[] legacyEncode(ManagedObject mo) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    ObjectOutputStream out = new ObjectOutputStream(bytes);
+    serializer.serializeTo(mo, out);
+    out.close();
+    return bytes.toByteArray();
+  }
+
+  private ManagedObject newManagedObject(long id) throws Exception {
+    return newManagedObject(id, 1);
+  }
+
+  private ManagedObject newManagedObject(long id, int fieldSetCount) throws Exception {
+    ManagedObjectImpl mo = new ManagedObjectImpl(new ObjectID(id), persistor.getManagedObjectPersistor());
+    TestDNACursor cursor = new TestDNACursor();
+    cursor.addArrayAction(new Object[] { new ObjectID(5000) });
+    for (int i = 0; i < fieldSetCount; i++) {
+      cursor.addLogicalAction(LogicalOperation.PUT, new Object[] { "refField" + i, new ObjectID(1) });
+      cursor.addLogicalAction(LogicalOperation.PUT, new Object[] { "integerField" + i, Integer.valueOf(100) });
+      cursor.addLogicalAction(LogicalOperation.PUT, new Object[] { "longField" + i, Long.valueOf(100) });
+      cursor.addLogicalAction(LogicalOperation.PUT, new Object[] { "stringField" + i, "Some nice string field" + i });
+    }
+    mo.apply(new TestDNA(cursor, "com.terracotta.toolkit.object.ToolkitObjectStripeImpl"), new TransactionID(1),
+             new ApplyTransactionInfo(), new ObjectInstanceMonitorImpl(), false);
+    return mo;
+  }
+}
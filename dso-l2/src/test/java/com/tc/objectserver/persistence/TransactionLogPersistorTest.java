@@ -0,0 +1,251 @@
+/*
+ * The contents of this file are subject to the Terracotta Public License Version
+ * 2.0 (the "License"); You may not use this file except in compliance with the
+ * License. You may obtain a copy of the License at
+ *
+ *      http://terracotta.org/legal/terracotta-public-license.
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ * the specific language governing rights and limitations under the License.
+ *
+ * The Covered Software is Terracotta Platform.
+ *
+ * The Initial Developer of the Covered Software is
+ *      Terracotta, Inc., a Software AG company
+ */
+package com.tc.objectserver.persistence;
+
+import com.tc.net.ClientID;
+import com.tc.object.dna.api.LogicalChangeID;
+import com.tc.object.dna.api.LogicalChangeResult;
+import com.tc.object.gtx.GlobalTransactionID;
+import com.tc.object.tx.ServerTransactionID;
+import com.tc.object.tx.TransactionID;
+import com.tc.objectserver.gtx.GlobalTransactionDescriptor;
+import com.tc.objectserver.persistence.TransactionLogPersistor.LongLongIndex;
+import com.tc.test.TCTestCase;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+public class TransactionLogPersistorTest extends TCTestCase {
+
+  public void testSaveLoadDelete() throws Exception {
+    TransactionLogPersistor log = new TransactionLogPersistor(TransactionLogPersistor.DEFAULT_SEGMENT_SIZE);
+    Set<GlobalTransactionDescriptor> expected = new HashSet<GlobalTransactionDescriptor>();
+    for (int i = 0; i < 100; i++) {
+      GlobalTransactionDescriptor gtx = descriptor(i, i % 3);
+      log.saveGlobalTransactionDescriptor(gtx);
+      expected.add(gtx);
+    }
+    assertEquals(expected, new HashSet<GlobalTransactionDescriptor>(log.loadAllGlobalTransactionDescriptors()));
+
+    SortedSet<GlobalTransactionID> toDelete = new TreeSet<GlobalTransactionID>();
+    for (int i = 0; i < 100; i += 2) {
+      toDelete.add(new GlobalTransactionID(i));
+      expected.remove(descriptor(i, i % 3));
+    }
+    // ids that were never saved are ignored
+    toDelete.add(new GlobalTransactionID(1000));
+    log.deleteAllGlobalTransactionDescriptors(toDelete);
+    assertEquals(expected, new HashSet<GlobalTransactionDescriptor>(log.loadAllGlobalTransactionDescriptors()));
+  }
+
+  public void testChangeResultsAreKept() throws Exception {
+    TransactionLogPersistor log = new TransactionLogPersistor(TransactionLogPersistor.DEFAULT_SEGMENT_SIZE);
+    log.saveGlobalTransactionDescriptor(descriptor(7, 5));
+
+    Collection<GlobalTransactionDescriptor> loaded = log.loadAllGlobalTransactionDescriptors();
+    assertEquals(1, loaded.size());
+    Map<LogicalChangeID, LogicalChangeResult> results = loaded.iterator().next().getApplyResults();
+    assertEquals(5, results.size());
+    for (int i = 0; i < 5; i++) {
+      assertEquals(i % 2 == 0, results.get(new LogicalChangeID(i)).isSuccess());
+    }
+  }
+
+  public void testSegmentsAreDroppedOnceEmpty() throws Exception {
+    // room for a couple of records per segment
+    TransactionLogPersistor log = new TransactionLogPersistor(80);
+    for (int i = 0; i < 100; i++) {
+      log.saveGlobalTransactionDescriptor(descriptor(i, 0));
+    }
+    int segments = log.getSegmentCount();
+    assertTrue(segments > 10);
+
+    log.deleteAllGlobalTransactionDescriptors(ids(0, 50));
+    assertTrue(log.getSegmentCount() < segments);
+    assertEquals(50, log.loadAllGlobalTransactionDescriptors().size());
+
+    log.deleteAllGlobalTransactionDescriptors(ids(50, 100));
+    assertTrue(log.getSegmentCount() <= 1);
+    assertTrue(log.loadAllGlobalTransactionDescriptors().isEmpty());
+  }
+
+  public void testOversizedRecord() throws Exception {
+    TransactionLogPersistor log = new TransactionLogPersistor(64);
+    GlobalTransactionDescriptor big = descriptor(1, 100);
+    log.saveGlobalTransactionDescriptor(big);
+    log.saveGlobalTransactionDescriptor(descriptor(2, 0));
+    assertEquals(2, log.loadAllGlobalTransactionDescriptors().size());
+  }
+
+  public void testRecoverFromDirectory() throws Exception {
+    File dir = new File(getTempDirectory(), "txnlog");
+    TransactionLogPersistor log = new TransactionLogPersistor(dir, 256);
+    Set<GlobalTransactionDescriptor> expected = new HashSet<GlobalTransactionDescriptor>();
+    for (int i = 0; i < 200; i++) {
+      GlobalTransactionDescriptor gtx = descriptor(i, i % 4);
+      log.saveGlobalTransactionDescriptor(gtx);
+      if (i >= 120) {
+        expected.add(gtx);
+      }
+    }
+    log.deleteAllGlobalTransactionDescriptors(ids(0, 120));
+    int files = dir.listFiles().length;
+    assertEquals(log.getSegmentCount(), files);
+
+    TransactionLogPersistor recovered = new TransactionLogPersistor(dir, 256);
+    assertEquals(expected, new HashSet<GlobalTransactionDescriptor>(recovered.loadAllGlobalTransactionDescriptors()));
+
+    // appends carry on after the recovered records
+    GlobalTransactionDescriptor next = descriptor(500, 1);
+    recovered.saveGlobalTransactionDescriptor(next);
+    expected.add(next);
+    recovered = new TransactionLogPersistor(dir, 256);
+    assertEquals(expected, new HashSet<GlobalTransactionDescriptor>(recovered.loadAllGlobalTransactionDescriptors()));
+  }
+
+  public void testRecoverAfterCrash() throws Exception {
+    File dir = new File(getTempDirectory(), "txnlog-crash");
+    TransactionLogPersistor log = new TransactionLogPersistor(dir, 4096);
+    Set<GlobalTransactionDescriptor> expected = new HashSet<GlobalTransactionDescriptor>();
+    for (int i = 0; i < 10; i++) {
+      GlobalTransactionDescriptor gtx = descriptor(i, i % 3);
+      log.saveGlobalTransactionDescriptor(gtx);
+      expected.add(gtx);
+    }
+    log.deleteAllGlobalTransactionDescriptors(ids(0, 3));
+    expected.removeAll(descriptors(0, 3));
+
+    // the server dies half way through the next append : the record header made it to disk, the rest did not
+    File[] files = dir.listFiles();
+    assertEquals(1, files.length);
+    RandomAccessFile raf = new RandomAccessFile(files[0], "rw");
+    try {
+      long end = endOfRecords(raf);
+      raf.seek(end);
+      raf.writeByte(1);
+      raf.writeInt(Integer.MAX_VALUE);
+      raf.write(new byte[] { 42, 42, 42 });
+    } finally {
+      raf.close();
+    }
+
+    // the log is never closed, the recovery maps the segments the crashed one had mapped
+    TransactionLogPersistor recovered = new TransactionLogPersistor(dir, 4096);
+    assertEquals(expected, new HashSet<GlobalTransactionDescriptor>(recovered.loadAllGlobalTransactionDescriptors()));
+
+    // the torn record is gone for good, appends after it are recovered next time
+    GlobalTransactionDescriptor next = descriptor(10, 2);
+    recovered.saveGlobalTransactionDescriptor(next);
+    expected.add(next);
+    recovered.close();
+    recovered = new TransactionLogPersistor(dir, 4096);
+    assertEquals(expected, new HashSet<GlobalTransactionDescriptor>(recovered.loadAllGlobalTransactionDescriptors()));
+    recovered.close();
+  }
+
+  public void testSegmentFilesDeletedOnceEmpty() throws Exception {
+    File dir = new File(getTempDirectory(), "txnlog-release");
+    TransactionLogPersistor log = new TransactionLogPersistor(dir, 80);
+    for (int i = 0; i < 50; i++) {
+      log.saveGlobalTransactionDescriptor(descriptor(i, 0));
+    }
+    assertEquals(log.getSegmentCount(), dir.listFiles().length);
+    log.deleteAllGlobalTransactionDescriptors(ids(0, 50));
+    assertTrue(dir.listFiles().length <= 1);
+    log.close();
+
+    TransactionLogPersistor.clear(dir);
+    assertEquals(0, dir.listFiles().length);
+  }
+
+  public void testIndexMatchesHashMap() {
+    Random r = new Random(7);
+    LongLongIndex index = new LongLongIndex();
+    Map<Long, Long> reference = new HashMap<Long, Long>();
+    for (int i = 0; i < 200000; i++) {
+      long key = r.nextInt(5000);
+      Long expected;
+      switch (r.nextInt(3)) {
+        case 0:
+          long value = r.nextInt(Integer.MAX_VALUE);
+          expected = reference.put(key, value);
+          assertEquals(expected == null ? LongLongIndex.NOT_FOUND : expected.longValue(), index.put(key, value));
+          break;
+        case 1:
+          expected = reference.remove(key);
+          assertEquals(expected == null ? LongLongIndex.NOT_FOUND : expected.longValue(), index.remove(key));
+          break;
+        default:
+          expected = reference.get(key);
+          assertEquals(expected == null ? LongLongIndex.NOT_FOUND : expected.longValue(), index.get(key));
+      }
+      assertEquals(reference.size(), index.size());
+    }
+  }
+
+  private static Set<GlobalTransactionDescriptor> descriptors(long from, long to) {
+    Set<GlobalTransactionDescriptor> descriptors = new HashSet<GlobalTransactionDescriptor>();
+    for (long i = from; i < to; i++) {
+      descriptors.add(descriptor(i, (int) (i % 3)));
+    }
+    return descriptors;
+  }
+
+  /**
+   * Walks the record chain of a segment file : state (1 byte), payload length (4 bytes), payload.
+   */
+  private static long endOfRecords(RandomAccessFile raf) throws IOException {
+    long position = 0;
+    while (true) {
+      raf.seek(position);
+      if (raf.readByte() == 0) { return position; }
+      position += 5 + raf.readInt();
+    }
+  }
+
+  private static SortedSet<GlobalTransactionID> ids(long from, long to) {
+    SortedSet<GlobalTransactionID> ids = new TreeSet<GlobalTransactionID>();
+    for (long i = from; i < to; i++) {
+      ids.add(new GlobalTransactionID(i));
+    }
+    return ids;
+  }
+
+  private static GlobalTransactionDescriptor descriptor(long gid, int changeResults) {
+    GlobalTransactionDescriptor gtx = new GlobalTransactionDescriptor(
+                                                                      new ServerTransactionID(new ClientID(gid % 5),
+                                                                                              new TransactionID(gid)),
+                                                                      new GlobalTransactionID(gid));
+    if (changeResults > 0) {
+      Map<LogicalChangeID, LogicalChangeResult> results = new HashMap<LogicalChangeID, LogicalChangeResult>();
+      for (int i = 0; i < changeResults; i++) {
+        results.put(new LogicalChangeID(i), new LogicalChangeResult(i % 2 == 0));
+      }
+      gtx.recordLogicalChangeResults(results);
+    }
+    return gtx;
+  }
+}
@@ -0,0 +1,197 @@
+/* 
+ * The contents of this file are subject to the Terracotta Public License Version
+ * 2.0 (the "License"); You may not use this file except in compliance with the
+ * License. You may obtain a copy of the License at 
+ *
+ *      http://terracotta.org/legal/terracotta-public-license.
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ * the specific language governing rights and limitations under the License.
+ *
+ * The Covered Software is Terracotta Platform.
+ *
+ * The Initial Developer of the Covered Software is 
+ *      Terracotta, Inc., a Software AG company
+ */
+package com.tc.objectserver.search.inmemory;
+
+import com.tc.object.ObjectID;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import junit.framework.TestCase;
+
+public class CacheIndexTest extends TestCase {
+
+  private static final ObjectID SEGMENT_1 = new ObjectID(1);
+  private static final ObjectID SEGMENT_2 = new ObjectID(2);
+
+  private CacheIndex            index;
+
+  @Override
+  protected void setUp() throws Exception {
+    index = new CacheIndex("test");
+    for (int i = 0; i < 100; i++) {
+      index.upsert("k" + i, Long.valueOf(i), attributes(i % 10, i % 3 == 0 ? "even" : "odd"), i < 50 ? SEGMENT_1
+          : SEGMENT_2);
+    }
+  }
+
+  public void testEqualityAndRanges() {
+    assertEquals(10, keys(Criteria.eq("age", 5)).size());
+    assertEquals(0, keys(Criteria.eq("age", 42)).size());
+    assertEquals(0, keys(Criteria.eq("missing", 5)).size());
+    assertEquals(30, keys(Criteria.between("age", 2, 4)).size());
+    assertEquals(10, keys(Criteria.between("age", 2, 4, false, false)).size());
+    assertEquals(20, keys(Criteria.gt("age", 7)).size());
+    assertEquals(30, keys(Criteria.ge("age", 7)).size());
+    assertEquals(20, keys(Criteria.lt("age", 2)).size());
+    assertEquals(30, keys(Criteria.le("age", 2)).size());
+    assertEquals(0, keys(Criteria.between("age", 4, 2)).size());
+  }
+
+  public void testConjunctions() {
+    Set<String> keys = keys(Criteria.and(Criteria.eq("age", 3), Criteria.eq("kind", "even")));
+    assertEquals(new HashSet<String>(Arrays.asList("k3", "k33", "k63", "k93")), keys);
+    assertEquals(20, keys(Criteria.or(Criteria.eq("age", 3), Criteria.eq("age", 4), Criteria.eq("name", "n3")))
+        .size());
+    assertEquals(90, keys(Criteria.notEq("age", 3)).size());
+    assertEquals(100, keys(Criteria.all()).size());
+  }
+
+  public void testUpdatesAreIncremental() {
+    index.upsert("k3", 1000L, attributes(11, "odd"), SEGMENT_1);
+    assertEquals(9, keys(Criteria.eq("age", 3)).size());
+    assertEquals(Collections.singleton("k3"), keys(Criteria.eq("age", 11)));
+
+    assertFalse(index.putIfAbsent("k3", 1L, attributes(12, "odd"), SEGMENT_1));
+    assertTrue(index.putIfAbsent("new", 1L, attributes(12, "odd"), SEGMENT_1));
+    assertEquals(Collections.singleton("new"), keys(Criteria.eq("age", 12)));
+
+    assertFalse(index.replace("k3", 2L, 999L, attributes(13, "odd"), SEGMENT_1));
+    assertTrue(index.replace("k3", 2L, 1000L, attributes(13, "odd"), SEGMENT_1));
+    assertTrue(keys(Criteria.eq("age", 11)).isEmpty());
+
+    assertFalse(index.removeIfValueEqual("k3", 1000L));
+    assertTrue(index.removeIfValueEqual("k3", 2L));
+    assertFalse(index.remove("k3"));
+    assertTrue(index.remove("new"));
+    assertTrue(keys(Criteria.gt("age", 10)).isEmpty());
+    assertEquals(99, index.size());
+
+    // freed rows are reused
+    index.upsert("k3", 3L, attributes(3, "even"), SEGMENT_1);
+    assertEquals(10, keys(Criteria.eq("age", 3)).size());
+    assertEquals(100, index.size());
+  }
+
+  public void testClearSegment() {
+    index.clear(SEGMENT_1);
+    assertEquals(50, index.size());
+    assertEquals(5, keys(Criteria.eq("age", 5)).size());
+    index.clear(SEGMENT_1);
+    index.clear(SEGMENT_2);
+    assertEquals(0, index.size());
+    assertFalse(index.search(query(Criteria.all(), -1)).isAnyCriteriaMatched());
+  }
+
+  public void testSortLimitAndPaging() {
+    IndexQuery query = new IndexQuery(Criteria.lt("age", 3), true, true, Collections.singleton("age"), null,
+                                      Arrays.asList(new SortAttribute("age", false), new SortAttribute("name", true)),
+                                      null, 25);
+    IndexQueryResults results = index.search(query);
+    assertEquals(25, results.size());
+    ResultRow first = results.getRows().get(0);
+    assertEquals("k2", first.getKey());
+    assertEquals(2L, first.getValue());
+    assertEquals(Collections.<String, Object> singletonMap("age", 2), first.getAttributes());
+    assertEquals(2, results.getRows().get(9).getAttributes().get("age"));
+    assertEquals(1, results.getRows().get(10).getAttributes().get("age"));
+
+    assertEquals(10, results.getPage(0, 10).size());
+    assertEquals("k1", results.getPage(10, 10).get(0).getKey());
+    assertEquals(5, results.getPage(20, 10).size());
+    assertTrue(results.getPage(30, 10).isEmpty());
+
+    // later updates do not change kept results
+    index.remove("k2");
+    assertEquals("k2", results.getPage(0, 1).get(0).getKey());
+  }
+
+  public void testAggregations() {
+    IndexQuery query = new IndexQuery(Criteria.eq("kind", "even"), false, false, null, null, null,
+                                      Arrays.asList(new Aggregation(Aggregation.Type.COUNT, null),
+                                                    new Aggregation(Aggregation.Type.SUM, "age"),
+                                                    new Aggregation(Aggregation.Type.MIN, "name"),
+                                                    new Aggregation(Aggregation.Type.MAX, "age"),
+                                                    new Aggregation(Aggregation.Type.AVERAGE, "age")), 0);
+    IndexQueryResults results = index.search(query);
+    assertEquals(0, results.size());
+    assertTrue(results.isAnyCriteriaMatched());
+    List<Object> aggregates = results.getAggregateResults();
+    assertEquals(34L, aggregates.get(0));
+    long sum = 0;
+    for (int i = 0; i < 100; i += 3) {
+      sum += i % 10;
+    }
+    assertEquals(sum, aggregates.get(1));
+    assertEquals("n0", aggregates.get(2));
+    assertEquals(9, aggregates.get(3));
+    assertEquals((double) sum / 34, aggregates.get(4));
+  }
+
+  public void testGroupBy() {
+    IndexQuery query = new IndexQuery(Criteria.lt("age", 2), false, false, new HashSet<String>(Arrays.asList("kind",
+                                                                                                             "age")),
+                                      new HashSet<String>(Arrays.asList("kind", "age")),
+                                      Arrays.asList(new SortAttribute("age", true), new SortAttribute("kind", true)),
+                                      Arrays.asList(new Aggregation(Aggregation.Type.COUNT, null)), -1);
+    List<ResultRow> rows = index.search(query).getRows();
+    assertEquals(4, rows.size());
+    assertGroup(rows.get(0), 0, "even", 4L);
+    assertGroup(rows.get(1), 0, "odd", 6L);
+    assertGroup(rows.get(2), 1, "even", 3L);
+    assertGroup(rows.get(3), 1, "odd", 7L);
+
+    try {
+      new IndexQuery(Criteria.all(), true, false, null, Collections.singleton("age"), null, null, -1);
+      fail();
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+  }
+
+  private static void assertGroup(ResultRow row, int age, String kind, long count) {
+    assertNull(row.getKey());
+    assertEquals(age, row.getAttributes().get("age"));
+    assertEquals(kind, row.getAttributes().get("kind"));
+    assertEquals(Collections.<Object> singletonList(count), row.getAggregateResults());
+  }
+
+  private Set<String> keys(Criteria criteria) {
+    Set<String> keys = new HashSet<String>();
+    for (ResultRow row : index.search(query(criteria, -1)).getRows()) {
+      keys.add(row.getKey());
+    }
+    return keys;
+  }
+
+  private static IndexQuery query(Criteria criteria, int maxResults) {
+    return new IndexQuery(criteria, true, false, null, null, null, null, maxResults);
+  }
+
+  private static Map<String, Object> attributes(int age, String kind) {
+    Map<String, Object> attributes = new HashMap<String, Object>();
+    attributes.put("age", age);
+    attributes.put("kind", kind);
+    attributes.put("name", "n" + age);
+    return attributes;
+  }
+}
@@ -0,0 +1,173 @@
+/* 
+ * The contents of this file are subject to the Terracotta Public License Version
+ * 2.0 (the "License"); You may not use this file except in compliance with the
+ * License. You may obtain a copy of the License at 
+ *
+ *      http://terracotta.org/legal/terracotta-public-license.
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ * the specific language governing rights and limitations under the License.
+ *
+ * The Covered Software is Terracotta Platform.
+ *
+ * The Initial Developer of the Covered Software is 
+ *      Terracotta, Inc., a Software AG company
+ */
+package com.tc.objectserver.search.inmemory;
+
+import org.mockito.Mockito;
+
+import com.tc.net.ClientID;
+import com.tc.object.ObjectID;
+import com.tc.objectserver.core.api.ServerConfigurationContext;
+import com.tc.objectserver.metadata.NullMetaDataProcessingContext;
+import com.tc.objectserver.search.SearchDeleteContext;
+import com.tc.objectserver.search.SearchEventHandler;
+import com.tc.objectserver.search.SearchUpsertContext;
+import com.tc.search.SearchRequestID;
+import com.terracottatech.search.AbstractNVPair;
+import com.terracottatech.search.GroupedIndexQueryResultImpl;
+import com.terracottatech.search.IndexException;
+import com.terracottatech.search.IndexQueryResult;
+import com.terracottatech.search.NVPair;
+import com.terracottatech.search.NonGroupedIndexQueryResultImpl;
+import com.terracottatech.search.SearchResult;
+import com.terracottatech.search.ValueID;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+import junit.framework.TestCase;
+
+/**
+ * Feeds an in memory index through the search event handler and queries it the way a client does, with a query stack
+ * and name value pairs.
+ */
+public class InMemoryIndexManagerTest extends TestCase {
+
+  // stand ins for the search library enums, matched on their names
+  private enum Op {
+    ALL, TERM, GREATER_THAN, ILIKE, AND, OR, BEGIN_GROUP, END_GROUP, NOT, BETWEEN, SOUNDS_LIKE
+  }
+
+  private enum Order {
+    ASCENDING, DESCENDING
+  }
+
+  private enum Agg {
+    COUNT, SUM
+  }
+
+  private static final String   CACHE   = "cache";
+  private static final ObjectID SEGMENT = new ObjectID(1);
+
+  private InMemoryIndexHACoordinator indexManager;
+  private final ClientID             client  = new ClientID(1);
+
+  @Override
+  protected void setUp() throws Exception {
+    indexManager = new InMemoryIndexHACoordinator();
+    ServerConfigurationContext context = Mockito.mock(ServerConfigurationContext.class);
+    Mockito.when(context.getIndexManager()).thenReturn(indexManager);
+    SearchEventHandler handler = new SearchEventHandler();
+    handler.initializeContext(context);
+
+    for (int i = 0; i < 20; i++) {
+      List<NVPair> attributes = Arrays.asList(AbstractNVPair.createNVPair("age", i % 5),
+                                              AbstractNVPair.createNVPair("name", "Name" + i));
+      handler.handleEvent(new SearchUpsertContext(SEGMENT, CACHE, "k" + i, new ValueID(i), attributes,
+                                                  new NullMetaDataProcessingContext(), true));
+    }
+    handler.handleEvent(new SearchDeleteContext(SEGMENT, CACHE, "k0", new NullMetaDataProcessingContext()));
+  }
+
+  public void testQueryStackSortAndPaging() throws Exception {
+    List stack = Arrays.asList(Op.AND, Op.BEGIN_GROUP, Op.GREATER_THAN, AbstractNVPair.createNVPair("age", 2),
+                               Op.ILIKE, AbstractNVPair.createNVPair("name", "name1*"), Op.END_GROUP);
+    List<NVPair> sort = Collections.singletonList(AbstractNVPair.createNVPair("name", Order.DESCENDING));
+    SearchRequestID request = new SearchRequestID(1);
+
+    SearchResult first = indexManager.searchIndex(CACHE, client, request, stack, true, true,
+                                                  Collections.singleton("age"), null, sort, null, -1, 2);
+    assertTrue(first.isAnyCriteriaMatched());
+    assertEquals(Arrays.asList("k19", "k18"), keys(first));
+    NonGroupedIndexQueryResultImpl k19 = (NonGroupedIndexQueryResultImpl) first.getQueryResults().get(0);
+    assertEquals(new ValueID(19), k19.getValue());
+    assertEquals(Collections.singletonList(AbstractNVPair.createNVPair("age", 4)), k19.getAttributes());
+    assertEquals(Collections.singletonList(AbstractNVPair.createNVPair("name", "Name19")), k19.getSortAttributes());
+
+    // later pages come from the kept snapshot, not from the index
+    indexManager.remove(CACHE, "k14", SEGMENT, null);
+    SearchResult second = indexManager.getSearchResults(CACHE, client, request, stack, true, true,
+                                                        Collections.singleton("age"), sort, null, -1, 2, 10);
+    assertEquals(Arrays.asList("k14", "k13"), keys(second));
+
+    indexManager.releaseAllResultsFor(client);
+    assertNull(indexManager.getResultPage(client, request, 0, 10));
+  }
+
+  public void testNestedGroupsAndBetween() throws Exception {
+    // age between [1, 2) or not (age > 0), ie age 0 or 1
+    List stack = Arrays.asList(Op.OR, Op.BEGIN_GROUP, Op.BETWEEN, AbstractNVPair.createNVPair("age", 1),
+                               AbstractNVPair.createNVPair("age", 2), Boolean.TRUE, Boolean.FALSE, Op.NOT,
+                               Op.BEGIN_GROUP, Op.GREATER_THAN, AbstractNVPair.createNVPair("age", 0), Op.END_GROUP,
+                               Op.END_GROUP);
+    List<NVPair> sort = Collections.singletonList(AbstractNVPair.createNVPair("name", Order.ASCENDING));
+    SearchResult result = indexManager.searchIndex(CACHE, null, null, stack, true, false, null, null, sort, null, -1,
+                                                   -1);
+    assertEquals(Arrays.asList("k1", "k10", "k11", "k15", "k16", "k5", "k6"), keys(result));
+  }
+
+  public void testGroupByAndAggregators() throws Exception {
+    List<NVPair> sort = Collections.singletonList(AbstractNVPair.createNVPair("age", Order.ASCENDING));
+    List<NVPair> aggregators = Arrays.asList(AbstractNVPair.createNVPair("key", Agg.COUNT),
+                                             AbstractNVPair.createNVPair("age", Agg.SUM));
+    SearchResult result = indexManager.searchIndex(CACHE, null, null, Collections.singletonList(Op.ALL), false, false,
+                                                   Collections.singleton("age"), Collections.singleton("age"), sort,
+                                                   aggregators, -1, -1);
+    List<IndexQueryResult> groups = result.getQueryResults();
+    assertEquals(5, groups.size());
+    GroupedIndexQueryResultImpl ageZero = (GroupedIndexQueryResultImpl) groups.get(0);
+    assertEquals(Collections.singleton(AbstractNVPair.createNVPair("age", 0)), ageZero.getGroupedAttributes());
+    // k0 was deleted
+    assertEquals(3L, ((Number) ageZero.getAggregators().get(0).getResult()).longValue());
+    GroupedIndexQueryResultImpl ageFour = (GroupedIndexQueryResultImpl) groups.get(4);
+    assertEquals(4L, ((Number) ageFour.getAggregators().get(0).getResult()).longValue());
+    assertEquals(16L, ((Number) ageFour.getAggregators().get(1).getResult()).longValue());
+
+    SearchResult total = indexManager.searchIndex(CACHE, null, null, Collections.emptyList(), false, false, null, null,
+                                                  null, aggregators, -1, -1);
+    assertTrue(total.getQueryResults().isEmpty());
+    assertEquals(19L, ((Number) total.getAggregators().get(0).getResult()).longValue());
+    assertEquals(40L, ((Number) total.getAggregators().get(1).getResult()).longValue());
+  }
+
+  public void testInvalidQueries() {
+    assertInvalid(Arrays.asList(Op.SOUNDS_LIKE, AbstractNVPair.createNVPair("name", "x")), null);
+    assertInvalid(Arrays.asList(Op.AND, Op.BEGIN_GROUP, Op.ALL), null);
+    assertInvalid(Arrays.asList(Op.TERM), null);
+    // keys cannot be returned from a grouped query
+    assertInvalid(Collections.singletonList(Op.ALL), Collections.singleton("age"));
+  }
+
+  private void assertInvalid(List stack, Set<String> groupBy) {
+    try {
+      indexManager.searchIndex(CACHE, null, null, stack, true, false, null, groupBy, null, null, -1, -1);
+      fail("Expected " + stack + " to be rejected");
+    } catch (IndexException e) {
+      // expected
+    }
+  }
+
+  private static List<String> keys(SearchResult result) {
+    List<String> keys = new ArrayList<String>();
+    for (Object r : result.getQueryResults()) {
+      keys.add(((NonGroupedIndexQueryResultImpl) r).getKey());
+    }
+    return keys;
+  }
+}
@@ -18,6 +18,7 @@ package com.terracotta.management.service.impl.util;
 
 import org.terracotta.license.LicenseConstants;
 
+import com.tc.async.api.StageLatencySnapshot;
 import com.tc.config.schema.L2Info;
 import com.tc.config.schema.ServerGroupInfo;
 import com.tc.config.schema.setup.ConfigurationSetupException;
@@ -235,6 +236,14 @@ public class LocalManagementSource {
     }
   }
 
+  public StageLatencySnapshot[] getStageLatencySnapshots() throws ManagementSourceException {
+    try {
+      return (StageLatencySnapshot[])mBeanServer.getAttribute(dsoObjectName, "StageLatencyHistograms");
+    } catch (JMException jme) {
+      throw new ManagementSourceException(jme);
+    }
+  }
+
   public Map<String, Object> getServerInfoAttributes() throws ManagementSourceException {
     Map<String, Object> result = new HashMap<String, Object>();
 
@@ -20,6 +20,7 @@ import org.terracotta.management.ServiceExecutionException;
 import org.terracotta.management.resource.AbstractEntityV2;
 import org.terracotta.management.resource.ResponseEntityV2;
 
+import com.tc.async.api.StageLatencySnapshot;
 import com.tc.config.schema.L2Info;
 import com.tc.config.schema.ServerGroupInfo;
 import com.tc.config.schema.setup.TopologyReloadStatus;
@@ -236,6 +237,49 @@ public class ServerManagementServiceV2 implements L1MBeansSource {
     });
   }
 
+  public ResponseEntityV2<StatisticsEntityV2> getStageStatistics(Set<String> serverNames) throws ServiceExecutionException {
+    return forEachServer("getStageStatistics", serverNames, new ForEachServer<StatisticsEntityV2>() {
+      @Override
+      public Collection<StatisticsEntityV2> queryLocalServer(L2Info member) {
+        Collection<StatisticsEntityV2> localResult = new ArrayList<StatisticsEntityV2>();
+        try {
+          StageLatencySnapshot[] snapshots = localManagementSource.getStageLatencySnapshots();
+          for (StageLatencySnapshot snapshot : snapshots) {
+            StatisticsEntityV2 statisticsEntityV2 = new StatisticsEntityV2();
+            statisticsEntityV2.setSourceId(member.name());
+
+            statisticsEntityV2.getStatistics().put("StageName", snapshot.getStageName());
+            statisticsEntityV2.getStatistics().put("QueueWait", snapshot.getQueueWait());
+            statisticsEntityV2.getStatistics().put("ServiceTime", snapshot.getServiceTime());
+            statisticsEntityV2.getStatistics().put("BatchSize", snapshot.getBatchSize());
+
+            localResult.add(statisticsEntityV2);
+          }
+        } catch (ManagementSourceException e) {
+          StatisticsEntityV2 statisticsEntityV2 = new StatisticsEntityV2();
+          statisticsEntityV2.setSourceId(member.name());
+
+          statisticsEntityV2.getStatistics().put("Error", e.getMessage());
+
+          localResult.add(statisticsEntityV2);
+        }
+        return localResult;
+      }
+
+      @Override
+      public ResponseEntityV2<StatisticsEntityV2> queryRemoteServer(L2Info member) throws Exception {
+        UriBuilder uriBuilder = UriBuilder.fromPath("tc-management-api")
+            .path("v2")
+            .path("agents")
+            .path("statistics")
+            .path("stages")
+            .matrixParam("serverNames", member.name());
+
+        return remoteManagementSource.getFromRemoteL2(member.name(), uriBuilder.build(), ResponseEntityV2.class, StatisticsEntityV2.class);
+      }
+    });
+  }
+
   public ResponseEntityV2<ConfigEntityV2> getServerConfigs(final Set<String> serverNames) throws ServiceExecutionException {
     return forEachServer("getServerConfigs", serverNames, new ForEachServer<ConfigEntityV2>() {
       @Override
@@ -111,6 +111,29 @@ public class MonitoringResourceServiceImplV2 {
     }
   }
 
+  /**
+   * Get a {@code Collection} of {@link StatisticsEntityV2} objects representing the latency histograms of each SEDA
+   * stage provided by the associated monitorable entity's agent given the request path.
+   *
+   * @return a a collection of {@link StatisticsEntityV2} objects.
+   */
+  @GET
+  @Path("/stages")
+  @Produces(MediaType.APPLICATION_JSON)
+  public ResponseEntityV2<StatisticsEntityV2> getStageStatistics(@Context UriInfo info) {
+    LOG.debug(String.format("Invoking MonitoringResourceServiceImplV2.getStageStatistics: %s", info.getRequestUri()));
+
+    requestValidator.validateSafe(info);
+
+    try {
+      Set<String> serverNames = UriInfoUtils.extractLastSegmentMatrixParameterAsSet(info, "serverNames");
+
+      return monitoringService.getStageStatistics(serverNames);
+    } catch (ServiceExecutionException see) {
+      throw new ResourceRuntimeException("Failed to get TSA statistics", see, Response.Status.BAD_REQUEST.getStatusCode());
+    }
+  }
+
   /**
    * Get a {@code Collection} of {@link StatisticsEntityV2} objects representing the client(s) statistics provided by the
    * associated monitorable entity's agent given the request path.
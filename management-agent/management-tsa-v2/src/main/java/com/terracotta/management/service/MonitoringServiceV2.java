@@ -61,4 +61,14 @@ public interface MonitoringServiceV2 {
    */
   ResponseEntityV2<StatisticsEntityV2> getDgcStatistics(Set<String> serverNames) throws ServiceExecutionException;
 
+  /**
+   * Get the SEDA stage latency histograms.
+   *
+   * @param serverNames A set of server names, null meaning all of them.
+   * @return a {@link Collection} object of {@link StatisticsEntityV2} objects holding the queue wait, service time and
+   * batch size histograms, one {@link StatisticsEntityV2} per stage.
+   * @throws ServiceExecutionException
+   */
+  ResponseEntityV2<StatisticsEntityV2> getStageStatistics(Set<String> serverNames) throws ServiceExecutionException;
+
 }
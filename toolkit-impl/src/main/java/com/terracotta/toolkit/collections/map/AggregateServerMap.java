@@ -72,14 +72,17 @@ import com.tc.object.servermap.localcache.PinnedEntryFaultCallback;
 import com.tc.object.tx.TransactionCompleteListener;
 import com.tc.object.tx.TransactionID;
 import com.tc.platform.PlatformService;
+import com.tc.properties.TCPropertiesConsts;
 import com.tc.search.SearchRequestID;
 import com.tc.server.CustomLifespanVersionedServerEvent;
 import com.tc.server.ServerEvent;
 import com.tc.server.ServerEventType;
 import com.tc.server.VersionedServerEvent;
 import com.tc.util.Util;
+import com.tc.util.concurrent.CompletedFuture;
 import com.tc.util.concurrent.TaskRunner;
 import com.tc.util.concurrent.Timer;
+import com.tc.util.concurrent.TransformedFuture;
 import com.terracotta.toolkit.TerracottaToolkit;
 import com.terracotta.toolkit.abortable.ToolkitAbortableOperationException;
 import com.terracotta.toolkit.bulkload.BufferBackend;
@@ -101,6 +104,8 @@ import com.terracotta.toolkit.config.UnclusteredConfiguration;
 import com.terracotta.toolkit.config.cache.InternalCacheConfigurationType;
 import com.terracotta.toolkit.object.DestroyApplicator;
 import com.terracotta.toolkit.object.ToolkitObjectStripe;
+import com.terracotta.toolkit.object.serialization.CompressionCodec;
+import com.terracotta.toolkit.object.serialization.CompressionCodecs;
 import com.terracotta.toolkit.object.serialization.SerializationStrategy;
 import com.terracotta.toolkit.object.serialization.SerializedMapValue;
 import com.terracotta.toolkit.object.serialization.SerializedMapValueParameters;
@@ -132,6 +137,7 @@ import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicReference;
 
 public class AggregateServerMap<K, V> implements DistributedToolkitType<InternalToolkitMap<K, V>>,
@@ -144,6 +150,7 @@ public class AggregateServerMap<K, V> implements DistributedToolkitType<Internal
 
   private static final String                                              EHCACHE_GETALL_BATCH_SIZE_PROPERTY = "ehcache.getAll.batchSize";
   private static final int                                                 DEFAULT_GETALL_BATCH_SIZE          = 1000;
+  private static final int                                                 DEFAULT_APPROX_SIZE_MAX_AGE        = 1000;
   private final static String                                              SNAPSHOT_TXN_LOCK_ID               = "snapshot_txn_lock";
   private final static List<ToolkitObjectType>                             VALID_TYPES                        = Arrays
                                                                                                                   .asList(ToolkitObjectType.STORE,
@@ -172,11 +179,18 @@ public class AggregateServerMap<K, V> implements DistributedToolkitType<Internal
   private volatile boolean                                                 lookupSuccessfulAfterRejoin;
   private final AtomicReference<ToolkitMap<String, String>>                attrSchema                         = new AtomicReference<ToolkitMap<String, String>>();
   private final LOCK_STRATEGY                                              lockStrategy;
+  private final CompressionCodec                                           compressionCodec;
   private volatile ToolkitAttributeExtractor                               attributeExtractor;
   private final CopyOnWriteArraySet<VersionUpdateListener<K, V>>           versionUpdateListeners;
   private final ToolkitLock                                                concurrentLock;
   private final TaskRunner                                                 taskRunner;
   private final Timer timer;
+  private final int                                                        approximateSizeMaxAgeMillis;
+  private final AtomicBoolean                                              approximateSizeRefreshing          = new AtomicBoolean();
+  private volatile long                                                    approximateSize                    = -1;
+  private volatile long                                                    approximateSizeTimestamp;
+  // created on first use, the refresh blocks on the server and must not hold up the tasks on timer
+  private Timer                                                            approximateSizeTimer;
 
   protected int getTerracottaProperty(String propName, int defaultValue) {
     try {
@@ -200,6 +214,8 @@ public class AggregateServerMap<K, V> implements DistributedToolkitType<Internal
     this.configMutationLock = configMutationLock;
     this.clusterInfo = new TerracottaClusterInfo(platformService);
     this.getAllBatchSize = getTerracottaProperty(EHCACHE_GETALL_BATCH_SIZE_PROPERTY, DEFAULT_GETALL_BATCH_SIZE);
+    this.approximateSizeMaxAgeMillis = getTerracottaProperty(TCPropertiesConsts.TOOLKIT_APPROXIMATE_SIZE_MAX_AGE_MILLIS,
+                                                             DEFAULT_APPROX_SIZE_MAX_AGE);
     this.serverMapLocalStoreFactory = serverMapLocalStoreFactory;
     Preconditions.checkArgument(isValidType(type), "Type has to be one of %s but was %s", VALID_TYPES, type);
 
@@ -217,6 +233,8 @@ public class AggregateServerMap<K, V> implements DistributedToolkitType<Internal
     searchReqIdGenerator = new SearchRequestIDGenerator();
     this.timeSource = new SystemTimeSource();
     this.lockStrategy = getLockStrategyFromConfig(config);
+    this.compressionCodec = CompressionCodecs.forName((String) InternalCacheConfigurationType.COMPRESSION_CODEC
+        .getValueIfExistsOrDefault(config));
     setupStripeObjects(stripeObjects);
     concurrentLock = ToolkitLockingApi.createConcurrentTransactionLock("CONCURRENT_LOCK_FOR_BULKLOAD", platformService);
     taskRunner = platformService.getTaskRunner();
@@ -229,6 +247,7 @@ public class AggregateServerMap<K, V> implements DistributedToolkitType<Internal
     for (ToolkitObjectStripe<InternalToolkitMap<K, V>> stripeObject : stripeObjects) {
       for (InternalToolkitMap<K, V> serverMap : stripeObject) {
         serverMap.setLockStrategy(lockStrategy);
+        serverMap.setCompressionCodec(compressionCodec);
         list.add(serverMap);
       }
     }
@@ -350,6 +369,44 @@ public class AggregateServerMap<K, V> implements DistributedToolkitType<Internal
     return getSize();
   }
 
+  /**
+   * Size of the map as last reported by the server, without waiting for this client's in-flight transactions and
+   * without a call to the server: the count is fetched in the background, on a timer of its own, on the first call and
+   * whenever it is older than toolkit.approximateSize.maxAgeMillis. Writes made since the last refresh, by this or
+   * other clients, are not reflected. Unlike {@link #quickSize()}, which always asks the server.
+   *
+   * @return the count, -1 if none has come back from the server yet
+   */
+  public int approximateSize() {
+    if ((approximateSize < 0 || System.currentTimeMillis() - approximateSizeTimestamp > approximateSizeMaxAgeMillis)
+        && approximateSizeRefreshing.compareAndSet(false, true)) {
+      try {
+        // only ever touched by the thread that won the flag
+        if (approximateSizeTimer == null) {
+          approximateSizeTimer = taskRunner.newTimer(name + " approximate size");
+        }
+        approximateSizeTimer.execute(new Runnable() {
+          @Override
+          public void run() {
+            try {
+              long now = System.currentTimeMillis();
+              approximateSize = getSize();
+              approximateSizeTimestamp = now;
+            } catch (RuntimeException e) {
+              LOGGER.warn("Unable to refresh the approximate size of " + name, e);
+            } finally {
+              approximateSizeRefreshing.set(false);
+            }
+          }
+        });
+      } catch (RuntimeException e) {
+        approximateSizeRefreshing.set(false);
+        LOGGER.warn("Unable to schedule a refresh of the approximate size of " + name, e);
+      }
+    }
+    return (int) approximateSize;
+  }
+
   protected void waitForAllCurrentTransactionsToComplete() {
     try {
       platformService.waitForAllCurrentTransactionsToComplete();
@@ -665,6 +722,20 @@ public class AggregateServerMap<K, V> implements DistributedToolkitType<Internal
     return batches;
   }
 
+  private Map<InternalToolkitMap, Collection> createKeyBatchesPerServerMap(Collection keys) {
+    Map<InternalToolkitMap, Collection> batches = new HashMap<InternalToolkitMap, Collection>();
+    for (Object key : keys) {
+      InternalToolkitMap serverMap = getServerMapForKey(key);
+      Collection batch = batches.get(serverMap);
+      if (batch == null) {
+        batch = new ArrayList();
+        batches.put(serverMap, batch);
+      }
+      batch.add(key);
+    }
+    return batches;
+  }
+
   @Override
   public void putAll(Map<? extends K, ? extends V> map) {
     if (map == null || map.isEmpty()) { return; }
@@ -685,8 +756,10 @@ public class AggregateServerMap<K, V> implements DistributedToolkitType<Internal
 
       }
     } else {
-      for (Map.Entry<? extends K, ? extends V> entry : map.entrySet()) {
-        putNoReturn(entry.getKey(), entry.getValue());
+      int now = timeSource.nowInSeconds();
+      for (Entry<InternalToolkitMap, Map> batch : createBatchesPerServerMap(map).entrySet()) {
+        batch.getKey().putAllNoReturn(batch.getValue(), now, ToolkitConfigFields.NO_MAX_TTI_SECONDS,
+                                      ToolkitConfigFields.NO_MAX_TTL_SECONDS);
       }
     }
   }
@@ -694,8 +767,8 @@ public class AggregateServerMap<K, V> implements DistributedToolkitType<Internal
   @Override
   public void removeAll(Set<K> keys) {
     if (keys == null || keys.isEmpty()) { return; }
-    for (K key : keys) {
-      removeNoReturn(key);
+    for (Entry<InternalToolkitMap, Collection> batch : createKeyBatchesPerServerMap(keys).entrySet()) {
+      batch.getKey().removeAllNoReturn(batch.getValue());
     }
   }
 
@@ -742,6 +815,65 @@ public class AggregateServerMap<K, V> implements DistributedToolkitType<Internal
     throw new UnsupportedOperationException("Unknown consistency - " + consistency);
   }
 
+  /**
+   * Sends the lookup for the key without waiting for the response. Only eventual caches read without taking a lock,
+   * for the other ones the value is read before returning.
+   */
+  public Future<V> getAsync(final Object key) {
+    if (consistency != Consistency.EVENTUAL || isExplicitLocked() || !LiteralValues.isLiteralInstance(key)) {
+      return new CompletedFuture<V>(get(key));
+    }
+    final InternalToolkitMap<K, V> serverMap = getServerMapForKey(key);
+    final TCObjectServerMap tcObjectServerMap = (TCObjectServerMap) serverMap.__tc_managed();
+    final Future<Object> value;
+    try {
+      value = tcObjectServerMap.getValueUnlockedAsync(serverMap, key);
+    } catch (AbortedOperationException e) {
+      throw new ToolkitAbortableOperationException(e);
+    } catch (PlatformRejoinException e) {
+      throw new RejoinException(e);
+    }
+    return new TransformedFuture<Object, V>(value) {
+      @Override
+      protected V transform(Object serializedValue) {
+        return serverMap.checkAndGetNonExpiredValue((K) key, serializedValue, GetType.UNLOCKED, false);
+      }
+    };
+  }
+
+  /**
+   * Async version of {@link #getAll(Collection)}, see {@link #getAsync(Object)}. The lookups for all the keys go out
+   * at once instead of in batches.
+   */
+  public Future<Map<K, V>> getAllAsync(final Collection<? extends K> keys) {
+    if (keys == null || keys.isEmpty()) { return new CompletedFuture<Map<K, V>>(Collections.<K, V> emptyMap()); }
+    if (consistency != Consistency.EVENTUAL) { return new CompletedFuture<Map<K, V>>(getAll(keys)); }
+    if (isExplicitLocked()) { throw new UnsupportedOperationException(); }
+
+    final SetMultimap<ObjectID, K> mapIdToKeysMap = divideKeysIntoServerMaps(new HashSet<K>(keys));
+    TCObjectServerMap tcObjectServerMap = getAnyTCObjectServerMap();
+    final Future<Map<Object, Object>> values;
+    try {
+      values = tcObjectServerMap.getAllValuesUnlockedAsync(mapIdToKeysMap);
+    } catch (AbortedOperationException e) {
+      throw new ToolkitAbortableOperationException(e);
+    } catch (PlatformRejoinException e) {
+      throw new RejoinException(e);
+    }
+    return new TransformedFuture<Map<Object, Object>, Map<K, V>>(values) {
+      @Override
+      protected Map<K, V> transform(Map<Object, Object> serializedValues) {
+        Map<K, V> rv = new HashMap<K, V>();
+        for (Entry<Object, Object> entry : serializedValues.entrySet()) {
+          K key = (K) entry.getKey();
+          rv.put(key, getServerMapForKey(key).checkAndGetNonExpiredValue(key, entry.getValue(), GetType.UNLOCKED,
+                                                                         false));
+        }
+        return rv;
+      }
+    };
+  }
+
   Map<K, V> getAllInternal(Set<K> keys, boolean quiet) {
     final SetMultimap<ObjectID, K> mapIdToKeysMap = divideKeysIntoServerMaps(keys);
     TCObjectServerMap tcObjectServerMap = getAnyTCObjectServerMap();
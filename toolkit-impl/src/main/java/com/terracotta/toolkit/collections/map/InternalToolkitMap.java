@@ -33,6 +33,7 @@ import com.tc.server.ServerEventType;
 import com.terracotta.toolkit.bulkload.BufferBackend;
 import com.terracotta.toolkit.collections.map.ServerMap.GetType;
 import com.terracotta.toolkit.object.TCToolkitObject;
+import com.terracotta.toolkit.object.serialization.CompressionCodec;
 
 import java.util.Collection;
 import java.util.Map;
@@ -87,6 +88,18 @@ public interface InternalToolkitMap<K, V> extends ConcurrentMap<K, V>, TCServerM
 
   void removeNoReturnVersioned(Object key, long version);
 
+  /**
+   * Puts all the entries, on a strongly consistent map the key locks are taken together and the entries are written in
+   * as few transactions as the bulk lock limit allows.
+   */
+  void putAllNoReturn(Map<? extends K, ? extends V> entries, int createTimeInSecs, int customMaxTTISeconds,
+                      int customMaxTTLSeconds);
+
+  /**
+   * Removes all the keys, batched the same way as {@link #putAllNoReturn}.
+   */
+  void removeAllNoReturn(Collection<?> keys);
+
   V unsafeLocalGet(Object key);
 
   V unlockedGet(K key, boolean quiet);
@@ -143,6 +156,11 @@ public interface InternalToolkitMap<K, V> extends ConcurrentMap<K, V>, TCServerM
 
   void setLockStrategy(LOCK_STRATEGY strategy);
 
+  /**
+   * Codec used to compress values written through this map, only used when compression is enabled.
+   */
+  void setCompressionCodec(CompressionCodec codec);
+
   void addTxnInProgressKeys(Set<K> txnInProgressForAdd, Set<K> removeSet);
 
   Set<K> keySet(Set<K> filterSet);
@@ -69,6 +69,8 @@ import com.terracotta.toolkit.meta.MetaData;
 import com.terracotta.toolkit.meta.MetaDataImpl;
 import com.terracotta.toolkit.meta.ToolkitCacheMetaDataCallback;
 import com.terracotta.toolkit.object.AbstractTCToolkitObject;
+import com.terracotta.toolkit.object.serialization.CompressionCodec;
+import com.terracotta.toolkit.object.serialization.CompressionCodecs;
 import com.terracotta.toolkit.object.serialization.CustomLifespanSerializedMapValue;
 import com.terracotta.toolkit.object.serialization.SerializedMapValue;
 import com.terracotta.toolkit.object.serialization.SerializedMapValueParameters;
@@ -78,12 +80,18 @@ import com.terracottatech.search.SearchMetaData;
 
 import java.io.Serializable;
 import java.util.AbstractCollection;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
 import java.util.concurrent.atomic.AtomicReference;
 
 public class ServerMap<K, V> extends AbstractTCToolkitObject implements InternalToolkitMap<K, V> {
@@ -91,11 +99,13 @@ public class ServerMap<K, V> extends AbstractTCToolkitObject implements Internal
   private static final Object[]                             NO_ARGS             = new Object[0];
   private static final String                               LOCK_PREFIX         = "__servermap@lock-";
   private static final String                               KEY_LOCK_PREFIX     = LOCK_PREFIX + "key-";
+  private static final int                                  BULK_TXN_MAX_LOCKS  = 500;
 
   private final ToolkitLock                                 expireConcurrentLock;
   private final ToolkitLock                                 eventualConcurrentLock;
 
   private final boolean                                     debugExpiration;
+  private final int                                         maxLocksPerBulkTxn;
 
   // clustered fields
   private final ToolkitLockTypeInternal                     lockType;
@@ -111,6 +121,7 @@ public class ServerMap<K, V> extends AbstractTCToolkitObject implements Internal
   protected volatile TCObjectServerMap<Object>              tcObjectServerMap;
   protected volatile L1ServerMapLocalCacheStore             l1ServerMapLocalCacheStore;
   protected volatile LockStrategy                           lockStrategy;
+  private volatile CompressionCodec                         compressionCodec;
   private volatile String                                   instanceDsoLockName = null;
   private volatile TimeSource                               timeSource;
   private final String                                      name;
@@ -129,6 +140,8 @@ public class ServerMap<K, V> extends AbstractTCToolkitObject implements Internal
     this.eventualConcurrentLock = ToolkitLockingApi
         .createConcurrentTransactionLock("servermap-static-eventual-concurrent-lock", platformService);
     this.debugExpiration = new TerracottaProperties(platformService).getBoolean("servermap.expiration.debug", false);
+    this.maxLocksPerBulkTxn = Math.max(1, new TerracottaProperties(platformService)
+        .getInteger(TCPropertiesConsts.TOOLKIT_BULKOPS_MAX_LOCKS_PER_TXN, BULK_TXN_MAX_LOCKS));
     String consistencyStr = (String) InternalCacheConfigurationType.CONSISTENCY.getExistingValueOrException(config);
     this.consistency = Consistency.valueOf(consistencyStr);
     ToolkitLockTypeInternal tmpLockType = null;
@@ -155,6 +168,8 @@ public class ServerMap<K, V> extends AbstractTCToolkitObject implements Internal
     this.timeSource = new SystemTimeSource();
     this.compressionEnabled = (Boolean) InternalCacheConfigurationType.COMPRESSION_ENABLED
         .getExistingValueOrException(config);
+    this.compressionCodec = compressionEnabled ? CompressionCodecs
+        .forName((String) InternalCacheConfigurationType.COMPRESSION_CODEC.getValueIfExistsOrDefault(config)) : null;
     this.copyOnReadEnabled = (Boolean) InternalCacheConfigurationType.COPY_ON_READ_ENABLED
         .getExistingValueOrException(config);
     this.metaDataCallback = new ToolkitCacheMetaDataCallback() {
@@ -192,6 +207,11 @@ public class ServerMap<K, V> extends AbstractTCToolkitObject implements Internal
     this.tcObjectServerMap = new ExplicitLockingTCObjectServerMapImpl((TCObjectServerMap) t, platformService);
   }
 
+  @Override
+  public void setCompressionCodec(CompressionCodec codec) {
+    this.compressionCodec = compressionEnabled ? codec : null;
+  }
+
   @Override
   public void setLockStrategy(LOCK_STRATEGY strategy) {
     switch (strategy) {
@@ -633,7 +653,7 @@ public class ServerMap<K, V> extends AbstractTCToolkitObject implements Internal
     params.createTime(createTimeInSecs).deserialized(value).lastAccessedTime(createTimeInSecs);
     params.setCustomTTI(customMaxTTISeconds).setCustomTTL(customMaxTTLSeconds);
 
-    params.serialized(serStrategy.serialize(value, compressionEnabled));
+    params.serialized(serStrategy.serialize(value, compressionCodec));
     return params;
   }
 
@@ -1073,6 +1093,156 @@ public class ServerMap<K, V> extends AbstractTCToolkitObject implements Internal
     internalRemoveNoReturn(key, version);
   }
 
+  @Override
+  public void putAllNoReturn(Map<? extends K, ? extends V> entries, int createTimeInSecs, int customMaxTTISeconds,
+                             int customMaxTTLSeconds) {
+    if (entries.isEmpty()) { return; }
+    for (V value : entries.values()) {
+      assertNotNull(value);
+    }
+    throttleIfNecessary();
+
+    if (isEventual()) {
+      eventualConcurrentLock.lock();
+      try {
+        for (Entry<? extends K, ? extends V> e : entries.entrySet()) {
+          MetaData metaData = createMetaDataAndSetCommand(e.getKey(), e.getValue(), SearchCommand.PUT);
+          doLogicalPut(e.getKey(), e.getValue(), createTimeInSecs, customMaxTTISeconds, customMaxTTLSeconds,
+                       MutateType.UNLOCKED, null, metaData);
+        }
+      } finally {
+        eventualConcurrentLock.unlock();
+      }
+    } else if (getEffectiveLockType() == ToolkitLockTypeInternal.CONCURRENT) {
+      // concurrent transactions can't be nested, so there is no way to hold several key locks at once
+      for (Entry<? extends K, ? extends V> e : entries.entrySet()) {
+        putNoReturn(e.getKey(), e.getValue(), createTimeInSecs, customMaxTTISeconds, customMaxTTLSeconds);
+      }
+    } else {
+      for (Map<Object, Collection<Object>> batch : groupByLock(entries.keySet())) {
+        final List<Object> locked = beginLocks(batch.keySet());
+        try {
+          for (Entry<Object, Collection<Object>> lockAndKeys : batch.entrySet()) {
+            for (Object key : lockAndKeys.getValue()) {
+              V value = entries.get(key);
+              MetaData metaData = createMetaDataAndSetCommand((K) key, value, SearchCommand.PUT);
+              doLogicalPutLocked(lockAndKeys.getKey(), (K) key, value, createTimeInSecs, customMaxTTISeconds,
+                                 customMaxTTLSeconds, metaData);
+            }
+          }
+        } finally {
+          commitLocks(locked);
+        }
+      }
+    }
+  }
+
+  @Override
+  public void removeAllNoReturn(Collection<?> keys) {
+    List<Object> literalKeys = new ArrayList<Object>(keys.size());
+    for (Object key : keys) {
+      // non literal keys can't be in the map, same as removeNoReturn
+      if (LiteralValues.isLiteralInstance(key)) {
+        literalKeys.add(key);
+      }
+    }
+    if (literalKeys.isEmpty()) { return; }
+
+    if (isEventual()) {
+      eventualConcurrentLock.lock();
+      try {
+        for (Object key : literalKeys) {
+          internalLogicalRemove(key, DEFAULT_VERSION, MutateType.UNLOCKED, null);
+        }
+      } finally {
+        eventualConcurrentLock.unlock();
+      }
+    } else if (getEffectiveLockType() == ToolkitLockTypeInternal.CONCURRENT) {
+      for (Object key : literalKeys) {
+        removeNoReturn(key);
+      }
+    } else {
+      for (Map<Object, Collection<Object>> batch : groupByLock(literalKeys)) {
+        final List<Object> locked = beginLocks(batch.keySet());
+        try {
+          for (Entry<Object, Collection<Object>> lockAndKeys : batch.entrySet()) {
+            for (Object key : lockAndKeys.getValue()) {
+              doLogicalRemoveLocked(key, lockAndKeys.getKey());
+            }
+          }
+        } finally {
+          commitLocks(locked);
+        }
+      }
+    }
+  }
+
+  /**
+   * Splits the keys into batches of at most {@link #maxLocksPerBulkTxn} distinct lock ids. Each batch maps its lock ids,
+   * in {@link #LOCK_ID_ORDER}, to the keys guarded by them.
+   */
+  private List<Map<Object, Collection<Object>>> groupByLock(Collection<?> keys) {
+    SortedMap<Object, Collection<Object>> byLock = new TreeMap<Object, Collection<Object>>(LOCK_ID_ORDER);
+    for (Object key : keys) {
+      Object lockID = generateLockIdForKey(key);
+      Collection<Object> guarded = byLock.get(lockID);
+      if (guarded == null) {
+        guarded = new ArrayList<Object>(1);
+        byLock.put(lockID, guarded);
+      }
+      guarded.add(key);
+    }
+
+    List<Map<Object, Collection<Object>>> batches = new ArrayList<Map<Object, Collection<Object>>>();
+    Map<Object, Collection<Object>> batch = null;
+    for (Entry<Object, Collection<Object>> e : byLock.entrySet()) {
+      if (batch == null || batch.size() == maxLocksPerBulkTxn) {
+        batch = new LinkedHashMap<Object, Collection<Object>>();
+        batches.add(batch);
+      }
+      batch.put(e.getKey(), e.getValue());
+    }
+    return batches;
+  }
+
+  /**
+   * Takes all the given locks, in iteration order, so that everything done while holding them ends up in the single
+   * transaction of the innermost lock. Every client takes the locks of a batch in the same order, which is what keeps
+   * concurrent bulk operations from deadlocking each other. If a lock can't be taken the ones already held are
+   * released before the exception is thrown.
+   */
+  private List<Object> beginLocks(Collection<Object> lockIDs) {
+    List<Object> locked = new ArrayList<Object>(lockIDs.size());
+    boolean success = false;
+    try {
+      for (Object lockID : lockIDs) {
+        beginLock(lockID, getEffectiveLockType());
+        locked.add(lockID);
+      }
+      success = true;
+      return locked;
+    } finally {
+      if (!success) {
+        commitLocks(locked);
+      }
+    }
+  }
+
+  private void commitLocks(List<Object> locked) {
+    RuntimeException failure = null;
+    for (int i = locked.size() - 1; i >= 0; i--) {
+      try {
+        commitLock(locked.get(i), getEffectiveLockType());
+      } catch (RuntimeException e) {
+        // keep going, the remaining locks must still be released
+        if (failure == null) {
+          failure = e;
+        }
+      }
+    }
+    if (failure != null) { throw failure; }
+  }
+
   private void internalRemoveNoReturn(final Object key, final long version) {
     if (!LiteralValues.isLiteralInstance(key)) {
       // Returning null as we cannot key passed needs to be portable else if the key is not Literal
@@ -1762,6 +1932,19 @@ public class ServerMap<K, V> extends AbstractTCToolkitObject implements Internal
     this.attrExtractor = extractor;
   }
 
+  /**
+   * Total order over the lock ids handed out by the lock strategies, which are either all Longs or all Strings.
+   */
+  private static final Comparator<Object> LOCK_ID_ORDER = new Comparator<Object>() {
+    @Override
+    public int compare(Object o1, Object o2) {
+      if (o1 instanceof Long) {
+        return o2 instanceof Long ? ((Long) o1).compareTo((Long) o2) : -1;
+      }
+      return o2 instanceof Long ? 1 : ((String) o1).compareTo((String) o2);
+    }
+  };
+
   private class LongLockStrategy implements LockStrategy {
 
     private final long highBits;
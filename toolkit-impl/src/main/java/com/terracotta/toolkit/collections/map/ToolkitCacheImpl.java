@@ -32,6 +32,8 @@ import org.terracotta.toolkit.search.attribute.ToolkitAttributeExtractor;
 import com.tc.object.ObjectID;
 import com.tc.object.TCObjectServerMap;
 import com.tc.platform.PlatformService;
+import com.tc.util.concurrent.CompletedFuture;
+import com.tc.util.concurrent.TransformedFuture;
 import com.terracotta.toolkit.bulkload.BulkLoadToolkitCache;
 import com.terracotta.toolkit.factory.ToolkitObjectFactory;
 import com.terracotta.toolkit.object.AbstractDestroyableToolkitObject;
@@ -45,6 +47,7 @@ import java.util.Iterator;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
@@ -424,6 +427,41 @@ public class ToolkitCacheImpl<K, V> extends AbstractDestroyableToolkitObject imp
     }
   }
 
+  /**
+   * Sends the lookup without waiting for the response. Only the server map reads asynchronously, while bulk loading or
+   * rejoining the value is read before returning.
+   */
+  public Future<V> getAsync(Object key) {
+    readLock();
+    try {
+      if (activeDelegate == aggregateServerMap) { return aggregateServerMap.getAsync(key); }
+      return new CompletedFuture<V>(activeDelegate.get(key));
+    } finally {
+      readUnlock();
+    }
+  }
+
+  /**
+   * Async version of {@link #getAll(Collection)}, see {@link #getAsync(Object)}
+   */
+  public Future<Map<K, V>> getAllAsync(Collection<? extends K> keys) {
+    readLock();
+    try {
+      if (activeDelegate != aggregateServerMap) {
+        return new CompletedFuture<Map<K, V>>(new SubTypeWrapperMap<K, V>(activeDelegate.getAll(keys), status,
+                                                                          this.name, ToolkitObjectType.CACHE));
+      }
+      return new TransformedFuture<Map<K, V>, Map<K, V>>(aggregateServerMap.getAllAsync(keys)) {
+        @Override
+        protected Map<K, V> transform(Map<K, V> values) {
+          return new SubTypeWrapperMap<K, V>(values, status, name, ToolkitObjectType.CACHE);
+        }
+      };
+    } finally {
+      readUnlock();
+    }
+  }
+
   @Override
   public Map<K, V> getAllQuiet(Collection<K> keys) {
     readLock();
@@ -24,6 +24,7 @@ import org.terracotta.toolkit.store.ToolkitConfigFields.Consistency;
 import com.tc.properties.TCPropertiesConsts;
 import com.tc.properties.TCPropertiesImpl;
 import com.terracotta.toolkit.config.UnclusteredConfiguration;
+import com.terracotta.toolkit.object.serialization.CompressionCodecs;
 
 import java.io.Serializable;
 import java.util.Collection;
@@ -34,6 +35,8 @@ import java.util.Iterator;
 import java.util.Map;
 import java.util.Set;
 
+import static com.terracotta.toolkit.object.serialization.CompressionCodecs.COMPRESSION_CODEC_FIELD_NAME;
+import static com.terracotta.toolkit.object.serialization.CompressionCodecs.DEFAULT_COMPRESSION_CODEC;
 import static org.terracotta.toolkit.config.SupportedConfigurationType.BOOLEAN;
 import static org.terracotta.toolkit.config.SupportedConfigurationType.INTEGER;
 import static org.terracotta.toolkit.config.SupportedConfigurationType.LONG;
@@ -464,6 +467,32 @@ public enum InternalCacheConfigurationType {
       return objectType == ToolkitObjectType.STORE || objectType == ToolkitObjectType.CACHE;
     }
   },
+  COMPRESSION_CODEC(STRING, COMPRESSION_CODEC_FIELD_NAME, DEFAULT_COMPRESSION_CODEC) {
+    @Override
+    public boolean isClusterWideConfig() {
+      return true;
+    }
+
+    @Override
+    public boolean isDynamicClusterWideChangeAllowed() {
+      return false;
+    }
+
+    @Override
+    public boolean isDynamicLocalChangeAllowed() {
+      return false;
+    }
+
+    @Override
+    public void validateLegalValue(Object value) {
+      CompressionCodecs.forName(notBlank(string(notNull(value))));
+    }
+
+    @Override
+    public boolean isSupportedBy(final ToolkitObjectType objectType) {
+      return objectType == ToolkitObjectType.STORE || objectType == ToolkitObjectType.CACHE;
+    }
+  },
   COPY_ON_READ_ENABLED(BOOLEAN, COPY_ON_READ_ENABLED_FIELD_NAME, DEFAULT_COPY_ON_READ_ENABLED) {
     @Override
     public boolean isClusterWideConfig() {
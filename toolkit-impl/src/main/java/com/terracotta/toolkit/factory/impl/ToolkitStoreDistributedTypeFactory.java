@@ -25,6 +25,7 @@ import org.terracotta.toolkit.store.ToolkitConfigFields;
 import com.google.common.base.Preconditions;
 import com.terracotta.toolkit.collections.servermap.api.ServerMapLocalStoreFactory;
 import com.terracotta.toolkit.config.cache.InternalCacheConfigurationType;
+import com.terracotta.toolkit.object.serialization.CompressionCodecs;
 import com.terracotta.toolkit.search.SearchFactory;
 
 import java.io.Serializable;
@@ -71,6 +72,7 @@ public class ToolkitStoreDistributedTypeFactory<K extends Serializable, V extend
     builder.maxBytesLocalOffheap(ToolkitConfigFields.DEFAULT_MAX_BYTES_LOCAL_OFFHEAP);
     builder.maxCountLocalHeap(ToolkitConfigFields.DEFAULT_MAX_COUNT_LOCAL_HEAP);
     builder.compressionEnabled(ToolkitConfigFields.DEFAULT_COMPRESSION_ENABLED);
+    builder.configField(CompressionCodecs.COMPRESSION_CODEC_FIELD_NAME, CompressionCodecs.DEFAULT_COMPRESSION_CODEC);
     builder.copyOnReadEnabled(ToolkitConfigFields.DEFAULT_COPY_ON_READ_ENABLED);
     builder.pinnedInLocalMemory(ToolkitConfigFields.DEFAULT_PINNED_IN_LOCAL_MEMORY);
     builder.configField(ConfigFieldsInternal.LOCAL_STORE_MANAGER_NAME_NAME,
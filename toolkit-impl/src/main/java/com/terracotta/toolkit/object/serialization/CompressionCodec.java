@@ -0,0 +1,51 @@
+/* 
+ * The contents of this file are subject to the Terracotta Public License Version
+ * 2.0 (the "License"); You may not use this file except in compliance with the
+ * License. You may obtain a copy of the License at 
+ *
+ *      http://terracotta.org/legal/terracotta-public-license.
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ * the specific language governing rights and limitations under the License.
+ *
+ * The Covered Software is Terracotta Platform.
+ *
+ * The Initial Developer of the Covered Software is 
+ *      Terracotta, Inc., a Software AG company
+ */
+package com.terracotta.toolkit.object.serialization;
+
+import java.io.IOException;
+
+/**
+ * Block compressor used to shrink serialized cache values.
+ * <p>
+ * Every compressed payload records the id of the codec that produced it, so values written with different codecs can
+ * live side by side in the same cache and are always read back with the right one. Gzip is the exception, its payloads
+ * are bare gzip streams that versions from before codecs were pluggable can read. Values written with any other codec
+ * can only be read by clients that know it. Implementations must be thread safe
+ * and are registered with {@link CompressionCodecs}, either explicitly or through a
+ * {@code META-INF/services/com.terracotta.toolkit.object.serialization.CompressionCodec} entry.
+ */
+public interface CompressionCodec {
+
+  /**
+   * Name used to select this codec in a cache or store configuration.
+   */
+  String getName();
+
+  /**
+   * Identifier written into every payload produced by this codec. Must be unique and in the range [1, 127].
+   */
+  byte getId();
+
+  byte[] compress(byte[] data, int offset, int length) throws IOException;
+
+  /**
+   * @param uncompressedLength the exact length of the data that was originally compressed
+   * @throws IOException if the data is not a valid payload for this codec
+   */
+  byte[] decompress(byte[] data, int offset, int length, int uncompressedLength) throws IOException;
+
+}
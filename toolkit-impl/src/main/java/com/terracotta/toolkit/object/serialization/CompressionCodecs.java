@@ -0,0 +1,116 @@
+/* 
+ * The contents of this file are subject to the Terracotta Public License Version
+ * 2.0 (the "License"); You may not use this file except in compliance with the
+ * License. You may obtain a copy of the License at 
+ *
+ *      http://terracotta.org/legal/terracotta-public-license.
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ * the specific language governing rights and limitations under the License.
+ *
+ * The Covered Software is Terracotta Platform.
+ *
+ * The Initial Developer of the Covered Software is 
+ *      Terracotta, Inc., a Software AG company
+ */
+package com.terracotta.toolkit.object.serialization;
+
+import com.tc.logging.TCLogger;
+import com.tc.logging.TCLogging;
+
+import java.util.Iterator;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Registry of the {@link CompressionCodec}s known to this node, by name for writers and by payload id for readers.
+ * <p>
+ * gzip and lz4 are always available, further codecs are picked up from the class path through {@link ServiceLoader} or
+ * can be registered explicitly. A node can read any value as long as the codec that wrote it is registered locally.
+ */
+public final class CompressionCodecs {
+
+  private static final TCLogger                                LOGGER                       = TCLogging
+                                                                                                .getLogger(CompressionCodecs.class);
+
+  /**
+   * Cache and store configuration field selecting the codec used when compression is enabled.
+   */
+  public static final String                                   COMPRESSION_CODEC_FIELD_NAME = "compressionCodec";
+  public static final String                                   DEFAULT_COMPRESSION_CODEC    = GzipCompressionCodec.NAME;
+
+  public static final CompressionCodec                         GZIP                         = new GzipCompressionCodec();
+  public static final CompressionCodec                         LZ4                          = new LZ4BlockCompressionCodec();
+
+  private static final ConcurrentMap<String, CompressionCodec> BY_NAME                      = new ConcurrentHashMap<String, CompressionCodec>();
+  private static final AtomicReferenceArray<CompressionCodec>  BY_ID                        = new AtomicReferenceArray<CompressionCodec>(128);
+
+  static {
+    register(GZIP);
+    register(LZ4);
+    loadServices();
+  }
+
+  private CompressionCodecs() {
+    // no instances
+  }
+
+  /**
+   * @throws IllegalArgumentException if the name or the id of the codec is already taken by another codec
+   */
+  public static synchronized void register(CompressionCodec codec) {
+    final String name = codec.getName();
+    final byte id = codec.getId();
+    if (name == null || name.trim().length() == 0) { throw new IllegalArgumentException("Codec name cannot be blank: "
+                                                                                       + codec); }
+    if (id <= 0) { throw new IllegalArgumentException("Codec id must be in the range [1, 127]: " + codec + " has " + id); }
+
+    CompressionCodec existing = BY_NAME.get(name);
+    if (existing == null) {
+      existing = BY_ID.get(id);
+    }
+    if (existing != null) {
+      if (existing.getClass() == codec.getClass()) { return; }
+      throw new IllegalArgumentException("Codec " + codec + " (id " + id + ") clashes with registered codec "
+                                         + existing + " (id " + existing.getId() + ")");
+    }
+    BY_ID.set(id, codec);
+    BY_NAME.put(name, codec);
+  }
+
+  /**
+   * @throws IllegalArgumentException if no codec is registered under that name
+   */
+  public static CompressionCodec forName(String name) {
+    CompressionCodec codec = BY_NAME.get(name);
+    if (codec == null) { throw new IllegalArgumentException("Unknown compression codec '" + name + "', registered: "
+                                                            + BY_NAME.keySet()); }
+    return codec;
+  }
+
+  /**
+   * @return the codec that writes payloads with this id, or null if there is none on this node
+   */
+  public static CompressionCodec forId(byte id) {
+    return id <= 0 ? null : BY_ID.get(id);
+  }
+
+  private static void loadServices() {
+    Iterator<CompressionCodec> codecs = ServiceLoader.load(CompressionCodec.class, CompressionCodecs.class
+                                                               .getClassLoader()).iterator();
+    while (true) {
+      try {
+        if (!codecs.hasNext()) { return; }
+        register(codecs.next());
+      } catch (ServiceConfigurationError e) {
+        LOGGER.warn("Failed to load compression codec", e);
+      } catch (IllegalArgumentException e) {
+        LOGGER.warn("Ignoring compression codec", e);
+      }
+    }
+  }
+}
@@ -0,0 +1,94 @@
+/* 
+ * The contents of this file are subject to the Terracotta Public License Version
+ * 2.0 (the "License"); You may not use this file except in compliance with the
+ * License. You may obtain a copy of the License at 
+ *
+ *      http://terracotta.org/legal/terracotta-public-license.
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ * the specific language governing rights and limitations under the License.
+ *
+ * The Covered Software is Terracotta Platform.
+ *
+ * The Initial Developer of the Covered Software is 
+ *      Terracotta, Inc., a Software AG company
+ */
+package com.terracotta.toolkit.object.serialization;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * The codec that was used for all compressed values before codecs became pluggable. Slow, but compresses best.
+ * <p>
+ * Older versions read every value of a compressed cache as a bare gzip stream, so values are written as one, see
+ * {@link #gzip(byte[], int, int, int)}, rather than framed with the codec id.
+ */
+class GzipCompressionCodec implements CompressionCodec {
+
+  static final String NAME = "gzip";
+  static final byte   ID   = 1;
+
+  @Override
+  public String getName() {
+    return NAME;
+  }
+
+  @Override
+  public byte getId() {
+    return ID;
+  }
+
+  @Override
+  public byte[] compress(byte[] data, int offset, int length) throws IOException {
+    return gzip(data, offset, length, Deflater.DEFAULT_COMPRESSION);
+  }
+
+  /**
+   * A complete gzip stream of the data, compressed at the given {@link Deflater} level. At
+   * {@link Deflater#NO_COMPRESSION} the data is only copied into stored blocks, which any gzip reader still takes.
+   */
+  static byte[] gzip(byte[] data, int offset, int length, final int level) throws IOException {
+    ByteArrayOutputStream baos = new ByteArrayOutputStream(Math.max(32, length / 2));
+    GZIPOutputStream out = new GZIPOutputStream(baos) {
+      {
+        def.setLevel(level);
+      }
+    };
+    try {
+      out.write(data, offset, length);
+    } finally {
+      out.close();
+    }
+    return baos.toByteArray();
+  }
+
+  @Override
+  public byte[] decompress(byte[] data, int offset, int length, int uncompressedLength) throws IOException {
+    byte[] rv = new byte[uncompressedLength];
+    InputStream in = new GZIPInputStream(new ByteArrayInputStream(data, offset, length));
+    try {
+      int read = 0;
+      while (read < uncompressedLength) {
+        int n = in.read(rv, read, uncompressedLength - read);
+        if (n < 0) { throw new IOException("Truncated gzip payload, expected " + uncompressedLength + " bytes but got "
+                                           + read); }
+        read += n;
+      }
+    } finally {
+      in.close();
+    }
+    return rv;
+  }
+
+  @Override
+  public String toString() {
+    return NAME;
+  }
+}
@@ -0,0 +1,239 @@
+/* 
+ * The contents of this file are subject to the Terracotta Public License Version
+ * 2.0 (the "License"); You may not use this file except in compliance with the
+ * License. You may obtain a copy of the License at 
+ *
+ *      http://terracotta.org/legal/terracotta-public-license.
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ * the specific language governing rights and limitations under the License.
+ *
+ * The Covered Software is Terracotta Platform.
+ *
+ * The Initial Developer of the Covered Software is 
+ *      Terracotta, Inc., a Software AG company
+ */
+package com.terracotta.toolkit.object.serialization;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Pure java implementation of the LZ4 block format. Compresses a lot less than gzip but costs only a small fraction of
+ * the CPU, which makes it usable on the put path of busy caches.
+ * <p>
+ * The compressor is the single pass greedy matcher from the reference implementation: a hash table of the positions of
+ * 4 byte sequences, no match chains, and a skip that speeds up over data that does not compress.
+ */
+class LZ4BlockCompressionCodec implements CompressionCodec {
+
+  static final String              NAME          = "lz4";
+  static final byte                ID            = 2;
+
+  private static final int         MIN_MATCH     = 4;
+  private static final int         LAST_LITERALS = 5;
+  private static final int         MF_LIMIT      = 12;
+  private static final int         MAX_DISTANCE  = 0xFFFF;
+  private static final int         HASH_LOG      = 12;
+  private static final int         SKIP_STRENGTH = 6;
+  private static final int         RUN_MASK      = 0x0F;
+  private static final int         ML_BITS       = 4;
+
+  private final ThreadLocal<int[]> hashTables    = new ThreadLocal<int[]>() {
+    @Override
+    protected int[] initialValue() {
+      return new int[1 << HASH_LOG];
+    }
+  };
+
+  @Override
+  public String getName() {
+    return NAME;
+  }
+
+  @Override
+  public byte getId() {
+    return ID;
+  }
+
+  static int maxCompressedLength(int length) {
+    return length + length / 255 + 16;
+  }
+
+  @Override
+  public byte[] compress(byte[] src, int offset, int length) {
+    byte[] dest = new byte[maxCompressedLength(length)];
+    final int end = offset + length;
+    int anchor = offset;
+    int dOff = 0;
+
+    if (length >= MF_LIMIT + 1) {
+      final int[] table = hashTables.get();
+      Arrays.fill(table, offset);
+      final int mfLimit = end - MF_LIMIT;
+      final int matchLimit = end - LAST_LITERALS;
+
+      int sOff = offset + 1;
+      int misses = 0;
+      while (sOff < mfLimit) {
+        int sequence = readInt(src, sOff);
+        int h = hash(sequence);
+        int ref = table[h];
+        table[h] = sOff;
+
+        if (ref >= sOff || sOff - ref > MAX_DISTANCE || readInt(src, ref) != sequence) {
+          sOff += 1 + (misses++ >>> SKIP_STRENGTH);
+          continue;
+        }
+        misses = 0;
+
+        // extend the match backwards over literals that have not been emitted yet
+        while (sOff > anchor && ref > offset && src[sOff - 1] == src[ref - 1]) {
+          sOff--;
+          ref--;
+        }
+
+        int matchLength = MIN_MATCH;
+        while (sOff + matchLength < matchLimit && src[ref + matchLength] == src[sOff + matchLength]) {
+          matchLength++;
+        }
+
+        dOff = writeSequence(src, anchor, sOff - anchor, sOff - ref, matchLength, dest, dOff);
+        sOff += matchLength;
+        anchor = sOff;
+        if (sOff < mfLimit) {
+          table[hash(readInt(src, sOff - 2))] = sOff - 2;
+        }
+      }
+    }
+
+    dOff = writeLiterals(src, anchor, end - anchor, dest, dOff);
+    return Arrays.copyOf(dest, dOff);
+  }
+
+  @Override
+  public byte[] decompress(byte[] src, int offset, int length, int uncompressedLength) throws IOException {
+    final byte[] dest = new byte[uncompressedLength];
+    final int sEnd = offset + length;
+    int sOff = offset;
+    int dOff = 0;
+
+    try {
+      while (true) {
+        if (sOff >= sEnd) { throw malformed(sOff); }
+        final int token = src[sOff++] & 0xFF;
+
+        int literalLength = token >>> ML_BITS;
+        if (literalLength == RUN_MASK) {
+          int b;
+          do {
+            b = src[sOff++] & 0xFF;
+            literalLength += b;
+          } while (b == 0xFF);
+        }
+        if (sOff + literalLength > sEnd || dOff + literalLength > uncompressedLength) { throw malformed(sOff); }
+        System.arraycopy(src, sOff, dest, dOff, literalLength);
+        sOff += literalLength;
+        dOff += literalLength;
+
+        if (sOff == sEnd) {
+          break;
+        }
+
+        final int distance = (src[sOff++] & 0xFF) | ((src[sOff++] & 0xFF) << 8);
+        int matchLength = token & RUN_MASK;
+        if (matchLength == RUN_MASK) {
+          int b;
+          do {
+            b = src[sOff++] & 0xFF;
+            matchLength += b;
+          } while (b == 0xFF);
+        }
+        matchLength += MIN_MATCH;
+
+        int ref = dOff - distance;
+        if (distance == 0 || ref < 0 || dOff + matchLength > uncompressedLength) { throw malformed(sOff); }
+        if (distance >= matchLength) {
+          System.arraycopy(dest, ref, dest, dOff, matchLength);
+          dOff += matchLength;
+        } else {
+          // overlapping copy, the match repeats the bytes it is copying
+          for (int i = 0; i < matchLength; i++) {
+            dest[dOff++] = dest[ref++];
+          }
+        }
+      }
+    } catch (ArrayIndexOutOfBoundsException e) {
+      throw malformed(sOff);
+    }
+
+    if (dOff != uncompressedLength) { throw new IOException("Malformed lz4 payload, decompressed to " + dOff
+                                                            + " bytes instead of " + uncompressedLength); }
+    return dest;
+  }
+
+  private static int writeSequence(byte[] src, int literalOffset, int literalLength, int distance, int matchLength,
+                                   byte[] dest, int dOff) {
+    final int tokenOff = dOff++;
+    int token;
+    if (literalLength >= RUN_MASK) {
+      token = RUN_MASK << ML_BITS;
+      dOff = writeLength(literalLength - RUN_MASK, dest, dOff);
+    } else {
+      token = literalLength << ML_BITS;
+    }
+    System.arraycopy(src, literalOffset, dest, dOff, literalLength);
+    dOff += literalLength;
+
+    dest[dOff++] = (byte) distance;
+    dest[dOff++] = (byte) (distance >>> 8);
+
+    int ml = matchLength - MIN_MATCH;
+    if (ml >= RUN_MASK) {
+      token |= RUN_MASK;
+      dOff = writeLength(ml - RUN_MASK, dest, dOff);
+    } else {
+      token |= ml;
+    }
+    dest[tokenOff] = (byte) token;
+    return dOff;
+  }
+
+  private static int writeLiterals(byte[] src, int literalOffset, int literalLength, byte[] dest, int dOff) {
+    if (literalLength >= RUN_MASK) {
+      dest[dOff++] = (byte) (RUN_MASK << ML_BITS);
+      dOff = writeLength(literalLength - RUN_MASK, dest, dOff);
+    } else {
+      dest[dOff++] = (byte) (literalLength << ML_BITS);
+    }
+    System.arraycopy(src, literalOffset, dest, dOff, literalLength);
+    return dOff + literalLength;
+  }
+
+  private static int writeLength(int length, byte[] dest, int dOff) {
+    while (length >= 0xFF) {
+      dest[dOff++] = (byte) 0xFF;
+      length -= 0xFF;
+    }
+    dest[dOff++] = (byte) length;
+    return dOff;
+  }
+
+  private static int readInt(byte[] buf, int i) {
+    return (buf[i] & 0xFF) | ((buf[i + 1] & 0xFF) << 8) | ((buf[i + 2] & 0xFF) << 16) | ((buf[i + 3] & 0xFF) << 24);
+  }
+
+  private static int hash(int sequence) {
+    return (sequence * -1640531535) >>> ((MIN_MATCH * 8) - HASH_LOG);
+  }
+
+  private static IOException malformed(int position) {
+    return new IOException("Malformed lz4 payload at offset " + position);
+  }
+
+  @Override
+  public String toString() {
+    return NAME;
+  }
+}
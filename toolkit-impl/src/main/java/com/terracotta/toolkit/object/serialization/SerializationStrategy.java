@@ -32,7 +32,19 @@ public interface SerializationStrategy {
   public byte[] serialize(Object serializable, boolean compress) throws NotSerializableRuntimeException;
 
   /**
-   * Deserialize the serialized value returning a new representation.
+   * Serialize the given value into byte array, compressing it with the given codec if it is large enough to be worth
+   * it.
+   * 
+   * @param value value to serialize
+   * @param codec codec to compress with, or null to store the value uncompressed
+   * @return serialized form
+   * @throws NotSerializableRuntimeException if serialization fails
+   */
+  public byte[] serialize(Object serializable, CompressionCodec codec) throws NotSerializableRuntimeException;
+
+  /**
+   * Deserialize the serialized value returning a new representation. Serialized forms record how they were compressed,
+   * so {@code compress} is only a hint and values written with any registered codec can be read.
    * 
    * @param data serialized form
    * @return a new deserialized value
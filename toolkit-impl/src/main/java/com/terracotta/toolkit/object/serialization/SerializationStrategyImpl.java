@@ -19,6 +19,7 @@ package com.terracotta.toolkit.object.serialization;
 import org.terracotta.toolkit.object.serialization.NotSerializableRuntimeException;
 
 import com.tc.platform.PlatformService;
+import com.tc.properties.TCPropertiesConsts;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
@@ -30,8 +31,8 @@ import java.io.ObjectStreamClass;
 import java.io.OutputStream;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.zip.Deflater;
 import java.util.zip.GZIPInputStream;
-import java.util.zip.GZIPOutputStream;
 
 public class SerializationStrategyImpl implements SerializationStrategy {
 
@@ -39,25 +40,59 @@ public class SerializationStrategyImpl implements SerializationStrategy {
    * String keys which are really serialized objects will have this as their first char This particular value was chosen
    * since it is an invalid character in UTF-16 (http://unicode.org/faq/utf_bom.html#utf16-7)
    */
-  private static final char              MARKER   = 0xFFFE;
+  private static final char              MARKER                       = 0xFFFE;
 
-  private static final byte              HIGH_BIT = (byte) 0x80;
+  /**
+   * First byte of values compressed with a {@link CompressionCodec} other than gzip. It is followed by the codec id, the
+   * encoded length of the uncompressed value and the compressed bytes. Uncompressed values always start with the java
+   * serialization stream magic (0xACED) and gzipped values with the gzip magic (0x1F8B), so neither can be mistaken for
+   * a codec payload.
+   */
+  static final byte                      CODEC_MARKER                 = (byte) 0xC0;
+
+  static final int                       DEFAULT_COMPRESSION_MIN_SIZE = 256;
+
+  private static final byte              GZIP_MAGIC_0                 = (byte) 0x1F;
+  private static final byte              GZIP_MAGIC_1                 = (byte) 0x8B;
+
+  private static final byte              HIGH_BIT                     = (byte) 0x80;
   private final ObjectStreamClassMapping serializer;
   private final ClassLoader              tccl;
+  private final int                      compressionMinSize;
 
   public SerializationStrategyImpl(PlatformService platformService, SerializerMap serializerMap, ClassLoader loader) {
+    this(platformService, serializerMap, loader, platformService.getTCProperties()
+        .getInt(TCPropertiesConsts.TOOLKIT_SERIALIZATION_COMPRESSION_MIN_SIZE, DEFAULT_COMPRESSION_MIN_SIZE));
+  }
+
+  SerializationStrategyImpl(PlatformService platformService, SerializerMap serializerMap, ClassLoader loader,
+                            int compressionMinSize) {
     this.serializer = new ObjectStreamClassMapping(platformService, serializerMap);
     this.tccl = loader;
+    this.compressionMinSize = compressionMinSize;
   }
 
   @Override
   public Object deserialize(final byte[] data, boolean compression, boolean local) throws IOException,
       ClassNotFoundException {
-    InputStream in = new ByteArrayInputStream(data);
-    if (compression) {
-      in = new GZIPInputStream(in);
+    return getObjectFromStream(uncompressedStream(data), local);
+  }
+
+  private static InputStream uncompressedStream(final byte[] data) throws IOException {
+    if (data.length >= 2) {
+      if (data[0] == CODEC_MARKER) {
+        CompressionCodec codec = CompressionCodecs.forId(data[1]);
+        if (codec == null) { throw new IOException("Value was compressed with unknown codec id " + data[1]); }
+        ByteArrayInputStream header = new ByteArrayInputStream(data, 2, data.length - 2);
+        int uncompressedLength = decodeInt(header);
+        int offset = data.length - header.available();
+        return new ByteArrayInputStream(codec.decompress(data, offset, data.length - offset, uncompressedLength));
+      } else if (data[0] == GZIP_MAGIC_0 && data[1] == GZIP_MAGIC_1) {
+        // gzip codec values, and values written before compression codecs were pluggable
+        return new GZIPInputStream(new ByteArrayInputStream(data));
+      }
     }
-    return getObjectFromStream(in, local);
+    return new ByteArrayInputStream(data);
   }
 
   private Object getObjectFromStream(InputStream in, boolean local) throws IOException,
@@ -74,14 +109,41 @@ public class SerializationStrategyImpl implements SerializationStrategy {
 
   @Override
   public byte[] serialize(final Object value, boolean compression) throws NotSerializableRuntimeException {
+    return serialize(value, compression ? CompressionCodecs.GZIP : null);
+  }
+
+  @Override
+  public byte[] serialize(final Object value, CompressionCodec codec) throws NotSerializableRuntimeException {
+    byte[] data = serializeUncompressed(value);
+    if (codec == null) { return data; }
+    try {
+      if (codec.getId() == GzipCompressionCodec.ID) {
+        // older versions gunzip every value of a compressed cache, so small values are not left plain but only wrapped
+        // in a stored gzip stream, which costs a copy and a checksum instead of a deflate
+        return GzipCompressionCodec.gzip(data, 0, data.length, data.length < compressionMinSize
+            ? Deflater.NO_COMPRESSION : Deflater.DEFAULT_COMPRESSION);
+      }
+      // only this version reads other codecs, it tells plain values from framed ones by their first byte
+      if (data.length < compressionMinSize) { return data; }
+      byte[] compressed = codec.compress(data, 0, data.length);
+      // marker, codec id and at most 5 bytes of length
+      if (compressed.length + 7 >= data.length) { return data; }
+      ByteArrayOutputStream baos = new ByteArrayOutputStream(compressed.length + 7);
+      baos.write(CODEC_MARKER);
+      baos.write(codec.getId());
+      encodeInt(baos, data.length);
+      baos.write(compressed);
+      return baos.toByteArray();
+    } catch (IOException ioe) {
+      throw new NotSerializableRuntimeException(ioe);
+    }
+  }
+
+  private byte[] serializeUncompressed(final Object value) throws NotSerializableRuntimeException {
     final ByteArrayOutputStream baos = new ByteArrayOutputStream();
     SerializerObjectOutputStream oos = null;
     try {
-      OutputStream out = baos;
-      if (compression) {
-        out = new GZIPOutputStream(out);
-      }
-      oos = new SerializerObjectOutputStream(out, serializer);
+      oos = new SerializerObjectOutputStream(baos, serializer);
       oos.writeObject(value);
     } catch (IOException ioe) {
       throw new NotSerializableRuntimeException(ioe);
@@ -100,7 +100,8 @@ public class SerializedMapValue<T> extends TCObjectSelfImpl implements Externali
     if (valueLocal == null) {
       if (cached == null) { throw new AssertionError("Cached value cannot be null when byte array is null"); }
       // TODO: fix not to case Serializable
-      valueLocal = strategy.serialize(cached, compression);
+      // this copy never leaves the node, compressing it would only cost cpu
+      valueLocal = strategy.serialize(cached, false);
     }
     T deserializedValue = (T) strategy.deserialize(valueLocal, compression, local);
     if (deserializedValue instanceof TimestampedValue) {
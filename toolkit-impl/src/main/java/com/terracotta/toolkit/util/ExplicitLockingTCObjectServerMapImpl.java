@@ -36,6 +36,7 @@ import com.tc.platform.PlatformService;
 import java.lang.ref.WeakReference;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Future;
 
 public class ExplicitLockingTCObjectServerMapImpl<L> implements TCObjectServerMap<L> {
 
@@ -355,6 +356,19 @@ public class ExplicitLockingTCObjectServerMapImpl<L> implements TCObjectServerMa
     return delegate.getAllValuesUnlocked(mapIdToKeysMap);
   }
 
+  @Override
+  public Future<Object> getValueUnlockedAsync(TCServerMap map, Object key) throws AbortedOperationException {
+    assertLockAndRejoinState();
+    return delegate.getValueUnlockedAsync(map, key);
+  }
+
+  @Override
+  public Future<Map<Object, Object>> getAllValuesUnlockedAsync(final SetMultimap<ObjectID, Object> mapIdToKeysMap)
+      throws AbortedOperationException {
+    assertLockAndRejoinState();
+    return delegate.getAllValuesUnlockedAsync(mapIdToKeysMap);
+  }
+
   @Override
   public Set keySet(TCServerMap map) throws AbortedOperationException {
     assertLockAndRejoinState();
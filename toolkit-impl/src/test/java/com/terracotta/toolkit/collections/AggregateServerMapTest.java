@@ -25,6 +25,7 @@ import org.apache.log4j.spi.LoggingEvent;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
 import org.terracotta.toolkit.ToolkitObjectType;
 import org.terracotta.toolkit.builder.ToolkitCacheConfigBuilder;
 import org.terracotta.toolkit.cache.ToolkitCacheListener;
@@ -40,9 +41,11 @@ import com.google.common.collect.Maps;
 import com.google.common.collect.SetMultimap;
 import com.tc.object.ObjectID;
 import com.tc.object.TCObjectServerMap;
+import com.tc.object.bytecode.TCServerMap;
 import com.tc.platform.PlatformService;
 import com.tc.properties.TCPropertiesImpl;
 import com.tc.util.concurrent.TaskRunner;
+import com.tc.util.concurrent.Timer;
 import com.terracotta.toolkit.bulkload.BufferedOperation;
 import com.terracotta.toolkit.collections.map.AggregateServerMap;
 import com.terracotta.toolkit.collections.map.InternalToolkitMap;
@@ -59,20 +62,27 @@ import com.terracotta.toolkit.util.ImmediateTimer;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.Callable;
 
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.core.Is.is;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
 import static org.mockito.Matchers.anyMap;
 import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -216,6 +226,132 @@ public class AggregateServerMapTest {
     assertThat(result, is(expectedResult));
   }
 
+  @Test
+  public void testStrongPutAllIsBatchedPerServerMap() throws Exception {
+    final List<ServerMap> serverMapList = mockServerMaps(4);
+    ToolkitObjectStripe[] stripeObjects = createObjectStripes(configuration, serverMapList, 2);
+
+    AggregateServerMap<String, String> asm = new AggregateServerMap<String, String>(ToolkitObjectType.CACHE, mock(SearchFactory.class),
+        mock(DistributedClusteredObjectLookup.class), "foo", stripeObjects, configuration,
+        mock(Callable.class), serverMapLocalStoreFactory, platformService, mock(ToolkitLock.class));
+
+    Map<String, String> all = new HashMap<String, String>();
+    Map<Integer, Map<String, String>> batchedPuts = new HashMap<Integer, Map<String, String>>();
+    for (int i = 0; i < 100; i++) {
+      String key = "key-" + i;
+      all.put(key, "value-" + i);
+      int index = Math.abs(key.hashCode() % 4);
+      Map<String, String> batch = batchedPuts.get(index);
+      if (batch == null) {
+        batch = new HashMap<String, String>();
+        batchedPuts.put(index, batch);
+      }
+      batch.put(key, "value-" + i);
+    }
+
+    // the mocked server maps aren't eventual, so this takes the strong consistency path
+    asm.putAll(all);
+    for (Map.Entry<Integer, Map<String, String>> entry : batchedPuts.entrySet()) {
+      verify(serverMapList.get(entry.getKey())).putAllNoReturn(eq(entry.getValue()), anyInt(),
+                                                              eq(ToolkitConfigFields.NO_MAX_TTI_SECONDS),
+                                                              eq(ToolkitConfigFields.NO_MAX_TTL_SECONDS));
+    }
+    verify(serverMapList.get(0), never()).putNoReturn(anyString(), anyString(), anyInt(), anyInt(), anyInt());
+  }
+
+  @Test
+  public void testRemoveAllIsBatchedPerServerMap() throws Exception {
+    final List<ServerMap> serverMapList = mockServerMaps(4);
+    ToolkitObjectStripe[] stripeObjects = createObjectStripes(configuration, serverMapList, 2);
+
+    AggregateServerMap<String, String> asm = new AggregateServerMap<String, String>(ToolkitObjectType.CACHE, mock(SearchFactory.class),
+        mock(DistributedClusteredObjectLookup.class), "foo", stripeObjects, configuration,
+        mock(Callable.class), serverMapLocalStoreFactory, platformService, mock(ToolkitLock.class));
+
+    Set<String> keys = new HashSet<String>();
+    Map<Integer, Set<String>> batchedRemoves = new HashMap<Integer, Set<String>>();
+    for (int i = 0; i < 100; i++) {
+      String key = "key-" + i;
+      keys.add(key);
+      int index = Math.abs(key.hashCode() % 4);
+      Set<String> batch = batchedRemoves.get(index);
+      if (batch == null) {
+        batch = new HashSet<String>();
+        batchedRemoves.put(index, batch);
+      }
+      batch.add(key);
+    }
+
+    asm.removeAll(keys);
+    for (Map.Entry<Integer, Set<String>> entry : batchedRemoves.entrySet()) {
+      ArgumentCaptor<Collection> removed = ArgumentCaptor.forClass(Collection.class);
+      verify(serverMapList.get(entry.getKey())).removeAllNoReturn(removed.capture());
+      Assert.assertEquals(entry.getValue(), new HashSet<Object>(removed.getValue()));
+    }
+  }
+
+  @Test
+  public void testApproximateSizeDoesNotWaitForTransactions() throws Exception {
+    final List<ServerMap> serverMapList = mockServerMaps(2);
+    ToolkitObjectStripe[] stripeObjects = createObjectStripes(configuration, serverMapList, 1);
+    final TCObjectServerMap tcObjectServerMap = (TCObjectServerMap) serverMapList.get(0).__tc_managed();
+
+    AggregateServerMap<String, String> asm = new AggregateServerMap<String, String>(ToolkitObjectType.CACHE, mock(SearchFactory.class),
+        mock(DistributedClusteredObjectLookup.class), "foo", stripeObjects, configuration,
+        mock(Callable.class), serverMapLocalStoreFactory, platformService, mock(ToolkitLock.class)) {
+      @Override
+      protected TCObjectServerMap getAnyTCObjectServerMap() {
+        return tcObjectServerMap;
+      }
+    };
+
+    when(tcObjectServerMap.getAllSize(any(TCServerMap[].class))).thenReturn(10L);
+    Assert.assertEquals(10, asm.approximateSize());
+
+    // served from the cached count until it gets old, quickSize still asks the server
+    when(tcObjectServerMap.getAllSize(any(TCServerMap[].class))).thenReturn(20L);
+    Assert.assertEquals(10, asm.approximateSize());
+    verify(tcObjectServerMap, times(1)).getAllSize(any(TCServerMap[].class));
+    Assert.assertEquals(20, asm.quickSize());
+    verify(platformService, never()).waitForAllCurrentTransactionsToComplete();
+
+    Assert.assertEquals(20, asm.size());
+    verify(platformService).waitForAllCurrentTransactionsToComplete();
+  }
+
+  @Test
+  public void testApproximateSizeIsSeededInTheBackground() throws Exception {
+    Timer timer = mock(Timer.class);
+    TaskRunner taskRunner = mock(TaskRunner.class);
+    when(taskRunner.newTimer()).thenReturn(new ImmediateTimer());
+    when(taskRunner.newTimer("foo approximate size")).thenReturn(timer);
+    when(platformService.getTaskRunner()).thenReturn(taskRunner);
+
+    final List<ServerMap> serverMapList = mockServerMaps(2);
+    ToolkitObjectStripe[] stripeObjects = createObjectStripes(configuration, serverMapList, 1);
+    final TCObjectServerMap tcObjectServerMap = (TCObjectServerMap) serverMapList.get(0).__tc_managed();
+
+    AggregateServerMap<String, String> asm = new AggregateServerMap<String, String>(ToolkitObjectType.CACHE, mock(SearchFactory.class),
+        mock(DistributedClusteredObjectLookup.class), "foo", stripeObjects, configuration,
+        mock(Callable.class), serverMapLocalStoreFactory, platformService, mock(ToolkitLock.class)) {
+      @Override
+      protected TCObjectServerMap getAnyTCObjectServerMap() {
+        return tcObjectServerMap;
+      }
+    };
+    when(tcObjectServerMap.getAllSize(any(TCServerMap[].class))).thenReturn(10L);
+
+    Assert.assertEquals(-1, asm.approximateSize());
+    Assert.assertEquals(-1, asm.approximateSize());
+    verify(tcObjectServerMap, never()).getAllSize(any(TCServerMap[].class));
+
+    // only one refresh is in flight at a time
+    ArgumentCaptor<Runnable> refresh = ArgumentCaptor.forClass(Runnable.class);
+    verify(timer, times(1)).execute(refresh.capture());
+    refresh.getValue().run();
+    Assert.assertEquals(10, asm.approximateSize());
+  }
+
   private List<ServerMap> mockServerMaps(int number) {
     List<ServerMap> serverMaps = new ArrayList<ServerMap>();
     for (int i = 0; i < number; i++) {
@@ -21,6 +21,7 @@ import static org.hamcrest.CoreMatchers.nullValue;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.collection.IsMapContaining.hasEntry;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyBoolean;
 import static org.mockito.Matchers.anyInt;
@@ -28,7 +29,10 @@ import static org.mockito.Matchers.anyObject;
 import static org.mockito.Matchers.anyString;
 import static org.mockito.Matchers.argThat;
 import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -69,6 +73,7 @@ import com.tc.object.dna.api.LiteralAction;
 import com.tc.object.dna.api.LogicalAction;
 import com.tc.object.dna.api.LogicalChangeID;
 import com.tc.object.dna.api.PhysicalAction;
+import com.tc.object.locks.LockLevel;
 import com.tc.object.metadata.MetaDataDescriptor;
 import com.tc.object.metadata.MetaDataDescriptorImpl;
 import com.tc.object.servermap.localcache.L1ServerMapLocalCacheStore;
@@ -92,7 +97,9 @@ import com.terracottatech.search.SearchMetaData;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
@@ -276,6 +283,86 @@ public class ServerMapTest {
     assertThat(result, hasEntry("f", null));
   }
 
+  @Test
+  public void testBulkRemoveTakesKeyLocksInStableOrder() throws Exception {
+    ServerMap serverMap = getStrongServerMap();
+    List<Object> begun = new ArrayList<Object>();
+    List<Object> committed = new ArrayList<Object>();
+    recordLocks(begun, committed, -1);
+
+    List<String> keys = new ArrayList<String>();
+    for (int i = 0; i < 20; i++) {
+      keys.add("key-" + i);
+    }
+    serverMap.removeAllNoReturn(keys);
+    List<Object> forward = new ArrayList<Object>(begun);
+    assertReleasedInReverse(forward, committed);
+
+    begun.clear();
+    committed.clear();
+    Collections.reverse(keys);
+    serverMap.removeAllNoReturn(keys);
+    assertEquals(forward, begun);
+    assertReleasedInReverse(begun, committed);
+
+    // every lock once, in lock id order whatever the order of the keys
+    assertEquals(forward.size(), new HashSet<Object>(forward).size());
+    List<Long> sorted = new ArrayList<Long>((List) forward);
+    Collections.sort(sorted);
+    assertEquals(sorted, forward);
+    verify(tcObjectServerMap, times(40)).doLogicalRemove(any(TCServerMap.class), any(), any());
+  }
+
+  @Test
+  public void testFailedBulkLockReleasesTheLocksTaken() throws Exception {
+    ServerMap serverMap = getStrongServerMap();
+    List<Object> begun = new ArrayList<Object>();
+    List<Object> committed = new ArrayList<Object>();
+    recordLocks(begun, committed, 3);
+
+    List<String> keys = new ArrayList<String>();
+    for (int i = 0; i < 10; i++) {
+      keys.add("key-" + i);
+    }
+    try {
+      serverMap.removeAllNoReturn(keys);
+      fail();
+    } catch (IllegalStateException e) {
+      // expected
+    }
+    assertEquals(3, begun.size());
+    assertReleasedInReverse(begun, committed);
+    verify(tcObjectServerMap, never()).doLogicalRemove(any(TCServerMap.class), any(), any());
+  }
+
+  /**
+   * Records the lock ids taken and released through the platform, refusing the lock after failAfter were taken.
+   */
+  private void recordLocks(final List<Object> begun, final List<Object> committed, final int failAfter)
+      throws Exception {
+    doAnswer(new Answer<Object>() {
+      @Override
+      public Object answer(final InvocationOnMock invocation) throws Throwable {
+        if (begun.size() == failAfter) { throw new IllegalStateException("lock refused"); }
+        begun.add(invocation.getArguments()[0]);
+        return null;
+      }
+    }).when(platformService).beginLock(any(), any(LockLevel.class));
+    doAnswer(new Answer<Object>() {
+      @Override
+      public Object answer(final InvocationOnMock invocation) throws Throwable {
+        committed.add(invocation.getArguments()[0]);
+        return null;
+      }
+    }).when(platformService).commitLock(any(), any(LockLevel.class));
+  }
+
+  private static void assertReleasedInReverse(List<Object> begun, List<Object> committed) {
+    List<Object> reversed = new ArrayList<Object>(begun);
+    Collections.reverse(reversed);
+    assertEquals(reversed, committed);
+  }
+
   private ServerMap getServerMap() {
     ServerMap serverMap = new ServerMap(configuration, "foo", platformService);
     serverMap.__tc_managed(tcObjectServerMap);
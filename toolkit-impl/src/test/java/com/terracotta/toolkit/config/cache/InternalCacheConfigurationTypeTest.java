@@ -39,4 +39,17 @@ public class InternalCacheConfigurationTypeTest extends TestCase {
 
   }
 
+  @Test
+  public void testCompressionCodec() {
+    InternalCacheConfigurationType.COMPRESSION_CODEC.validateLegalValue("lz4");
+    InternalCacheConfigurationType.COMPRESSION_CODEC.validateLegalValue(InternalCacheConfigurationType.COMPRESSION_CODEC
+        .getDefaultValue());
+    try {
+      InternalCacheConfigurationType.COMPRESSION_CODEC.validateLegalValue("unknown");
+      fail();
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+  }
+
 }
@@ -36,6 +36,7 @@ import java.lang.ref.WeakReference;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Future;
 
 public class MockTCObjectServerMap implements TCObjectServerMap<Object> {
 
@@ -372,6 +373,16 @@ public class MockTCObjectServerMap implements TCObjectServerMap<Object> {
     throw new ImplementMe();
   }
 
+  @Override
+  public Future<Object> getValueUnlockedAsync(TCServerMap serverMap, Object key) {
+    throw new ImplementMe();
+  }
+
+  @Override
+  public Future<Map<Object, Object>> getAllValuesUnlockedAsync(SetMultimap mapIdToKeysMap) {
+    throw new ImplementMe();
+  }
+
   @Override
   public Set keySet(TCServerMap serverMap) {
     throw new ImplementMe();
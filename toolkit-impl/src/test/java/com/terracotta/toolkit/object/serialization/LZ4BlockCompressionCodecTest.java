@@ -0,0 +1,126 @@
+/* 
+ * The contents of this file are subject to the Terracotta Public License Version
+ * 2.0 (the "License"); You may not use this file except in compliance with the
+ * License. You may obtain a copy of the License at 
+ *
+ *      http://terracotta.org/legal/terracotta-public-license.
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ * the specific language governing rights and limitations under the License.
+ *
+ * The Covered Software is Terracotta Platform.
+ *
+ * The Initial Developer of the Covered Software is 
+ *      Terracotta, Inc., a Software AG company
+ */
+package com.terracotta.toolkit.object.serialization;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+
+public class LZ4BlockCompressionCodecTest {
+
+  private final LZ4BlockCompressionCodec codec = new LZ4BlockCompressionCodec();
+
+  @Test
+  public void testEmptyAndTinyInputs() throws IOException {
+    for (int length = 0; length < 32; length++) {
+      byte[] data = new byte[length];
+      Arrays.fill(data, (byte) 'a');
+      assertRoundTrip(data);
+    }
+  }
+
+  @Test
+  public void testLengthsAroundRunBoundaries() throws IOException {
+    Random r = new Random(7);
+    for (int length : new int[] { 14, 15, 16, 269, 270, 271, 524, 525, 526, 65535, 65536, 65537 }) {
+      byte[] literals = new byte[length];
+      r.nextBytes(literals);
+      assertRoundTrip(literals);
+
+      byte[] run = new byte[length];
+      Arrays.fill(run, (byte) 3);
+      assertRoundTrip(run);
+    }
+  }
+
+  @Test
+  public void testCompressesRepetitiveData() throws IOException {
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < 2000; i++) {
+      sb.append("value-").append(i % 37).append(";timestamp=").append(1000000 + i % 37).append('\n');
+    }
+    byte[] data = sb.toString().getBytes("UTF-8");
+    byte[] compressed = assertRoundTrip(data);
+    assertTrue(compressed.length < data.length / 3);
+  }
+
+  @Test
+  public void testIncompressibleDataStaysBounded() throws IOException {
+    byte[] data = new byte[100000];
+    new Random(11).nextBytes(data);
+    byte[] compressed = assertRoundTrip(data);
+    assertTrue(compressed.length <= LZ4BlockCompressionCodec.maxCompressedLength(data.length));
+  }
+
+  @Test
+  public void testMatchesFartherThanWindow() throws IOException {
+    byte[] block = new byte[1000];
+    new Random(3).nextBytes(block);
+    byte[] data = new byte[70000 + block.length];
+    System.arraycopy(block, 0, data, 0, block.length);
+    System.arraycopy(block, 0, data, 70000, block.length);
+    assertRoundTrip(data);
+  }
+
+  @Test
+  public void testCompressesSlice() throws IOException {
+    byte[] data = new byte[5000];
+    for (int i = 0; i < data.length; i++) {
+      data[i] = (byte) (i % 17);
+    }
+    byte[] compressed = codec.compress(data, 100, 4000);
+    assertArrayEquals(Arrays.copyOfRange(data, 100, 4100), codec.decompress(compressed, 0, compressed.length, 4000));
+
+    byte[] padded = new byte[compressed.length + 10];
+    System.arraycopy(compressed, 0, padded, 5, compressed.length);
+    assertArrayEquals(Arrays.copyOfRange(data, 100, 4100), codec.decompress(padded, 5, compressed.length, 4000));
+  }
+
+  @Test
+  public void testRejectsMalformedInput() {
+    byte[] data = new byte[1000];
+    Arrays.fill(data, (byte) 1);
+    byte[] compressed = codec.compress(data, 0, data.length);
+
+    assertMalformed(compressed, compressed.length - 1, data.length);
+    assertMalformed(compressed, compressed.length, data.length - 1);
+    assertMalformed(compressed, compressed.length, data.length + 1);
+    // a match pointing before the start of the output
+    assertMalformed(new byte[] { 0x10, 'a', 0x05, 0x00, 0x00 }, 5, 10);
+  }
+
+  private byte[] assertRoundTrip(byte[] data) throws IOException {
+    byte[] compressed = codec.compress(data, 0, data.length);
+    assertArrayEquals(data, codec.decompress(compressed, 0, compressed.length, data.length));
+    return compressed;
+  }
+
+  private void assertMalformed(byte[] compressed, int length, int uncompressedLength) {
+    try {
+      codec.decompress(compressed, 0, length, uncompressedLength);
+      fail();
+    } catch (IOException e) {
+      // expected
+    }
+  }
+}
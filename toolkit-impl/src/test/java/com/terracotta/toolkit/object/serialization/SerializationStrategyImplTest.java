@@ -0,0 +1,185 @@
+/* 
+ * The contents of this file are subject to the Terracotta Public License Version
+ * 2.0 (the "License"); You may not use this file except in compliance with the
+ * License. You may obtain a copy of the License at 
+ *
+ *      http://terracotta.org/legal/terracotta-public-license.
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ * the specific language governing rights and limitations under the License.
+ *
+ * The Covered Software is Terracotta Platform.
+ *
+ * The Initial Developer of the Covered Software is 
+ *      Terracotta, Inc., a Software AG company
+ */
+package com.terracotta.toolkit.object.serialization;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.terracotta.toolkit.mockl2.test.MockPlatformService;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+public class SerializationStrategyImplTest {
+
+  private static final int          MIN_SIZE = 64;
+
+  private SerializationStrategyImpl strategy;
+
+  @Before
+  public void init() {
+    strategy = new SerializationStrategyImpl(new MockPlatformService(), new LocalSerializerMap(), getClass()
+        .getClassLoader(), MIN_SIZE);
+  }
+
+  @Test
+  public void testSmallValuesAreNotCompressed() throws Exception {
+    byte[] plain = strategy.serialize("small", (CompressionCodec) null);
+    assertTrue(plain.length < MIN_SIZE);
+    assertEquals(plain.length, strategy.serialize("small", CompressionCodecs.LZ4).length);
+    assertEquals("small", strategy.deserialize(strategy.serialize("small", CompressionCodecs.LZ4), true, false));
+  }
+
+  @Test
+  public void testCodecRoundTrips() throws Exception {
+    ArrayList<String> value = compressibleValue();
+    int plainLength = strategy.serialize(value, (CompressionCodec) null).length;
+    for (CompressionCodec codec : new CompressionCodec[] { CompressionCodecs.LZ4, CompressionCodecs.GZIP }) {
+      byte[] data = strategy.serialize(value, codec);
+      assertTrue(data.length < plainLength);
+      // the compression flag passed to deserialize does not matter, the payload says how it was written
+      assertEquals(value, strategy.deserialize(data, false, false));
+      assertEquals(value, strategy.deserialize(data, true, false));
+    }
+    byte[] data = strategy.serialize(value, CompressionCodecs.LZ4);
+    assertEquals(SerializationStrategyImpl.CODEC_MARKER, data[0]);
+    assertEquals(CompressionCodecs.LZ4.getId(), data[1]);
+  }
+
+  @Test
+  public void testBooleanCompressionUsesGzip() throws Exception {
+    byte[] data = strategy.serialize(compressibleValue(), true);
+    assertEquals((byte) 0x1F, data[0]);
+    assertEquals((byte) 0x8B, data[1]);
+  }
+
+  @Test
+  public void testOlderVersionsReadGzipValuesOfAnySize() throws Exception {
+    assertTrue(strategy.serialize("small", (CompressionCodec) null).length < MIN_SIZE);
+    for (Object value : new Object[] { "small", compressibleValue() }) {
+      byte[] data = strategy.serialize(value, true);
+      assertEquals(value, olderVersionDeserialize(data, true));
+      assertEquals(value, strategy.deserialize(data, true, false));
+    }
+  }
+
+  @Test
+  public void testOlderVersionsReadUncompressedValues() throws Exception {
+    byte[] data = strategy.serialize(compressibleValue(), false);
+    assertEquals(compressibleValue(), olderVersionDeserialize(data, false));
+  }
+
+  @Test
+  public void testIncompressibleValuesAreStoredPlain() throws Exception {
+    byte[] random = new byte[4096];
+    new Random(5).nextBytes(random);
+    byte[] plain = strategy.serialize(random, (CompressionCodec) null);
+    byte[] data = strategy.serialize(random, CompressionCodecs.LZ4);
+    assertEquals(plain.length, data.length);
+    assertEquals(plain[0], data[0]);
+  }
+
+  @Test
+  public void testReadsLegacyGzipValues() throws Exception {
+    ArrayList<String> value = compressibleValue();
+    ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    GZIPOutputStream gzip = new GZIPOutputStream(baos);
+    gzip.write(strategy.serialize(value, (CompressionCodec) null));
+    gzip.close();
+    assertEquals(value, strategy.deserialize(baos.toByteArray(), true, false));
+  }
+
+  /**
+   * Reads the way versions from before codecs were pluggable did: gunzip when the cache has compression enabled, then
+   * the object stream, which reads plain values the same in this version.
+   */
+  private Object olderVersionDeserialize(byte[] data, boolean compression) throws Exception {
+    if (compression) {
+      ByteArrayOutputStream plain = new ByteArrayOutputStream();
+      InputStream in = new GZIPInputStream(new ByteArrayInputStream(data));
+      try {
+        byte[] buffer = new byte[256];
+        for (int n; (n = in.read(buffer)) >= 0;) {
+          plain.write(buffer, 0, n);
+        }
+      } finally {
+        in.close();
+      }
+      data = plain.toByteArray();
+    }
+    assertEquals((byte) 0xAC, data[0]);
+    return strategy.deserialize(data, false, false);
+  }
+
+  @Test
+  public void testUnknownCodecIdIsRejected() throws Exception {
+    byte[] data = strategy.serialize(compressibleValue(), CompressionCodecs.LZ4);
+    data[1] = 99;
+    try {
+      strategy.deserialize(data, true, false);
+      fail();
+    } catch (IOException e) {
+      // expected
+    }
+  }
+
+  @Test
+  public void testCodecRegistry() {
+    assertSame(CompressionCodecs.LZ4, CompressionCodecs.forName("lz4"));
+    assertSame(CompressionCodecs.GZIP, CompressionCodecs.forId(GzipCompressionCodec.ID));
+    assertNull(CompressionCodecs.forId((byte) 0));
+    // registering the same codec again is harmless
+    CompressionCodecs.register(new LZ4BlockCompressionCodec());
+    try {
+      CompressionCodecs.register(new GzipCompressionCodec() {
+        @Override
+        public String getName() {
+          return "not-gzip";
+        }
+      });
+      fail();
+    } catch (IllegalArgumentException e) {
+      // expected, the id is taken
+    }
+    try {
+      CompressionCodecs.forName("snappy");
+      fail();
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+  }
+
+  private static ArrayList<String> compressibleValue() {
+    ArrayList<String> value = new ArrayList<String>();
+    for (int i = 0; i < 200; i++) {
+      value.add("some fairly repetitive cache value " + (i % 10));
+    }
+    return value;
+  }
+}